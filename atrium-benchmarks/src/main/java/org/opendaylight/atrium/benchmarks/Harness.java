@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2016 Wipro Ltd. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.atrium.benchmarks;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The options, measures and reports shared by the harnesses run outside of
+ * JMH.
+ */
+public final class Harness {
+
+	private Harness() {
+	}
+
+	/**
+	 * @return the heap used after a garbage collection, in bytes
+	 */
+	public static long usedHeap() throws InterruptedException {
+		MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+			Thread.sleep(100);
+		}
+		return memory.getHeapMemoryUsage().getUsed();
+	}
+
+	/**
+	 * Parses the options of a benchmark, given as --name=value.
+	 */
+	public static Map<String, String> parseOptions(String[] args) {
+		Map<String, String> options = new HashMap<>();
+		for (String arg : args) {
+			int separator = arg.indexOf('=');
+			if (!arg.startsWith("--") || separator < 0) {
+				throw new IllegalArgumentException("Options are given as --name=value, found " + arg);
+			}
+			options.put(arg.substring(2, separator), arg.substring(separator + 1));
+		}
+		return options;
+	}
+
+	/**
+	 * Prints a report and writes it to a file, in JSON.
+	 */
+	public static void writeReport(Map<String, Object> report, Path output) throws IOException {
+		String json = toJson(report);
+		System.out.println(json);
+		try (Writer writer = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+			writer.write(json);
+			writer.write('\n');
+		}
+		System.out.println("Written to " + output.toAbsolutePath());
+	}
+
+	@SuppressWarnings("unchecked")
+	private static String toJson(Object value) {
+		if (value instanceof Map) {
+			StringBuilder json = new StringBuilder("{");
+			for (Map.Entry<String, Object> entry : ((Map<String, Object>) value).entrySet()) {
+				if (json.length() > 1) {
+					json.append(", ");
+				}
+				json.append('"').append(entry.getKey()).append("\": ").append(toJson(entry.getValue()));
+			}
+			return json.append('}').toString();
+		}
+		if (value instanceof String) {
+			return '"' + ((String) value).replace("\\", "\\\\").replace("\"", "\\\"") + '"';
+		}
+		return String.valueOf(value);
+	}
+}
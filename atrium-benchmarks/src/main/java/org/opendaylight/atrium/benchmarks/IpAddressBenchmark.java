@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2016 Wipro Ltd. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.atrium.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.opendaylight.atrium.util.AtriumIpAddress;
+import org.opendaylight.atrium.util.AtriumIpPrefix;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parsing of IP addresses and prefixes as done for every route and next hop
+ * received, and prefix containment as done by the route lookups.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class IpAddressBenchmark {
+
+	@Param({ "10.1.2.3/24", "2001:db8:85a3::8a2e:370:7334/64" })
+	public String prefixString;
+
+	private String addressString;
+	private AtriumIpPrefix prefix;
+	private AtriumIpPrefix subPrefix;
+	private AtriumIpPrefix otherPrefix;
+	private AtriumIpAddress address;
+
+	@Setup
+	public void setUp() {
+		addressString = prefixString.substring(0, prefixString.indexOf('/'));
+		prefix = AtriumIpPrefix.valueOf(prefixString);
+		address = AtriumIpAddress.valueOf(addressString);
+		subPrefix = AtriumIpPrefix.valueOf(address, prefix.prefixLength() + 8);
+		otherPrefix = prefix.isIp4() ? AtriumIpPrefix.valueOf("192.168.0.0/16")
+				: AtriumIpPrefix.valueOf("fd00::/16");
+	}
+
+	@Benchmark
+	public AtriumIpAddress addressValueOf() {
+		return AtriumIpAddress.valueOf(addressString);
+	}
+
+	@Benchmark
+	public AtriumIpPrefix prefixValueOf() {
+		return AtriumIpPrefix.valueOf(prefixString);
+	}
+
+	@Benchmark
+	public boolean containsPrefix() {
+		return prefix.contains(subPrefix);
+	}
+
+	@Benchmark
+	public boolean containsPrefixMiss() {
+		return otherPrefix.contains(subPrefix);
+	}
+
+	@Benchmark
+	public boolean containsAddress() {
+		return prefix.contains(address);
+	}
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2016 Wipro Ltd. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.atrium.benchmarks;
+
+import java.util.Arrays;
+
+/**
+ * Latencies recorded by a single thread, in nanoseconds, from which the
+ * percentiles are computed at the end of a run.
+ */
+public final class LatencySamples {
+
+	private long[] samples;
+	private int count;
+
+	public LatencySamples(int capacity) {
+		samples = new long[Math.max(capacity, 16)];
+	}
+
+	public void record(long nanos) {
+		if (count == samples.length) {
+			samples = Arrays.copyOf(samples, count * 2);
+		}
+		samples[count++] = nanos;
+	}
+
+	public int getCount() {
+		return count;
+	}
+
+	/**
+	 * @param percentile
+	 *            the percentile, from 0 to 100
+	 * @return the latency at the percentile, 0 if none was recorded
+	 */
+	public long getPercentile(double percentile) {
+		if (count == 0) {
+			return 0;
+		}
+		long[] sorted = Arrays.copyOf(samples, count);
+		Arrays.sort(sorted);
+		int index = (int) Math.ceil(percentile / 100 * count) - 1;
+		return sorted[Math.min(Math.max(index, 0), count - 1)];
+	}
+
+	public long getMax() {
+		long max = 0;
+		for (int i = 0; i < count; i++) {
+			max = Math.max(max, samples[i]);
+		}
+		return max;
+	}
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2016 Wipro Ltd. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.atrium.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.opendaylight.atrium.util.AtriumMacAddress;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Conversion of MAC addresses from and to their string form, as done for
+ * every host learned and every flow written.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MacAddressBenchmark {
+
+	private String macString = "00:1b:21:3a:4f:c2";
+	private AtriumMacAddress mac = AtriumMacAddress.valueOf(macString);
+
+	@Benchmark
+	public AtriumMacAddress valueOf() {
+		return AtriumMacAddress.valueOf(macString);
+	}
+
+	@Benchmark
+	public String toStringColon() {
+		return mac.toString();
+	}
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2016 Wipro Ltd. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.atrium.benchmarks;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.opendaylight.atrium.util.AtriumIpAddress;
+import org.opendaylight.atrium.util.AtriumIpPrefix;
+import org.opendaylight.atrium.util.AtriumMacAddress;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * hashCode and equals of the value types, through the hash map lookups they
+ * are used for: routes by prefix, next hops by address and hosts by MAC.
+ * Each invocation looks up a key equal to, but not the same instance as, the
+ * stored one, as happens when the key was parsed from an update.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MapKeyBenchmark {
+
+	@Param({ "100000" })
+	public int size;
+
+	private final Map<AtriumIpPrefix, Integer> prefixes = new HashMap<>();
+	private final Map<AtriumIpAddress, Integer> addresses = new HashMap<>();
+	private final Map<AtriumMacAddress, Integer> macs = new HashMap<>();
+
+	private final List<AtriumIpPrefix> prefixKeys = new ArrayList<>();
+	private final List<AtriumIpAddress> addressKeys = new ArrayList<>();
+	private final List<AtriumMacAddress> macKeys = new ArrayList<>();
+	private int next;
+
+	@Setup
+	public void setUp() {
+		for (int i = 0; i < size; i++) {
+			int address = 0x0a000000 + (i << 8);
+			prefixes.put(AtriumIpPrefix.valueOf(address, 24), i);
+			addresses.put(AtriumIpAddress.valueOf(address + 1), i);
+			macs.put(AtriumMacAddress.valueOf(0x001b21000000L + i), i);
+
+			prefixKeys.add(AtriumIpPrefix.valueOf(address, 24));
+			addressKeys.add(AtriumIpAddress.valueOf(address + 1));
+			macKeys.add(AtriumMacAddress.valueOf(0x001b21000000L + i));
+		}
+	}
+
+	private int nextIndex() {
+		int index = next;
+		next = index + 1 == size ? 0 : index + 1;
+		return index;
+	}
+
+	@Benchmark
+	public Integer prefixLookup() {
+		return prefixes.get(prefixKeys.get(nextIndex()));
+	}
+
+	@Benchmark
+	public Integer addressLookup() {
+		return addresses.get(addressKeys.get(nextIndex()));
+	}
+
+	@Benchmark
+	public Integer macLookup() {
+		return macs.get(macKeys.get(nextIndex()));
+	}
+
+	@Benchmark
+	public int prefixHashCode() {
+		return prefixKeys.get(nextIndex()).hashCode();
+	}
+
+	@Benchmark
+	public boolean prefixEquals() {
+		int index = nextIndex();
+		return prefixKeys.get(index).equals(prefixKeys.get(size - 1 - index));
+	}
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2016 Wipro Ltd. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.atrium.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.opendaylight.atrium.routingservice.api.RouteEntry;
+import org.opendaylight.atrium.util.AtriumIpPrefix;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The binary string key of a prefix, computed for every RIB update and
+ * lookup.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RouteEntryBenchmark {
+
+	@Param({ "10.0.0.0/8", "192.168.10.0/24", "192.168.10.1/32", "2001:db8::/48" })
+	public String prefixString;
+
+	private AtriumIpPrefix prefix;
+
+	@Setup
+	public void setUp() {
+		prefix = AtriumIpPrefix.valueOf(prefixString);
+	}
+
+	@Benchmark
+	public String createBinaryString() {
+		return RouteEntry.createBinaryString(prefix);
+	}
+}
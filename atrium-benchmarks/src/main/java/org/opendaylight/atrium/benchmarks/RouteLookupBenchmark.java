@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2016 Wipro Ltd. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.atrium.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.opendaylight.atrium.routingservice.api.RouteEntry;
+import org.opendaylight.atrium.routingservice.impl.Ip4RouteTable;
+import org.opendaylight.atrium.util.AtriumIpAddress;
+import org.opendaylight.atrium.util.AtriumIpPrefix;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Longest prefix match of addresses in the IPv4 RIB, one address at a time
+ * and in batch, and the addition of a route to the RIB.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RouteLookupBenchmark {
+
+	private static final int BATCH = 256;
+
+	@Param({ "1000", "100000" })
+	public int routes;
+
+	private Ip4RouteTable table;
+	private RouteEntry route;
+	private AtriumIpAddress address;
+	private final int[] addresses = new int[BATCH];
+
+	@Setup
+	public void setUp() {
+		Random random = new Random(42);
+		AtriumIpAddress nextHop = AtriumIpAddress.valueOf("192.168.10.1");
+		table = Ip4RouteTable.EMPTY;
+		while (table.size() < routes) {
+			// Mostly /24 prefixes, as in a full table
+			int length = random.nextInt(4) == 0 ? 16 + random.nextInt(8) : 24;
+			table = table.put(new RouteEntry(AtriumIpPrefix.valueOf(random.nextInt(), length), nextHop));
+		}
+		for (int i = 0; i < BATCH; i++) {
+			addresses[i] = random.nextInt();
+		}
+		address = AtriumIpAddress.valueOf(addresses[0]);
+		route = new RouteEntry(AtriumIpPrefix.valueOf(addresses[1], 24), nextHop);
+	}
+
+	@Benchmark
+	public RouteEntry lookup() {
+		return table.lookup(address);
+	}
+
+	@Benchmark
+	public RouteEntry[] lookupBatch() {
+		return table.lookup(addresses);
+	}
+
+	@Benchmark
+	public Ip4RouteTable put() {
+		return table.put(route);
+	}
+}
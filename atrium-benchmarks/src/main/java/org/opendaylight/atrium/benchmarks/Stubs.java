@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2016 Wipro Ltd. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.atrium.benchmarks;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Map;
+
+import com.google.common.base.Defaults;
+
+/**
+ * Stand-ins for the controller interfaces of which the code under test only
+ * calls a few methods. Only the given methods are answered, any other call
+ * fails so that the harness notices when the code starts depending on more.
+ */
+public final class Stubs {
+
+	/**
+	 * Answers a call to a stubbed method.
+	 */
+	public interface Answer {
+		Object answer(Object[] args) throws Throwable;
+	}
+
+	private Stubs() {
+	}
+
+	/**
+	 * @param type
+	 *            the interface to stub
+	 * @param answers
+	 *            the answers by method name, methods returning void and not
+	 *            listed are ignored
+	 * @return the stub
+	 */
+	public static <T> T stub(Class<T> type, Map<String, Answer> answers) {
+		return type.cast(stub(new Class<?>[] { type }, answers));
+	}
+
+	public static Object stub(Class<?>[] types, Map<String, Answer> answers) {
+		InvocationHandler handler = (proxy, method, args) -> invoke(types, answers, proxy, method, args);
+		return Proxy.newProxyInstance(Stubs.class.getClassLoader(), types, handler);
+	}
+
+	private static Object invoke(Class<?>[] types, Map<String, Answer> answers, Object proxy, Method method,
+			Object[] args) throws Throwable {
+		Answer answer = answers.get(method.getName());
+		if (answer != null) {
+			return answer.answer(args);
+		}
+		if (method.getDeclaringClass() == Object.class) {
+			switch (method.getName()) {
+			case "equals":
+				return proxy == args[0];
+			case "hashCode":
+				return System.identityHashCode(proxy);
+			default:
+				return "Stub" + Arrays.toString(types);
+			}
+		}
+		if (method.getReturnType() == void.class) {
+			return null;
+		}
+		if (method.getReturnType().isPrimitive()) {
+			return Defaults.defaultValue(method.getReturnType());
+		}
+		throw new UnsupportedOperationException(method.toString());
+	}
+}
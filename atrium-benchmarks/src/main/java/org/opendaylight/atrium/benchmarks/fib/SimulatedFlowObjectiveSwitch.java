@@ -0,0 +1,496 @@
+/*
+ * Copyright (c) 2016 Wipro Ltd. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.atrium.benchmarks.fib;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+import org.opendaylight.atrium.util.AtriumIpPrefix;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.yang.types.rev100924.MacAddress;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.action.types.rev131112.action.action.SetFieldCase;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.action.types.rev131112.action.action.set.field._case.SetField;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.action.types.rev131112.action.list.Action;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.model.match.types.rev131026.match.layer._3.match.Ipv4Match;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.didm.drivers.atrium.rev150211.AtriumFlowObjectiveService;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.didm.drivers.atrium.rev150211.FilterInput;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.didm.drivers.atrium.rev150211.ForwardInput;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.didm.drivers.atrium.rev150211.NextInput;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.didm.drivers.atrium.rev150211.Objective.Operation;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.didm.drivers.atrium.rev150211.filter.input.FilterObjective;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.didm.drivers.atrium.rev150211.forward.input.ForwardingObjective;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.didm.drivers.atrium.rev150211.forward.input.forwarding.objective.Match;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.didm.drivers.atrium.rev150211.next.input.NextObjective;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.didm.drivers.atrium.rev150211.next.input.next.objective.TrafficTreatment;
+import org.opendaylight.yangtools.yang.common.RpcError.ErrorType;
+import org.opendaylight.yangtools.yang.common.RpcResult;
+import org.opendaylight.yangtools.yang.common.RpcResultBuilder;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * A data-plane switch simulated behind the flow objective service, to run
+ * the router without a DIDM driver and an OpenFlow switch.
+ * <p>
+ * The objectives are applied in order by a single agent thread, as the agent
+ * of a switch handles the messages of its channel, each after the latency
+ * set for its RPC. The forwarding objectives are kept in a flow table and the
+ * next objectives in a group table, both of bounded capacity. The switch
+ * rejects an objective as a real one would: a flow when the flow table is
+ * full or when it points at a missing next objective, a next objective when
+ * the group table is full, and the removal of a next objective still in use.
+ * Failures can also be injected, at random or for the next RPCs.
+ * </p>
+ * <p>
+ * The tables can be queried at any time, and listeners are told of each
+ * route flow change once it is applied.
+ * </p>
+ */
+public final class SimulatedFlowObjectiveSwitch implements AtriumFlowObjectiveService, AutoCloseable {
+
+	public static final int UNLIMITED = Integer.MAX_VALUE;
+
+	/**
+	 * The RPCs of the flow objective service.
+	 */
+	public enum Rpc {
+		FORWARD, NEXT, FILTER
+	}
+
+	/**
+	 * Told of the changes of the route flows, on the agent thread.
+	 */
+	public interface RouteFlowListener {
+
+		/**
+		 * @param prefix
+		 *            the destination prefix of the route flow
+		 * @param nextId
+		 *            the next objective the flow points at, null if the flow
+		 *            was removed
+		 */
+		void routeFlowChanged(AtriumIpPrefix prefix, Integer nextId);
+	}
+
+	private final int flowCapacity;
+	private final int groupCapacity;
+	private final ExecutorService agent = Executors.newSingleThreadExecutor(
+			new ThreadFactoryBuilder().setNameFormat("atrium-simulated-switch-%d").setDaemon(true).build());
+	private final List<RouteFlowListener> listeners = new CopyOnWriteArrayList<>();
+
+	// Guarded by this
+	private final Map<FlowKey, ForwardingObjective> flows = new LinkedHashMap<>();
+	private final Map<Integer, NextObjective> groups = new HashMap<>();
+	// Number of flows pointing at each next objective
+	private final Map<Integer, Integer> groupReferences = new HashMap<>();
+	private final Set<FilterObjective> filters = new LinkedHashSet<>();
+	private final Map<Rpc, Long> latencies = new EnumMap<>(Rpc.class);
+	private final Map<Rpc, Double> failureRates = new EnumMap<>(Rpc.class);
+	private final Map<Rpc, Integer> failuresToInject = new EnumMap<>(Rpc.class);
+	private final Random random = new Random(0);
+
+	private final Map<Rpc, AtomicLong> requests = new EnumMap<>(Rpc.class);
+	private final Map<Rpc, AtomicLong> failures = new EnumMap<>(Rpc.class);
+	private final Map<Rpc, AtomicLong> rejections = new EnumMap<>(Rpc.class);
+
+	/**
+	 * A switch with tables of unlimited capacity.
+	 */
+	public SimulatedFlowObjectiveSwitch() {
+		this(UNLIMITED, UNLIMITED);
+	}
+
+	/**
+	 * @param flowCapacity
+	 *            the number of forwarding objectives the flow table holds
+	 * @param groupCapacity
+	 *            the number of next objectives the group table holds
+	 */
+	public SimulatedFlowObjectiveSwitch(int flowCapacity, int groupCapacity) {
+		checkArgument(flowCapacity > 0 && groupCapacity > 0, "The capacities must be positive");
+		this.flowCapacity = flowCapacity;
+		this.groupCapacity = groupCapacity;
+		for (Rpc rpc : Rpc.values()) {
+			latencies.put(rpc, 0L);
+			failureRates.put(rpc, 0.0);
+			failuresToInject.put(rpc, 0);
+			requests.put(rpc, new AtomicLong());
+			failures.put(rpc, new AtomicLong());
+			rejections.put(rpc, new AtomicLong());
+		}
+	}
+
+	/**
+	 * Sets the time the agent spends on each objective of an RPC.
+	 */
+	public synchronized void setLatency(Rpc rpc, long latency, TimeUnit unit) {
+		checkArgument(latency >= 0, "The latency can not be negative");
+		latencies.put(rpc, unit.toNanos(latency));
+	}
+
+	/**
+	 * Fails a share of the objectives of an RPC at random.
+	 *
+	 * @param rate
+	 *            the probability for an objective to fail, from 0 to 1
+	 */
+	public synchronized void setFailureRate(Rpc rpc, double rate) {
+		checkArgument(rate >= 0 && rate <= 1, "The failure rate must be between 0 and 1");
+		failureRates.put(rpc, rate);
+	}
+
+	/**
+	 * Fails the next objectives of an RPC, on top of the random failures.
+	 */
+	public synchronized void failNext(Rpc rpc, int count) {
+		checkArgument(count >= 0, "The count can not be negative");
+		failuresToInject.put(rpc, count);
+	}
+
+	public void addListener(RouteFlowListener listener) {
+		listeners.add(listener);
+	}
+
+	public void removeListener(RouteFlowListener listener) {
+		listeners.remove(listener);
+	}
+
+	@Override
+	public Future<RpcResult<Void>> forward(ForwardInput input) {
+		return submit(Rpc.FORWARD, () -> applyForward(input.getForwardingObjective()));
+	}
+
+	@Override
+	public Future<RpcResult<Void>> next(NextInput input) {
+		return submit(Rpc.NEXT, () -> applyNext(input.getNextObjective()));
+	}
+
+	@Override
+	public Future<RpcResult<Void>> filter(FilterInput input) {
+		return submit(Rpc.FILTER, () -> applyFilter(input.getFilterObjective()));
+	}
+
+	/**
+	 * Queues an objective for the agent.
+	 *
+	 * @param apply
+	 *            applies the objective, returns the error if the switch
+	 *            rejects it
+	 */
+	private Future<RpcResult<Void>> submit(Rpc rpc, Supplier<String> apply) {
+		requests.get(rpc).incrementAndGet();
+		SettableFuture<RpcResult<Void>> result = SettableFuture.create();
+		try {
+			agent.execute(() -> {
+				pause(getLatency(rpc));
+				if (injectFailure(rpc)) {
+					failures.get(rpc).incrementAndGet();
+					result.set(failed("Injected failure"));
+					return;
+				}
+				String error = apply.get();
+				if (error != null) {
+					rejections.get(rpc).incrementAndGet();
+					result.set(failed(error));
+				} else {
+					result.set(RpcResultBuilder.<Void> success().build());
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			return Futures.immediateFuture(failed("The switch is closed"));
+		}
+		return result;
+	}
+
+	private static RpcResult<Void> failed(String message) {
+		return RpcResultBuilder.<Void> failed().withError(ErrorType.APPLICATION, message).build();
+	}
+
+	private static void pause(long nanos) {
+		long deadline = System.nanoTime() + nanos;
+		for (long left = nanos; left > 0; left = deadline - System.nanoTime()) {
+			LockSupport.parkNanos(left);
+		}
+	}
+
+	private synchronized long getLatency(Rpc rpc) {
+		return latencies.get(rpc);
+	}
+
+	private synchronized boolean injectFailure(Rpc rpc) {
+		int toInject = failuresToInject.get(rpc);
+		if (toInject > 0) {
+			failuresToInject.put(rpc, toInject - 1);
+			return true;
+		}
+		double rate = failureRates.get(rpc);
+		return rate > 0 && random.nextDouble() < rate;
+	}
+
+	private String applyForward(ForwardingObjective objective) {
+		if (objective == null || objective.getMatch() == null) {
+			return "The forwarding objective has no match";
+		}
+		FlowKey key = new FlowKey(objective.getMatch(), objective.getPriority());
+		AtriumIpPrefix prefix = getRoutePrefix(objective.getMatch());
+		Integer nextId = objective.getNextId();
+		synchronized (this) {
+			if (objective.getOperation() == Operation.Remove) {
+				ForwardingObjective removed = flows.remove(key);
+				if (removed == null) {
+					// Deleting a missing flow is not an error in OpenFlow
+					return null;
+				}
+				release(removed.getNextId());
+				nextId = null;
+			} else {
+				if (nextId != null && !groups.containsKey(nextId)) {
+					return "Next objective " + nextId + " does not exist";
+				}
+				if (!flows.containsKey(key) && flows.size() >= flowCapacity) {
+					return "The flow table is full";
+				}
+				ForwardingObjective replaced = flows.put(key, objective);
+				if (nextId != null) {
+					groupReferences.merge(nextId, 1, Integer::sum);
+				}
+				if (replaced != null) {
+					release(replaced.getNextId());
+				}
+			}
+		}
+		if (prefix != null) {
+			for (RouteFlowListener listener : listeners) {
+				listener.routeFlowChanged(prefix, nextId);
+			}
+		}
+		return null;
+	}
+
+	private void release(Integer nextId) {
+		if (nextId != null) {
+			groupReferences.computeIfPresent(nextId, (id, count) -> count > 1 ? count - 1 : null);
+		}
+	}
+
+	private synchronized String applyNext(NextObjective objective) {
+		if (objective == null || objective.getNextId() == null) {
+			return "The next objective has no id";
+		}
+		Integer nextId = objective.getNextId();
+		if (objective.getOperation() == Operation.Remove) {
+			if (groupReferences.containsKey(nextId)) {
+				return "Next objective " + nextId + " is in use by " + groupReferences.get(nextId) + " flow(s)";
+			}
+			groups.remove(nextId);
+			return null;
+		}
+		// Adding an existing next objective changes its buckets in place
+		if (!groups.containsKey(nextId) && groups.size() >= groupCapacity) {
+			return "The group table is full";
+		}
+		groups.put(nextId, objective);
+		return null;
+	}
+
+	private synchronized String applyFilter(FilterObjective objective) {
+		if (objective == null) {
+			return "The filter objective is missing";
+		}
+		filters.add(objective);
+		return null;
+	}
+
+	/**
+	 * @return the destination prefix of a route flow, null if the match is not
+	 *         on an IPv4 destination
+	 */
+	static AtriumIpPrefix getRoutePrefix(Match match) {
+		if (!(match.getLayer3Match() instanceof Ipv4Match)) {
+			return null;
+		}
+		Ipv4Match ipv4Match = (Ipv4Match) match.getLayer3Match();
+		if (ipv4Match.getIpv4Destination() == null) {
+			return null;
+		}
+		try {
+			return AtriumIpPrefix.valueOf(ipv4Match.getIpv4Destination().getValue());
+		} catch (IllegalArgumentException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Waits for the agent to apply the objectives sent so far.
+	 */
+	public void sync() throws InterruptedException {
+		try {
+			agent.submit(() -> {
+			}).get();
+		} catch (ExecutionException | RejectedExecutionException e) {
+			throw new IllegalStateException("The switch is closed", e);
+		}
+	}
+
+	/**
+	 * @return the route flows, the next objective of each destination prefix
+	 */
+	public synchronized Map<AtriumIpPrefix, Integer> getRouteFlows() {
+		Map<AtriumIpPrefix, Integer> routes = new HashMap<>();
+		for (ForwardingObjective flow : flows.values()) {
+			AtriumIpPrefix prefix = getRoutePrefix(flow.getMatch());
+			if (prefix != null && flow.getNextId() != null) {
+				routes.put(prefix, flow.getNextId());
+			}
+		}
+		return routes;
+	}
+
+	/**
+	 * @return the destination MAC addresses the route flows rewrite the
+	 *         packets to, through the buckets of their next objective
+	 */
+	public synchronized Map<AtriumIpPrefix, Set<MacAddress>> getRouteDestinations() {
+		Map<AtriumIpPrefix, Set<MacAddress>> routes = new HashMap<>();
+		for (Map.Entry<AtriumIpPrefix, Integer> route : getRouteFlows().entrySet()) {
+			routes.put(route.getKey(), getDestinations(groups.get(route.getValue())));
+		}
+		return routes;
+	}
+
+	private static Set<MacAddress> getDestinations(NextObjective objective) {
+		Set<MacAddress> destinations = new HashSet<>();
+		if (objective == null || objective.getTrafficTreatment() == null) {
+			return destinations;
+		}
+		for (TrafficTreatment treatment : objective.getTrafficTreatment()) {
+			if (treatment.getAction() == null) {
+				continue;
+			}
+			for (Action action : treatment.getAction()) {
+				if (!(action.getAction() instanceof SetFieldCase)) {
+					continue;
+				}
+				SetField setField = ((SetFieldCase) action.getAction()).getSetField();
+				if (setField.getEthernetMatch() != null
+						&& setField.getEthernetMatch().getEthernetDestination() != null) {
+					destinations.add(setField.getEthernetMatch().getEthernetDestination().getAddress());
+				}
+			}
+		}
+		return destinations;
+	}
+
+	/**
+	 * @return the forwarding objectives in the flow table
+	 */
+	public synchronized List<ForwardingObjective> getFlows() {
+		return new ArrayList<>(flows.values());
+	}
+
+	/**
+	 * @return the next objective of an id, null if it is not in the group
+	 *         table
+	 */
+	public synchronized NextObjective getNextObjective(int nextId) {
+		return groups.get(nextId);
+	}
+
+	/**
+	 * @return the filter objectives applied
+	 */
+	public synchronized List<FilterObjective> getFilters() {
+		return new ArrayList<>(filters);
+	}
+
+	public synchronized int getFlowCount() {
+		return flows.size();
+	}
+
+	public synchronized int getGroupCount() {
+		return groups.size();
+	}
+
+	/**
+	 * @return the number of objectives received for an RPC
+	 */
+	public long getRequestCount(Rpc rpc) {
+		return requests.get(rpc).get();
+	}
+
+	/**
+	 * @return the number of injected failures of an RPC
+	 */
+	public long getFailureCount(Rpc rpc) {
+		return failures.get(rpc).get();
+	}
+
+	/**
+	 * @return the number of objectives of an RPC the switch rejected
+	 */
+	public long getRejectedCount(Rpc rpc) {
+		return rejections.get(rpc).get();
+	}
+
+	@Override
+	public void close() {
+		agent.shutdownNow();
+	}
+
+	/**
+	 * Identifies a flow, as OpenFlow does, by its match and priority.
+	 */
+	private static final class FlowKey {
+		private final Match match;
+		private final Integer priority;
+
+		private FlowKey(Match match, Integer priority) {
+			this.match = match;
+			this.priority = priority;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(match, priority);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof FlowKey)) {
+				return false;
+			}
+			FlowKey other = (FlowKey) obj;
+			return Objects.equals(match, other.match) && Objects.equals(priority, other.priority);
+		}
+	}
+}
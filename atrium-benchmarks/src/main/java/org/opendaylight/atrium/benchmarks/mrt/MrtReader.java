@@ -0,0 +1,347 @@
+/*
+ * Copyright (c) 2016 Wipro Ltd. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.atrium.benchmarks.mrt;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+
+import org.opendaylight.atrium.util.AtriumIpAddress;
+import org.opendaylight.atrium.util.AtriumIpPrefix;
+
+/**
+ * Streams the IPv4 unicast routes of an MRT file (RFC 6396): the RIB entries
+ * of a TABLE_DUMP_V2 dump, and the announcements and withdrawals of the BGP
+ * UPDATE messages of a BGP4MP or BGP4MP_ET trace.
+ * <p>
+ * The file is mapped a window at a time and read record by record, so that
+ * dumps larger than the heap, or than 2 GB, can be read. Compressed dumps
+ * must be uncompressed first.
+ * </p>
+ * <p>
+ * IPv6 and multicast routes, ADD-PATH records, the messages sent by the
+ * collector itself, the BGP4MP state changes and the legacy TABLE_DUMP type
+ * are skipped.
+ * </p>
+ */
+public final class MrtReader implements Closeable {
+
+	static final int HEADER_LENGTH = 12;
+	static final int MAX_RECORD_LENGTH = 1 << 24;
+	private static final long WINDOW = 1 << 28;
+
+	// Record types and subtypes
+	static final int TABLE_DUMP_V2 = 13;
+	static final int PEER_INDEX_TABLE = 1;
+	static final int RIB_IPV4_UNICAST = 2;
+	static final int BGP4MP = 16;
+	static final int BGP4MP_ET = 17;
+	static final int BGP4MP_MESSAGE = 1;
+	static final int BGP4MP_MESSAGE_AS4 = 4;
+
+	// BGP message
+	private static final int BGP_HEADER_LENGTH = 19;
+	private static final int BGP_UPDATE = 2;
+	private static final int AFI_IPV4 = 1;
+
+	// Path attributes
+	private static final int ORIGIN = 1;
+	private static final int AS_PATH = 2;
+	private static final int NEXT_HOP = 3;
+	private static final int MULTI_EXIT_DISC = 4;
+	private static final int LOCAL_PREF = 5;
+	private static final int EXTENDED_LENGTH = 0x10;
+	private static final int AS_SET = 1;
+	private static final int AS_SEQUENCE = 2;
+
+	private final FileChannel channel;
+	private final long size;
+	private MappedByteBuffer window;
+	private long windowStart;
+	private long position;
+
+	private AtriumIpAddress[] peers = new AtriumIpAddress[0];
+	private final Deque<MrtRoute> routes = new ArrayDeque<>();
+	private long records;
+	private long skipped;
+
+	/**
+	 * Opens an MRT file.
+	 *
+	 * @param file
+	 *            the uncompressed MRT file
+	 * @throws IOException
+	 *             if the file can not be opened
+	 */
+	public MrtReader(Path file) throws IOException {
+		channel = FileChannel.open(file, StandardOpenOption.READ);
+		size = channel.size();
+	}
+
+	/**
+	 * @return the next route, null at the end of the file
+	 * @throws IOException
+	 *             if the file can not be read or a record is malformed
+	 */
+	public MrtRoute next() throws IOException {
+		while (routes.isEmpty()) {
+			if (size - position < HEADER_LENGTH) {
+				return null;
+			}
+			ByteBuffer header = map(position, HEADER_LENGTH);
+			long seconds = header.getInt() & 0xffffffffL;
+			int type = header.getShort() & 0xffff;
+			int subtype = header.getShort() & 0xffff;
+			long length = header.getInt() & 0xffffffffL;
+			if (length > MAX_RECORD_LENGTH || position + HEADER_LENGTH + length > size) {
+				throw new IOException("Malformed MRT record of " + length + " bytes at offset " + position);
+			}
+			ByteBuffer record = map(position + HEADER_LENGTH, (int) length);
+			position += HEADER_LENGTH + length;
+			records++;
+			try {
+				if (!read(seconds * 1000000, type, subtype, record)) {
+					skipped++;
+				}
+			} catch (RuntimeException e) {
+				throw new IOException("Malformed MRT record of type " + type + "." + subtype + " ending at offset "
+						+ position, e);
+			}
+		}
+		return routes.poll();
+	}
+
+	/**
+	 * @return the number of records read
+	 */
+	public long getRecordCount() {
+		return records;
+	}
+
+	/**
+	 * @return the number of records skipped
+	 */
+	public long getSkippedCount() {
+		return skipped;
+	}
+
+	/**
+	 * @return the position in the file, in bytes
+	 */
+	public long getPosition() {
+		return position;
+	}
+
+	/**
+	 * @return the size of the file, in bytes
+	 */
+	public long size() {
+		return size;
+	}
+
+	@Override
+	public void close() throws IOException {
+		window = null;
+		channel.close();
+	}
+
+	/**
+	 * @return the bytes of the file at an offset, mapping the window that
+	 *         holds them if needed
+	 */
+	private ByteBuffer map(long offset, int length) throws IOException {
+		if (window == null || offset < windowStart || offset + length > windowStart + window.capacity()) {
+			windowStart = offset;
+			window = channel.map(FileChannel.MapMode.READ_ONLY, offset,
+					Math.min(size - offset, Math.max(WINDOW, length)));
+		}
+		ByteBuffer bytes = window.duplicate();
+		bytes.position((int) (offset - windowStart));
+		bytes.limit(bytes.position() + length);
+		return bytes.slice();
+	}
+
+	/**
+	 * Reads the routes of a record.
+	 *
+	 * @return false if the record was skipped
+	 */
+	private boolean read(long timestamp, int type, int subtype, ByteBuffer record) {
+		switch (type) {
+		case TABLE_DUMP_V2:
+			if (subtype == PEER_INDEX_TABLE) {
+				readPeerIndexTable(record);
+				return true;
+			} else if (subtype == RIB_IPV4_UNICAST) {
+				readRib(timestamp, record);
+				return true;
+			}
+			return false;
+		case BGP4MP_ET:
+			timestamp += record.getInt();
+			// Fall through
+		case BGP4MP:
+			if (subtype == BGP4MP_MESSAGE || subtype == BGP4MP_MESSAGE_AS4) {
+				return readMessage(timestamp, subtype == BGP4MP_MESSAGE_AS4, record);
+			}
+			return false;
+		default:
+			return false;
+		}
+	}
+
+	private void readPeerIndexTable(ByteBuffer record) {
+		record.getInt(); // Collector BGP ID
+		skip(record, record.getShort() & 0xffff); // View name
+		int count = record.getShort() & 0xffff;
+		peers = new AtriumIpAddress[count];
+		for (int i = 0; i < count; i++) {
+			int peerType = record.get();
+			record.getInt(); // Peer BGP ID
+			peers[i] = readAddress(record, (peerType & 0x1) != 0);
+			skip(record, (peerType & 0x2) != 0 ? 4 : 2); // Peer AS
+		}
+	}
+
+	private void readRib(long timestamp, ByteBuffer record) {
+		record.getInt(); // Sequence number
+		AtriumIpPrefix prefix = readPrefix(record);
+		int count = record.getShort() & 0xffff;
+		for (int i = 0; i < count; i++) {
+			int peerIndex = record.getShort() & 0xffff;
+			record.getInt(); // Originated time
+			int attributesLength = record.getShort() & 0xffff;
+			MrtRoute.Attributes attributes = readAttributes(record, attributesLength, true);
+			if (peerIndex >= peers.length) {
+				throw new IllegalStateException("Peer index " + peerIndex + " not in the peer index table");
+			}
+			routes.add(new MrtRoute(timestamp, peers[peerIndex], prefix, false, i, attributes));
+		}
+	}
+
+	private boolean readMessage(long timestamp, boolean as4, ByteBuffer record) {
+		skip(record, as4 ? 8 : 4); // Peer and local AS
+		record.getShort(); // Interface index
+		int afi = record.getShort() & 0xffff;
+		AtriumIpAddress peer = readAddress(record, afi != AFI_IPV4);
+		readAddress(record, afi != AFI_IPV4); // Local address
+
+		skip(record, 16); // Marker
+		int length = record.getShort() & 0xffff;
+		int type = record.get() & 0xff;
+		if (type != BGP_UPDATE) {
+			return false;
+		}
+		ByteBuffer message = record.slice();
+		message.limit(length - BGP_HEADER_LENGTH);
+
+		ByteBuffer withdrawn = slice(message, message.getShort() & 0xffff);
+		while (withdrawn.hasRemaining()) {
+			routes.add(new MrtRoute(timestamp, peer, readPrefix(withdrawn), true, -1, MrtRoute.Attributes.NONE));
+		}
+		MrtRoute.Attributes attributes = readAttributes(message, message.getShort() & 0xffff, as4);
+		while (message.hasRemaining()) {
+			routes.add(new MrtRoute(timestamp, peer, readPrefix(message), false, -1, attributes));
+		}
+		return true;
+	}
+
+	private MrtRoute.Attributes readAttributes(ByteBuffer record, int length, boolean as4) {
+		ByteBuffer attributes = slice(record, length);
+		MrtRoute.Attributes result = new MrtRoute.Attributes();
+		while (attributes.hasRemaining()) {
+			int flags = attributes.get() & 0xff;
+			int type = attributes.get() & 0xff;
+			int valueLength = (flags & EXTENDED_LENGTH) != 0 ? attributes.getShort() & 0xffff
+					: attributes.get() & 0xff;
+			ByteBuffer value = slice(attributes, valueLength);
+			switch (type) {
+			case ORIGIN:
+				result.origin = value.get() & 0xff;
+				break;
+			case AS_PATH:
+				result.asPath = readAsPath(value, as4);
+				break;
+			case NEXT_HOP:
+				result.nextHop = AtriumIpAddress.valueOf(value.getInt());
+				break;
+			case MULTI_EXIT_DISC:
+				result.med = value.getInt() & 0xffffffffL;
+				break;
+			case LOCAL_PREF:
+				result.localPref = value.getInt() & 0xffffffffL;
+				break;
+			default:
+				break;
+			}
+		}
+		return result;
+	}
+
+	private static long[] readAsPath(ByteBuffer value, boolean as4) {
+		long[] asPath = new long[16];
+		int count = 0;
+		while (value.hasRemaining()) {
+			int segmentType = value.get() & 0xff;
+			int segmentLength = value.get() & 0xff;
+			for (int i = 0; i < segmentLength; i++) {
+				long as = as4 ? value.getInt() & 0xffffffffL : value.getShort() & 0xffff;
+				// An AS set counts as one AS
+				if (segmentType == AS_SEQUENCE || (segmentType == AS_SET && i == 0)) {
+					if (count == asPath.length) {
+						asPath = Arrays.copyOf(asPath, count * 2);
+					}
+					asPath[count++] = as;
+				}
+			}
+		}
+		return Arrays.copyOf(asPath, count);
+	}
+
+	private static AtriumIpPrefix readPrefix(ByteBuffer buffer) {
+		int length = buffer.get() & 0xff;
+		if (length > 32) {
+			throw new IllegalArgumentException("IPv4 prefix length " + length);
+		}
+		int address = 0;
+		for (int i = 0; i < (length + 7) / 8; i++) {
+			address |= (buffer.get() & 0xff) << (24 - 8 * i);
+		}
+		return AtriumIpPrefix.valueOf(address, length);
+	}
+
+	private static AtriumIpAddress readAddress(ByteBuffer buffer, boolean ip6) {
+		if (!ip6) {
+			return AtriumIpAddress.valueOf(buffer.getInt());
+		}
+		byte[] address = new byte[16];
+		buffer.get(address);
+		return AtriumIpAddress.valueOf(AtriumIpAddress.Version.INET6, address);
+	}
+
+	/**
+	 * @return the next bytes of a buffer, which is moved past them
+	 */
+	private static ByteBuffer slice(ByteBuffer buffer, int length) {
+		ByteBuffer slice = buffer.slice();
+		slice.limit(length);
+		skip(buffer, length);
+		return slice;
+	}
+
+	private static void skip(ByteBuffer buffer, int length) {
+		buffer.position(buffer.position() + length);
+	}
+}
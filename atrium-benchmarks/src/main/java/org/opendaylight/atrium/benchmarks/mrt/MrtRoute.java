@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2016 Wipro Ltd. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.atrium.benchmarks.mrt;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Arrays;
+
+import org.opendaylight.atrium.util.AtriumIpAddress;
+import org.opendaylight.atrium.util.AtriumIpPrefix;
+
+import com.google.common.base.MoreObjects;
+
+/**
+ * A route announced or withdrawn by a peer, read from an MRT record.
+ */
+public final class MrtRoute {
+
+	/**
+	 * Attribute value not present in the record.
+	 */
+	public static final long UNKNOWN = -1;
+
+	private final long timestamp;
+	private final AtriumIpAddress peer;
+	private final AtriumIpPrefix prefix;
+	private final boolean withdrawn;
+	private final int entry;
+	private final AtriumIpAddress nextHop;
+	private final int origin;
+	private final long[] asPath;
+	private final long localPref;
+	private final long med;
+
+	MrtRoute(long timestamp, AtriumIpAddress peer, AtriumIpPrefix prefix, boolean withdrawn, int entry,
+			Attributes attributes) {
+		this.timestamp = timestamp;
+		this.peer = checkNotNull(peer);
+		this.prefix = checkNotNull(prefix);
+		this.withdrawn = withdrawn;
+		this.entry = entry;
+		this.nextHop = attributes.nextHop;
+		this.origin = attributes.origin;
+		this.asPath = attributes.asPath;
+		this.localPref = attributes.localPref;
+		this.med = attributes.med;
+	}
+
+	/**
+	 * @return the time of the record, in microseconds since the epoch
+	 */
+	public long timestamp() {
+		return timestamp;
+	}
+
+	/**
+	 * @return the address of the peer the route was received from
+	 */
+	public AtriumIpAddress peer() {
+		return peer;
+	}
+
+	public AtriumIpPrefix prefix() {
+		return prefix;
+	}
+
+	/**
+	 * @return true if the route is withdrawn, its attributes are then unknown
+	 */
+	public boolean isWithdrawn() {
+		return withdrawn;
+	}
+
+	/**
+	 * @return the index of the route among the routes of its prefix in a
+	 *         table dump, -1 for a route of an UPDATE message
+	 */
+	public int entry() {
+		return entry;
+	}
+
+	/**
+	 * @return the IPv4 next hop, null if unknown
+	 */
+	public AtriumIpAddress nextHop() {
+		return nextHop;
+	}
+
+	/**
+	 * @return the ORIGIN attribute, {@link #UNKNOWN} if not present
+	 */
+	public int origin() {
+		return origin;
+	}
+
+	/**
+	 * @return the AS numbers of the AS_SEQUENCE segments of the AS path, an AS
+	 *         set is given as its first AS number
+	 */
+	public long[] asPath() {
+		return asPath.clone();
+	}
+
+	/**
+	 * @return the LOCAL_PREF attribute, {@link #UNKNOWN} if not present
+	 */
+	public long localPref() {
+		return localPref;
+	}
+
+	/**
+	 * @return the MULTI_EXIT_DISC attribute, {@link #UNKNOWN} if not present
+	 */
+	public long med() {
+		return med;
+	}
+
+	@Override
+	public String toString() {
+		return MoreObjects.toStringHelper(getClass()).add("timestamp", timestamp).add("peer", peer)
+				.add("prefix", prefix).add("withdrawn", withdrawn).add("nextHop", nextHop)
+				.add("asPath", Arrays.toString(asPath)).toString();
+	}
+
+	/**
+	 * The path attributes of a record, shared by its routes.
+	 */
+	static final class Attributes {
+		static final Attributes NONE = new Attributes();
+
+		AtriumIpAddress nextHop;
+		int origin = (int) UNKNOWN;
+		long[] asPath = new long[0];
+		long localPref = UNKNOWN;
+		long med = UNKNOWN;
+	}
+}
@@ -0,0 +1,232 @@
+/*
+ * Copyright (c) 2016 Wipro Ltd. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.atrium.benchmarks.pcap;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.opendaylight.atrium.atriumutil.tcp.AtriumTCPDecoder;
+
+/**
+ * Streams the Ethernet frames of a packet capture, in the libpcap format,
+ * with microsecond or nanosecond timestamps in either byte order, or in the
+ * snoop version 2 format (RFC 1761) decoded by {@link AtriumTCPDecoder}.
+ * <p>
+ * The file is mapped a window at a time and read record by record, so that
+ * captures larger than the heap can be read. Captures of other data links,
+ * and the pcapng format, are rejected.
+ * </p>
+ */
+public final class CaptureReader implements Closeable {
+
+	/**
+	 * The formats of capture read.
+	 */
+	public enum Format {
+		PCAP, PCAP_NANOS, SNOOP
+	}
+
+	static final int PCAP_MAGIC = 0xa1b2c3d4;
+	static final int PCAP_NANOS_MAGIC = 0xa1b23c4d;
+	static final int PCAP_HEADER_LENGTH = 24;
+	static final int PCAP_RECORD_HEADER_LENGTH = 16;
+	static final int LINKTYPE_ETHERNET = 1;
+
+	static final int SNOOP_VERSION = 2;
+	static final int SNOOP_HEADER_LENGTH = 16;
+	static final int SNOOP_RECORD_HEADER_LENGTH = 24;
+
+	static final int MAX_FRAME_LENGTH = 1 << 18;
+	private static final long WINDOW = 1 << 28;
+
+	private final FileChannel channel;
+	private final long size;
+	private final Format format;
+	private final ByteOrder order;
+	private MappedByteBuffer window;
+	private long windowStart;
+	private long position;
+
+	private long frames;
+	private long truncated;
+
+	/**
+	 * Opens a capture and reads its header.
+	 *
+	 * @param file
+	 *            the pcap or snoop file
+	 * @throws IOException
+	 *             if the file can not be opened, or is not a capture of an
+	 *             Ethernet link
+	 */
+	public CaptureReader(Path file) throws IOException {
+		channel = FileChannel.open(file, StandardOpenOption.READ);
+		try {
+			size = channel.size();
+			if (size < SNOOP_HEADER_LENGTH) {
+				throw new IOException(file + " is too short to be a packet capture");
+			}
+			ByteBuffer header = map(0, (int) Math.min(size, PCAP_HEADER_LENGTH));
+			byte[] id = new byte[AtriumTCPDecoder.SNOOP_HEADER_BYTES.length];
+			header.duplicate().get(id);
+			if (AtriumTCPDecoder.byteArraysAreEqual(id, AtriumTCPDecoder.SNOOP_HEADER_BYTES)) {
+				format = Format.SNOOP;
+				order = ByteOrder.BIG_ENDIAN;
+				readSnoopHeader(file, header);
+			} else {
+				int magic = header.getInt(0);
+				int swapped = Integer.reverseBytes(magic);
+				if (magic == PCAP_MAGIC || swapped == PCAP_MAGIC) {
+					format = Format.PCAP;
+				} else if (magic == PCAP_NANOS_MAGIC || swapped == PCAP_NANOS_MAGIC) {
+					format = Format.PCAP_NANOS;
+				} else {
+					throw new IOException(file + " is not a pcap or snoop capture");
+				}
+				order = magic == PCAP_MAGIC || magic == PCAP_NANOS_MAGIC ? ByteOrder.BIG_ENDIAN
+						: ByteOrder.LITTLE_ENDIAN;
+				readPcapHeader(file, header);
+			}
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	private void readSnoopHeader(Path file, ByteBuffer header) throws IOException {
+		header.position(AtriumTCPDecoder.SNOOP_HEADER_BYTES.length);
+		int version = header.getInt();
+		if (version != SNOOP_VERSION) {
+			throw new IOException(file + " is a snoop version " + version + " capture, only version 2 is read");
+		}
+		int dataLinkType = header.getInt();
+		if (dataLinkType != AtriumTCPDecoder.DATA_LINK_TYPE_ETHERNET) {
+			throw new IOException(file + " is a capture of data link type " + dataLinkType + ", not Ethernet");
+		}
+		position = SNOOP_HEADER_LENGTH;
+	}
+
+	private void readPcapHeader(Path file, ByteBuffer header) throws IOException {
+		if (size < PCAP_HEADER_LENGTH) {
+			throw new IOException(file + " is too short to be a packet capture");
+		}
+		header.order(order);
+		int linkType = header.getInt(20) & 0xffff;
+		if (linkType != LINKTYPE_ETHERNET) {
+			throw new IOException(file + " is a capture of link type " + linkType + ", not Ethernet");
+		}
+		position = PCAP_HEADER_LENGTH;
+	}
+
+	/**
+	 * @return the next frame, null at the end of the capture
+	 * @throws IOException
+	 *             if the file can not be read or a record is malformed
+	 */
+	public CapturedFrame next() throws IOException {
+		int headerLength = format == Format.SNOOP ? SNOOP_RECORD_HEADER_LENGTH : PCAP_RECORD_HEADER_LENGTH;
+		if (size - position < headerLength) {
+			return null;
+		}
+		ByteBuffer header = map(position, headerLength).order(order);
+		long timestamp;
+		int includedLength;
+		int originalLength;
+		long recordLength;
+		if (format == Format.SNOOP) {
+			originalLength = header.getInt();
+			includedLength = header.getInt();
+			recordLength = header.getInt() & 0xffffffffL;
+			header.getInt(); // Cumulative drops
+			timestamp = (header.getInt() & 0xffffffffL) * 1000000 + (header.getInt() & 0xffffffffL);
+		} else {
+			long seconds = header.getInt() & 0xffffffffL;
+			long fraction = header.getInt() & 0xffffffffL;
+			timestamp = seconds * 1000000 + (format == Format.PCAP_NANOS ? fraction / 1000 : fraction);
+			includedLength = header.getInt();
+			originalLength = header.getInt();
+			recordLength = headerLength + (includedLength & 0xffffffffL);
+		}
+		if (includedLength < 0 || includedLength > MAX_FRAME_LENGTH || recordLength < headerLength + includedLength
+				|| position + recordLength > size) {
+			throw new IOException("Malformed " + format + " record of " + includedLength + " bytes at offset "
+					+ position);
+		}
+		byte[] data = new byte[includedLength];
+		map(position + headerLength, includedLength).get(data);
+		position += recordLength;
+		frames++;
+		if (includedLength < originalLength) {
+			truncated++;
+		}
+		return new CapturedFrame(timestamp, data, Math.max(originalLength, includedLength));
+	}
+
+	/**
+	 * @return the format of the capture
+	 */
+	public Format getFormat() {
+		return format;
+	}
+
+	/**
+	 * @return the number of frames read
+	 */
+	public long getFrameCount() {
+		return frames;
+	}
+
+	/**
+	 * @return the number of frames read that were only partly captured
+	 */
+	public long getTruncatedCount() {
+		return truncated;
+	}
+
+	/**
+	 * @return the position in the file, in bytes
+	 */
+	public long getPosition() {
+		return position;
+	}
+
+	/**
+	 * @return the size of the file, in bytes
+	 */
+	public long size() {
+		return size;
+	}
+
+	@Override
+	public void close() throws IOException {
+		window = null;
+		channel.close();
+	}
+
+	/**
+	 * @return the bytes of the file at an offset, mapping the window that
+	 *         holds them if needed
+	 */
+	private ByteBuffer map(long offset, int length) throws IOException {
+		if (window == null || offset < windowStart || offset + length > windowStart + window.capacity()) {
+			windowStart = offset;
+			window = channel.map(FileChannel.MapMode.READ_ONLY, offset,
+					Math.min(size - offset, Math.max(WINDOW, length)));
+		}
+		ByteBuffer bytes = window.duplicate();
+		bytes.position((int) (offset - windowStart));
+		bytes.limit(bytes.position() + length);
+		return bytes.slice();
+	}
+}
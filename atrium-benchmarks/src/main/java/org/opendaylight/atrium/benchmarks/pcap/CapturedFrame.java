@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2016 Wipro Ltd. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.atrium.benchmarks.pcap;
+
+/**
+ * An Ethernet frame read from a packet capture.
+ */
+public final class CapturedFrame {
+
+	private final long timestamp;
+	private final byte[] data;
+	private final int originalLength;
+
+	CapturedFrame(long timestamp, byte[] data, int originalLength) {
+		this.timestamp = timestamp;
+		this.data = data;
+		this.originalLength = originalLength;
+	}
+
+	/**
+	 * @return the time the frame was captured, in microseconds since the
+	 *         epoch
+	 */
+	public long timestamp() {
+		return timestamp;
+	}
+
+	/**
+	 * @return the bytes of the frame captured, from the destination MAC
+	 *         address on
+	 */
+	public byte[] data() {
+		return data;
+	}
+
+	/**
+	 * @return the length of the frame on the wire, more than the bytes
+	 *         captured when the capture was truncated to its snap length
+	 */
+	public int originalLength() {
+		return originalLength;
+	}
+
+	/**
+	 * @return true if only part of the frame was captured
+	 */
+	public boolean isTruncated() {
+		return data.length < originalLength;
+	}
+}
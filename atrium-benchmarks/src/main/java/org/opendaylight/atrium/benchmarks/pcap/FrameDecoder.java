@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2016 Wipro Ltd. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.atrium.benchmarks.pcap;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev100924.Ipv4Address;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.yang.types.rev100924.MacAddress;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.NodeConnectorRef;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.packet.arp.rev140528.ArpPacketReceivedBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.packet.arp.rev140528.KnownHardwareType;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.packet.arp.rev140528.KnownOperation;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.packet.arp.rev140528.arp.packet.received.packet.chain.packet.ArpPacketBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.packet.basepacket.rev140528.packet.chain.grp.PacketChain;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.packet.basepacket.rev140528.packet.chain.grp.PacketChainBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.packet.basepacket.rev140528.packet.chain.grp.packet.chain.packet.RawPacketBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.packet.ethernet.rev140528.Header8021qType;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.packet.ethernet.rev140528.KnownEtherType;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.packet.ethernet.rev140528.VlanId;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.packet.ethernet.rev140528.ethernet.packet.fields.Header8021q;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.packet.ethernet.rev140528.ethernet.packet.fields.Header8021qBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.packet.ethernet.rev140528.ethernet.packet.received.packet.chain.packet.EthernetPacketBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.packet.ipv4.rev140528.Ipv4PacketReceivedBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.packet.ipv4.rev140528.KnownIpProtocols;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.packet.ipv4.rev140528.ipv4.packet.received.packet.chain.packet.Ipv4PacketBuilder;
+import org.opendaylight.yangtools.yang.binding.Notification;
+
+/**
+ * Decodes captured Ethernet frames into the ARP and IPv4 packet-in
+ * notifications the l2switch packet handler publishes: a packet chain of the
+ * raw packet, with its ingress port, the Ethernet header and the ARP or IPv4
+ * header, and the whole frame as payload.
+ * <p>
+ * As with the l2switch decoders, the 802.1Q tags are listed in the Ethernet
+ * header and its ether type is that of the payload.
+ * </p>
+ */
+final class FrameDecoder {
+
+	private static final int ETHERNET_HEADER_LENGTH = 14;
+	private static final int VLAN_TAG_LENGTH = 4;
+	private static final int ETHERTYPE_VLAN = 0x8100;
+	private static final int ETHERTYPE_QINQ = 0x88a8;
+	private static final int ETHERTYPE_IPV4 = 0x0800;
+	private static final int ETHERTYPE_ARP = 0x0806;
+	private static final int ARP_LENGTH = 28;
+	private static final int IPV4_MIN_HEADER_LENGTH = 20;
+
+	private FrameDecoder() {
+	}
+
+	/**
+	 * @param frame
+	 *            the bytes of the frame
+	 * @param ingress
+	 *            the port the frame is received on
+	 * @return the notification of the frame, null if it is neither a valid
+	 *         ARP nor a valid IPv4 packet
+	 */
+	static Notification decode(byte[] frame, NodeConnectorRef ingress) {
+		if (frame.length < ETHERNET_HEADER_LENGTH) {
+			return null;
+		}
+		int offset = 12;
+		int etherType = readShort(frame, offset);
+		List<Header8021q> tags = new ArrayList<>();
+		while ((etherType == ETHERTYPE_VLAN || etherType == ETHERTYPE_QINQ)
+				&& offset + VLAN_TAG_LENGTH + 2 <= frame.length) {
+			int tci = readShort(frame, offset + 2);
+			tags.add(new Header8021qBuilder().setTPID(Header8021qType.forValue(etherType))
+					.setPriorityCode((short) (tci >>> 13)).setDropEligible((tci & 0x1000) != 0)
+					.setVlan(new VlanId(tci & 0xfff)).build());
+			offset += VLAN_TAG_LENGTH;
+			etherType = readShort(frame, offset);
+		}
+		int payloadOffset = offset + 2;
+
+		EthernetPacketBuilder ethernet = new EthernetPacketBuilder()
+				.setDestinationMac(readMac(frame, 0))
+				.setSourceMac(readMac(frame, 6))
+				.setEthertype(KnownEtherType.forValue(etherType))
+				.setPayloadOffset(payloadOffset)
+				.setPayloadLength(frame.length - payloadOffset);
+		if (!tags.isEmpty()) {
+			ethernet.setHeader8021q(tags);
+		}
+		List<PacketChain> chain = new ArrayList<>(3);
+		chain.add(new PacketChainBuilder().setPacket(
+				new RawPacketBuilder().setIngress(ingress).setPayloadOffset(0).setPayloadLength(frame.length).build())
+				.build());
+		chain.add(new PacketChainBuilder().setPacket(ethernet.build()).build());
+
+		switch (etherType) {
+		case ETHERTYPE_ARP:
+			return decodeArp(frame, payloadOffset, chain);
+		case ETHERTYPE_IPV4:
+			return decodeIpv4(frame, payloadOffset, chain);
+		default:
+			return null;
+		}
+	}
+
+	private static Notification decodeArp(byte[] frame, int offset, List<PacketChain> chain) {
+		// Only the resolution of IPv4 addresses over Ethernet
+		if (frame.length < offset + ARP_LENGTH || readShort(frame, offset + 2) != ETHERTYPE_IPV4
+				|| frame[offset + 4] != 6 || frame[offset + 5] != 4) {
+			return null;
+		}
+		chain.add(new PacketChainBuilder().setPacket(new ArpPacketBuilder()
+				.setHardwareType(KnownHardwareType.forValue(readShort(frame, offset)))
+				.setProtocolType(KnownEtherType.Ipv4)
+				.setHardwareLength((short) 6)
+				.setProtocolLength((short) 4)
+				.setOperation(KnownOperation.forValue(readShort(frame, offset + 6)))
+				.setSourceHardwareAddress(readMac(frame, offset + 8).getValue())
+				.setSourceProtocolAddress(readIpv4(frame, offset + 14).getValue())
+				.setDestinationHardwareAddress(readMac(frame, offset + 18).getValue())
+				.setDestinationProtocolAddress(readIpv4(frame, offset + 24).getValue())
+				.setPayloadOffset(offset + ARP_LENGTH)
+				.setPayloadLength(0)
+				.build()).build());
+		return new ArpPacketReceivedBuilder().setPacketChain(chain).setPayload(frame).build();
+	}
+
+	private static Notification decodeIpv4(byte[] frame, int offset, List<PacketChain> chain) {
+		if (frame.length < offset + IPV4_MIN_HEADER_LENGTH || (frame[offset] & 0xf0) != 0x40) {
+			return null;
+		}
+		int headerLength = (frame[offset] & 0x0f) * 4;
+		if (headerLength < IPV4_MIN_HEADER_LENGTH || frame.length < offset + headerLength) {
+			return null;
+		}
+		int flags = frame[offset + 6] & 0xff;
+		chain.add(new PacketChainBuilder().setPacket(new Ipv4PacketBuilder()
+				.setVersion((short) 4)
+				.setIhl((short) (headerLength / 4))
+				.setIpv4Length(readShort(frame, offset + 2))
+				.setId(readShort(frame, offset + 4))
+				.setDfFlag((flags & 0x40) != 0)
+				.setMfFlag((flags & 0x20) != 0)
+				.setFragmentOffset(readShort(frame, offset + 6) & 0x1fff)
+				.setTtl((short) (frame[offset + 8] & 0xff))
+				.setProtocol(KnownIpProtocols.forValue(frame[offset + 9] & 0xff))
+				.setChecksum(readShort(frame, offset + 10))
+				.setSourceIpv4(readIpv4(frame, offset + 12))
+				.setDestinationIpv4(readIpv4(frame, offset + 16))
+				.setPayloadOffset(offset + headerLength)
+				.setPayloadLength(frame.length - offset - headerLength)
+				.build()).build());
+		return new Ipv4PacketReceivedBuilder().setPacketChain(chain).setPayload(frame).build();
+	}
+
+	private static int readShort(byte[] frame, int offset) {
+		return (frame[offset] & 0xff) << 8 | frame[offset + 1] & 0xff;
+	}
+
+	private static MacAddress readMac(byte[] frame, int offset) {
+		StringBuilder mac = new StringBuilder(17);
+		for (int i = 0; i < 6; i++) {
+			if (i > 0) {
+				mac.append(':');
+			}
+			mac.append(Character.forDigit((frame[offset + i] >> 4) & 0xf, 16))
+					.append(Character.forDigit(frame[offset + i] & 0xf, 16));
+		}
+		return new MacAddress(mac.toString());
+	}
+
+	private static Ipv4Address readIpv4(byte[] frame, int offset) {
+		return new Ipv4Address((frame[offset] & 0xff) + "." + (frame[offset + 1] & 0xff) + "."
+				+ (frame[offset + 2] & 0xff) + "." + (frame[offset + 3] & 0xff));
+	}
+}
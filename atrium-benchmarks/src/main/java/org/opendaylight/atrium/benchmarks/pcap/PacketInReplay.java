@@ -0,0 +1,246 @@
+/*
+ * Copyright (c) 2016 Wipro Ltd. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.atrium.benchmarks.pcap;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.opendaylight.atrium.benchmarks.Harness;
+import org.opendaylight.atrium.benchmarks.LatencySamples;
+import org.opendaylight.atrium.util.AtriumIpAddress;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.NodeConnectorRef;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.packet.arp.rev140528.ArpPacketReceived;
+import org.opendaylight.yangtools.yang.binding.Notification;
+
+import com.google.common.base.Splitter;
+
+/**
+ * Replays the ARP and IPv4 frames of packet captures, pcap or snoop files,
+ * through the packet-in handlers of a {@link PacketInUnderTest}, to measure
+ * the punt path against real traffic mixes such as ARP storms or BGP bursts.
+ * <p>
+ * The frames are read and decoded into packet-in notifications before the
+ * replay, as the l2switch packet handler decodes them in the controller, so
+ * that only the work of the Atrium handlers is measured. The frames are all
+ * received on the port of the BGP speaker, or on the port of its peers.
+ * </p>
+ * <p>
+ * The notifications are dispatched back to back, or paced by the timestamps
+ * of the frames: at their original timing with a speed of 1, or that many
+ * times faster. The report gives the rate of the replay, the percentiles of
+ * the time taken to dispatch a packet, and the bytes allocated by the
+ * replaying thread per packet and per second, and is printed and written in
+ * JSON. The allocations of the handlers on other threads, such as the neighbor
+ * events, are not counted.
+ * </p>
+ * <p>
+ * Options, as --name=value: files (comma-separated, replayed in order),
+ * ingress (speaker, or peer), speaker-addresses (comma-separated interface
+ * addresses of the speaker), speed (0, back to back), loops (1, number of
+ * times the captures are replayed), warmup (1, number of unmeasured replays
+ * before), limit (1000000 frames read) and output (packet-in-replay.json).
+ * </p>
+ */
+public final class PacketInReplay {
+
+	private final List<Path> files = new ArrayList<>();
+	private final boolean fromSpeaker;
+	private final List<AtriumIpAddress> speakerAddresses = new ArrayList<>();
+	private final double speed;
+	private final int loops;
+	private final int warmup;
+	private final int limit;
+
+	// The frames decoded, with their timestamps
+	private final List<Notification> notifications = new ArrayList<>();
+	private long[] timestamps = new long[1024];
+	private long frames;
+	private long truncated;
+	private long arp;
+	private long ipv4;
+	private long skipped;
+
+	private PacketInUnderTest packetIn;
+
+	private PacketInReplay(Map<String, String> options) {
+		String fileList = options.get("files");
+		checkArgument(fileList != null && !fileList.isEmpty(), "files must be given");
+		for (String file : Splitter.on(',').omitEmptyStrings().trimResults().split(fileList)) {
+			files.add(Paths.get(file));
+		}
+		String ingress = options.getOrDefault("ingress", "speaker");
+		checkArgument(ingress.equals("speaker") || ingress.equals("peer"), "ingress must be speaker or peer");
+		fromSpeaker = ingress.equals("speaker");
+		for (String address : Splitter.on(',').omitEmptyStrings().trimResults()
+				.split(options.getOrDefault("speaker-addresses", ""))) {
+			speakerAddresses.add(AtriumIpAddress.valueOf(address));
+		}
+		speed = Double.parseDouble(options.getOrDefault("speed", "0"));
+		loops = Integer.parseInt(options.getOrDefault("loops", "1"));
+		warmup = Integer.parseInt(options.getOrDefault("warmup", "1"));
+		limit = Integer.parseInt(options.getOrDefault("limit", "1000000"));
+		checkArgument(speed >= 0, "speed can not be negative");
+		checkArgument(loops > 0, "loops must be positive");
+		checkArgument(warmup >= 0, "warmup can not be negative");
+		checkArgument(limit > 0, "limit must be positive");
+	}
+
+	public static void main(String[] args) throws Exception {
+		Map<String, String> options = Harness.parseOptions(args);
+		Map<String, Object> report = new PacketInReplay(options).run();
+		Harness.writeReport(report, Paths.get(options.getOrDefault("output", "packet-in-replay.json")));
+	}
+
+	private Map<String, Object> run() throws Exception {
+		Map<String, Object> report = new LinkedHashMap<>();
+		report.put("files", files.toString());
+		report.put("ingress", fromSpeaker ? "speaker" : "peer");
+		report.put("speed", speed);
+
+		NodeConnectorRef ingress = PacketInUnderTest
+				.portRef(fromSpeaker ? PacketInUnderTest.SPEAKER_PORT : PacketInUnderTest.PEER_PORT);
+		for (Path file : files) {
+			try (CaptureReader reader = new CaptureReader(file)) {
+				read(reader, ingress);
+			}
+		}
+		report.put("frames", frames);
+		report.put("truncatedFrames", truncated);
+		report.put("arpPackets", arp);
+		report.put("ipv4Packets", ipv4);
+		report.put("skippedFrames", skipped);
+		checkArgument(!notifications.isEmpty(), "No ARP or IPv4 frame in %s", files);
+
+		packetIn = new PacketInUnderTest(speakerAddresses);
+		try {
+			for (int i = 0; i < warmup; i++) {
+				replay(null);
+			}
+			report.put("replay", measure());
+			report.put("neighbors", packetIn.getNeighborCount());
+			report.put("inventoryReads", packetIn.getInventoryReadCount());
+			report.put("packetsOut", packetIn.getTransmittedCount());
+		} finally {
+			packetIn.close();
+		}
+		return report;
+	}
+
+	private void read(CaptureReader reader, NodeConnectorRef ingress) throws IOException {
+		CapturedFrame frame;
+		while (notifications.size() < limit && (frame = reader.next()) != null) {
+			frames++;
+			if (frame.isTruncated()) {
+				truncated++;
+			}
+			Notification notification = FrameDecoder.decode(frame.data(), ingress);
+			if (notification == null) {
+				skipped++;
+				continue;
+			}
+			if (notification instanceof ArpPacketReceived) {
+				arp++;
+			} else {
+				ipv4++;
+			}
+			if (notifications.size() == timestamps.length) {
+				timestamps = Arrays.copyOf(timestamps, timestamps.length * 2);
+			}
+			timestamps[notifications.size()] = frame.timestamp();
+			notifications.add(notification);
+		}
+	}
+
+	private Map<String, Object> measure() throws InterruptedException {
+		LatencySamples latencies = new LatencySamples(notifications.size() * loops);
+		long gcCount = 0;
+		long gcTime = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			gcCount -= gc.getCollectionCount();
+			gcTime -= gc.getCollectionTime();
+		}
+		long allocatedBefore = allocatedBytes();
+		long start = System.nanoTime();
+		for (int i = 0; i < loops; i++) {
+			replay(latencies);
+		}
+		long elapsed = System.nanoTime() - start;
+		long allocated = allocatedBefore < 0 ? -1 : allocatedBytes() - allocatedBefore;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			gcCount += gc.getCollectionCount();
+			gcTime += gc.getCollectionTime();
+		}
+
+		long packets = latencies.getCount();
+		Map<String, Object> phase = new LinkedHashMap<>();
+		phase.put("packets", packets);
+		phase.put("durationMillis", TimeUnit.NANOSECONDS.toMillis(elapsed));
+		phase.put("packetsPerSecond", packets * TimeUnit.SECONDS.toNanos(1) / Math.max(elapsed, 1));
+		phase.put("latencyP50Micros", latencies.getPercentile(50) / 1000.0);
+		phase.put("latencyP99Micros", latencies.getPercentile(99) / 1000.0);
+		phase.put("latencyP999Micros", latencies.getPercentile(99.9) / 1000.0);
+		phase.put("latencyMaxMicros", latencies.getMax() / 1000.0);
+		if (allocated >= 0) {
+			phase.put("allocatedBytesPerPacket", allocated / packets);
+			phase.put("allocationMBPerSecond", allocated * 1000.0 / Math.max(elapsed, 1));
+		}
+		phase.put("gcCount", gcCount);
+		phase.put("gcMillis", gcTime);
+		return phase;
+	}
+
+	/**
+	 * Dispatches the notifications once, recording the time taken by each
+	 * when latencies are given.
+	 */
+	private void replay(LatencySamples latencies) throws InterruptedException {
+		long startedAt = System.nanoTime();
+		for (int i = 0; i < notifications.size(); i++) {
+			if (speed > 0) {
+				long due = startedAt
+						+ (long) (TimeUnit.MICROSECONDS.toNanos(timestamps[i] - timestamps[0]) / speed);
+				long wait = due - System.nanoTime();
+				if (wait > 0) {
+					TimeUnit.NANOSECONDS.sleep(wait);
+				}
+			}
+			long dispatchedAt = System.nanoTime();
+			packetIn.dispatch(notifications.get(i));
+			if (latencies != null) {
+				latencies.record(System.nanoTime() - dispatchedAt);
+			}
+		}
+	}
+
+	/**
+	 * @return the bytes allocated by the current thread so far, -1 if the
+	 *         virtual machine does not tell
+	 */
+	private static long allocatedBytes() {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if (threads instanceof com.sun.management.ThreadMXBean) {
+			com.sun.management.ThreadMXBean hotspot = (com.sun.management.ThreadMXBean) threads;
+			if (hotspot.isThreadAllocatedMemorySupported() && hotspot.isThreadAllocatedMemoryEnabled()) {
+				return hotspot.getThreadAllocatedBytes(Thread.currentThread().getId());
+			}
+		}
+		return -1;
+	}
+}
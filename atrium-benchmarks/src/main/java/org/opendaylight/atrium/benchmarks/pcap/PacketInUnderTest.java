@@ -0,0 +1,241 @@
+/*
+ * Copyright (c) 2016 Wipro Ltd. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.atrium.benchmarks.pcap;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.opendaylight.atrium.benchmarks.Stubs;
+import org.opendaylight.atrium.bgprouter.impl.TunnellingConnectivityManager;
+import org.opendaylight.atrium.hostservice.arp.ArpHandler;
+import org.opendaylight.atrium.hostservice.impl.HostServiceImpl;
+import org.opendaylight.atrium.routingservice.config.api.RoutingConfigService;
+import org.opendaylight.atrium.util.AtriumIpAddress;
+import org.opendaylight.controller.md.sal.binding.api.DataBroker;
+import org.opendaylight.controller.md.sal.binding.api.DataTreeChangeService;
+import org.opendaylight.controller.md.sal.binding.api.ReadOnlyTransaction;
+import org.opendaylight.controller.sal.binding.api.NotificationProviderService;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev100924.IpAddress;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev100924.Ipv4Address;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.yang.types.rev100924.MacAddress;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.NodeConnectorId;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.NodeConnectorRef;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.NodeId;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.Nodes;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.node.NodeConnector;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.node.NodeConnectorBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.node.NodeConnectorKey;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.nodes.Node;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.nodes.NodeBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.nodes.NodeKey;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.packet.arp.rev140528.ArpPacketListener;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.packet.arp.rev140528.ArpPacketReceived;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.packet.ipv4.rev140528.Ipv4PacketListener;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.packet.ipv4.rev140528.Ipv4PacketReceived;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.packet.service.rev130709.PacketProcessingService;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.bgpconfig.api.rev150725.BgpSpeakers;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.bgpconfig.api.rev150725.BgpSpeakersBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.bgpconfig.api.rev150725.bgppeers.BgpPeer;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.bgpconfig.api.rev150725.bgppeers.BgpPeerBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.bgpconfig.api.rev150725.bgpspeakers.BgpSpeakerBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.bgpconfig.api.rev150725.bgpspeakers.bgpspeaker.InterfaceAddresses;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.bgpconfig.api.rev150725.bgpspeakers.bgpspeaker.InterfaceAddressesBuilder;
+import org.opendaylight.yangtools.concepts.ListenerRegistration;
+import org.opendaylight.yangtools.yang.binding.InstanceIdentifier;
+import org.opendaylight.yangtools.yang.binding.Notification;
+import org.opendaylight.yangtools.yang.common.RpcResultBuilder;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.Futures;
+
+/**
+ * The packet-in handlers of Atrium, the {@link HostServiceImpl} with its
+ * address observer, the {@link ArpHandler} and the
+ * {@link TunnellingConnectivityManager}, running against stand-ins of the
+ * controller services.
+ * <p>
+ * The notifications are handed to the listeners in the order they
+ * registered, on the calling thread, so that the time of a dispatch is the
+ * work of all the handlers for the packet. Packet-outs are counted and
+ * dropped.
+ * </p>
+ * <p>
+ * Every port and switch is found in the inventory and none is internal, so
+ * that every host seen is learned. The BGP speaker is attached to
+ * {@link #SPEAKER_PORT} with the interface addresses given, and every other
+ * address is a BGP peer behind {@link #PEER_PORT}: BGP and ICMP packets
+ * received on the speaker port are relayed to the peer, and those received on
+ * another port to the speaker when they are sent to one of its addresses. No
+ * gateway address is configured, so the ARP requests answered are those for
+ * the hosts already learned.
+ * </p>
+ */
+final class PacketInUnderTest implements AutoCloseable {
+
+	static final NodeId SWITCH = new NodeId("openflow:1");
+	static final NodeConnectorId SPEAKER_PORT = new NodeConnectorId("openflow:1:1");
+	static final NodeConnectorId PEER_PORT = new NodeConnectorId("openflow:1:2");
+	static final MacAddress SPEAKER_MAC = new MacAddress("00:00:00:00:00:01");
+
+	private final List<ArpPacketListener> arpListeners = new CopyOnWriteArrayList<>();
+	private final List<Ipv4PacketListener> ipv4Listeners = new CopyOnWriteArrayList<>();
+	private final AtomicLong inventoryReads = new AtomicLong();
+	private final AtomicLong transmitted = new AtomicLong();
+
+	private final HostServiceImpl hostService;
+	private final ArpHandler arpHandler;
+
+	/**
+	 * @param speakerAddresses
+	 *            the interface addresses of the BGP speaker
+	 */
+	PacketInUnderTest(Collection<AtriumIpAddress> speakerAddresses) {
+		DataBroker dataBroker = (DataBroker) Stubs.stub(
+				new Class<?>[] { DataBroker.class, DataTreeChangeService.class },
+				ImmutableMap.of("newReadOnlyTransaction", args -> newReadOnlyTransaction(),
+						"registerDataTreeChangeListener",
+						args -> Stubs.stub(ListenerRegistration.class, ImmutableMap.of())));
+		PacketProcessingService packetService = Stubs.stub(PacketProcessingService.class,
+				ImmutableMap.of("transmitPacket", args -> {
+					transmitted.incrementAndGet();
+					return Futures.immediateFuture(RpcResultBuilder.<Void> success().build());
+				}));
+		NotificationProviderService notificationService = Stubs.stub(NotificationProviderService.class,
+				ImmutableMap.of("registerNotificationListener", args -> {
+					if (args.length == 1) {
+						register(args[0]);
+					}
+					return null;
+				}));
+		RoutingConfigService config = newRoutingConfig(speakerAddresses);
+
+		hostService = new HostServiceImpl();
+		hostService.setServices(dataBroker, config, packetService, notificationService);
+		hostService.start();
+		arpHandler = new ArpHandler(dataBroker, packetService, hostService);
+		register(arpHandler);
+		register(new TunnellingConnectivityManager(dataBroker, config, packetService, null));
+	}
+
+	private void register(Object listener) {
+		if (listener instanceof ArpPacketListener) {
+			arpListeners.add((ArpPacketListener) listener);
+		}
+		if (listener instanceof Ipv4PacketListener) {
+			ipv4Listeners.add((Ipv4PacketListener) listener);
+		}
+	}
+
+	/**
+	 * Hands a notification to the listeners of its type.
+	 *
+	 * @return false if no listener takes notifications of its type
+	 */
+	boolean dispatch(Notification notification) {
+		if (notification instanceof ArpPacketReceived) {
+			for (ArpPacketListener listener : arpListeners) {
+				listener.onArpPacketReceived((ArpPacketReceived) notification);
+			}
+			return true;
+		}
+		if (notification instanceof Ipv4PacketReceived) {
+			for (Ipv4PacketListener listener : ipv4Listeners) {
+				listener.onIpv4PacketReceived((Ipv4PacketReceived) notification);
+			}
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * @return the reference of a port of the switch
+	 */
+	static NodeConnectorRef portRef(NodeConnectorId port) {
+		return new NodeConnectorRef(InstanceIdentifier.builder(Nodes.class).child(Node.class, new NodeKey(SWITCH))
+				.child(NodeConnector.class, new NodeConnectorKey(port)).build());
+	}
+
+	/**
+	 * @return the number of reads of the inventory
+	 */
+	long getInventoryReadCount() {
+		return inventoryReads.get();
+	}
+
+	/**
+	 * @return the number of packets sent out
+	 */
+	long getTransmittedCount() {
+		return transmitted.get();
+	}
+
+	/**
+	 * @return the number of neighbors learned
+	 */
+	int getNeighborCount() {
+		return hostService.getNeighborTable().size();
+	}
+
+	private ReadOnlyTransaction newReadOnlyTransaction() {
+		return Stubs.stub(ReadOnlyTransaction.class, ImmutableMap.of("read", args -> {
+			inventoryReads.incrementAndGet();
+			return Futures.immediateCheckedFuture(read((InstanceIdentifier<?>) args[1]));
+		}));
+	}
+
+	/**
+	 * @return the switch or port read, as found in the inventory
+	 */
+	private static Optional<?> read(InstanceIdentifier<?> path) {
+		if (path.getTargetType() == NodeConnector.class) {
+			NodeConnectorKey key = path.firstKeyOf(NodeConnector.class, NodeConnectorKey.class);
+			return Optional.of(new NodeConnectorBuilder().setKey(key).setId(key.getId()).build());
+		}
+		if (path.getTargetType() == Node.class) {
+			NodeKey key = path.firstKeyOf(Node.class, NodeKey.class);
+			return Optional.of(new NodeBuilder().setKey(key).setId(key.getId()).build());
+		}
+		return Optional.absent();
+	}
+
+	private static RoutingConfigService newRoutingConfig(Collection<AtriumIpAddress> speakerAddresses) {
+		List<InterfaceAddresses> interfaceAddresses = new ArrayList<>();
+		for (AtriumIpAddress address : speakerAddresses) {
+			interfaceAddresses.add(new InterfaceAddressesBuilder().setOfPortId(SPEAKER_PORT)
+					.setIpAddress(new IpAddress(new Ipv4Address(address.toString()))).build());
+		}
+		BgpSpeakers speakers = new BgpSpeakersBuilder()
+				.setBgpSpeaker(Collections.singletonList(new BgpSpeakerBuilder().setSpeakerName("benchmark")
+						.setAttachmentDpId(SWITCH).setAttachmentPort(portNumber(SPEAKER_PORT))
+						.setMacAddress(SPEAKER_MAC).setInterfaceAddresses(interfaceAddresses).build()))
+				.build();
+		return Stubs.stub(RoutingConfigService.class, ImmutableMap.of("getBgpSpeakers", args -> speakers,
+				"getBgpPeers", args -> null, "getBgpPeerByIpAddress", args -> newPeer((IpAddress) args[0])));
+	}
+
+	private static BgpPeer newPeer(IpAddress address) {
+		return new BgpPeerBuilder().setPeerAddr(address).setPeerDpId(SWITCH).setPeerPort(portNumber(PEER_PORT))
+				.build();
+	}
+
+	private static long portNumber(NodeConnectorId port) {
+		String id = port.getValue();
+		return Long.parseLong(id.substring(id.lastIndexOf(':') + 1));
+	}
+
+	@Override
+	public void close() throws Exception {
+		arpHandler.close();
+		hostService.close();
+	}
+}
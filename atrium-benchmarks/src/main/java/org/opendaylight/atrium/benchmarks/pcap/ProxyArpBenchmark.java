@@ -0,0 +1,203 @@
+/*
+ * Copyright (c) 2016 Wipro Ltd. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.atrium.benchmarks.pcap;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.opendaylight.atrium.benchmarks.Stubs;
+import org.opendaylight.atrium.hostservice.api.HostService;
+import org.opendaylight.atrium.hostservice.api.Neighbor;
+import org.opendaylight.atrium.hostservice.arp.ArpHandler;
+import org.opendaylight.atrium.hostservice.impl.InterfaceAddressIndex;
+import org.opendaylight.atrium.hostservice.impl.NeighborStore;
+import org.opendaylight.atrium.hostservice.impl.InterfaceAddressIndex.RouterInterface;
+import org.opendaylight.atrium.util.AtriumIpAddress;
+import org.opendaylight.controller.md.sal.binding.api.DataBroker;
+import org.opendaylight.controller.md.sal.binding.api.DataObjectModification;
+import org.opendaylight.controller.md.sal.binding.api.DataTreeChangeListener;
+import org.opendaylight.controller.md.sal.binding.api.DataTreeChangeService;
+import org.opendaylight.controller.md.sal.binding.api.DataTreeModification;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev100924.IpAddress;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev100924.Ipv4Address;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.yang.types.rev100924.MacAddress;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.NodeConnectorId;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.packet.arp.rev140528.ArpPacketReceived;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.packet.service.rev130709.PacketProcessingService;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.hostservice.api.rev150725.Addresses;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.hostservice.api.rev150725.AddressesBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.hostservice.api.rev150725.addresses.Address;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.hostservice.api.rev150725.addresses.AddressBuilder;
+import org.opendaylight.yangtools.concepts.ListenerRegistration;
+import org.opendaylight.yangtools.yang.common.RpcResultBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.Futures;
+
+/**
+ * Proxy ARP: the lookup of the interface owning an address in the
+ * {@link InterfaceAddressIndex}, against the scan of the subnets, the lookup
+ * of a learned host in the {@link NeighborStore}, and the reply of the
+ * {@link ArpHandler} to a request for a gateway address and for a learned
+ * host, up to the packet-out, which is dropped.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ProxyArpBenchmark {
+
+	// Learned hosts, from 172.16.0.1 on, behind the first port
+	private static final int FIRST_LEARNED_HOST = AtriumIpAddress.valueOf("172.16.0.1").getIp4Address().toInt();
+
+	@Param({ "16", "1024" })
+	public int interfaces;
+
+	@Param({ "1024", "65536" })
+	public int learnedHosts;
+
+	private final AtomicLong transmitted = new AtomicLong();
+	private InterfaceAddressIndex index;
+	private NeighborStore neighbors;
+	private ArpHandler arpHandler;
+	private int gateway;
+	private AtriumIpAddress host;
+	private int learnedHost;
+	private ArpPacketReceived request;
+	private ArpPacketReceived learnedHostRequest;
+
+	@Setup
+	public void setUp() {
+		// One gateway per /24, the last one asked for
+		List<Address> addresses = new ArrayList<>(interfaces);
+		for (int i = 0; i < interfaces; i++) {
+			addresses.add(new AddressBuilder()
+					.setIpAddress(new IpAddress(new Ipv4Address("10." + (i >> 8) + "." + (i & 0xff) + ".1")))
+					.setMac(new MacAddress("00:00:00:00:00:01")).setDpid("openflow:1")
+					.setOfPortId(new NodeConnectorId("1")).setVlan(0).build());
+		}
+		Addresses config = new AddressesBuilder().setAddress(addresses).build();
+		int last = interfaces - 1;
+		String gatewayIp = "10." + (last >> 8) + "." + (last & 0xff) + ".1";
+		gateway = AtriumIpAddress.valueOf(gatewayIp).getIp4Address().toInt();
+		host = AtriumIpAddress.valueOf("10." + (last >> 8) + "." + (last & 0xff) + ".10");
+
+		index = new InterfaceAddressIndex();
+		index.register(newDataBroker(config));
+		PacketProcessingService packetService = Stubs.stub(PacketProcessingService.class,
+				ImmutableMap.of("transmitPacket", args -> {
+					transmitted.incrementAndGet();
+					return Futures.immediateFuture(RpcResultBuilder.<Void> success().build());
+				}));
+		neighbors = new NeighborStore();
+		for (int i = 0; i < learnedHosts; i++) {
+			neighbors.update(new Neighbor(AtriumIpAddress.valueOf(FIRST_LEARNED_HOST + i), 0x020000000000L + i,
+					new NodeConnectorId("1"), Neighbor.UNTAGGED, System.currentTimeMillis()));
+		}
+		learnedHost = FIRST_LEARNED_HOST + learnedHosts - 1;
+		HostService hostService = Stubs.stub(HostService.class,
+				ImmutableMap.of("getNeighborTable", args -> neighbors));
+		arpHandler = new ArpHandler((DataBroker) newDataBroker(config), packetService, hostService);
+		request = (ArpPacketReceived) FrameDecoder.decode(arpRequest("10.0.0.10", gatewayIp),
+				PacketInUnderTest.portRef(PacketInUnderTest.PEER_PORT));
+		learnedHostRequest = (ArpPacketReceived) FrameDecoder.decode(
+				arpRequest("10.0.0.10", AtriumIpAddress.valueOf(learnedHost).toString()),
+				PacketInUnderTest.portRef(PacketInUnderTest.PEER_PORT));
+	}
+
+	@TearDown
+	public void tearDown() {
+		index.close();
+		arpHandler.close();
+		neighbors.close();
+	}
+
+	/**
+	 * @return a stand-in of the datastore that hands the configured addresses
+	 *         to the listeners as they register
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static DataTreeChangeService newDataBroker(Addresses config) {
+		DataObjectModification<Addresses> root = Stubs.stub(DataObjectModification.class,
+				ImmutableMap.of("getDataAfter", args -> config));
+		DataTreeModification<Addresses> change = Stubs.stub(DataTreeModification.class,
+				ImmutableMap.of("getRootNode", args -> root));
+		return (DataTreeChangeService) Stubs.stub(new Class<?>[] { DataBroker.class, DataTreeChangeService.class },
+				ImmutableMap.of("registerDataTreeChangeListener", args -> {
+					((DataTreeChangeListener) args[1]).onDataTreeChanged(Collections.singleton(change));
+					return Stubs.stub(ListenerRegistration.class, ImmutableMap.of());
+				}));
+	}
+
+	/**
+	 * @return an untagged broadcast ARP request for an address
+	 */
+	private static byte[] arpRequest(String sender, String target) {
+		byte[] frame = new byte[42];
+		for (int i = 0; i < 6; i++) {
+			frame[i] = (byte) 0xff;
+		}
+		frame[11] = 0x02;
+		frame[12] = 0x08;
+		frame[13] = 0x06;
+		// Ethernet, IPv4, 6 and 4 bytes long addresses, request
+		frame[15] = 0x01;
+		frame[16] = 0x08;
+		frame[18] = 6;
+		frame[19] = 4;
+		frame[21] = 1;
+		frame[27] = 0x02;
+		System.arraycopy(AtriumIpAddress.valueOf(sender).toOctets(), 0, frame, 28, 4);
+		System.arraycopy(AtriumIpAddress.valueOf(target).toOctets(), 0, frame, 38, 4);
+		return frame;
+	}
+
+	@Benchmark
+	public RouterInterface getInterface() {
+		return index.getInterface(gateway);
+	}
+
+	@Benchmark
+	public RouterInterface findInterfaceFor() {
+		return index.findInterfaceFor(host);
+	}
+
+	@Benchmark
+	public Neighbor getLearnedHost() {
+		return neighbors.getIp4(learnedHost);
+	}
+
+	@Benchmark
+	public long reply() {
+		arpHandler.onArpPacketReceived(request);
+		return transmitted.get();
+	}
+
+	@Benchmark
+	public long replyForLearnedHost() {
+		arpHandler.onArpPacketReceived(learnedHostRequest);
+		return transmitted.get();
+	}
+}
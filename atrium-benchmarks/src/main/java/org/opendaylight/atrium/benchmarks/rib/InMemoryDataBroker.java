@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2016 Wipro Ltd. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.atrium.benchmarks.rib;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.opendaylight.atrium.benchmarks.Stubs;
+import org.opendaylight.controller.md.sal.binding.api.BindingTransactionChain;
+import org.opendaylight.controller.md.sal.binding.api.DataBroker;
+import org.opendaylight.controller.md.sal.binding.api.DataTreeChangeListener;
+import org.opendaylight.controller.md.sal.binding.api.DataTreeChangeService;
+import org.opendaylight.controller.md.sal.binding.api.DataTreeModification;
+import org.opendaylight.controller.md.sal.binding.api.ReadOnlyTransaction;
+import org.opendaylight.yangtools.concepts.ListenerRegistration;
+
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * A data broker that holds no data: it hands the route changes published by
+ * the harness to the registered data tree change listeners, as the data store
+ * does with the changes of the BGP RIB, on the publishing thread.
+ */
+final class InMemoryDataBroker {
+
+	private final List<DataTreeChangeListener<?>> listeners = new CopyOnWriteArrayList<>();
+	private final AtomicLong transactions = new AtomicLong();
+	private final DataBroker broker;
+
+	InMemoryDataBroker() {
+		BindingTransactionChain chain = Stubs.stub(BindingTransactionChain.class,
+				ImmutableMap.of("newReadOnlyTransaction", args -> newReadOnlyTransaction()));
+		broker = (DataBroker) Stubs.stub(new Class<?>[] { DataBroker.class, DataTreeChangeService.class },
+				ImmutableMap.of("createTransactionChain", args -> chain, "newReadOnlyTransaction",
+						args -> newReadOnlyTransaction(), "registerDataTreeChangeListener",
+						args -> register((DataTreeChangeListener<?>) args[1])));
+	}
+
+	/**
+	 * @return the broker handed to the RIB manager
+	 */
+	DataBroker getDataBroker() {
+		return broker;
+	}
+
+	private ReadOnlyTransaction newReadOnlyTransaction() {
+		String identifier = "benchmark-" + transactions.incrementAndGet();
+		return Stubs.stub(ReadOnlyTransaction.class, ImmutableMap.of("getIdentifier", args -> identifier));
+	}
+
+	private ListenerRegistration<?> register(DataTreeChangeListener<?> listener) {
+		listeners.add(listener);
+		return Stubs.stub(ListenerRegistration.class,
+				ImmutableMap.of("getInstance", args -> listener, "close", args -> listeners.remove(listener)));
+	}
+
+	/**
+	 * @return the number of data tree change listeners registered
+	 */
+	int getListenerCount() {
+		return listeners.size();
+	}
+
+	/**
+	 * Delivers a batch of changes to the registered listeners.
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	void publish(Collection<? extends DataTreeModification<?>> changes) {
+		for (DataTreeChangeListener listener : listeners) {
+			listener.onDataTreeChanged((Collection) changes);
+		}
+	}
+}
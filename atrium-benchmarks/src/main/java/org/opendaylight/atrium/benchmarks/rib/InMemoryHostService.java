@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2016 Wipro Ltd. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.atrium.benchmarks.rib;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.opendaylight.atrium.hostservice.api.Host;
+import org.opendaylight.atrium.hostservice.api.HostListener;
+import org.opendaylight.atrium.hostservice.api.HostService;
+import org.opendaylight.atrium.hostservice.api.Neighbor;
+import org.opendaylight.atrium.hostservice.api.NeighborListener;
+import org.opendaylight.atrium.hostservice.api.NeighborTable;
+import org.opendaylight.atrium.routingservice.config.api.RoutingConfigService;
+import org.opendaylight.atrium.util.AtriumIpAddress;
+import org.opendaylight.atrium.util.AtriumMacAddress;
+import org.opendaylight.controller.md.sal.binding.api.DataBroker;
+import org.opendaylight.controller.sal.binding.api.NotificationProviderService;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.packet.service.rev130709.PacketProcessingService;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.hostservice.api.rev150725.HostId;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.hostservice.api.rev150725.address.node.connector.ConnectorAddress;
+
+/**
+ * A host service whose neighbor table resolves every IPv4 next hop at once,
+ * with a MAC address derived from its IP address, so that the routes are
+ * installed as soon as they are processed and the benchmarks measure the RIB
+ * rather than address resolution.
+ */
+final class InMemoryHostService implements HostService, NeighborTable {
+
+	// Locally administered MAC addresses
+	private static final long LOCAL_MAC_PREFIX = 0x020000000000L;
+
+	private final Map<Integer, Neighbor> neighbors = new ConcurrentHashMap<>();
+	private final Map<AtriumIpAddress, Integer> pins = new ConcurrentHashMap<>();
+	private final List<NeighborListener> listeners = new CopyOnWriteArrayList<>();
+
+	@Override
+	public void start() {
+	}
+
+	@Override
+	public void stop() {
+	}
+
+	@Override
+	public void startMonitoringIp(AtriumIpAddress nhIp) {
+	}
+
+	@Override
+	public CompletableFuture<AtriumMacAddress> resolve(AtriumIpAddress ip) {
+		Neighbor neighbor = get(ip);
+		if (neighbor != null) {
+			return CompletableFuture.completedFuture(neighbor.macAddress());
+		}
+		// Never answered, as if the next hop was down
+		return new CompletableFuture<>();
+	}
+
+	@Override
+	public Set<Host> getHostsByIp(AtriumIpAddress ip) {
+		return Collections.emptySet();
+	}
+
+	@Override
+	public Host getHost(HostId hostId) {
+		return null;
+	}
+
+	@Override
+	public void addListener(HostListener listener) {
+	}
+
+	@Override
+	public void removeListener(HostListener listener) {
+	}
+
+	@Override
+	public void setServices(DataBroker broker, RoutingConfigService configService,
+			PacketProcessingService packetService, NotificationProviderService notifService) {
+	}
+
+	@Override
+	public ConnectorAddress getAddressByIp(AtriumIpAddress ip) {
+		return null;
+	}
+
+	@Override
+	public AtriumMacAddress getMacAddressByIp(AtriumIpAddress ip) {
+		Neighbor neighbor = get(ip);
+		return neighbor == null ? null : neighbor.macAddress();
+	}
+
+	@Override
+	public NeighborTable getNeighborTable() {
+		return this;
+	}
+
+	@Override
+	public Neighbor get(AtriumIpAddress ip) {
+		return ip.isIp4() ? getIp4(ip.getIp4Address().toInt()) : null;
+	}
+
+	@Override
+	public Neighbor getIp4(int ip) {
+		return neighbors.computeIfAbsent(ip, key -> new Neighbor(AtriumIpAddress.valueOf(key),
+				LOCAL_MAC_PREFIX | (key & 0xffffffffL), null, Neighbor.UNTAGGED, System.currentTimeMillis()));
+	}
+
+	@Override
+	public int size() {
+		return neighbors.size();
+	}
+
+	@Override
+	public void pin(AtriumIpAddress ip) {
+		pins.merge(ip, 1, Integer::sum);
+	}
+
+	@Override
+	public void release(AtriumIpAddress ip) {
+		pins.computeIfPresent(ip, (key, count) -> count == 1 ? null : count - 1);
+	}
+
+	@Override
+	public boolean isPinned(AtriumIpAddress ip) {
+		return pins.containsKey(ip);
+	}
+
+	@Override
+	public void addListener(NeighborListener listener) {
+		listeners.add(listener);
+	}
+
+	@Override
+	public void removeListener(NeighborListener listener) {
+		listeners.remove(listener);
+	}
+}
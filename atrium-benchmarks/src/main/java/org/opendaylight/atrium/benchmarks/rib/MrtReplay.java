@@ -0,0 +1,242 @@
+/*
+ * Copyright (c) 2016 Wipro Ltd. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.atrium.benchmarks.rib;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.opendaylight.atrium.benchmarks.Harness;
+import org.opendaylight.atrium.benchmarks.mrt.MrtReader;
+import org.opendaylight.atrium.benchmarks.mrt.MrtRoute;
+import org.opendaylight.atrium.util.AtriumIpAddress;
+import org.opendaylight.atrium.util.AtriumIpPrefix;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev100924.AsNumber;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.bgp.message.rev130919.path.attributes.Attributes;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.bgp.message.rev130919.path.attributes.AttributesBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.bgp.message.rev130919.path.attributes.attributes.AsPathBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.bgp.message.rev130919.path.attributes.attributes.LocalPrefBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.bgp.message.rev130919.path.attributes.attributes.MultiExitDiscBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.bgp.message.rev130919.path.attributes.attributes.OriginBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.bgp.message.rev130919.path.attributes.attributes.as.path.SegmentsBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.bgp.types.rev130919.BgpOrigin;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Replays the IPv4 routes of MRT files, public RIB dumps and update traces,
+ * into a {@link RibUnderTest}, to reproduce the convergence and churn of a
+ * production table in the lab.
+ * <p>
+ * The RIB manager takes the routes of the local RIB, one per prefix. The
+ * routes of one peer are replayed: the peer given, or else the first route of
+ * each prefix of a table dump and the first peer seen in an update trace. A
+ * withdrawal of a prefix not announced is ignored.
+ * </p>
+ * <p>
+ * The routes are replayed as fast as possible, or paced by the timestamps of
+ * the records: at their original timing with a speed of 1, or that many times
+ * faster. The report gives the counts of the routes read and replayed, the
+ * size of the RIB at the end and the measures of the {@link RibUnderTest}, and
+ * is printed and written in JSON.
+ * </p>
+ * <p>
+ * Options, as --name=value: files (comma-separated, replayed in order), speed
+ * (0, as fast as possible), peer (the address of the peer to replay), batch
+ * (1000 changes per data tree notification), limit (number of routes
+ * replayed, all by default) and output (mrt-replay.json).
+ * </p>
+ */
+public final class MrtReplay {
+
+	private final List<Path> files = new ArrayList<>();
+	private final double speed;
+	private final int batch;
+	private final long limit;
+	private AtriumIpAddress peer;
+
+	// Next hop of each prefix announced, to withdraw it
+	private final Map<AtriumIpPrefix, AtriumIpAddress> announced = new HashMap<>();
+	private List<RouteUpdates.Change> changes = new ArrayList<>();
+	private RibUnderTest rib;
+
+	private long read;
+	private long announcements;
+	private long withdrawals;
+	private long ignored;
+
+	// Time of the first route replayed, in the dump and on the clock, to
+	// pace the next ones
+	private long firstTimestamp = -1;
+	private long startedAt;
+
+	private MrtReplay(Map<String, String> options) {
+		String fileList = options.get("files");
+		checkArgument(fileList != null && !fileList.isEmpty(), "files must be given");
+		for (String file : Splitter.on(',').omitEmptyStrings().trimResults().split(fileList)) {
+			files.add(Paths.get(file));
+		}
+		speed = Double.parseDouble(options.getOrDefault("speed", "0"));
+		batch = Integer.parseInt(options.getOrDefault("batch", "1000"));
+		limit = Long.parseLong(options.getOrDefault("limit", String.valueOf(Long.MAX_VALUE)));
+		if (options.containsKey("peer")) {
+			peer = AtriumIpAddress.valueOf(options.get("peer"));
+		}
+		checkArgument(speed >= 0, "speed can not be negative");
+		checkArgument(batch > 0, "batch must be positive");
+		checkArgument(limit > 0, "limit must be positive");
+	}
+
+	public static void main(String[] args) throws Exception {
+		Map<String, String> options = Harness.parseOptions(args);
+		Map<String, Object> report = new MrtReplay(options).run();
+		Harness.writeReport(report, Paths.get(options.getOrDefault("output", "mrt-replay.json")));
+	}
+
+	private Map<String, Object> run() throws IOException, InterruptedException {
+		Map<String, Object> report = new LinkedHashMap<>();
+		report.put("files", files.toString());
+		report.put("speed", speed);
+
+		rib = new RibUnderTest();
+		try {
+			rib.startPhase(0);
+			long records = 0;
+			long skipped = 0;
+			long start = System.nanoTime();
+			for (Path file : files) {
+				try (MrtReader reader = new MrtReader(file)) {
+					replay(reader);
+					records += reader.getRecordCount();
+					skipped += reader.getSkippedCount();
+				}
+			}
+			flush();
+			Map<String, Object> phase = rib.endPhase(start);
+
+			report.put("records", records);
+			report.put("skippedRecords", skipped);
+			report.put("routesRead", read);
+			report.put("announcements", announcements);
+			report.put("withdrawals", withdrawals);
+			report.put("ignored", ignored);
+			report.put("peer", peer == null ? null : peer.toString());
+			report.put("ribSize", rib.getRibManager().getRoutes4().size());
+			report.put("replay", phase);
+		} finally {
+			rib.close();
+		}
+		return report;
+	}
+
+	private void replay(MrtReader reader) throws IOException, InterruptedException {
+		MrtRoute route;
+		while (announcements + withdrawals < limit && (route = reader.next()) != null) {
+			read++;
+			if (!accept(route)) {
+				ignored++;
+				continue;
+			}
+			pace(route.timestamp());
+			AtriumIpPrefix prefix = route.prefix();
+			if (route.isWithdrawn()) {
+				AtriumIpAddress nextHop = announced.remove(prefix);
+				if (nextHop == null) {
+					ignored++;
+					continue;
+				}
+				changes.add(RouteUpdates.delete(prefix, nextHop));
+				withdrawals++;
+			} else {
+				announced.put(prefix, route.nextHop());
+				changes.add(RouteUpdates.write(prefix, attributes(route)));
+				announcements++;
+			}
+			if (changes.size() == batch) {
+				flush();
+			}
+		}
+	}
+
+	/**
+	 * @return true if the route is replayed, being one of the peer replayed
+	 */
+	private boolean accept(MrtRoute route) {
+		if (!route.isWithdrawn() && route.nextHop() == null) {
+			return false;
+		}
+		if (peer != null) {
+			return route.peer().equals(peer);
+		}
+		if (route.entry() >= 0) {
+			return route.entry() == 0;
+		}
+		peer = route.peer();
+		return true;
+	}
+
+	/**
+	 * Waits until the time of a route relative to the first one, at the
+	 * replay speed, publishing the changes before.
+	 */
+	private void pace(long timestamp) throws InterruptedException {
+		if (speed == 0) {
+			return;
+		}
+		if (firstTimestamp < 0) {
+			firstTimestamp = timestamp;
+			startedAt = System.nanoTime();
+			return;
+		}
+		long due = startedAt + (long) (TimeUnit.MICROSECONDS.toNanos(timestamp - firstTimestamp) / speed);
+		long wait = due - System.nanoTime();
+		if (wait > 0) {
+			flush();
+			TimeUnit.NANOSECONDS.sleep(wait);
+		}
+	}
+
+	private void flush() {
+		if (!changes.isEmpty()) {
+			rib.publish(changes);
+			changes = new ArrayList<>(batch);
+		}
+	}
+
+	private static Attributes attributes(MrtRoute route) {
+		AttributesBuilder builder = new AttributesBuilder();
+		if (route.origin() != MrtRoute.UNKNOWN) {
+			builder.setOrigin(new OriginBuilder().setValue(BgpOrigin.forValue(route.origin())).build());
+		}
+		long[] asPath = route.asPath();
+		if (asPath.length > 0) {
+			List<AsNumber> asNumbers = new ArrayList<>(asPath.length);
+			for (long as : asPath) {
+				asNumbers.add(new AsNumber(as));
+			}
+			builder.setAsPath(new AsPathBuilder()
+					.setSegments(ImmutableList.of(new SegmentsBuilder().setAsSequence(asNumbers).build())).build());
+		}
+		if (route.localPref() != MrtRoute.UNKNOWN) {
+			builder.setLocalPref(new LocalPrefBuilder().setPref(route.localPref()).build());
+		}
+		if (route.med() != MrtRoute.UNKNOWN) {
+			builder.setMultiExitDisc(new MultiExitDiscBuilder().setMed(route.med()).build());
+		}
+		return RouteUpdates.attributes(route.nextHop(), builder);
+	}
+}
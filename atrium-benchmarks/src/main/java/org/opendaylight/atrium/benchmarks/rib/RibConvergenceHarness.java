@@ -0,0 +1,219 @@
+/*
+ * Copyright (c) 2016 Wipro Ltd. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.atrium.benchmarks.rib;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.opendaylight.atrium.benchmarks.Harness;
+import org.opendaylight.atrium.benchmarks.fib.SimulatedFlowObjectiveSwitch.Rpc;
+import org.opendaylight.atrium.benchmarks.fib.SimulatedFlowObjectiveSwitch;
+import org.opendaylight.atrium.routingservice.impl.RibManager;
+import org.opendaylight.atrium.util.AtriumIpAddress;
+import org.opendaylight.atrium.util.AtriumIpPrefix;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.bgp.inet.rev150305.ipv4.routes.ipv4.routes.Ipv4Route;
+
+/**
+ * Measures offline how fast the {@link RibManager} absorbs a full routing
+ * table and a steady churn of route changes, and how much heap the table
+ * takes.
+ * <p>
+ * The harness publishes synthetic {@link Ipv4Route} changes of the local RIB
+ * to a {@link RibUnderTest}, as the data store would. Two phases are run: the
+ * load of the full table as fast as the RIB manager takes it, then a churn of
+ * next-hop changes and withdrawals paced at a given rate. Each reports its
+ * routes per second, its p50 and p99 per-update latency and the peak depth of
+ * the update queue of the RIB manager. The heap retained by the full table is
+ * measured between the two. The report is printed and written in JSON.
+ * </p>
+ * <p>
+ * Given a switch latency, the FIB updates go on through the router to a
+ * {@link SimulatedFlowObjectiveSwitch}, and the latencies run up to the
+ * route flows being applied.
+ * </p>
+ * <p>
+ * Options, as --name=value: routes (500000), next-hops (8), batch (1000
+ * changes per data tree notification), churn-rate (10000 updates per second,
+ * 0 skips the churn), churn-duration (30 seconds), withdraw-ratio (0.1), seed,
+ * switch-latency (microseconds per flow objective, none by default) and
+ * output (rib-convergence.json).
+ * </p>
+ */
+public final class RibConvergenceHarness {
+
+	private static final long CHURN_TICK = 10; // milliseconds
+	private static final int FIRST_PREFIX = 0x01000000; // 1.0.0.0
+	private static final int FIRST_NEXT_HOP = 0xc0a80001; // 192.168.0.1
+
+	private final int routes;
+	private final int nextHopCount;
+	private final int batch;
+	private final int churnRate;
+	private final int churnDuration;
+	private final double withdrawRatio;
+	private final Random random;
+	private final long switchLatency;
+
+	private final List<AtriumIpAddress> nextHops = new ArrayList<>();
+	private RibUnderTest rib;
+
+	private RibConvergenceHarness(Map<String, String> options) {
+		routes = Integer.parseInt(options.getOrDefault("routes", "500000"));
+		nextHopCount = Integer.parseInt(options.getOrDefault("next-hops", "8"));
+		batch = Integer.parseInt(options.getOrDefault("batch", "1000"));
+		churnRate = Integer.parseInt(options.getOrDefault("churn-rate", "10000"));
+		churnDuration = Integer.parseInt(options.getOrDefault("churn-duration", "30"));
+		withdrawRatio = Double.parseDouble(options.getOrDefault("withdraw-ratio", "0.1"));
+		random = new Random(Long.parseLong(options.getOrDefault("seed", "1")));
+		switchLatency = Long.parseLong(options.getOrDefault("switch-latency", "-1"));
+		checkArgument(routes > 0 && routes <= 1 << 23, "routes must be between 1 and %s", 1 << 23);
+		checkArgument(nextHopCount > 0 && nextHopCount <= 1 << 16, "next-hops must be between 1 and %s",
+				1 << 16);
+		checkArgument(batch > 0, "batch must be positive");
+		checkArgument(churnRate >= 0 && churnDuration >= 0, "churn-rate and churn-duration can not be negative");
+		checkArgument(withdrawRatio >= 0 && withdrawRatio <= 1, "withdraw-ratio must be between 0 and 1");
+	}
+
+	public static void main(String[] args) throws Exception {
+		Map<String, String> options = Harness.parseOptions(args);
+		Map<String, Object> report = new RibConvergenceHarness(options).run();
+		Harness.writeReport(report, Paths.get(options.getOrDefault("output", "rib-convergence.json")));
+	}
+
+	private Map<String, Object> run() throws Exception {
+		Map<String, Object> report = new LinkedHashMap<>();
+		report.put("routes", routes);
+		report.put("nextHops", nextHopCount);
+		report.put("batch", batch);
+
+		for (int i = 0; i < nextHopCount; i++) {
+			nextHops.add(AtriumIpAddress.valueOf(FIRST_NEXT_HOP + i));
+		}
+		rib = new RibUnderTest();
+		SimulatedFlowObjectiveSwitch flowObjectives = null;
+		RouterUnderTest router = null;
+		if (switchLatency >= 0) {
+			report.put("switchLatencyMicros", switchLatency);
+			flowObjectives = new SimulatedFlowObjectiveSwitch();
+			for (Rpc rpc : Rpc.values()) {
+				flowObjectives.setLatency(rpc, switchLatency, TimeUnit.MICROSECONDS);
+			}
+			router = new RouterUnderTest(rib, flowObjectives);
+		}
+		try {
+			// The latencies of the load are allocated before the baseline
+			rib.startPhase(routes);
+			long baseline = Harness.usedHeap();
+			report.put("load", load());
+			long retained = Harness.usedHeap() - baseline;
+			report.put("retainedHeapBytes", retained);
+			report.put("retainedHeapBytesPerRoute", retained / routes);
+			if (churnRate > 0 && churnDuration > 0) {
+				report.put("churn", churn());
+			}
+			if (flowObjectives != null) {
+				flowObjectives.sync();
+				report.put("flows", flowObjectives.getFlowCount());
+				report.put("groups", flowObjectives.getGroupCount());
+				report.put("rejectedFlows", flowObjectives.getRejectedCount(Rpc.FORWARD));
+			}
+		} finally {
+			if (router != null) {
+				router.close();
+				flowObjectives.close();
+			}
+			rib.close();
+		}
+		return report;
+	}
+
+	private static AtriumIpPrefix prefix(int index) {
+		return AtriumIpPrefix.valueOf(FIRST_PREFIX + (index << 8), 24);
+	}
+
+	/**
+	 * Loads the full table as fast as the RIB manager takes it.
+	 */
+	private Map<String, Object> load() throws InterruptedException {
+		long start = System.nanoTime();
+		List<RouteUpdates.Change> changes = new ArrayList<>(batch);
+		for (int i = 0; i < routes; i++) {
+			changes.add(RouteUpdates.write(prefix(i), nextHops.get(i % nextHopCount)));
+			if (changes.size() == batch || i == routes - 1) {
+				rib.publish(changes);
+				changes = new ArrayList<>(batch);
+			}
+		}
+		return rib.endPhase(start);
+	}
+
+	/**
+	 * Changes the next hop of random prefixes, or withdraws them, at the churn
+	 * rate. A withdrawn prefix is announced again the next time it is picked.
+	 */
+	private Map<String, Object> churn() throws InterruptedException {
+		long total = (long) churnRate * churnDuration;
+		rib.startPhase((int) Math.min(total, Integer.MAX_VALUE));
+		// Next hop index of each prefix, -1 once withdrawn
+		int[] nextHopOf = new int[routes];
+		for (int i = 0; i < routes; i++) {
+			nextHopOf[i] = i % nextHopCount;
+		}
+
+		long start = System.nanoTime();
+		long sent = 0;
+		while (sent < total) {
+			long due = Math.min(total, (System.nanoTime() - start) * churnRate / TimeUnit.SECONDS.toNanos(1));
+			List<RouteUpdates.Change> changes = new ArrayList<>();
+			Set<AtriumIpPrefix> prefixes = new HashSet<>();
+			int misses = 0;
+			while (sent < due && changes.size() < batch && misses < routes) {
+				int index = random.nextInt(routes);
+				AtriumIpPrefix prefix = prefix(index);
+				if (rib.isInFlight(prefix) || !prefixes.add(prefix)) {
+					// One change in flight per prefix, so that each FIB
+					// update is matched with its change
+					misses++;
+					continue;
+				}
+				int current = nextHopOf[index];
+				if (current < 0) {
+					current = random.nextInt(nextHopCount);
+					changes.add(RouteUpdates.write(prefix, nextHops.get(current)));
+				} else if (nextHopCount == 1 || random.nextDouble() < withdrawRatio) {
+					changes.add(RouteUpdates.delete(prefix, nextHops.get(current)));
+					current = -1;
+				} else {
+					current = (current + 1 + random.nextInt(nextHopCount - 1)) % nextHopCount;
+					changes.add(RouteUpdates.write(prefix, nextHops.get(current)));
+				}
+				nextHopOf[index] = current;
+				sent++;
+			}
+			if (!changes.isEmpty()) {
+				rib.publish(changes);
+			}
+			if (sent < due && misses < routes) {
+				continue;
+			}
+			Thread.sleep(CHURN_TICK);
+		}
+		Map<String, Object> result = rib.endPhase(start);
+		result.put("targetRate", churnRate);
+		return result;
+	}
+}
@@ -0,0 +1,268 @@
+/*
+ * Copyright (c) 2016 Wipro Ltd. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.atrium.benchmarks.rib;
+
+import static com.google.common.base.Preconditions.checkState;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.opendaylight.atrium.benchmarks.LatencySamples;
+import org.opendaylight.atrium.benchmarks.Stubs;
+import org.opendaylight.atrium.routingservice.api.AtriumFibUpdate;
+import org.opendaylight.atrium.routingservice.api.FibListener;
+import org.opendaylight.atrium.routingservice.config.api.RoutingConfigService;
+import org.opendaylight.atrium.routingservice.impl.RibManager;
+import org.opendaylight.atrium.util.AtriumIpAddress;
+import org.opendaylight.atrium.util.AtriumIpPrefix;
+import org.opendaylight.protocol.bgp.rib.RibReference;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.bgp.rib.rev130925.Route;
+
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * A {@link RibManager} running against in-memory stand-ins of the data
+ * broker, the host service and the routing configuration, with the
+ * instrumentation the benchmarks report from.
+ * <p>
+ * Every change published is timestamped until a FIB update of its prefix
+ * reaches the FIB listener. A change that does not alter the FIB, for
+ * instance a new AS path through the same next hop, has no latency. The
+ * depth of the update queue of the RIB manager is sampled every millisecond.
+ * </p>
+ * <p>
+ * When the FIB updates are handed on to a downstream listener, such as the
+ * router, a change is only complete once {@link #applied(AtriumIpPrefix)} is
+ * called for its prefix, which measures the latency up to the switch.
+ * </p>
+ */
+final class RibUnderTest implements AutoCloseable {
+
+	private static final long DRAIN_TIMEOUT = TimeUnit.SECONDS.toNanos(60);
+
+	// Published last to know when the RIB manager is done with the changes
+	// published before, the updates being processed in order
+	private static final AtriumIpPrefix SENTINEL = AtriumIpPrefix.valueOf("255.255.255.255/32");
+	private static final AtriumIpAddress SENTINEL_NEXT_HOP = AtriumIpAddress.valueOf("192.0.2.1");
+
+	private final InMemoryDataBroker dataBroker = new InMemoryDataBroker();
+	private final InMemoryHostService hostService = new InMemoryHostService();
+	private final RibManager<Route> ribManager;
+	private final ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor();
+
+	// Prefixes whose change was published and whose FIB update was not seen
+	// yet, with the time the last change was published
+	private final Map<AtriumIpPrefix, Long> inFlight = new ConcurrentHashMap<>();
+	private final AtomicLong published = new AtomicLong();
+	private final AtomicLong fibUpdates = new AtomicLong();
+	private final AtomicLong appliedUpdates = new AtomicLong();
+	private final AtomicInteger peakQueueDepth = new AtomicInteger();
+	private volatile boolean sentinelSeen;
+	private volatile FibListener downstream;
+	// Written by the thread completing the changes only, the update thread of
+	// the RIB manager or the downstream one
+	private volatile LatencySamples latencies = new LatencySamples(0);
+
+	RibUnderTest() {
+		RibReference ribReference = Stubs.stub(RibReference.class,
+				ImmutableMap.of("getInstanceIdentifier", args -> RouteUpdates.RIB_ID));
+		RoutingConfigService routingConfig = Stubs.stub(RoutingConfigService.class, ImmutableMap.of());
+
+		ribManager = new RibManager<>(dataBroker.getDataBroker(), ribReference, hostService, routingConfig);
+		ribManager.onSessionInitiated(null);
+		ribManager.addFibListener(new FibListener() {
+			@Override
+			public void update(Collection<AtriumFibUpdate> updates, Collection<AtriumFibUpdate> withdraws) {
+				counted(updates);
+				counted(withdraws);
+				FibListener listener = downstream;
+				if (listener != null) {
+					listener.update(updates, withdraws);
+					return;
+				}
+				long now = System.nanoTime();
+				updates.forEach(update -> completed(update.entry().prefix(), now));
+				withdraws.forEach(update -> completed(update.entry().prefix(), now));
+			}
+
+			@Override
+			public void nextHopMoved(AtriumIpAddress nextHop, Collection<AtriumFibUpdate> updates, long detectedAt) {
+				FibListener listener = downstream;
+				if (listener != null) {
+					listener.nextHopMoved(nextHop, updates, detectedAt);
+				}
+			}
+		});
+		ribManager.start();
+		checkState(dataBroker.getListenerCount() == 1, "The RIB manager did not register for the routes");
+		sampler.scheduleAtFixedRate(this::sampleQueueDepth, 1, 1, TimeUnit.MILLISECONDS);
+	}
+
+	RibManager<Route> getRibManager() {
+		return ribManager;
+	}
+
+	InMemoryHostService getHostService() {
+		return hostService;
+	}
+
+	/**
+	 * Hands the FIB updates on to a listener, as the RIB manager does to the
+	 * router. It takes the place of the listener set before.
+	 */
+	void setFibListener(FibListener listener) {
+		downstream = listener;
+	}
+
+	/**
+	 * Completes the change of a prefix whose FIB update was handed on, once
+	 * it is applied downstream.
+	 */
+	void applied(AtriumIpPrefix prefix) {
+		if (!prefix.equals(SENTINEL)) {
+			appliedUpdates.incrementAndGet();
+		}
+		completed(prefix, System.nanoTime());
+	}
+
+	private void counted(Collection<AtriumFibUpdate> updates) {
+		for (AtriumFibUpdate update : updates) {
+			if (!update.entry().prefix().equals(SENTINEL)) {
+				fibUpdates.incrementAndGet();
+			}
+		}
+	}
+
+	private void completed(AtriumIpPrefix prefix, long now) {
+		if (prefix.equals(SENTINEL)) {
+			sentinelSeen = true;
+			return;
+		}
+		Long publishedAt = inFlight.remove(prefix);
+		if (publishedAt != null) {
+			latencies.record(now - publishedAt);
+		}
+	}
+
+	private void sampleQueueDepth() {
+		peakQueueDepth.accumulateAndGet(ribManager.getUpdateQueueDepth(), Math::max);
+	}
+
+	/**
+	 * @return true if a change of a prefix was published and its FIB update
+	 *         not seen yet
+	 */
+	boolean isInFlight(AtriumIpPrefix prefix) {
+		return inFlight.containsKey(prefix);
+	}
+
+	/**
+	 * Starts measuring a phase.
+	 *
+	 * @param expected
+	 *            the number of changes expected in the phase
+	 */
+	void startPhase(int expected) {
+		latencies = new LatencySamples(expected);
+		published.set(0);
+		fibUpdates.set(0);
+		appliedUpdates.set(0);
+		peakQueueDepth.set(0);
+	}
+
+	/**
+	 * Publishes changes as one data tree notification.
+	 */
+	void publish(List<RouteUpdates.Change> changes) {
+		long now = System.nanoTime();
+		for (RouteUpdates.Change change : changes) {
+			inFlight.put(change.prefix(), now);
+		}
+		published.addAndGet(changes.size());
+		dataBroker.publish(changes);
+		sampleQueueDepth();
+	}
+
+	/**
+	 * Waits for the RIB manager to process the changes published and reports
+	 * the phase started at a time.
+	 *
+	 * @param start
+	 *            the {@link System#nanoTime()} at which the phase started
+	 * @return the report of the phase
+	 */
+	Map<String, Object> endPhase(long start) throws InterruptedException {
+		boolean drained = drain();
+		long elapsed = System.nanoTime() - start;
+		LatencySamples samples = latencies;
+
+		Map<String, Object> phase = new LinkedHashMap<>();
+		phase.put("updates", published.get());
+		phase.put("fibUpdates", fibUpdates.get());
+		if (downstream != null) {
+			phase.put("appliedUpdates", appliedUpdates.get());
+		}
+		phase.put("elapsedMillis", TimeUnit.NANOSECONDS.toMillis(elapsed));
+		phase.put("routesPerSecond", published.get() * TimeUnit.SECONDS.toNanos(1) / Math.max(elapsed, 1));
+		phase.put("p50LatencyMicros", TimeUnit.NANOSECONDS.toMicros(samples.getPercentile(50)));
+		phase.put("p99LatencyMicros", TimeUnit.NANOSECONDS.toMicros(samples.getPercentile(99)));
+		phase.put("maxLatencyMicros", TimeUnit.NANOSECONDS.toMicros(samples.getMax()));
+		phase.put("peakQueueDepth", peakQueueDepth.get());
+		phase.put("drained", drained);
+		// Changes without a FIB update are not waited for in the next phase
+		inFlight.clear();
+		return phase;
+	}
+
+	/**
+	 * Publishes the sentinel route and waits for its FIB update, then
+	 * withdraws it.
+	 *
+	 * @return false if the RIB manager stopped making progress
+	 */
+	private boolean drain() throws InterruptedException {
+		for (boolean withdraw : new boolean[] { false, true }) {
+			sentinelSeen = false;
+			dataBroker.publish(Collections.singletonList(withdraw ? RouteUpdates.delete(SENTINEL, SENTINEL_NEXT_HOP)
+					: RouteUpdates.write(SENTINEL, SENTINEL_NEXT_HOP)));
+			long lastProgress = System.nanoTime();
+			long lastDone = -1;
+			while (!sentinelSeen) {
+				int depth = ribManager.getUpdateQueueDepth();
+				// Updates taken off the queue or applied downstream
+				long done = fibUpdates.get() + appliedUpdates.get() - depth;
+				if (done != lastDone) {
+					lastDone = done;
+					lastProgress = System.nanoTime();
+				} else if (System.nanoTime() - lastProgress > DRAIN_TIMEOUT) {
+					System.err.println("The RIB manager made no progress for "
+							+ TimeUnit.NANOSECONDS.toSeconds(DRAIN_TIMEOUT) + " seconds, " + depth
+							+ " update(s) left");
+					return false;
+				}
+				Thread.sleep(1);
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public void close() {
+		sampler.shutdownNow();
+		ribManager.stop();
+	}
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2016 Wipro Ltd. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.atrium.benchmarks.rib;
+
+import org.opendaylight.atrium.benchmarks.Stubs;
+import org.opendaylight.atrium.util.AtriumIpAddress;
+import org.opendaylight.atrium.util.AtriumIpPrefix;
+import org.opendaylight.controller.md.sal.binding.api.DataObjectModification;
+import org.opendaylight.controller.md.sal.binding.api.DataObjectModification.ModificationType;
+import org.opendaylight.controller.md.sal.binding.api.DataTreeIdentifier;
+import org.opendaylight.controller.md.sal.binding.api.DataTreeModification;
+import org.opendaylight.controller.md.sal.common.api.data.LogicalDatastoreType;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev100924.Ipv4Address;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev100924.Ipv4Prefix;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.bgp.inet.rev150305.ipv4.routes.ipv4.routes.Ipv4Route;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.bgp.inet.rev150305.ipv4.routes.ipv4.routes.Ipv4RouteBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.bgp.message.rev130919.path.attributes.Attributes;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.bgp.message.rev130919.path.attributes.AttributesBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.bgp.rib.rev130925.BgpRib;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.bgp.rib.rev130925.RibId;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.bgp.rib.rev130925.bgp.rib.Rib;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.bgp.rib.rev130925.bgp.rib.RibKey;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.bgp.rib.rev130925.bgp.rib.rib.LocRib;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.bgp.types.rev130919.next.hop.c.next.hop.Ipv4NextHopCaseBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.bgp.types.rev130919.next.hop.c.next.hop.ipv4.next.hop._case.Ipv4NextHopBuilder;
+import org.opendaylight.yangtools.yang.binding.InstanceIdentifier;
+import org.opendaylight.yangtools.yang.binding.KeyedInstanceIdentifier;
+
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * Synthetic changes of the routes of the local RIB, as the data store
+ * delivers them to the RIB manager.
+ */
+final class RouteUpdates {
+
+	static final KeyedInstanceIdentifier<Rib, RibKey> RIB_ID = InstanceIdentifier.create(BgpRib.class)
+			.child(Rib.class, new RibKey(new RibId("benchmark-rib")));
+
+	// The RIB manager only looks for a peer in the path, a path without one
+	// is the local RIB
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static final DataTreeIdentifier<Ipv4Route> ROOT_PATH = new DataTreeIdentifier(
+			LogicalDatastoreType.OPERATIONAL, RIB_ID.child(LocRib.class));
+
+	private RouteUpdates() {
+	}
+
+	/**
+	 * @return the attributes of a route through a next hop
+	 */
+	static Attributes attributes(AtriumIpAddress nextHop) {
+		return attributes(nextHop, new AttributesBuilder());
+	}
+
+	/**
+	 * @return the attributes with the next hop set
+	 */
+	static Attributes attributes(AtriumIpAddress nextHop, AttributesBuilder builder) {
+		return builder.setCNextHop(new Ipv4NextHopCaseBuilder()
+				.setIpv4NextHop(new Ipv4NextHopBuilder().setGlobal(new Ipv4Address(nextHop.toString())).build())
+				.build()).build();
+	}
+
+	/**
+	 * @return the route of a prefix with attributes
+	 */
+	static Ipv4Route route(AtriumIpPrefix prefix, Attributes attributes) {
+		return new Ipv4RouteBuilder().setPrefix(new Ipv4Prefix(prefix.toString())).setAttributes(attributes).build();
+	}
+
+	/**
+	 * @return the announcement of a route, new or replacing the previous one
+	 */
+	static Change write(AtriumIpPrefix prefix, AtriumIpAddress nextHop) {
+		return write(prefix, attributes(nextHop));
+	}
+
+	static Change write(AtriumIpPrefix prefix, Attributes attributes) {
+		return new Change(prefix, ModificationType.WRITE, null, route(prefix, attributes));
+	}
+
+	/**
+	 * @return the withdrawal of a route
+	 */
+	static Change delete(AtriumIpPrefix prefix, AtriumIpAddress nextHop) {
+		return new Change(prefix, ModificationType.DELETE, route(prefix, attributes(nextHop)), null);
+	}
+
+	/**
+	 * A change of the route of a prefix.
+	 */
+	static final class Change implements DataTreeModification<Ipv4Route> {
+
+		private final AtriumIpPrefix prefix;
+		private final DataObjectModification<Ipv4Route> rootNode;
+
+		@SuppressWarnings("unchecked")
+		private Change(AtriumIpPrefix prefix, ModificationType type, Ipv4Route before, Ipv4Route after) {
+			this.prefix = prefix;
+			rootNode = Stubs.stub(DataObjectModification.class,
+					ImmutableMap.of("getModificationType", args -> type, "getDataBefore", args -> before,
+							"getDataAfter", args -> after, "getDataType", args -> Ipv4Route.class));
+		}
+
+		AtriumIpPrefix prefix() {
+			return prefix;
+		}
+
+		@Override
+		public DataTreeIdentifier<Ipv4Route> getRootPath() {
+			return ROOT_PATH;
+		}
+
+		@Override
+		public DataObjectModification<Ipv4Route> getRootNode() {
+			return rootNode;
+		}
+	}
+}
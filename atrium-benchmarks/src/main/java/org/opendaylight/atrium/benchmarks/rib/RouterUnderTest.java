@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2016 Wipro Ltd. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.atrium.benchmarks.rib;
+
+import java.util.Collections;
+import java.util.Set;
+
+import org.opendaylight.atrium.benchmarks.Stubs;
+import org.opendaylight.atrium.benchmarks.fib.SimulatedFlowObjectiveSwitch;
+import org.opendaylight.atrium.bgprouter.impl.Bgprouter;
+import org.opendaylight.atrium.bgprouter.impl.TunnellingConnectivityManager;
+import org.opendaylight.atrium.routingservice.api.FibListener;
+import org.opendaylight.atrium.routingservice.api.RoutingService;
+import org.opendaylight.atrium.routingservice.config.api.RoutingConfigService;
+import org.opendaylight.atrium.util.AtriumInterface;
+import org.opendaylight.atrium.util.AtriumInterfaceIpAddress;
+import org.opendaylight.atrium.util.AtriumIpAddress;
+import org.opendaylight.atrium.util.AtriumIpPrefix;
+import org.opendaylight.atrium.util.AtriumVlanId;
+import org.opendaylight.controller.md.sal.binding.api.DataBroker;
+import org.opendaylight.controller.md.sal.binding.api.ReadOnlyTransaction;
+import org.opendaylight.controller.md.sal.binding.api.ReadWriteTransaction;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev100924.IpAddress;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev100924.Ipv4Address;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.yang.types.rev100924.MacAddress;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.NodeConnectorId;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.NodeId;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.node.NodeConnectorBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.node.NodeConnectorKey;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.packet.service.rev130709.PacketProcessingService;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.bgpconfig.api.rev150725.BgpSpeakers;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.bgpconfig.api.rev150725.BgpSpeakersBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.bgpconfig.api.rev150725.bgpspeakers.BgpSpeakerBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.bgpconfig.api.rev150725.bgpspeakers.bgpspeaker.InterfaceAddressesBuilder;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.Futures;
+
+/**
+ * The router running over a {@link RibUnderTest} and a simulated switch: the
+ * FIB updates of the RIB manager go through the {@link Bgprouter} to the
+ * flow objectives of the switch, and a change is complete once its route
+ * flow is applied.
+ * <p>
+ * The router has a single interface, out of which every next hop is reached,
+ * and the switch is never seen in the inventory so that only the route flows
+ * are sent.
+ * </p>
+ */
+final class RouterUnderTest implements AutoCloseable {
+
+	static final NodeConnectorId ROUTER_PORT = new NodeConnectorId("openflow:1:1");
+	static final NodeId CONTROL_SWITCH = new NodeId("openflow:2");
+	static final MacAddress ROUTER_MAC = new MacAddress("00:00:00:00:00:01");
+	static final AtriumIpAddress ROUTER_IP = AtriumIpAddress.valueOf("192.0.2.254");
+
+	private final Bgprouter router;
+
+	RouterUnderTest(RibUnderTest rib, SimulatedFlowObjectiveSwitch flowObjectives) {
+		DataBroker dataBroker = Stubs.stub(DataBroker.class,
+				ImmutableMap.of("registerDataChangeListener", args -> null, "newReadOnlyTransaction",
+						args -> newReadOnlyTransaction(), "newReadWriteTransaction",
+						args -> newReadWriteTransaction()));
+		RoutingConfigService config = newRoutingConfig();
+		PacketProcessingService packetService = Stubs.stub(PacketProcessingService.class, ImmutableMap.of());
+		// The FIB listener of the router takes the place of the harness one
+		RoutingService routingService = Stubs.stub(RoutingService.class,
+				ImmutableMap.of("addFibListener", args -> {
+					rib.setFibListener((FibListener) args[0]);
+					return null;
+				}));
+
+		flowObjectives.addListener((prefix, nextId) -> rib.applied(prefix));
+		router = new Bgprouter(
+				new TunnellingConnectivityManager(dataBroker, config, packetService, flowObjectives), dataBroker,
+				config, routingService, packetService, flowObjectives);
+		router.start();
+	}
+
+	private static ReadOnlyTransaction newReadOnlyTransaction() {
+		// The inventory is empty
+		return Stubs.stub(ReadOnlyTransaction.class, ImmutableMap.of("read",
+				args -> Futures.immediateCheckedFuture(Optional.absent())));
+	}
+
+	private static ReadWriteTransaction newReadWriteTransaction() {
+		// The FIB written to the data store is not kept
+		return Stubs.stub(ReadWriteTransaction.class, ImmutableMap.of("submit",
+				args -> Futures.immediateCheckedFuture(null)));
+	}
+
+	private static RoutingConfigService newRoutingConfig() {
+		BgpSpeakers speakers = new BgpSpeakersBuilder()
+				.setBgpSpeaker(Collections.singletonList(new BgpSpeakerBuilder().setSpeakerName("benchmark")
+						.setAttachmentDpId(CONTROL_SWITCH).setMacAddress(ROUTER_MAC)
+						.setInterfaceAddresses(Collections.singletonList(new InterfaceAddressesBuilder()
+								.setOfPortId(ROUTER_PORT)
+								.setIpAddress(new IpAddress(new Ipv4Address(ROUTER_IP.toString()))).build()))
+						.build()))
+				.build();
+		AtriumInterface routerInterface = new AtriumInterface(
+				new NodeConnectorBuilder().setId(ROUTER_PORT).setKey(new NodeConnectorKey(ROUTER_PORT)).build(),
+				Collections.singleton(new AtriumInterfaceIpAddress(ROUTER_IP, AtriumIpPrefix.valueOf("0.0.0.0/0"))),
+				ROUTER_MAC, AtriumVlanId.NONE);
+		Set<AtriumInterface> interfaces = Collections.singleton(routerInterface);
+		return Stubs.stub(RoutingConfigService.class, ImmutableMap.of("getBgpSpeakers", args -> speakers,
+				"getInterfaces", args -> interfaces, "getMatchingInterface", args -> routerInterface));
+	}
+
+	Bgprouter getRouter() {
+		return router;
+	}
+
+	@Override
+	public void close() throws Exception {
+		router.close();
+	}
+}
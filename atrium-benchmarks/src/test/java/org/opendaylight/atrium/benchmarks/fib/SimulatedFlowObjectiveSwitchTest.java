@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2016 Wipro Ltd. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.atrium.benchmarks.fib;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.opendaylight.atrium.atriumutil.ActionData;
+import org.opendaylight.atrium.atriumutil.ActionUtils;
+import org.opendaylight.atrium.benchmarks.fib.SimulatedFlowObjectiveSwitch.Rpc;
+import org.opendaylight.atrium.util.AtriumIpPrefix;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev100924.Ipv4Prefix;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.yang.types.rev100924.MacAddress;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.model.match.types.rev131026.match.layer._3.match.Ipv4MatchBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.didm.drivers.atrium.rev150211.ForwardInput;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.didm.drivers.atrium.rev150211.ForwardInputBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.didm.drivers.atrium.rev150211.NextInput;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.didm.drivers.atrium.rev150211.NextInputBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.didm.drivers.atrium.rev150211.Objective.Operation;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.didm.drivers.atrium.rev150211.forward.input.ForwardingObjectiveBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.didm.drivers.atrium.rev150211.forward.input.forwarding.objective.MatchBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.didm.drivers.atrium.rev150211.next.input.NextObjective.Type;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.didm.drivers.atrium.rev150211.next.input.NextObjectiveBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.didm.drivers.atrium.rev150211.next.input.next.objective.TrafficTreatmentBuilder;
+import org.opendaylight.yangtools.yang.common.RpcResult;
+
+/**
+ * Tests the tables, the capacities and the failures of the simulated switch.
+ */
+public class SimulatedFlowObjectiveSwitchTest {
+
+	private SimulatedFlowObjectiveSwitch flowObjectives;
+
+	@Before
+	public void setUp() {
+		flowObjectives = new SimulatedFlowObjectiveSwitch(2, 2);
+	}
+
+	@After
+	public void tearDown() {
+		flowObjectives.close();
+	}
+
+	private static ForwardInput route(String prefix, Integer nextId, Operation operation) {
+		ForwardingObjectiveBuilder objective = new ForwardingObjectiveBuilder();
+		objective.setOperation(operation);
+		objective.setMatch(new MatchBuilder()
+				.setLayer3Match(new Ipv4MatchBuilder().setIpv4Destination(new Ipv4Prefix(prefix)).build()).build());
+		objective.setPriority(AtriumIpPrefix.valueOf(prefix).prefixLength());
+		objective.setNextId(nextId);
+		return new ForwardInputBuilder().setForwardingObjective(objective.build()).build();
+	}
+
+	private static NextInput next(int nextId, String mac, Operation operation) {
+		NextObjectiveBuilder objective = new NextObjectiveBuilder();
+		objective.setOperation(operation);
+		objective.setType(Type.Simple);
+		objective.setNextId(nextId);
+		objective.setTrafficTreatment(Collections.singletonList(new TrafficTreatmentBuilder()
+				.setAction(Collections.singletonList(
+						new ActionData(ActionUtils.set_field_eth_dest, new String[] { mac }).buildAction()))
+				.build()));
+		return new NextInputBuilder().setNextObjective(objective.build()).build();
+	}
+
+	private static boolean succeeded(Future<RpcResult<Void>> result) throws Exception {
+		return result.get().isSuccessful();
+	}
+
+	/**
+	 * Tests that the route flows are applied and can be queried.
+	 */
+	@Test
+	public void testRouteFlows() throws Exception {
+		List<AtriumIpPrefix> changed = new ArrayList<>();
+		flowObjectives.addListener((prefix, nextId) -> changed.add(prefix));
+
+		assertTrue(succeeded(flowObjectives.next(next(1, "02:00:00:00:00:01", Operation.Add))));
+		assertTrue(succeeded(flowObjectives.forward(route("10.1.0.0/16", 1, Operation.Add))));
+		assertEquals(Integer.valueOf(1), flowObjectives.getRouteFlows().get(AtriumIpPrefix.valueOf("10.1.0.0/16")));
+		assertEquals(Collections.singleton(new MacAddress("02:00:00:00:00:01")),
+				flowObjectives.getRouteDestinations().get(AtriumIpPrefix.valueOf("10.1.0.0/16")));
+
+		// The same match and priority replaces the flow
+		assertTrue(succeeded(flowObjectives.next(next(2, "02:00:00:00:00:02", Operation.Add))));
+		assertTrue(succeeded(flowObjectives.forward(route("10.1.0.0/16", 2, Operation.Add))));
+		assertEquals(1, flowObjectives.getFlowCount());
+		assertEquals(Collections.singleton(new MacAddress("02:00:00:00:00:02")),
+				flowObjectives.getRouteDestinations().get(AtriumIpPrefix.valueOf("10.1.0.0/16")));
+
+		assertTrue(succeeded(flowObjectives.forward(route("10.1.0.0/16", null, Operation.Remove))));
+		assertEquals(0, flowObjectives.getFlowCount());
+		assertEquals(3, changed.size());
+		assertEquals(2, flowObjectives.getRequestCount(Rpc.NEXT));
+		assertEquals(3, flowObjectives.getRequestCount(Rpc.FORWARD));
+	}
+
+	/**
+	 * Tests that the objectives a switch would refuse are rejected.
+	 */
+	@Test
+	public void testRejected() throws Exception {
+		// No such next objective
+		assertFalse(succeeded(flowObjectives.forward(route("10.1.0.0/16", 1, Operation.Add))));
+
+		assertTrue(succeeded(flowObjectives.next(next(1, "02:00:00:00:00:01", Operation.Add))));
+		assertTrue(succeeded(flowObjectives.next(next(2, "02:00:00:00:00:02", Operation.Add))));
+		// Changing an existing next objective does not take more room
+		assertTrue(succeeded(flowObjectives.next(next(2, "02:00:00:00:00:03", Operation.Add))));
+		assertFalse(succeeded(flowObjectives.next(next(3, "02:00:00:00:00:03", Operation.Add))));
+
+		assertTrue(succeeded(flowObjectives.forward(route("10.1.0.0/16", 1, Operation.Add))));
+		assertTrue(succeeded(flowObjectives.forward(route("10.2.0.0/16", 1, Operation.Add))));
+		assertFalse(succeeded(flowObjectives.forward(route("10.3.0.0/16", 2, Operation.Add))));
+
+		// In use by the flows
+		assertFalse(succeeded(flowObjectives.next(next(1, "02:00:00:00:00:01", Operation.Remove))));
+		assertTrue(succeeded(flowObjectives.forward(route("10.1.0.0/16", null, Operation.Remove))));
+		assertTrue(succeeded(flowObjectives.forward(route("10.2.0.0/16", 2, Operation.Add))));
+		assertTrue(succeeded(flowObjectives.next(next(1, "02:00:00:00:00:01", Operation.Remove))));
+
+		assertEquals(1, flowObjectives.getFlowCount());
+		assertEquals(1, flowObjectives.getGroupCount());
+		assertEquals(2, flowObjectives.getRejectedCount(Rpc.FORWARD));
+		assertEquals(2, flowObjectives.getRejectedCount(Rpc.NEXT));
+	}
+
+	/**
+	 * Tests the injected failures and the latency of the agent.
+	 */
+	@Test
+	public void testInjectedFailures() throws Exception {
+		flowObjectives.failNext(Rpc.NEXT, 2);
+		assertFalse(succeeded(flowObjectives.next(next(1, "02:00:00:00:00:01", Operation.Add))));
+		assertFalse(succeeded(flowObjectives.next(next(1, "02:00:00:00:00:01", Operation.Add))));
+		assertTrue(succeeded(flowObjectives.next(next(1, "02:00:00:00:00:01", Operation.Add))));
+		assertEquals(2, flowObjectives.getFailureCount(Rpc.NEXT));
+
+		flowObjectives.setFailureRate(Rpc.NEXT, 1);
+		assertFalse(succeeded(flowObjectives.next(next(2, "02:00:00:00:00:02", Operation.Add))));
+		assertEquals(1, flowObjectives.getGroupCount());
+
+		flowObjectives.setLatency(Rpc.FORWARD, 20, TimeUnit.MILLISECONDS);
+		long start = System.nanoTime();
+		flowObjectives.forward(route("10.1.0.0/16", 1, Operation.Add));
+		flowObjectives.forward(route("10.2.0.0/16", 1, Operation.Add));
+		flowObjectives.sync();
+		assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(40));
+		assertEquals(2, flowObjectives.getFlowCount());
+	}
+}
@@ -0,0 +1,257 @@
+/*
+ * Copyright (c) 2016 Wipro Ltd. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.atrium.benchmarks.mrt;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.opendaylight.atrium.util.AtriumIpAddress;
+import org.opendaylight.atrium.util.AtriumIpPrefix;
+
+/**
+ * Tests reading the routes of a table dump and an update trace.
+ */
+public class MrtReaderTest {
+
+	private static final int TIMESTAMP = 1451606400; // 2016-01-01
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Path file;
+	private ByteArrayOutputStream bytes;
+	private DataOutputStream out;
+
+	@Before
+	public void setUp() throws IOException {
+		file = folder.newFile("updates.mrt").toPath();
+		bytes = new ByteArrayOutputStream();
+		out = new DataOutputStream(bytes);
+	}
+
+	private void record(int type, int subtype, byte[] body) throws IOException {
+		out.writeInt(TIMESTAMP);
+		out.writeShort(type);
+		out.writeShort(subtype);
+		out.writeInt(body.length);
+		out.write(body);
+	}
+
+	private MrtReader reader() throws IOException {
+		Files.write(file, bytes.toByteArray());
+		return new MrtReader(file);
+	}
+
+	private static byte[] address(String address) {
+		return AtriumIpAddress.valueOf(address).toOctets();
+	}
+
+	private static byte[] peerIndexTable() throws IOException {
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(body);
+		out.write(address("10.0.0.254")); // Collector BGP ID
+		out.writeShort(4);
+		out.writeBytes("test");
+		out.writeShort(2);
+		// IPv4 peer with a 4-byte AS
+		out.writeByte(0x2);
+		out.write(address("10.0.0.1"));
+		out.write(address("10.0.0.1"));
+		out.writeInt(65001);
+		// IPv4 peer with a 2-byte AS
+		out.writeByte(0x0);
+		out.write(address("10.0.0.2"));
+		out.write(address("10.0.0.2"));
+		out.writeShort(65002);
+		return body.toByteArray();
+	}
+
+	private static void attribute(DataOutputStream out, int type, byte[] value) throws IOException {
+		out.writeByte(0x40);
+		out.writeByte(type);
+		out.writeByte(value.length);
+		out.write(value);
+	}
+
+	private static byte[] attributes(String nextHop, boolean as4, long... asPath) throws IOException {
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(body);
+		attribute(out, 1, new byte[] { 0 });
+		ByteArrayOutputStream path = new ByteArrayOutputStream();
+		DataOutputStream pathOut = new DataOutputStream(path);
+		pathOut.writeByte(2); // AS_SEQUENCE
+		pathOut.writeByte(asPath.length);
+		for (long as : asPath) {
+			if (as4) {
+				pathOut.writeInt((int) as);
+			} else {
+				pathOut.writeShort((int) as);
+			}
+		}
+		attribute(out, 2, path.toByteArray());
+		attribute(out, 3, address(nextHop));
+		// MULTI_EXIT_DISC with an extended length
+		out.writeByte(0x90);
+		out.writeByte(4);
+		out.writeShort(4);
+		out.writeInt(50);
+		return body.toByteArray();
+	}
+
+	private static byte[] rib(String nextHop1, String nextHop2) throws IOException {
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(body);
+		out.writeInt(0); // Sequence number
+		out.writeByte(16);
+		out.write(new byte[] { (byte) 192, (byte) 168 });
+		out.writeShort(2);
+		for (int peer = 0; peer < 2; peer++) {
+			byte[] attributes = attributes(peer == 0 ? nextHop1 : nextHop2, true, 65001, 3356);
+			out.writeShort(peer);
+			out.writeInt(TIMESTAMP);
+			out.writeShort(attributes.length);
+			out.write(attributes);
+		}
+		return body.toByteArray();
+	}
+
+	private static byte[] update(boolean as4, int type) throws IOException {
+		ByteArrayOutputStream message = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(message);
+		if (type == 2) {
+			out.writeShort(3);
+			out.write(new byte[] { 16, (byte) 192, (byte) 168 });
+			byte[] attributes = attributes("10.0.0.9", as4, 65001, 174, 3356);
+			out.writeShort(attributes.length);
+			out.write(attributes);
+			out.write(new byte[] { 16, 10, 1 });
+			out.write(new byte[] { 24, 10, 2, 2 });
+		}
+
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		DataOutputStream bodyOut = new DataOutputStream(body);
+		if (as4) {
+			bodyOut.writeInt(65001);
+			bodyOut.writeInt(65000);
+		} else {
+			bodyOut.writeShort(65001);
+			bodyOut.writeShort(65000);
+		}
+		bodyOut.writeShort(0); // Interface index
+		bodyOut.writeShort(1); // IPv4
+		bodyOut.write(address("10.0.0.1"));
+		bodyOut.write(address("10.0.0.254"));
+		for (int i = 0; i < 16; i++) {
+			bodyOut.writeByte(0xff);
+		}
+		bodyOut.writeShort(19 + message.size());
+		bodyOut.writeByte(type);
+		bodyOut.write(message.toByteArray());
+		return body.toByteArray();
+	}
+
+	/**
+	 * Tests that the routes of a table dump are read with their peer and
+	 * attributes.
+	 */
+	@Test
+	public void testTableDump() throws IOException {
+		record(MrtReader.TABLE_DUMP_V2, MrtReader.PEER_INDEX_TABLE, peerIndexTable());
+		record(MrtReader.TABLE_DUMP_V2, MrtReader.RIB_IPV4_UNICAST, rib("10.0.0.1", "10.0.0.2"));
+		// IPv6 routes are skipped
+		record(MrtReader.TABLE_DUMP_V2, 4, new byte[8]);
+
+		try (MrtReader reader = reader()) {
+			MrtRoute route = reader.next();
+			assertEquals(AtriumIpPrefix.valueOf("192.168.0.0/16"), route.prefix());
+			assertEquals(AtriumIpAddress.valueOf("10.0.0.1"), route.peer());
+			assertEquals(AtriumIpAddress.valueOf("10.0.0.1"), route.nextHop());
+			assertEquals(0, route.entry());
+			assertFalse(route.isWithdrawn());
+			assertEquals(TIMESTAMP * 1000000L, route.timestamp());
+			assertEquals(0, route.origin());
+			assertTrue(Arrays.equals(new long[] { 65001, 3356 }, route.asPath()));
+			assertEquals(50, route.med());
+			assertEquals(MrtRoute.UNKNOWN, route.localPref());
+
+			route = reader.next();
+			assertEquals(AtriumIpAddress.valueOf("10.0.0.2"), route.peer());
+			assertEquals(AtriumIpAddress.valueOf("10.0.0.2"), route.nextHop());
+			assertEquals(1, route.entry());
+
+			assertNull(reader.next());
+			assertEquals(3, reader.getRecordCount());
+			assertEquals(1, reader.getSkippedCount());
+			assertEquals(reader.size(), reader.getPosition());
+		}
+	}
+
+	/**
+	 * Tests that the withdrawals and announcements of the updates are read,
+	 * with 2 and 4-byte AS numbers.
+	 */
+	@Test
+	public void testUpdates() throws IOException {
+		record(MrtReader.BGP4MP, MrtReader.BGP4MP_MESSAGE, update(false, 2));
+		// A keepalive is skipped
+		record(MrtReader.BGP4MP, MrtReader.BGP4MP_MESSAGE, update(false, 4));
+		ByteArrayOutputStream et = new ByteArrayOutputStream();
+		new DataOutputStream(et).writeInt(250000);
+		et.write(update(true, 2));
+		record(MrtReader.BGP4MP_ET, MrtReader.BGP4MP_MESSAGE_AS4, et.toByteArray());
+
+		try (MrtReader reader = reader()) {
+			for (int i = 0; i < 2; i++) {
+				long timestamp = TIMESTAMP * 1000000L + (i == 0 ? 0 : 250000);
+				MrtRoute route = reader.next();
+				assertTrue(route.isWithdrawn());
+				assertEquals(AtriumIpPrefix.valueOf("192.168.0.0/16"), route.prefix());
+				assertEquals(AtriumIpAddress.valueOf("10.0.0.1"), route.peer());
+				assertEquals(timestamp, route.timestamp());
+
+				route = reader.next();
+				assertFalse(route.isWithdrawn());
+				assertEquals(AtriumIpPrefix.valueOf("10.1.0.0/16"), route.prefix());
+				assertEquals(AtriumIpAddress.valueOf("10.0.0.9"), route.nextHop());
+				assertEquals(-1, route.entry());
+				assertTrue(Arrays.equals(new long[] { 65001, 174, 3356 }, route.asPath()));
+
+				route = reader.next();
+				assertEquals(AtriumIpPrefix.valueOf("10.2.2.0/24"), route.prefix());
+			}
+			assertNull(reader.next());
+			assertEquals(1, reader.getSkippedCount());
+		}
+	}
+
+	/**
+	 * Tests that a truncated record is reported.
+	 */
+	@Test(expected = IOException.class)
+	public void testTruncated() throws IOException {
+		record(MrtReader.TABLE_DUMP_V2, MrtReader.PEER_INDEX_TABLE, peerIndexTable());
+		byte[] rib = rib("10.0.0.1", "10.0.0.2");
+		record(MrtReader.TABLE_DUMP_V2, MrtReader.RIB_IPV4_UNICAST, Arrays.copyOf(rib, rib.length - 4));
+
+		try (MrtReader reader = reader()) {
+			while (reader.next() != null) {
+				continue;
+			}
+		}
+	}
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2016 Wipro Ltd. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.atrium.benchmarks.pcap;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.opendaylight.atrium.atriumutil.tcp.AtriumTCPDecoder;
+
+/**
+ * Tests reading the frames of pcap and snoop captures.
+ */
+public class CaptureReaderTest {
+
+	private static final int TIMESTAMP = 1451606400; // 2016-01-01
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Path file;
+	private ByteBuffer bytes;
+
+	@Before
+	public void setUp() throws IOException {
+		file = folder.newFile("capture").toPath();
+		bytes = ByteBuffer.allocate(4096);
+	}
+
+	private CaptureReader reader() throws IOException {
+		Files.write(file, Arrays.copyOf(bytes.array(), bytes.position()));
+		return new CaptureReader(file);
+	}
+
+	private static byte[] frame(int length) {
+		byte[] frame = new byte[length];
+		for (int i = 0; i < length; i++) {
+			frame[i] = (byte) (length + i);
+		}
+		return frame;
+	}
+
+	private void pcapHeader(ByteOrder order, int magic, int linkType) {
+		bytes.order(order);
+		bytes.putInt(magic);
+		bytes.putShort((short) 2);
+		bytes.putShort((short) 4);
+		bytes.putInt(0); // Time zone
+		bytes.putInt(0); // Accuracy
+		bytes.putInt(65535); // Snap length
+		bytes.putInt(linkType);
+	}
+
+	private void pcapRecord(int fraction, byte[] frame, int originalLength) {
+		bytes.putInt(TIMESTAMP);
+		bytes.putInt(fraction);
+		bytes.putInt(frame.length);
+		bytes.putInt(originalLength);
+		bytes.put(frame);
+	}
+
+	private void snoopRecord(int micros, byte[] frame) {
+		int recordLength = CaptureReader.SNOOP_RECORD_HEADER_LENGTH + (frame.length + 3) / 4 * 4;
+		bytes.putInt(frame.length);
+		bytes.putInt(frame.length);
+		bytes.putInt(recordLength);
+		bytes.putInt(0); // Cumulative drops
+		bytes.putInt(TIMESTAMP);
+		bytes.putInt(micros);
+		bytes.put(frame);
+		bytes.position(bytes.position() + recordLength - CaptureReader.SNOOP_RECORD_HEADER_LENGTH - frame.length);
+	}
+
+	private static void assertFrame(CapturedFrame frame, long micros, byte[] data) {
+		assertNotNull(frame);
+		assertEquals(TIMESTAMP * 1000000L + micros, frame.timestamp());
+		assertArrayEquals(data, frame.data());
+	}
+
+	/**
+	 * Tests reading a little-endian capture with microsecond timestamps.
+	 */
+	@Test
+	public void testPcap() throws IOException {
+		pcapHeader(ByteOrder.LITTLE_ENDIAN, CaptureReader.PCAP_MAGIC, CaptureReader.LINKTYPE_ETHERNET);
+		pcapRecord(10, frame(60), 60);
+		pcapRecord(20, frame(64), 1514);
+
+		try (CaptureReader reader = reader()) {
+			assertEquals(CaptureReader.Format.PCAP, reader.getFormat());
+			assertFrame(reader.next(), 10, frame(60));
+			CapturedFrame truncated = reader.next();
+			assertFrame(truncated, 20, frame(64));
+			assertTrue(truncated.isTruncated());
+			assertEquals(1514, truncated.originalLength());
+			assertNull(reader.next());
+			assertEquals(2, reader.getFrameCount());
+			assertEquals(1, reader.getTruncatedCount());
+			assertEquals(reader.size(), reader.getPosition());
+		}
+	}
+
+	/**
+	 * Tests reading a big-endian capture with nanosecond timestamps.
+	 */
+	@Test
+	public void testPcapNanos() throws IOException {
+		pcapHeader(ByteOrder.BIG_ENDIAN, CaptureReader.PCAP_NANOS_MAGIC, CaptureReader.LINKTYPE_ETHERNET);
+		pcapRecord(5000, frame(42), 42);
+
+		try (CaptureReader reader = reader()) {
+			assertEquals(CaptureReader.Format.PCAP_NANOS, reader.getFormat());
+			assertFrame(reader.next(), 5, frame(42));
+			assertNull(reader.next());
+		}
+	}
+
+	/**
+	 * Tests reading a snoop capture, whose records are padded.
+	 */
+	@Test
+	public void testSnoop() throws IOException {
+		bytes.put(AtriumTCPDecoder.SNOOP_HEADER_BYTES);
+		bytes.putInt(CaptureReader.SNOOP_VERSION);
+		bytes.putInt(AtriumTCPDecoder.DATA_LINK_TYPE_ETHERNET);
+		snoopRecord(1, frame(42));
+		snoopRecord(2, frame(60));
+
+		try (CaptureReader reader = reader()) {
+			assertEquals(CaptureReader.Format.SNOOP, reader.getFormat());
+			assertFrame(reader.next(), 1, frame(42));
+			assertFrame(reader.next(), 2, frame(60));
+			assertNull(reader.next());
+			assertEquals(0, reader.getTruncatedCount());
+		}
+	}
+
+	/**
+	 * Tests that a capture of another link is rejected.
+	 */
+	@Test(expected = IOException.class)
+	public void testNotEthernet() throws IOException {
+		pcapHeader(ByteOrder.LITTLE_ENDIAN, CaptureReader.PCAP_MAGIC, 101); // Raw IP
+		reader().close();
+	}
+
+	/**
+	 * Tests that a record cut short by the end of the file is reported.
+	 */
+	@Test
+	public void testTruncatedFile() throws IOException {
+		pcapHeader(ByteOrder.LITTLE_ENDIAN, CaptureReader.PCAP_MAGIC, CaptureReader.LINKTYPE_ETHERNET);
+		pcapRecord(10, frame(60), 60);
+		bytes.position(bytes.position() - 1);
+
+		try (CaptureReader reader = reader()) {
+			reader.next();
+			fail("Truncated record read");
+		} catch (IOException e) {
+			assertTrue(e.getMessage().startsWith("Malformed PCAP record"));
+		}
+	}
+}
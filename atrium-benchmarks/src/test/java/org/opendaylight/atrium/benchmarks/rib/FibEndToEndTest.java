@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2016 Wipro Ltd. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.atrium.benchmarks.rib;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.opendaylight.atrium.benchmarks.fib.SimulatedFlowObjectiveSwitch;
+import org.opendaylight.atrium.benchmarks.fib.SimulatedFlowObjectiveSwitch.Rpc;
+import org.opendaylight.atrium.util.AtriumIpAddress;
+import org.opendaylight.atrium.util.AtriumIpPrefix;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.yang.types.rev100924.MacAddress;
+
+/**
+ * Tests that the routes written to the local RIB end up as the right route
+ * flows on the switch, through the RIB manager and the router, and that the
+ * latency up to the switch is measured.
+ */
+public class FibEndToEndTest {
+
+	private static final int ROUTES = 20000;
+	private static final int NEXT_HOPS = 8;
+	private static final int BATCH = 1000;
+	private static final int FIRST_PREFIX = 0x0a000000; // 10.0.0.0
+	private static final int FIRST_NEXT_HOP = 0xc0a80001; // 192.168.0.1
+
+	private RibUnderTest rib;
+	private SimulatedFlowObjectiveSwitch flowObjectives;
+	private RouterUnderTest router;
+
+	// The next hop each prefix of the local RIB should be forwarded to
+	private final Map<AtriumIpPrefix, AtriumIpAddress> expected = new HashMap<>();
+
+	@Before
+	public void setUp() {
+		rib = new RibUnderTest();
+		flowObjectives = new SimulatedFlowObjectiveSwitch();
+		flowObjectives.setLatency(Rpc.FORWARD, 5, TimeUnit.MICROSECONDS);
+		router = new RouterUnderTest(rib, flowObjectives);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		router.close();
+		flowObjectives.close();
+		rib.close();
+	}
+
+	private static AtriumIpPrefix prefix(int index) {
+		return AtriumIpPrefix.valueOf(FIRST_PREFIX + (index << 8), 24);
+	}
+
+	private static AtriumIpAddress nextHop(int index) {
+		return AtriumIpAddress.valueOf(FIRST_NEXT_HOP + index % NEXT_HOPS);
+	}
+
+	private void publish(List<RouteUpdates.Change> changes) {
+		for (int i = 0; i < changes.size(); i += BATCH) {
+			rib.publish(changes.subList(i, Math.min(i + BATCH, changes.size())));
+		}
+	}
+
+	private Map<String, Object> load() throws InterruptedException {
+		long start = System.nanoTime();
+		rib.startPhase(ROUTES);
+		List<RouteUpdates.Change> changes = new ArrayList<>(ROUTES);
+		for (int i = 0; i < ROUTES; i++) {
+			changes.add(RouteUpdates.write(prefix(i), nextHop(i)));
+			expected.put(prefix(i), nextHop(i));
+		}
+		publish(changes);
+		return rib.endPhase(start);
+	}
+
+	/**
+	 * Checks that the switch forwards each prefix of the local RIB to its
+	 * next hop, and nothing else.
+	 */
+	private void assertFib() throws InterruptedException {
+		flowObjectives.sync();
+		Map<AtriumIpPrefix, Set<MacAddress>> installed = flowObjectives.getRouteDestinations();
+		assertEquals(expected.size(), installed.size());
+		for (Map.Entry<AtriumIpPrefix, AtriumIpAddress> route : expected.entrySet()) {
+			MacAddress mac = new MacAddress(rib.getHostService().resolve(route.getValue()).join().toString());
+			assertEquals(route.getKey().toString(), Collections.singleton(mac), installed.get(route.getKey()));
+		}
+	}
+
+	/**
+	 * Tests that a full table is installed and its latency measured.
+	 */
+	@Test
+	public void testLoad() throws InterruptedException {
+		Map<String, Object> phase = load();
+
+		assertEquals(true, phase.get("drained"));
+		assertEquals((long) ROUTES, phase.get("appliedUpdates"));
+		assertTrue((Long) phase.get("p99LatencyMicros") > 0);
+		assertTrue((Long) phase.get("maxLatencyMicros") >= (Long) phase.get("p50LatencyMicros"));
+		assertFib();
+		assertEquals(0, flowObjectives.getRejectedCount(Rpc.FORWARD));
+		assertEquals(0, flowObjectives.getRejectedCount(Rpc.NEXT));
+	}
+
+	/**
+	 * Tests that the next hop changes and the withdrawals reach the switch.
+	 */
+	@Test
+	public void testChurn() throws InterruptedException {
+		load();
+
+		long start = System.nanoTime();
+		List<RouteUpdates.Change> changes = new ArrayList<>();
+		for (int i = 0; i < ROUTES; i += 3) {
+			changes.add(RouteUpdates.write(prefix(i), nextHop(i + 1)));
+			expected.put(prefix(i), nextHop(i + 1));
+			changes.add(RouteUpdates.delete(prefix(i + 1), nextHop(i + 1)));
+			expected.remove(prefix(i + 1));
+		}
+		rib.startPhase(changes.size());
+		publish(changes);
+		Map<String, Object> phase = rib.endPhase(start);
+
+		assertEquals(true, phase.get("drained"));
+		assertEquals((long) changes.size(), phase.get("appliedUpdates"));
+		assertFib();
+	}
+
+	/**
+	 * Tests that the route flows the switch fails to install are missing from
+	 * it: the router does not retry them.
+	 */
+	@Test
+	public void testForwardFailures() throws InterruptedException {
+		flowObjectives.failNext(Rpc.FORWARD, 10);
+		load();
+
+		flowObjectives.sync();
+		assertEquals(10, flowObjectives.getFailureCount(Rpc.FORWARD));
+		assertEquals(ROUTES - 10, flowObjectives.getRouteFlows().size());
+	}
+}
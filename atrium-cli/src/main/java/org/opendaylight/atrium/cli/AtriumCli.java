@@ -7,6 +7,7 @@
  */
 package org.opendaylight.atrium.cli;
 
+import org.opendaylight.atrium.routingservice.api.RoutingService;
 import org.opendaylight.controller.md.sal.binding.api.DataBroker;
 import org.opendaylight.controller.sal.binding.api.BindingAwareBroker.ConsumerContext;
 import org.opendaylight.controller.sal.binding.api.BindingAwareConsumer;
@@ -16,16 +17,25 @@ import org.slf4j.LoggerFactory;
 public class AtriumCli implements BindingAwareConsumer, AutoCloseable {
 
 	private static DataBroker dataBroker;
+	private static RoutingService routingService;
 	private static final Logger LOG = LoggerFactory.getLogger(AtriumCli.class);
 
-	public AtriumCli(DataBroker db) {
+	public AtriumCli(DataBroker db, RoutingService rs) {
 		dataBroker = db;
+		routingService = rs;
 	}
 
 	public static DataBroker getDataBroker() {
 		return dataBroker;
 	}
 
+	/**
+	 * @return the routing service, null if the CLI is not configured with it
+	 */
+	public static RoutingService getRoutingService() {
+		return routingService;
+	}
+
 	@Override
 	public void close() throws Exception {
 		// TODO Auto-generated method stub
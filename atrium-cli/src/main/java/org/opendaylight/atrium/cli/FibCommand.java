@@ -7,58 +7,53 @@
  */
 package org.opendaylight.atrium.cli;
 
-import java.util.concurrent.ExecutionException;
+import java.util.Collection;
+import java.util.Map;
 
 import org.apache.karaf.shell.commands.Command;
-import org.apache.karaf.shell.console.OsgiCommandSupport;
-import org.opendaylight.controller.md.sal.binding.api.DataBroker;
-import org.opendaylight.controller.md.sal.binding.api.ReadOnlyTransaction;
-import org.opendaylight.controller.md.sal.common.api.data.LogicalDatastoreType;
-import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev100924.IpAddress;
-//import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.yang.types.rev130715.MacAddress;
-import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.yang.types.rev100924.MacAddress;
-import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.routingservice.api.rev150725.FibEntries;
-import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.routingservice.api.rev150725.fibentrygrouping.FibEntry;
-import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.routingservice.api.rev150725.fibentrygrouping.FibEntry.Type;
-import org.opendaylight.yangtools.yang.binding.InstanceIdentifier;
-
-import com.google.common.base.Optional;
-import com.google.common.util.concurrent.ListenableFuture;
+import org.opendaylight.atrium.routingservice.api.AtriumFibEntry;
+import org.opendaylight.atrium.routingservice.api.RouteEntry;
+import org.opendaylight.atrium.routingservice.api.RoutingService;
+import org.opendaylight.atrium.util.AtriumIpAddress;
+import org.opendaylight.atrium.util.AtriumIpPrefix;
+import org.opendaylight.atrium.util.AtriumMacAddress;
 
 @Command(scope = "atrium", name = "fib", description = "Display fib information")
-public class FibCommand extends OsgiCommandSupport {
+public class FibCommand extends RouteTableCommand<AtriumFibEntry> {
 
 	@Override
-	protected Object doExecute() throws Exception {
-
-		DataBroker dataBroker = AtriumCli.getDataBroker();
-		ReadOnlyTransaction readOnlyTransaction = dataBroker.newReadOnlyTransaction();
-		InstanceIdentifier<FibEntries> instanceIdentifier = InstanceIdentifier.builder(FibEntries.class).build();
+	protected Iterable<AtriumFibEntry> entries(RoutingService routingService, AtriumIpPrefix prefix) {
+		return routingService.getFib4(prefix);
+	}
 
-		FibEntries fibEntries = null;
-		try {
-			ListenableFuture<Optional<FibEntries>> lfONT;
-			lfONT = readOnlyTransaction.read(LogicalDatastoreType.CONFIGURATION, instanceIdentifier);
-			Optional<FibEntries> oNT = lfONT.get();
-			fibEntries = oNT.get();
-		} catch (InterruptedException e) {
-			e.printStackTrace();
-		} catch (ExecutionException e) {
-			e.printStackTrace();
-		} finally {
-			readOnlyTransaction.close();
+	@Override
+	protected AtriumFibEntry lookup(RoutingService routingService, AtriumIpAddress address) {
+		RouteEntry route = routingService.getRoute4(address);
+		if (route == null) {
+			return null;
 		}
+		for (AtriumFibEntry entry : routingService.getFib4(route.prefix())) {
+			// The prefix comes first, unless it has no FIB entry
+			return entry.prefix().equals(route.prefix()) ? entry : null;
+		}
+		return null;
+	}
 
-		for (FibEntry fibEntry : fibEntries.getFibEntry()) {
-			String prefix = fibEntry.getPrefix();
-			Type type = fibEntry.getType();
-			IpAddress ipAddress = fibEntry.getNextHopIp();
-			MacAddress macAddress = fibEntry.getNextHopMac();
+	@Override
+	protected AtriumIpPrefix prefixOf(AtriumFibEntry entry) {
+		return entry.prefix();
+	}
 
-			System.out.println("Type : " + type + "\tNext Hop Ip : " + ipAddress.getIpv4Address().getValue()
-					+ "\tPrefix : " + prefix + "\tNext Hop Mac : " + macAddress);
-		}
+	@Override
+	protected Collection<AtriumIpAddress> nextHopsOf(AtriumFibEntry entry) {
+		return entry.nextHops().keySet();
+	}
 
-		return null;
+	@Override
+	protected void format(AtriumFibEntry entry, StringBuilder line) {
+		line.append("Prefix : ").append(entry.prefix()).append("\tNext Hops :");
+		for (Map.Entry<AtriumIpAddress, AtriumMacAddress> nextHop : entry.nextHops().entrySet()) {
+			line.append(' ').append(nextHop.getKey()).append(" (").append(nextHop.getValue()).append(')');
+		}
 	}
 }
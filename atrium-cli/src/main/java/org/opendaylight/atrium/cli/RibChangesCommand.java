@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2016 Wipro Ltd. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.atrium.cli;
+
+import org.apache.karaf.shell.commands.Argument;
+import org.apache.karaf.shell.commands.Command;
+import org.apache.karaf.shell.commands.Option;
+import org.apache.karaf.shell.console.OsgiCommandSupport;
+import org.opendaylight.atrium.routingservice.api.RibChange;
+import org.opendaylight.atrium.routingservice.api.RibChanges;
+import org.opendaylight.atrium.routingservice.api.RoutingService;
+import org.opendaylight.atrium.util.AtriumIpAddress;
+
+@Command(scope = "atrium", name = "rib-changes",
+		description = "Display the version of the RIB and the changes to the routes since a version")
+public class RibChangesCommand extends OsgiCommandSupport {
+
+	@Argument(index = 0, name = "version", description = "The version the changes are displayed from",
+			required = false, multiValued = false)
+	Long since;
+
+	@Option(name = "-l", aliases = "--limit", description = "Maximum number of changes displayed, 0 for all",
+			required = false, multiValued = false)
+	int limit = RouteTableCommand.DEFAULT_LIMIT;
+
+	@Override
+	protected Object doExecute() throws Exception {
+		RoutingService routingService = AtriumCli.getRoutingService();
+		if (routingService == null) {
+			System.out.println("Routing service not available");
+			return null;
+		}
+		if (since == null) {
+			System.out.println("RIB version " + routingService.getRibVersion());
+			return null;
+		}
+
+		RibChanges changes = routingService.changesSince(since);
+		System.out.println("RIB version " + changes.version());
+		if (changes.isSnapshot()) {
+			System.out.println("The changes since version " + since + " are no longer logged, "
+					+ changes.snapshot().size() + " routes in the RIB");
+			return null;
+		}
+		int printed = 0;
+		for (RibChange change : changes.changes()) {
+			if (limit > 0 && printed == limit) {
+				System.out.println("More changes follow, from version " + (change.version() - 1));
+				break;
+			}
+			StringBuilder line = new StringBuilder();
+			line.append(String.format("%-10d%-8s", change.version(), change.type())).append("Prefix : ")
+					.append(change.prefix());
+			if (change.route() != null) {
+				line.append("\tNext Hops :");
+				for (AtriumIpAddress nextHop : change.route().nextHops()) {
+					line.append(' ').append(nextHop);
+				}
+			}
+			System.out.println(line);
+			printed++;
+		}
+		return null;
+	}
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) 2016 Wipro Ltd. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.atrium.cli;
+
+import java.util.Collection;
+
+import org.apache.karaf.shell.commands.Command;
+import org.opendaylight.atrium.routingservice.api.RouteEntry;
+import org.opendaylight.atrium.routingservice.api.RoutingService;
+import org.opendaylight.atrium.util.AtriumIpAddress;
+import org.opendaylight.atrium.util.AtriumIpPrefix;
+
+@Command(scope = "atrium", name = "rib", description = "Display rib information")
+public class RibCommand extends RouteTableCommand<RouteEntry> {
+
+	@Override
+	protected Iterable<RouteEntry> entries(RoutingService routingService, AtriumIpPrefix prefix) {
+		return routingService.getRoutes4(prefix);
+	}
+
+	@Override
+	protected RouteEntry lookup(RoutingService routingService, AtriumIpAddress address) {
+		return routingService.getRoute4(address);
+	}
+
+	@Override
+	protected AtriumIpPrefix prefixOf(RouteEntry entry) {
+		return entry.prefix();
+	}
+
+	@Override
+	protected Collection<AtriumIpAddress> nextHopsOf(RouteEntry entry) {
+		return entry.nextHops();
+	}
+
+	@Override
+	protected void format(RouteEntry entry, StringBuilder line) {
+		line.append("Prefix : ").append(entry.prefix()).append("\tNext Hops :");
+		for (AtriumIpAddress nextHop : entry.nextHops()) {
+			line.append(' ').append(nextHop);
+		}
+	}
+}
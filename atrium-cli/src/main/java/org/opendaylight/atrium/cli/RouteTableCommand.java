@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2016 Wipro Ltd. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.atrium.cli;
+
+import java.io.PrintStream;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.karaf.shell.commands.Option;
+import org.apache.karaf.shell.console.OsgiCommandSupport;
+import org.opendaylight.atrium.routingservice.api.RoutingService;
+import org.opendaylight.atrium.util.AtriumIpAddress;
+import org.opendaylight.atrium.util.AtriumIpPrefix;
+
+/**
+ * Lists the entries of a route table of the routing service, read from memory
+ * as they are printed so that the shell stays responsive whatever the size of
+ * the table. The entries can be filtered by prefix and next hop, paged, looked
+ * up by address or counted by prefix length and next hop.
+ *
+ * @param <E>
+ *            the type of the entries of the table
+ */
+public abstract class RouteTableCommand<E> extends OsgiCommandSupport {
+
+	static final int DEFAULT_LIMIT = 100;
+
+	@Option(name = "-p", aliases = "--prefix", description = "Only the entries within this prefix", required = false,
+			multiValued = false)
+	String prefix;
+
+	@Option(name = "-n", aliases = "--next-hop", description = "Only the entries through this next hop",
+			required = false, multiValued = false)
+	String nextHop;
+
+	@Option(name = "-a", aliases = "--address", description = "The entry of the longest prefix matching this address",
+			required = false, multiValued = false)
+	String address;
+
+	@Option(name = "-c", aliases = "--count", description = "Count the entries by prefix length and next hop",
+			required = false, multiValued = false)
+	boolean count;
+
+	@Option(name = "-o", aliases = "--offset", description = "Number of entries skipped", required = false,
+			multiValued = false)
+	int offset = 0;
+
+	@Option(name = "-l", aliases = "--limit", description = "Maximum number of entries displayed, 0 for all",
+			required = false, multiValued = false)
+	int limit = DEFAULT_LIMIT;
+
+	/**
+	 * @return the entries within a prefix, null for all the entries
+	 */
+	protected abstract Iterable<E> entries(RoutingService routingService, AtriumIpPrefix prefix);
+
+	/**
+	 * @return the entry of the longest prefix matching an address, or null
+	 */
+	protected abstract E lookup(RoutingService routingService, AtriumIpAddress address);
+
+	protected abstract AtriumIpPrefix prefixOf(E entry);
+
+	protected abstract Collection<AtriumIpAddress> nextHopsOf(E entry);
+
+	/**
+	 * Appends the description of an entry, on one line.
+	 */
+	protected abstract void format(E entry, StringBuilder line);
+
+	@Override
+	protected Object doExecute() throws Exception {
+		PrintStream out = System.out;
+		RoutingService routingService = AtriumCli.getRoutingService();
+		if (routingService == null) {
+			out.println("Routing service not available");
+			return null;
+		}
+		AtriumIpAddress nextHopFilter = null;
+		try {
+			if (address != null) {
+				E entry = lookup(routingService, AtriumIpAddress.valueOf(address));
+				if (entry == null) {
+					out.println("No route to " + address);
+				} else {
+					print(out, entry, new StringBuilder());
+				}
+				return null;
+			}
+			nextHopFilter = nextHop == null ? null : AtriumIpAddress.valueOf(nextHop);
+		} catch (IllegalArgumentException e) {
+			out.println(e.getMessage());
+			return null;
+		}
+		AtriumIpPrefix prefixFilter;
+		try {
+			prefixFilter = prefix == null ? null : AtriumIpPrefix.valueOf(prefix);
+		} catch (IllegalArgumentException e) {
+			out.println(e.getMessage());
+			return null;
+		}
+
+		Iterator<E> entries = entries(routingService, prefixFilter).iterator();
+		if (count) {
+			count(out, entries, nextHopFilter);
+			return null;
+		}
+
+		StringBuilder line = new StringBuilder();
+		int skipped = 0;
+		int printed = 0;
+		while (entries.hasNext()) {
+			E entry = entries.next();
+			if (nextHopFilter != null && !nextHopsOf(entry).contains(nextHopFilter)) {
+				continue;
+			}
+			if (skipped < offset) {
+				skipped++;
+				continue;
+			}
+			if (limit > 0 && printed == limit) {
+				out.println("More entries follow, use --offset " + (offset + printed) + " to display them");
+				break;
+			}
+			print(out, entry, line);
+			printed++;
+		}
+		return null;
+	}
+
+	private void print(PrintStream out, E entry, StringBuilder line) {
+		line.setLength(0);
+		format(entry, line);
+		out.println(line);
+	}
+
+	private void count(PrintStream out, Iterator<E> entries, AtriumIpAddress nextHopFilter) {
+		long total = 0;
+		Map<Integer, Long> byLength = new TreeMap<>();
+		Map<AtriumIpAddress, Long> byNextHop = new TreeMap<>();
+		while (entries.hasNext()) {
+			E entry = entries.next();
+			Collection<AtriumIpAddress> nextHops = nextHopsOf(entry);
+			if (nextHopFilter != null && !nextHops.contains(nextHopFilter)) {
+				continue;
+			}
+			total++;
+			byLength.merge(prefixOf(entry).prefixLength(), 1L, Long::sum);
+			for (AtriumIpAddress nextHop : nextHops) {
+				byNextHop.merge(nextHop, 1L, Long::sum);
+			}
+		}
+		out.println("Total : " + total);
+		out.println("By prefix length :");
+		byLength.forEach((length, n) -> out.println(String.format("  /%-16d%d", length, n)));
+		out.println("By next hop :");
+		byNextHop.forEach((nextHop, n) -> out.println(String.format("  %-17s%d", nextHop, n)));
+	}
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2016 Wipro Ltd. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.atrium.cli;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+
+import org.apache.karaf.shell.commands.Command;
+import org.apache.karaf.shell.commands.Option;
+import org.apache.karaf.shell.console.OsgiCommandSupport;
+import org.opendaylight.atrium.atriumutil.metrics.Histogram;
+import org.opendaylight.atrium.routingservice.api.RouteTrace;
+import org.opendaylight.atrium.routingservice.api.RouteTracer;
+import org.opendaylight.atrium.routingservice.api.RoutingService;
+
+@Command(scope = "atrium", name = "route-trace",
+		description = "Display the time spent by sampled route updates in each stage of the pipeline")
+public class RouteTraceCommand extends OsgiCommandSupport {
+
+	@Option(name = "-s", aliases = "--sample-rate",
+			description = "Trace one route update out of this number, 0 to disable tracing", required = false,
+			multiValued = false)
+	Integer sampleRate;
+
+	@Option(name = "-n", aliases = "--slowest", description = "Number of slowest traces to display", required = false,
+			multiValued = false)
+	int slowest = 10;
+
+	@Option(name = "-c", aliases = "--clear", description = "Clear the slowest traces", required = false,
+			multiValued = false)
+	boolean clear;
+
+	@Override
+	protected Object doExecute() throws Exception {
+		RoutingService routingService = AtriumCli.getRoutingService();
+		if (routingService == null) {
+			System.out.println("Routing service not available");
+			return null;
+		}
+		RouteTracer tracer = routingService.getRouteTracer();
+		if (sampleRate != null) {
+			tracer.setSampleRate(sampleRate);
+		}
+		if (clear) {
+			tracer.clear();
+		}
+		if (tracer.getSampleRate() == 0) {
+			System.out.println("Route tracing disabled");
+		} else {
+			System.out.println("Tracing 1 route update out of " + tracer.getSampleRate());
+		}
+
+		System.out.println(String.format("%-14s%10s%10s%10s%10s%10s", "Stage (us)", "count", "mean", "p50", "p99",
+				"max"));
+		for (RouteTrace.Stage stage : RouteTrace.Stage.values()) {
+			Histogram histogram = tracer.getHistogram(stage);
+			if (histogram != null) {
+				print(stage.label(), histogram);
+			}
+		}
+		print("total", tracer.getTotalHistogram());
+
+		List<RouteTrace> traces = tracer.getSlowest();
+		if (!traces.isEmpty()) {
+			System.out.println();
+			System.out.println("Slowest traces:");
+			SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
+			for (RouteTrace trace : traces.subList(0, Math.min(slowest, traces.size()))) {
+				System.out.println(format.format(new Date(trace.startedAt())) + "  " + trace);
+			}
+		}
+		return null;
+	}
+
+	private static void print(String name, Histogram histogram) {
+		System.out.println(String.format("%-14s%10d%10d%10d%10d%10d", name, histogram.getCount(), histogram.getMean(),
+				histogram.getValueAtPercentile(50), histogram.getValueAtPercentile(99), histogram.getMax()));
+	}
+}
@@ -32,7 +32,7 @@ public class AtriumCliImplModule extends
 	@Override
 	public java.lang.AutoCloseable createInstance() {
 		DataBroker dataBroker = getDataBrokerDependency();
-		AtriumCli atriumCli = new AtriumCli(dataBroker);
+		AtriumCli atriumCli = new AtriumCli(dataBroker, getRoutingserviceDependency());
 		getBrokerDependency().registerConsumer(atriumCli);
 		return atriumCli;
 	}
@@ -13,25 +13,34 @@ import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.opendaylight.atrium.atriumutil.ActionData;
 import org.opendaylight.atrium.atriumutil.ActionUtils;
 import org.opendaylight.atrium.atriumutil.AtriumConstants;
 import org.opendaylight.atrium.atriumutil.AtriumUtils;
+import org.opendaylight.atrium.atriumutil.metrics.Counter;
+import org.opendaylight.atrium.atriumutil.metrics.Histogram;
+import org.opendaylight.atrium.atriumutil.metrics.MetricsExporter;
+import org.opendaylight.atrium.atriumutil.metrics.MetricsRegistry;
 import org.opendaylight.atrium.routingservice.api.AtriumFibEntry;
 import org.opendaylight.atrium.routingservice.api.AtriumFibUpdate;
 import org.opendaylight.atrium.routingservice.api.FibListener;
+import org.opendaylight.atrium.routingservice.api.RouteTrace;
 import org.opendaylight.atrium.routingservice.api.RoutingService;
 import org.opendaylight.atrium.routingservice.config.api.RoutingConfigService;
 import org.opendaylight.atrium.util.AtriumInterface;
 import org.opendaylight.atrium.util.AtriumInterfaceIpAddress;
 import org.opendaylight.atrium.util.AtriumIpAddress;
 import org.opendaylight.atrium.util.AtriumIpPrefix;
+import org.opendaylight.atrium.util.AtriumMacAddress;
 import org.opendaylight.atrium.util.AtriumVlanId;
 import org.opendaylight.controller.md.sal.binding.api.DataBroker;
 import org.opendaylight.controller.md.sal.binding.api.DataChangeListener;
@@ -58,8 +67,11 @@ import org.opendaylight.yang.gen.v1.urn.opendaylight.packet.service.rev130709.Pa
 import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.bgpconfig.api.rev150725.BgpSpeakers;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.bgpconfig.api.rev150725.bgpspeakers.BgpSpeaker;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.bgpconfig.api.rev150725.bgpspeakers.bgpspeaker.InterfaceAddresses;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.didm.drivers.atrium.rev150211.FilterInput;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.didm.drivers.atrium.rev150211.FilterInputBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.didm.drivers.atrium.rev150211.ForwardInput;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.didm.drivers.atrium.rev150211.ForwardInputBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.didm.drivers.atrium.rev150211.NextInput;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.didm.drivers.atrium.rev150211.NextInputBuilder;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.didm.drivers.atrium.rev150211.Objective.Operation;
 //import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.didm.drivers.openflow.rev150211.OpenflowFeatureService;
@@ -80,9 +92,13 @@ import org.slf4j.LoggerFactory;
 
 import com.google.common.collect.ConcurrentHashMultiset;
 import com.google.common.collect.HashMultimap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Multiset;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 
 // TODO: Auto-generated Javadoc
 /**
@@ -114,6 +130,13 @@ public class Bgprouter implements BindingAwareConsumer, AutoCloseable {
 	// Mapping from next hop IP to next hop object containing group info
 	private final Map<AtriumIpAddress, Integer> nextHops = Maps.newHashMap();
 
+	// Hashed next objectives shared by the prefixes with the same equal-cost
+	// next hops, keyed by the next hop addresses
+	private final Map<Set<AtriumIpAddress>, HashedNextGroup> hashedGroups = new HashMap<>();
+
+	// Mapping from multipath prefix to the key of its hashed next objective
+	private final Map<AtriumIpPrefix, Set<AtriumIpAddress>> prefixToGroup = new HashMap<>();
+
 	// Stores FIB updates that are waiting for groups to be set up
 	private final Multimap<AtriumNextHopGroupKey, AtriumFibEntry> pendingUpdates = HashMultimap.create();
 
@@ -153,6 +176,27 @@ public class Bgprouter implements BindingAwareConsumer, AutoCloseable {
 	// NextObj nextId generator
 	NextIdGenerator nxtGenerator = new NextIdGenerator();
 
+	// Time from the detection of a next hop move, on packet-in, to the
+	// rewrite of its next objective
+	private final LatencyRecorder nextHopMoveLatency = new LatencyRecorder();
+
+	// Checks the route flows of the switch in the background, null if
+	// disabled
+	private FibAuditor auditor;
+	private long auditInterval;
+	private Long auditRangesPerInterval;
+
+	// Metrics of the flow programming, exported over JMX and to the
+	// operational datastore
+	private final MetricsRegistry metrics = new MetricsRegistry("bgprouter");
+	private final MetricsExporter metricsExporter;
+	private final Counter flowRpcs = metrics.counter("flow-rpcs");
+	private final Counter flowRpcFailures = metrics.counter("flow-rpc-failures");
+	private final Histogram flowRpcLatency = metrics.histogram("flow-rpc-latency-us");
+	private final AtomicLong flowRpcsInFlight = new AtomicLong();
+	private final Counter commitFailures = metrics.counter("datastore-commit-failures");
+	private final Histogram commitLatency = metrics.histogram("datastore-commit-latency-us");
+
 	/*
 	 * (non-Javadoc)
 	 *
@@ -185,7 +229,12 @@ public class Bgprouter implements BindingAwareConsumer, AutoCloseable {
 		this.configService = routingConfigService;
 		this.packetService = packetService;
 		this.flowObjectivesService = flowObjectives;
-
+		this.metricsExporter = new MetricsExporter(metrics, dataBroker);
+		metrics.gauge("flow-rpcs-in-flight", flowRpcsInFlight::get);
+		metrics.counter("fib-audit-mismatches", () -> auditor == null ? 0 : auditor.getMismatchCount());
+		metrics.counter("fib-resync-installs", () -> auditor == null ? 0 : auditor.getInstalledCount());
+		metrics.counter("fib-resync-removals", () -> auditor == null ? 0 : auditor.getRemovedCount());
+		metrics.counter("next-hop-moves", nextHopMoveLatency::getCount);
 	}
 
 	/**
@@ -200,6 +249,22 @@ public class Bgprouter implements BindingAwareConsumer, AutoCloseable {
 		LOG.info("BgprouterProvider Session Initiated");
 	}
 
+	/**
+	 * Sets the cost of the background audit of the route flows of the switch.
+	 * It must be set before the router is started.
+	 *
+	 * @param interval
+	 *            time in milliseconds between two audit ticks, null or zero
+	 *            disables the audit
+	 * @param rangesPerInterval
+	 *            number of prefix ranges audited at each tick, null keeps the
+	 *            default
+	 */
+	public void setAuditConfig(Long interval, Long rangesPerInterval) {
+		this.auditInterval = interval == null ? 0 : interval;
+		this.auditRangesPerInterval = rangesPerInterval;
+	}
+
 	/**
 	 * Start the BGP Router service
 	 *
@@ -210,6 +275,13 @@ public class Bgprouter implements BindingAwareConsumer, AutoCloseable {
 
 		getDeviceConfiguration(configService.getBgpSpeakers());
 
+		// Tracks the routes from the first one installed
+		if (auditInterval > 0 && deviceId != null) {
+			auditor = new FibAuditor(new FlowStatisticsInventory(dataBroker, deviceId), new InternalResync());
+			auditor.configure(auditInterval, auditRangesPerInterval);
+			auditor.start();
+		}
+
 		deviceListener = new DeviceListener(dataBroker, this);
 
 		routingService.addFibListener(new InternalFibListener());
@@ -229,6 +301,8 @@ public class Bgprouter implements BindingAwareConsumer, AutoCloseable {
 			connectivityManager.notifySwitchAvailable();
 		}
 
+		metricsExporter.start();
+
 		LOG.info("BGP Router started");
 	}
 
@@ -240,8 +314,12 @@ public class Bgprouter implements BindingAwareConsumer, AutoCloseable {
 	@Override
 	public void close() throws Exception {
 		LOG.info("Stopping BGP Router Application");
+		metricsExporter.close();
 		routingService.stop();
 		connectivityManager.stop();
+		if (auditor != null) {
+			auditor.close();
+		}
 		if (listenerRegistration != null) {
 			try {
 				listenerRegistration.close();
@@ -308,9 +386,25 @@ public class Bgprouter implements BindingAwareConsumer, AutoCloseable {
 	 */
 	private void updateFibEntry(Collection<AtriumFibUpdate> updates) {
 		Map<AtriumFibEntry, Integer> toInstall = new HashMap<>(updates.size());
+		List<AtriumFibEntry> multipath = new ArrayList<>();
+		List<Set<AtriumIpAddress>> released = new ArrayList<>();
+		Map<AtriumFibEntry, RouteTrace> traces = null;
 
 		for (AtriumFibUpdate update : updates) {
 			AtriumFibEntry entry = update.entry();
+			if (update.trace() != null) {
+				if (traces == null) {
+					traces = new HashMap<>();
+				}
+				traces.put(entry, update.trace());
+			}
+
+			if (entry.isMultipath()) {
+				multipath.add(entry);
+				writeFib(update);
+				continue;
+			}
+			leaveHashedGroup(entry.prefix(), released);
 
 			addNextHop(entry);
 
@@ -320,10 +414,270 @@ public class Bgprouter implements BindingAwareConsumer, AutoCloseable {
 			}
 
 			toInstall.put(update.entry(), nextId);
-			FibDataModelWriter.updateFib(update, dataBroker);
+			writeFib(update);
 		}
+		toInstall.putAll(updateHashedGroups(multipath, released));
 
-		installFlows(toInstall);
+		installFlows(toInstall, traces);
+		removeHashedGroups(released);
+	}
+
+	/**
+	 * Points multipath prefixes at the hashed next objectives of their next
+	 * hops, which are created as needed.
+	 * <p>
+	 * When all the prefixes of a group move to the same new next hops, as when
+	 * a peer goes down or comes up, the group is changed in place: its full
+	 * list of buckets is sent again as an add on the same next id, which the
+	 * driver is expected to apply as a group modify, and the flows pointing
+	 * at the group are kept. The same happens to a group whose next hop
+	 * changed MAC address.
+	 * </p>
+	 *
+	 * @param entries
+	 *            the multipath entries
+	 * @param released
+	 *            collects the groups no longer used, to remove once the flows
+	 *            no longer point at them
+	 * @return the flows to install with the id of their next objective
+	 */
+	private synchronized Map<AtriumFibEntry, Integer> updateHashedGroups(Collection<AtriumFibEntry> entries,
+			Collection<Set<AtriumIpAddress>> released) {
+		Map<AtriumFibEntry, Integer> toInstall = new HashMap<>(entries.size());
+		if (entries.isEmpty()) {
+			return toInstall;
+		}
+
+		// Prefixes of the batch leaving their group, by group
+		Map<Set<AtriumIpAddress>, List<AtriumFibEntry>> leaving = new HashMap<>();
+		for (AtriumFibEntry entry : entries) {
+			Set<AtriumIpAddress> oldKey = prefixToGroup.get(entry.prefix());
+			if (oldKey != null && !oldKey.equals(entry.nextHops().keySet())) {
+				leaving.computeIfAbsent(oldKey, k -> new ArrayList<>()).add(entry);
+			}
+		}
+		Set<AtriumFibEntry> movedInPlace = new HashSet<>();
+		for (Map.Entry<Set<AtriumIpAddress>, List<AtriumFibEntry>> moving : leaving.entrySet()) {
+			HashedNextGroup group = hashedGroups.get(moving.getKey());
+			Set<Set<AtriumIpAddress>> newKeys = new HashSet<>();
+			moving.getValue().forEach(entry -> newKeys.add(entry.nextHops().keySet()));
+			if (group == null || group.refCount() != moving.getValue().size() || newKeys.size() != 1) {
+				continue;
+			}
+			Set<AtriumIpAddress> newKey = ImmutableSet.copyOf(newKeys.iterator().next());
+			if (hashedGroups.containsKey(newKey)) {
+				continue;
+			}
+			modifyHashedGroup(group, moving.getValue().get(0).nextHops());
+			hashedGroups.remove(moving.getKey());
+			hashedGroups.put(newKey, group);
+			for (AtriumFibEntry entry : moving.getValue()) {
+				prefixToGroup.put(entry.prefix(), newKey);
+				movedInPlace.add(entry);
+			}
+		}
+
+		for (AtriumFibEntry entry : entries) {
+			if (movedInPlace.contains(entry)) {
+				continue;
+			}
+			Set<AtriumIpAddress> key = ImmutableSet.copyOf(entry.nextHops().keySet());
+			HashedNextGroup group = hashedGroups.get(key);
+			if (group == null) {
+				group = createHashedGroup(entry.nextHops());
+				if (group == null) {
+					continue;
+				}
+				hashedGroups.put(key, group);
+			} else if (!group.members().equals(entry.nextHops())) {
+				modifyHashedGroup(group, entry.nextHops());
+			}
+			Set<AtriumIpAddress> oldKey = prefixToGroup.get(entry.prefix());
+			if (key.equals(oldKey)) {
+				// The flow already points at the group
+				continue;
+			}
+			leaveHashedGroup(entry.prefix(), released);
+			group.retain();
+			prefixToGroup.put(entry.prefix(), key);
+			prefixToNextHop.remove(entry.prefix());
+			toInstall.put(entry, group.nextId());
+		}
+		return toInstall;
+	}
+
+	/**
+	 * Releases the hashed group of a prefix, if it has one.
+	 *
+	 * @param prefix
+	 *            the prefix
+	 * @param released
+	 *            collects the group if no prefix points at it any more
+	 */
+	private synchronized void leaveHashedGroup(AtriumIpPrefix prefix, Collection<Set<AtriumIpAddress>> released) {
+		Set<AtriumIpAddress> key = prefixToGroup.remove(prefix);
+		if (key == null) {
+			return;
+		}
+		HashedNextGroup group = hashedGroups.get(key);
+		if (group != null && group.release()) {
+			released.add(key);
+		}
+	}
+
+	/**
+	 * Removes the hashed next objectives that no prefix uses any more.
+	 *
+	 * @param keys
+	 *            the keys of the groups released
+	 */
+	private synchronized void removeHashedGroups(Collection<Set<AtriumIpAddress>> keys) {
+		for (Set<AtriumIpAddress> key : keys) {
+			HashedNextGroup group = hashedGroups.get(key);
+			// The group may have been taken again meanwhile
+			if (group == null || group.refCount() > 0) {
+				continue;
+			}
+			hashedGroups.remove(key);
+			sendHashedNextObjective(group.nextId(), group.members(), Operation.Remove);
+			LOG.debug("Removed hashed group {}", group);
+		}
+	}
+
+	private HashedNextGroup createHashedGroup(Map<AtriumIpAddress, AtriumMacAddress> members) {
+		int nextId = nxtGenerator.allocateNextId();
+		if (!sendHashedNextObjective(nextId, members, Operation.Add)) {
+			return null;
+		}
+		HashedNextGroup group = new HashedNextGroup(nextId, members);
+		LOG.info("Created hashed group {}", group);
+		return group;
+	}
+
+	/**
+	 * Changes the buckets of a hashed group by sending its full bucket list
+	 * again as an add on the same next id, for the driver to apply as a group
+	 * modify. The next objective keeps its id, so the flows pointing at it are
+	 * untouched.
+	 */
+	private void modifyHashedGroup(HashedNextGroup group, Map<AtriumIpAddress, AtriumMacAddress> members) {
+		Set<AtriumIpAddress> added = new HashSet<>(members.keySet());
+		added.removeAll(group.members().keySet());
+		Set<AtriumIpAddress> removed = new HashSet<>(group.members().keySet());
+		removed.removeAll(members.keySet());
+		if (!sendHashedNextObjective(group.nextId(), members, Operation.Add)) {
+			return;
+		}
+		LOG.debug("Hashed group {}: bucket list re-sent, next hops added {}, removed {}", group.nextId(), added,
+				removed);
+		group.setMembers(members);
+	}
+
+	/**
+	 * Sends a hashed next objective with one bucket per next hop.
+	 *
+	 * @return false if none of the next hops has an egress interface
+	 */
+	private boolean sendHashedNextObjective(int nextId, Map<AtriumIpAddress, AtriumMacAddress> members,
+			Operation operation) {
+		List<TrafficTreatment> treatment = new ArrayList<>(members.size());
+		for (Map.Entry<AtriumIpAddress, AtriumMacAddress> member : members.entrySet()) {
+			AtriumInterface egressIntf = configService.getMatchingInterface(
+					org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev100924.IpAddressBuilder
+							.getDefaultInstance(member.getKey().toString()));
+			if (egressIntf == null) {
+				LOG.warn("no egress interface found for {}", member.getKey());
+				continue;
+			}
+			AtriumNextHop nextHop = new AtriumNextHop(member.getKey(), member.getValue(),
+					new AtriumNextHopGroupKey(member.getKey()));
+			treatment.addAll(getTrafficTreatmentForNextObj(egressIntf, nextHop));
+		}
+		if (treatment.isEmpty() && operation == Operation.Add) {
+			return false;
+		}
+
+		NextObjectiveBuilder nextObjBuilder = new NextObjectiveBuilder();
+		nextObjBuilder.setOperation(operation);
+		nextObjBuilder.setType(Type.Hashed);
+		nextObjBuilder.setNextId(Integer.valueOf(nextId));
+		nextObjBuilder.setTrafficTreatment(treatment);
+		NodeRef nodeRef = new NodeRef(
+				InstanceIdentifier.builder(Nodes.class).child(Node.class, new NodeKey(deviceId)).build());
+
+		NextInputBuilder inputBuilder = new NextInputBuilder();
+		inputBuilder.setNode(nodeRef);
+		inputBuilder.setNextObjective(nextObjBuilder.build());
+		next(inputBuilder.build());
+		return true;
+	}
+
+	/**
+	 * @return the number of hashed next objectives in use
+	 */
+	synchronized int getHashedGroupCount() {
+		return hashedGroups.size();
+	}
+
+	/**
+	 * Rewrites the routes through a next hop whose MAC address changed. A
+	 * single next objective is set up for the next hop with its new MAC
+	 * address, then the routes are pointed at it.
+	 *
+	 * @param nextHopIp
+	 *            the next hop that moved
+	 * @param updates
+	 *            the updates of the routes through the next hop
+	 * @param detectedAt
+	 *            the {@link System#nanoTime()} at which the move was detected
+	 */
+	private void moveNextHop(AtriumIpAddress nextHopIp, Collection<AtriumFibUpdate> updates, long detectedAt) {
+		List<AtriumFibUpdate> singlePath = new ArrayList<>(updates.size());
+		List<AtriumFibEntry> multipath = new ArrayList<>();
+		for (AtriumFibUpdate update : updates) {
+			if (update.entry().isMultipath()) {
+				multipath.add(update.entry());
+			} else {
+				singlePath.add(update);
+			}
+		}
+		Integer nextId = null;
+		if (!singlePath.isEmpty()) {
+			nextId = addNextHop(singlePath.get(0).entry());
+		}
+		// The hashed groups through the next hop have its bucket rewritten
+		List<Set<AtriumIpAddress>> released = new ArrayList<>();
+		Map<AtriumFibEntry, Integer> toInstall = updateHashedGroups(multipath, released);
+		if (nextId == null && multipath.isEmpty()) {
+			return;
+		}
+		long latency = System.nanoTime() - detectedAt;
+		nextHopMoveLatency.record(latency);
+		LOG.info("Next hop {} rewritten {} us after its move was detected", nextHopIp,
+				TimeUnit.NANOSECONDS.toMicros(latency));
+
+		if (nextId != null) {
+			synchronized (this) {
+				for (AtriumFibUpdate update : singlePath) {
+					leaveHashedGroup(update.entry().prefix(), released);
+					prefixToNextHop.put(update.entry().prefix(), nextHopIp);
+					toInstall.put(update.entry(), nextId);
+				}
+			}
+		}
+		installFlows(toInstall, null);
+		removeHashedGroups(released);
+		for (AtriumFibUpdate update : updates) {
+			writeFib(update);
+		}
+	}
+
+	/**
+	 * @return the latencies from the detection of next hop moves to the
+	 *         rewrite of their next objective
+	 */
+	LatencyRecorder getNextHopMoveLatency() {
+		return nextHopMoveLatency;
 	}
 
 	/**
@@ -331,43 +685,61 @@ public class Bgprouter implements BindingAwareConsumer, AutoCloseable {
 	 *
 	 * @param entriesToInstall
 	 *            the entries to install
+	 * @param traces
+	 *            the traces of the entries of traced route updates, or null
 	 */
-	private void installFlows(Map<AtriumFibEntry, Integer> entriesToInstall) {
+	private void installFlows(Map<AtriumFibEntry, Integer> entriesToInstall, Map<AtriumFibEntry, RouteTrace> traces) {
 
 		checkNotNull(flowObjectivesService, "FlowObjectives Service not initialized");
 
 		for (Map.Entry<AtriumFibEntry, Integer> entry : entriesToInstall.entrySet()) {
 			AtriumFibEntry fibEntry = entry.getKey();
-			Integer nextId = entry.getValue();
-
-			ForwardingObjectiveBuilder forwardingObjBuilder = generateRibForwardingObj(fibEntry.prefix(), nextId);
-			NodeRef nodeRef = new NodeRef(
-					InstanceIdentifier.builder(Nodes.class).child(Node.class, new NodeKey(deviceId)).build());
-
-			if (forwardingObjBuilder != null) {
-				ForwardInputBuilder inputBuilder = new ForwardInputBuilder();
-				forwardingObjBuilder.setOperation(Operation.Add);
-				inputBuilder.setNode(nodeRef);
-				inputBuilder.setForwardingObjective(forwardingObjBuilder.build());
-				LOG.info("Invoking forward objective in DIDM for fibEntry update");
-				LOG.info("FIB Entry: " + forwardingObjBuilder.build());
-				try {
-					Future<RpcResult<Void>> result = flowObjectivesService.forward(inputBuilder.build());
-					RpcResult<Void> rpcResult = result.get();
-					if (rpcResult.isSuccessful()) {
-						LOG.info("FibEntry update sent to flowObjective");
-					} else {
-						LOG.info("Failed to send FibEntry to flowObjective");
-					}
-				} catch (Exception ex) {
-					LOG.info("", ex);
-				}
-			} else {
+			Future<RpcResult<Void>> result = installFlow(fibEntry.prefix(), entry.getValue(),
+					traces == null ? null : traces.get(fibEntry));
+			if (result == null) {
 				continue;
 			}
+			try {
+				RpcResult<Void> rpcResult = result.get();
+				if (rpcResult.isSuccessful()) {
+					LOG.debug("FibEntry update sent to flowObjective");
+				} else {
+					LOG.warn("Failed to send FibEntry {} to flowObjective", fibEntry.prefix());
+				}
+			} catch (Exception ex) {
+				LOG.warn("Failed to send FibEntry {} to flowObjective", fibEntry.prefix(), ex);
+			}
 		}
 	}
 
+	/**
+	 * Sends the forwarding objective of the route flow of a prefix, without
+	 * waiting for it to complete.
+	 *
+	 * @param trace
+	 *            the trace of the route update, or null
+	 * @return the result of the RPC, or null if no forwarding objective could
+	 *         be generated
+	 */
+	private Future<RpcResult<Void>> installFlow(AtriumIpPrefix prefix, Integer nextId, RouteTrace trace) {
+		ForwardingObjectiveBuilder forwardingObjBuilder = generateRibForwardingObj(prefix, nextId);
+		if (forwardingObjBuilder == null) {
+			return null;
+		}
+		NodeRef nodeRef = new NodeRef(
+				InstanceIdentifier.builder(Nodes.class).child(Node.class, new NodeKey(deviceId)).build());
+		if (auditor != null) {
+			auditor.installed(prefix);
+		}
+		ForwardInputBuilder inputBuilder = new ForwardInputBuilder();
+		forwardingObjBuilder.setOperation(Operation.Add);
+		inputBuilder.setNode(nodeRef);
+		inputBuilder.setForwardingObjective(forwardingObjBuilder.build());
+		LOG.debug("Invoking forward objective in DIDM for fibEntry update");
+		LOG.debug("FIB Entry: {}", inputBuilder.getForwardingObjective());
+		return forward(inputBuilder.build(), trace);
+	}
+
 	/**
 	 * Delete fib entry.
 	 *
@@ -375,28 +747,168 @@ public class Bgprouter implements BindingAwareConsumer, AutoCloseable {
 	 *            the withdraws
 	 */
 	private synchronized void deleteFibEntry(Collection<AtriumFibUpdate> withdraws) {
+		List<Set<AtriumIpAddress>> released = new ArrayList<>();
 
 		for (AtriumFibUpdate update : withdraws) {
 			AtriumFibEntry entry = update.entry();
-			NodeRef nodeRef = new NodeRef(
-					InstanceIdentifier.builder(Nodes.class).child(Node.class, new NodeKey(deviceId)).build());
+			if (removeFlow(entry.prefix(), update.trace())) {
+				deleteFib(update);
+				leaveHashedGroup(entry.prefix(), released);
+				if (auditor != null) {
+					auditor.removed(entry.prefix());
+				}
+			}
+		}
+		removeHashedGroups(released);
 
-			ForwardingObjectiveBuilder forwardingObjBuilder = generateRibForwardingObj(entry.prefix(), null);
-			if (forwardingObjBuilder != null) {
-				ForwardInputBuilder inputBuilder = new ForwardInputBuilder();
-				forwardingObjBuilder.setOperation(Operation.Remove);
-				inputBuilder.setNode(nodeRef);
-				inputBuilder.setForwardingObjective(forwardingObjBuilder.build());
-				LOG.info("Invoking forward objective in DIDM for fibEntry delete");
-				LOG.info("FIB Entry: " + forwardingObjBuilder.build());
-				flowObjectivesService.forward(inputBuilder.build());
-				FibDataModelWriter.deleteFib(update, dataBroker);
+	}
 
-			} else {
-				continue;
+	/**
+	 * Removes the route flow of a prefix from the switch.
+	 *
+	 * @param trace
+	 *            the trace of the withdrawal, or null
+	 * @return false if no forwarding objective could be generated
+	 */
+	private boolean removeFlow(AtriumIpPrefix prefix, RouteTrace trace) {
+		NodeRef nodeRef = new NodeRef(
+				InstanceIdentifier.builder(Nodes.class).child(Node.class, new NodeKey(deviceId)).build());
+
+		ForwardingObjectiveBuilder forwardingObjBuilder = generateRibForwardingObj(prefix, null);
+		if (forwardingObjBuilder == null) {
+			return false;
+		}
+		ForwardInputBuilder inputBuilder = new ForwardInputBuilder();
+		forwardingObjBuilder.setOperation(Operation.Remove);
+		inputBuilder.setNode(nodeRef);
+		inputBuilder.setForwardingObjective(forwardingObjBuilder.build());
+		LOG.debug("Invoking forward objective in DIDM for fibEntry delete");
+		LOG.debug("FIB Entry: {}", inputBuilder.getForwardingObjective());
+		forward(inputBuilder.build(), trace);
+		return true;
+	}
+
+	/**
+	 * @return the metrics of the flow programming
+	 */
+	public MetricsRegistry getMetrics() {
+		return metrics;
+	}
+
+	private Future<RpcResult<Void>> forward(ForwardInput input) {
+		return forward(input, null);
+	}
+
+	/**
+	 * @param trace
+	 *            the trace of the route update of the objective, stamped when
+	 *            the RPC is sent and when it completes, or null
+	 */
+	private Future<RpcResult<Void>> forward(ForwardInput input, RouteTrace trace) {
+		if (trace != null) {
+			trace.stamp(RouteTrace.Stage.FLOW_SENT);
+		}
+		long sentAt = System.nanoTime();
+		return trackRpc(flowObjectivesService.forward(input), sentAt, trace);
+	}
+
+	private Future<RpcResult<Void>> next(NextInput input) {
+		long sentAt = System.nanoTime();
+		return trackRpc(flowObjectivesService.next(input), sentAt, null);
+	}
+
+	private Future<RpcResult<Void>> filter(FilterInput input) {
+		long sentAt = System.nanoTime();
+		return trackRpc(flowObjectivesService.filter(input), sentAt, null);
+	}
+
+	/**
+	 * Counts a flow objective RPC in flight until it completes, then records
+	 * its latency and whether it failed. The RPC is not waited for.
+	 */
+	private Future<RpcResult<Void>> trackRpc(Future<RpcResult<Void>> result, long sentAt, RouteTrace trace) {
+		flowRpcs.increment();
+		if (!(result instanceof ListenableFuture)) {
+			return result;
+		}
+		flowRpcsInFlight.incrementAndGet();
+		if (trace != null) {
+			trace.hold();
+		}
+		Futures.addCallback((ListenableFuture<RpcResult<Void>>) result, new FutureCallback<RpcResult<Void>>() {
+			@Override
+			public void onSuccess(RpcResult<Void> rpcResult) {
+				rpcCompleted(sentAt, rpcResult != null && rpcResult.isSuccessful(), trace);
+			}
+
+			@Override
+			public void onFailure(Throwable t) {
+				rpcCompleted(sentAt, false, trace);
 			}
+		});
+		return result;
+	}
+
+	private void rpcCompleted(long sentAt, boolean successful, RouteTrace trace) {
+		flowRpcsInFlight.decrementAndGet();
+		flowRpcLatency.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - sentAt));
+		if (!successful) {
+			flowRpcFailures.increment();
+		}
+		if (trace != null) {
+			trace.stamp(RouteTrace.Stage.FLOW_ACKED);
+			trace.release();
 		}
+	}
+
+	private void writeFib(AtriumFibUpdate update) {
+		long submittedAt = System.nanoTime();
+		trackCommit(FibDataModelWriter.updateFib(update, dataBroker), submittedAt, update.trace());
+	}
+
+	private void deleteFib(AtriumFibUpdate update) {
+		long submittedAt = System.nanoTime();
+		trackCommit(FibDataModelWriter.deleteFib(update, dataBroker), submittedAt, update.trace());
+	}
+
+	/**
+	 * Records the latency of a datastore commit once it completes, and stamps
+	 * the trace of the route update, if any.
+	 */
+	private void trackCommit(ListenableFuture<Void> commit, long submittedAt, RouteTrace trace) {
+		if (commit == null) {
+			return;
+		}
+		if (trace != null) {
+			trace.hold();
+		}
+		Futures.addCallback(commit, new FutureCallback<Void>() {
+			@Override
+			public void onSuccess(Void result) {
+				commitLatency.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - submittedAt));
+				if (trace != null) {
+					trace.stamp(RouteTrace.Stage.COMMITTED);
+					trace.release();
+				}
+			}
+
+			@Override
+			public void onFailure(Throwable t) {
+				commitFailures.increment();
+				LOG.debug("FIB datastore commit failed", t);
+				if (trace != null) {
+					trace.release();
+				}
+			}
+		});
+	}
 
+	/**
+	 * @return the priority of the route flows of the prefixes of a length, so
+	 *         that longer prefixes match first
+	 */
+	static int routePriority(int prefixLength) {
+		return prefixLength * PRIORITY_MULTIPLIER + PRIORITY_OFFSET;
 	}
 
 	private ForwardingObjectiveBuilder generateRibForwardingObj(AtriumIpPrefix prefix, Integer nextId) {
@@ -414,7 +926,7 @@ public class Bgprouter implements BindingAwareConsumer, AutoCloseable {
 		forwardingObjBuilder.setMatch(matchBuilder.build());
 
 		// set priority
-		int priority = prefix.prefixLength() * PRIORITY_MULTIPLIER + PRIORITY_OFFSET;
+		int priority = routePriority(prefix.prefixLength());
 
 		forwardingObjBuilder.setPriority(Integer.valueOf(priority));
 		forwardingObjBuilder.setFlag(Flag.Specific);
@@ -429,8 +941,10 @@ public class Bgprouter implements BindingAwareConsumer, AutoCloseable {
 	 *
 	 * @param entry
 	 *            the entry
+	 * @return the id of the next objective, or null if there is no egress
+	 *         interface for the next hop
 	 */
-	private synchronized void addNextHop(AtriumFibEntry entry) {
+	private synchronized Integer addNextHop(AtriumFibEntry entry) {
 		prefixToNextHop.put(entry.prefix(), entry.nextHopIp());
 		// This check is not done currently as there is an issue wherein after
 		// the router/ovs instance is restarted ODL is not installing nexthop
@@ -442,7 +956,7 @@ public class Bgprouter implements BindingAwareConsumer, AutoCloseable {
 
 		if (egressIntf == null) {
 			LOG.warn("no egress interface found for {}", entry);
-			return;
+			return null;
 		}
 
 		AtriumNextHopGroupKey groupKey = new AtriumNextHopGroupKey(entry.nextHopIp());
@@ -466,12 +980,13 @@ public class Bgprouter implements BindingAwareConsumer, AutoCloseable {
 		NextInputBuilder inputBuilder = new NextInputBuilder();
 		inputBuilder.setNode(nodeRef);
 		inputBuilder.setNextObjective(nextObjBuilder.build());
-		flowObjectivesService.next(inputBuilder.build());
+		next(inputBuilder.build());
 
 		nextHops.put(entry.nextHopIp(), nextId);
 		
 		// }
 		// nextHopsCount.add(entry.nextHopIp());
+		return nextId;
 	}
 
 	private List<TrafficTreatment> getTrafficTreatmentForNextObj(AtriumInterface egressInterface, AtriumNextHop nextHop) {
@@ -531,6 +1046,55 @@ public class Bgprouter implements BindingAwareConsumer, AutoCloseable {
 			Bgprouter.this.deleteFibEntry(withdraws);
 			Bgprouter.this.updateFibEntry(updates);
 		}
+
+		@Override
+		public void nextHopMoved(AtriumIpAddress nextHop, Collection<AtriumFibUpdate> updates, long detectedAt) {
+			Bgprouter.this.moveNextHop(nextHop, updates, detectedAt);
+		}
+	}
+
+	/**
+	 * @return the auditor of the route flows of the switch, null if disabled
+	 */
+	FibAuditor getAuditor() {
+		return auditor;
+	}
+
+	/**
+	 * Re-syncs the route flows found to differ from the switch by the
+	 * auditor: a missing flow is installed again pointing at the current next
+	 * objective of its prefix, an unexpected flow is removed.
+	 */
+	private class InternalResync implements FibAuditor.Resync {
+
+		@Override
+		public void install(AtriumIpPrefix prefix) {
+			Integer nextId = null;
+			synchronized (Bgprouter.this) {
+				Set<AtriumIpAddress> key = prefixToGroup.get(prefix);
+				HashedNextGroup group = key == null ? null : hashedGroups.get(key);
+				if (group != null) {
+					nextId = group.nextId();
+				} else if (prefixToNextHop.containsKey(prefix)) {
+					synchronized (nextHops) {
+						nextId = nextHops.get(prefixToNextHop.get(prefix));
+					}
+				}
+			}
+			if (nextId == null) {
+				LOG.warn("No next objective to re-sync the flow of {}", prefix);
+				return;
+			}
+			// Not waited for, the audit of the range is repeated once the
+			// switch statistics have caught up
+			checkNotNull(flowObjectivesService, "FlowObjectives Service not initialized");
+			installFlow(prefix, nextId, null);
+		}
+
+		@Override
+		public void remove(AtriumIpPrefix prefix) {
+			removeFlow(prefix, null);
+		}
 	}
 
 	/**
@@ -567,7 +1131,7 @@ public class Bgprouter implements BindingAwareConsumer, AutoCloseable {
 			filterBuilder.setFilterObjective(filterObjBuilder.build());
 			filterBuilder.setNode(nodeRef);
 			LOG.info("Invoking filter objective with values: " + filterBuilder.build());
-			flowObjectivesService.filter(filterBuilder.build());
+			filter(filterBuilder.build());
 		}
 
 	}
@@ -650,7 +1214,7 @@ public class Bgprouter implements BindingAwareConsumer, AutoCloseable {
 		ForwardInputBuilder forwardInputBuilderSrc = new ForwardInputBuilder();
 		forwardInputBuilderSrc.setNode(nodeRef);
 		forwardInputBuilderSrc.setForwardingObjective(fwdObjBuilder.build());
-		flowObjectivesService.forward(forwardInputBuilderSrc.build());
+		forward(forwardInputBuilderSrc.build());
 
 	}
 
@@ -682,7 +1246,7 @@ public class Bgprouter implements BindingAwareConsumer, AutoCloseable {
 		ForwardInputBuilder forwardInputBuilderSrc = new ForwardInputBuilder();
 		forwardInputBuilderSrc.setNode(nodeRef);
 		forwardInputBuilderSrc.setForwardingObjective(fwdObjBuilder.build());
-		flowObjectivesService.forward(forwardInputBuilderSrc.build());
+		forward(forwardInputBuilderSrc.build());
 
 	}
 
@@ -0,0 +1,381 @@
+/*
+ * Copyright (c) 2016 Wipro Ltd. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.atrium.bgprouter.impl;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.opendaylight.atrium.util.AtriumIpPrefix;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Checks in the background that the route flows installed on the switch are
+ * those the router believes it installed, and re-syncs the differences.
+ * <p>
+ * The installed prefixes are split in {@link #RANGES} ranges by the first
+ * octet of their address. The auditor keeps the expected prefixes of each
+ * range with a digest, the XOR of the hashes of the prefixes, updated as
+ * prefixes are installed and removed. Each tick audits a few ranges in turn:
+ * the digest of the prefixes installed on the switch is computed and only
+ * when it differs are the prefixes of the range compared, the missing ones
+ * installed again and the unexpected ones removed. The interval and the
+ * number of ranges per tick bound the cost of the audit.
+ * </p>
+ * <p>
+ * A range changed or re-synced recently is skipped until the switch
+ * statistics have had time to catch up with the change.
+ * </p>
+ * <p>
+ * The audit runs on its own thread rather than on the shared Atrium timer,
+ * and waits neither on the read of the switch, which is taken once per pass,
+ * nor on the re-syncs.
+ * </p>
+ */
+class FibAuditor implements Runnable, AutoCloseable {
+
+	private static final Logger LOG = LoggerFactory.getLogger(FibAuditor.class);
+
+	static final int RANGES = 256;
+	static final long DEFAULT_INTERVAL = 1000; // milliseconds
+	static final int DEFAULT_RANGES_PER_INTERVAL = 4;
+	// Time given to the switch statistics to reflect a change
+	static final long SETTLE_TIME = 10000; // milliseconds
+	// Time after which a pass whose read of the switch has not completed is
+	// skipped
+	static final long PASS_TIMEOUT = 10000; // milliseconds
+
+	/**
+	 * Re-syncs the route flow of a prefix on the switch.
+	 */
+	interface Resync {
+
+		/**
+		 * Installs the flow of a prefix missing on the switch.
+		 */
+		void install(AtriumIpPrefix prefix);
+
+		/**
+		 * Removes the flow of a prefix that should not be on the switch.
+		 */
+		void remove(AtriumIpPrefix prefix);
+	}
+
+	private final FibInventory inventory;
+	private final Resync resync;
+
+	// Expected prefixes and digest of each range, guarded by this
+	private final Range[] ranges = new Range[RANGES];
+
+	private final AtomicLong audited = new AtomicLong();
+	private final AtomicLong mismatches = new AtomicLong();
+	private final AtomicLong installed = new AtomicLong();
+	private final AtomicLong removed = new AtomicLong();
+
+	private volatile long interval = DEFAULT_INTERVAL;
+	private volatile int rangesPerInterval = DEFAULT_RANGES_PER_INTERVAL;
+	// Only accessed by the audit thread, or by the tests
+	private int cursor;
+	private ScheduledExecutorService executor;
+	private volatile boolean closed;
+
+	/**
+	 * @param inventory
+	 *            the route flows installed on the switch
+	 * @param resync
+	 *            re-syncs the prefixes that differ
+	 */
+	FibAuditor(FibInventory inventory, Resync resync) {
+		this.inventory = checkNotNull(inventory);
+		this.resync = checkNotNull(resync);
+		for (int i = 0; i < RANGES; i++) {
+			ranges[i] = new Range();
+		}
+	}
+
+	/**
+	 * Sets the cost of the audit. Null values keep the current setting.
+	 *
+	 * @param interval
+	 *            time in milliseconds between two ticks
+	 * @param rangesPerInterval
+	 *            number of ranges audited at each tick
+	 */
+	void configure(Long interval, Long rangesPerInterval) {
+		if (interval != null && interval > 0) {
+			this.interval = interval;
+		}
+		if (rangesPerInterval != null && rangesPerInterval > 0) {
+			this.rangesPerInterval = (int) Math.min(rangesPerInterval, RANGES);
+		}
+	}
+
+	synchronized void start() {
+		closed = false;
+		if (executor == null) {
+			executor = Executors.newSingleThreadScheduledExecutor(
+					new ThreadFactoryBuilder().setNameFormat("atrium-fib-auditor-%d").setDaemon(true).build());
+		}
+		executor.schedule(this, interval, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * @return the range of a prefix, from the first octet of its address
+	 */
+	static int rangeOf(AtriumIpPrefix prefix) {
+		return prefix.address().toOctets()[0] & 0xff;
+	}
+
+	// 64-bit mix of the address and length, so that the XOR of the hashes of
+	// different sets of prefixes rarely collides
+	static long hash(AtriumIpPrefix prefix) {
+		long h = prefix.prefixLength();
+		for (byte octet : prefix.address().toOctets()) {
+			h = h * 31 + (octet & 0xff);
+		}
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+
+	/**
+	 * Records that the flow of a prefix was installed.
+	 */
+	void installed(AtriumIpPrefix prefix) {
+		installed(prefix, System.currentTimeMillis());
+	}
+
+	synchronized void installed(AtriumIpPrefix prefix, long now) {
+		Range range = ranges[rangeOf(prefix)];
+		if (range.prefixes.add(prefix)) {
+			range.digest ^= hash(prefix);
+			range.changedAt = now;
+		}
+	}
+
+	/**
+	 * Records that the flow of a prefix was removed.
+	 */
+	void removed(AtriumIpPrefix prefix) {
+		removed(prefix, System.currentTimeMillis());
+	}
+
+	synchronized void removed(AtriumIpPrefix prefix, long now) {
+		Range range = ranges[rangeOf(prefix)];
+		if (range.prefixes.remove(prefix)) {
+			range.digest ^= hash(prefix);
+			range.changedAt = now;
+		}
+	}
+
+	/**
+	 * @return the digest of the expected prefixes of a range
+	 */
+	synchronized long getDigest(int range) {
+		return ranges[range].digest;
+	}
+
+	@Override
+	public void run() {
+		if (closed) {
+			return;
+		}
+		if (cursor != 0) {
+			tick();
+			return;
+		}
+		// A new pass, audited once the view of the switch is taken
+		ListenableFuture<Void> pass;
+		try {
+			pass = inventory.startPass();
+		} catch (RuntimeException e) {
+			LOG.warn("FIB audit failed", e);
+			schedule();
+			return;
+		}
+		ScheduledFuture<?> timeout = schedule(() -> pass.cancel(false), PASS_TIMEOUT);
+		pass.addListener(() -> {
+			if (timeout != null) {
+				timeout.cancel(false);
+			}
+			tick();
+		}, this::execute);
+	}
+
+	private void tick() {
+		try {
+			auditNext(System.currentTimeMillis());
+		} catch (RuntimeException e) {
+			LOG.warn("FIB audit failed", e);
+		}
+		schedule();
+	}
+
+	private void schedule() {
+		schedule(this, interval);
+	}
+
+	private synchronized ScheduledFuture<?> schedule(Runnable task, long delay) {
+		if (closed) {
+			return null;
+		}
+		return executor.schedule(task, delay, TimeUnit.MILLISECONDS);
+	}
+
+	private synchronized void execute(Runnable task) {
+		if (!closed) {
+			executor.execute(task);
+		}
+	}
+
+	/**
+	 * Audits the next ranges in turn, up to the end of the current pass.
+	 *
+	 * @param now
+	 *            the current time
+	 * @return the number of prefixes re-synced
+	 */
+	int auditNext(long now) {
+		int count = 0;
+		for (int i = 0; i < rangesPerInterval; i++) {
+			count += audit(cursor, now);
+			cursor = (cursor + 1) % RANGES;
+			if (cursor == 0) {
+				// The next tick starts a new pass
+				break;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Audits a range.
+	 *
+	 * @param index
+	 *            the range
+	 * @param now
+	 *            the current time
+	 * @return the number of prefixes re-synced
+	 */
+	int audit(int index, long now) {
+		long expectedDigest;
+		long changedAt;
+		synchronized (this) {
+			Range range = ranges[index];
+			if (now - range.changedAt < SETTLE_TIME) {
+				return 0;
+			}
+			expectedDigest = range.digest;
+			changedAt = range.changedAt;
+		}
+		Collection<AtriumIpPrefix> installedPrefixes = inventory.getInstalled(index);
+		if (installedPrefixes == null) {
+			// The switch could not be read, nothing is re-synced blindly
+			return 0;
+		}
+		audited.incrementAndGet();
+		Set<AtriumIpPrefix> actual = new HashSet<>();
+		long actualDigest = 0;
+		for (AtriumIpPrefix prefix : installedPrefixes) {
+			if (rangeOf(prefix) == index && actual.add(prefix)) {
+				actualDigest ^= hash(prefix);
+			}
+		}
+		if (actualDigest == expectedDigest) {
+			return 0;
+		}
+
+		mismatches.incrementAndGet();
+		int count = 0;
+		Set<AtriumIpPrefix> expected;
+		synchronized (this) {
+			// The range changed while the switch was read
+			if (ranges[index].changedAt != changedAt) {
+				return 0;
+			}
+			expected = new HashSet<>(ranges[index].prefixes);
+		}
+		for (AtriumIpPrefix prefix : expected) {
+			if (!actual.contains(prefix)) {
+				resync.install(prefix);
+				installed.incrementAndGet();
+				count++;
+			}
+		}
+		for (AtriumIpPrefix prefix : actual) {
+			if (!expected.contains(prefix)) {
+				resync.remove(prefix);
+				removed.incrementAndGet();
+				count++;
+			}
+		}
+		synchronized (this) {
+			// Not audited again before the switch reflects the re-sync
+			ranges[index].changedAt = Math.max(ranges[index].changedAt, now);
+		}
+		LOG.warn("FIB range {}.0.0.0/8 differs from the switch, {} prefix(es) re-synced", index, count);
+		return count;
+	}
+
+	/**
+	 * @return the number of ranges audited
+	 */
+	long getAuditedCount() {
+		return audited.get();
+	}
+
+	/**
+	 * @return the number of ranges found to differ from the switch
+	 */
+	long getMismatchCount() {
+		return mismatches.get();
+	}
+
+	/**
+	 * @return the number of missing flows installed again
+	 */
+	long getInstalledCount() {
+		return installed.get();
+	}
+
+	/**
+	 * @return the number of unexpected flows removed
+	 */
+	long getRemovedCount() {
+		return removed.get();
+	}
+
+	@Override
+	public synchronized void close() {
+		closed = true;
+		if (executor != null) {
+			executor.shutdownNow();
+			executor = null;
+		}
+	}
+
+	private static final class Range {
+		private final Set<AtriumIpPrefix> prefixes = new HashSet<>();
+		private long digest;
+		private long changedAt = Long.MIN_VALUE / 2;
+	}
+}
@@ -15,6 +15,7 @@ import org.opendaylight.atrium.routingservice.api.AtriumFibUpdate;
 import org.opendaylight.controller.md.sal.binding.api.DataBroker;
 import org.opendaylight.controller.md.sal.binding.api.WriteTransaction;
 import org.opendaylight.controller.md.sal.common.api.data.LogicalDatastoreType;
+import org.opendaylight.controller.md.sal.common.api.data.TransactionCommitFailedException;
 import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev100924.IpAddress;
 import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev100924.Ipv4Address;
 import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.yang.types.rev100924.MacAddress;
@@ -26,9 +27,12 @@ import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.routings
 import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.routingservice.api.rev150725.fibentrygrouping.FibEntryKey;
 import org.opendaylight.yangtools.yang.binding.InstanceIdentifier;
 
+import com.google.common.util.concurrent.CheckedFuture;
+
 public class FibDataModelWriter {
 
-	static void updateFib(AtriumFibUpdate atriumFibUpdate, DataBroker dataBroker) {
+	static CheckedFuture<Void, TransactionCommitFailedException> updateFib(AtriumFibUpdate atriumFibUpdate,
+			DataBroker dataBroker) {
 		WriteTransaction writeTx = dataBroker.newReadWriteTransaction();
 
 		Type fibUpdateType = null;
@@ -58,10 +62,11 @@ public class FibDataModelWriter {
 
 		writeTx.merge(LogicalDatastoreType.CONFIGURATION, InstanceIdentifier.builder(FibEntries.class).build(),
 				fibEntriesBuilder.build(), true);
-		writeTx.submit();
+		return writeTx.submit();
 	}
 
-	static void deleteFib(AtriumFibUpdate atriumFibUpdate, DataBroker dataBroker) {
+	static CheckedFuture<Void, TransactionCommitFailedException> deleteFib(AtriumFibUpdate atriumFibUpdate,
+			DataBroker dataBroker) {
 		WriteTransaction writeTx = dataBroker.newReadWriteTransaction();
 
 		AtriumFibEntry atriumFibEntry = atriumFibUpdate.entry();
@@ -71,6 +76,6 @@ public class FibDataModelWriter {
 
 		writeTx.delete(LogicalDatastoreType.CONFIGURATION,
 				InstanceIdentifier.builder(FibEntries.class).child(FibEntry.class, fibEntryKey).build());
-		writeTx.submit();
+		return writeTx.submit();
 	}
 }
@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) 2016 Wipro Ltd. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.atrium.bgprouter.impl;
+
+import java.util.Collection;
+
+import org.opendaylight.atrium.util.AtriumIpPrefix;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+
+/**
+ * The route flows actually installed on the switch, as seen by the
+ * {@link FibAuditor}.
+ */
+interface FibInventory {
+
+	/**
+	 * Called before the first range of each audit pass, so that the inventory
+	 * can take a fresh view of the switch. The view is taken asynchronously,
+	 * the auditor does not wait on the switch or the datastore.
+	 *
+	 * @return completed once the view is taken, or could not be
+	 */
+	default ListenableFuture<Void> startPass() {
+		return Futures.immediateFuture(null);
+	}
+
+	/**
+	 * @param range
+	 *            the range, see {@link FibAuditor#rangeOf(AtriumIpPrefix)}
+	 * @return the prefixes of the route flows installed in the range, null if
+	 *         they are not known
+	 */
+	Collection<AtriumIpPrefix> getInstalled(int range);
+}
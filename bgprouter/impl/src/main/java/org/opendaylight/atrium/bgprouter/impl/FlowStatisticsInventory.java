@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2016 Wipro Ltd. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.atrium.bgprouter.impl;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.opendaylight.atrium.util.AtriumIpPrefix;
+import org.opendaylight.controller.md.sal.binding.api.DataBroker;
+import org.opendaylight.controller.md.sal.binding.api.ReadOnlyTransaction;
+import org.opendaylight.controller.md.sal.common.api.data.LogicalDatastoreType;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.inventory.rev130819.FlowCapableNode;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.inventory.rev130819.tables.Table;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.inventory.rev130819.tables.table.Flow;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.NodeId;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.Nodes;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.nodes.Node;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.nodes.NodeKey;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.model.match.types.rev131026.match.layer._3.match.Ipv4Match;
+import org.opendaylight.yangtools.yang.binding.InstanceIdentifier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Optional;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+
+/**
+ * The route flows of the data-plane switch, from the flow statistics in the
+ * operational inventory. A route flow matches an IPv4 destination prefix at
+ * the priority the router gives to the routes of that length.
+ * <p>
+ * The flow tables are read once per audit pass, without blocking the
+ * auditor, and split by range.
+ * </p>
+ */
+class FlowStatisticsInventory implements FibInventory {
+
+	private static final Logger LOG = LoggerFactory.getLogger(FlowStatisticsInventory.class);
+
+	private final DataBroker dataBroker;
+	private final InstanceIdentifier<FlowCapableNode> nodeIid;
+
+	// Installed prefixes by range, null if the switch could not be read
+	private volatile List<List<AtriumIpPrefix>> installed;
+
+	FlowStatisticsInventory(DataBroker dataBroker, NodeId nodeId) {
+		this.dataBroker = checkNotNull(dataBroker);
+		this.nodeIid = InstanceIdentifier.builder(Nodes.class).child(Node.class, new NodeKey(checkNotNull(nodeId)))
+				.augmentation(FlowCapableNode.class).build();
+	}
+
+	@Override
+	public ListenableFuture<Void> startPass() {
+		installed = null;
+		SettableFuture<Void> pass = SettableFuture.create();
+		ReadOnlyTransaction transaction = dataBroker.newReadOnlyTransaction();
+		Futures.addCallback(transaction.read(LogicalDatastoreType.OPERATIONAL, nodeIid),
+				new FutureCallback<Optional<FlowCapableNode>>() {
+					@Override
+					public void onSuccess(Optional<FlowCapableNode> node) {
+						transaction.close();
+						if (node == null || !node.isPresent() || node.get().getTable() == null) {
+							LOG.debug("No flow statistics for {}, skipping the audit pass", nodeIid);
+						} else if (!pass.isDone()) {
+							installed = byRange(node.get());
+						}
+						pass.set(null);
+					}
+
+					@Override
+					public void onFailure(Throwable t) {
+						transaction.close();
+						LOG.warn("Failed to read the flows of {}, skipping the audit pass", nodeIid, t);
+						pass.set(null);
+					}
+				});
+		return pass;
+	}
+
+	private static List<List<AtriumIpPrefix>> byRange(FlowCapableNode node) {
+		List<List<AtriumIpPrefix>> byRange = new ArrayList<>(FibAuditor.RANGES);
+		for (int i = 0; i < FibAuditor.RANGES; i++) {
+			byRange.add(new ArrayList<>());
+		}
+		for (Table table : node.getTable()) {
+			if (table.getFlow() == null) {
+				continue;
+			}
+			for (Flow flow : table.getFlow()) {
+				AtriumIpPrefix prefix = getRoutePrefix(flow);
+				if (prefix != null) {
+					byRange.get(FibAuditor.rangeOf(prefix)).add(prefix);
+				}
+			}
+		}
+		return byRange;
+	}
+
+	/**
+	 * @return the destination prefix of a route flow, null if the flow is not
+	 *         a route flow
+	 */
+	static AtriumIpPrefix getRoutePrefix(Flow flow) {
+		if (flow.getMatch() == null || !(flow.getMatch().getLayer3Match() instanceof Ipv4Match)) {
+			return null;
+		}
+		Ipv4Match match = (Ipv4Match) flow.getMatch().getLayer3Match();
+		if (match.getIpv4Destination() == null || flow.getPriority() == null) {
+			return null;
+		}
+		AtriumIpPrefix prefix;
+		try {
+			prefix = AtriumIpPrefix.valueOf(match.getIpv4Destination().getValue());
+		} catch (IllegalArgumentException e) {
+			return null;
+		}
+		// The interface and punt flows have other priorities
+		return flow.getPriority() == Bgprouter.routePriority(prefix.prefixLength()) ? prefix : null;
+	}
+
+	@Override
+	public Collection<AtriumIpPrefix> getInstalled(int range) {
+		List<List<AtriumIpPrefix>> current = installed;
+		return current == null ? null : current.get(range);
+	}
+}
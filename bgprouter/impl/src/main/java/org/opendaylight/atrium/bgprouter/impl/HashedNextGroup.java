@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2016 Wipro Ltd. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.atrium.bgprouter.impl;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.opendaylight.atrium.util.AtriumIpAddress;
+import org.opendaylight.atrium.util.AtriumMacAddress;
+
+import com.google.common.base.MoreObjects;
+
+/**
+ * A hashed next objective load balancing over equal-cost next hops, one
+ * bucket per next hop. It is shared by all the prefixes with the same next
+ * hops and counts them.
+ */
+class HashedNextGroup {
+
+	private final int nextId;
+	private Map<AtriumIpAddress, AtriumMacAddress> members;
+	private int refCount;
+
+	HashedNextGroup(int nextId, Map<AtriumIpAddress, AtriumMacAddress> members) {
+		this.nextId = nextId;
+		setMembers(members);
+	}
+
+	int nextId() {
+		return nextId;
+	}
+
+	/**
+	 * @return the next hops of the buckets with their MAC addresses
+	 */
+	Map<AtriumIpAddress, AtriumMacAddress> members() {
+		return members;
+	}
+
+	void setMembers(Map<AtriumIpAddress, AtriumMacAddress> members) {
+		this.members = Collections.unmodifiableMap(new LinkedHashMap<>(members));
+	}
+
+	/**
+	 * @return the number of prefixes pointing at the group
+	 */
+	int refCount() {
+		return refCount;
+	}
+
+	void retain() {
+		refCount++;
+	}
+
+	/**
+	 * @return true if no prefix points at the group any more
+	 */
+	boolean release() {
+		return --refCount <= 0;
+	}
+
+	@Override
+	public String toString() {
+		return MoreObjects.toStringHelper(getClass()).add("nextId", nextId).add("members", members.keySet())
+				.add("refCount", refCount).toString();
+	}
+}
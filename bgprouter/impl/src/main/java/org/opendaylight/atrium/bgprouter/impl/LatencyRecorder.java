@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2016 Wipro Ltd. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.atrium.bgprouter.impl;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.google.common.base.MoreObjects;
+
+/**
+ * Keeps the count, last, maximum and mean of recorded latencies, in
+ * nanoseconds. Recording does not block.
+ */
+public class LatencyRecorder {
+
+	private final LongAdder count = new LongAdder();
+	private final LongAdder total = new LongAdder();
+	private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+	private final AtomicLong last = new AtomicLong();
+
+	/**
+	 * @param nanos
+	 *            the latency to record, in nanoseconds
+	 */
+	public void record(long nanos) {
+		count.increment();
+		total.add(nanos);
+		max.accumulate(nanos);
+		last.set(nanos);
+	}
+
+	public long getCount() {
+		return count.sum();
+	}
+
+	public long getLast() {
+		return last.get();
+	}
+
+	public long getMax() {
+		return max.get();
+	}
+
+	/**
+	 * @return the mean latency in nanoseconds, 0 if none was recorded
+	 */
+	public long getMean() {
+		long n = count.sum();
+		return n == 0 ? 0 : total.sum() / n;
+	}
+
+	@Override
+	public String toString() {
+		return MoreObjects.toStringHelper(getClass()).add("count", getCount()).add("last", getLast())
+				.add("max", getMax()).add("mean", getMean()).toString();
+	}
+}
@@ -89,6 +89,8 @@ org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.bgprouter.impl.
         getNotificationServiceDependency().registerNotificationListener(connectivityManager);
         getBrokerDependency().registerConsumer(bgpRouter);
 
+        bgpRouter.setAuditConfig(getAuditInterval(), getAuditRangesPerInterval());
+
         // Start BGPRouter
         bgpRouter.start();
 
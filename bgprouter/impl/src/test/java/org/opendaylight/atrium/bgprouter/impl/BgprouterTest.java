@@ -7,6 +7,7 @@
  */
 package org.opendaylight.atrium.bgprouter.impl;
 
+import static org.junit.Assert.assertEquals;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.atLeast;
 import static org.mockito.Mockito.mock;
@@ -15,8 +16,11 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ExecutionException;
 
@@ -24,6 +28,7 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 import org.opendaylight.atrium.util.AtriumInterface;
@@ -31,16 +36,22 @@ import org.opendaylight.atrium.util.AtriumInterfaceIpAddress;
 import org.opendaylight.atrium.util.AtriumIp4Prefix;
 import org.opendaylight.atrium.util.AtriumIpAddress;
 import org.opendaylight.atrium.util.AtriumIpPrefix;
+import org.opendaylight.atrium.util.AtriumMacAddress;
 import org.opendaylight.atrium.util.AtriumVlanId;
 import org.opendaylight.atrium.bgprouter.impl.Bgprouter;
 import org.opendaylight.atrium.bgprouter.impl.TunnellingConnectivityManager;
+import org.opendaylight.atrium.routingservice.api.AtriumFibEntry;
+import org.opendaylight.atrium.routingservice.api.AtriumFibUpdate;
+import org.opendaylight.atrium.routingservice.api.FibListener;
 import org.opendaylight.atrium.routingservice.api.RoutingService;
 import org.opendaylight.atrium.routingservice.config.api.RoutingConfigService;
 import org.opendaylight.controller.md.sal.binding.api.DataBroker;
 import org.opendaylight.controller.md.sal.binding.api.ReadOnlyTransaction;
+import org.opendaylight.controller.md.sal.binding.api.ReadWriteTransaction;
 import org.opendaylight.controller.md.sal.common.api.data.LogicalDatastoreType;
 import org.opendaylight.controller.md.sal.common.api.data.ReadFailedException;
 import org.opendaylight.controller.sal.binding.api.BindingAwareBroker.ConsumerContext;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev100924.IpAddress;
 import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.yang.types.rev100924.MacAddress;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.NodeConnectorId;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.NodeId;
@@ -53,6 +64,9 @@ import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.bgpconfi
 import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.didm.drivers.atrium.rev150211.FilterInput;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.didm.drivers.atrium.rev150211.ForwardInput;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.didm.drivers.atrium.rev150211.AtriumFlowObjectiveService;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.didm.drivers.atrium.rev150211.NextInput;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.didm.drivers.atrium.rev150211.Objective.Operation;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.didm.drivers.atrium.rev150211.next.input.NextObjective.Type;
 import org.opendaylight.yangtools.yang.binding.InstanceIdentifier;
 import com.google.common.base.Optional;
 import com.google.common.util.concurrent.CheckedFuture;
@@ -136,6 +150,7 @@ public class BgprouterTest {
 		when(routingConfigService.getBgpSpeakers()).thenReturn(bgps);
 		when(bgps.getBgpSpeaker()).thenReturn(bgpSpeakers);
 		when(routingConfigService.getInterfaces()).thenReturn(interfaces);
+		when(routingConfigService.getMatchingInterface(any(IpAddress.class))).thenReturn(intf);
 	}
 
 	/**
@@ -172,6 +187,103 @@ public class BgprouterTest {
 		verify(flowObjectives, times(1)).forward(any(ForwardInput.class));
 	}
 
+	/**
+	 * Tests rewriting the routes through a next hop that moved
+	 */
+	@Test
+	public void testNextHopMoved() {
+		ArgumentCaptor<FibListener> fibListener = ArgumentCaptor.forClass(FibListener.class);
+		verify(routingService).addFibListener(fibListener.capture());
+		when(dataBroker.newReadWriteTransaction()).thenReturn(mock(ReadWriteTransaction.class));
+
+		AtriumIpAddress nextHop = AtriumIpAddress.valueOf("192.168.10.2");
+		AtriumMacAddress mac = AtriumMacAddress.valueOf("aa:bb:cc:dd:ee:01");
+		List<AtriumFibUpdate> updates = new ArrayList<AtriumFibUpdate>();
+		updates.add(new AtriumFibUpdate(AtriumFibUpdate.Type.UPDATE,
+				new AtriumFibEntry(AtriumIpPrefix.valueOf("2.2.2.0/24"), nextHop, mac)));
+		updates.add(new AtriumFibUpdate(AtriumFibUpdate.Type.UPDATE,
+				new AtriumFibEntry(AtriumIpPrefix.valueOf("3.3.3.0/24"), nextHop, mac)));
+
+		fibListener.getValue().nextHopMoved(nextHop, updates, System.nanoTime());
+
+		// One next objective for the next hop, shared by the routes
+		verify(flowObjectives, times(1)).next(any(NextInput.class));
+		verify(flowObjectives, times(2)).forward(any(ForwardInput.class));
+		assertEquals(1, bgpRouter.getNextHopMoveLatency().getCount());
+	}
+
+	private FibListener getFibListener() {
+		ArgumentCaptor<FibListener> fibListener = ArgumentCaptor.forClass(FibListener.class);
+		verify(routingService).addFibListener(fibListener.capture());
+		when(dataBroker.newReadWriteTransaction()).thenReturn(mock(ReadWriteTransaction.class));
+		return fibListener.getValue();
+	}
+
+	private static AtriumFibUpdate multipathUpdate(String prefix, String... nextHops) {
+		Map<AtriumIpAddress, AtriumMacAddress> members = new LinkedHashMap<>();
+		for (int i = 0; i < nextHops.length; i++) {
+			members.put(AtriumIpAddress.valueOf(nextHops[i]), AtriumMacAddress.valueOf("aa:bb:cc:dd:ee:1" + i));
+		}
+		return new AtriumFibUpdate(AtriumFibUpdate.Type.UPDATE,
+				new AtriumFibEntry(AtriumIpPrefix.valueOf(prefix), members));
+	}
+
+	/**
+	 * Tests that the prefixes with the same equal-cost next hops share one
+	 * hashed next objective
+	 */
+	@Test
+	public void testHashedGroupShared() {
+		FibListener fibListener = getFibListener();
+		List<AtriumFibUpdate> updates = new ArrayList<AtriumFibUpdate>();
+		updates.add(multipathUpdate("2.2.2.0/24", "192.168.10.2", "192.168.10.3"));
+		updates.add(multipathUpdate("3.3.3.0/24", "192.168.10.2", "192.168.10.3"));
+
+		fibListener.update(updates, Collections.emptyList());
+
+		ArgumentCaptor<NextInput> next = ArgumentCaptor.forClass(NextInput.class);
+		verify(flowObjectives, times(1)).next(next.capture());
+		assertEquals(Type.Hashed, next.getValue().getNextObjective().getType());
+		assertEquals(2, next.getValue().getNextObjective().getTrafficTreatment().size());
+		verify(flowObjectives, times(2)).forward(any(ForwardInput.class));
+		assertEquals(1, bgpRouter.getHashedGroupCount());
+	}
+
+	/**
+	 * Tests that a group left by all its prefixes for the same next hops is
+	 * changed in place and removed once no longer used
+	 */
+	@Test
+	public void testHashedGroupChangedInPlace() {
+		testHashedGroupShared();
+		FibListener fibListener = getFibListener();
+		List<AtriumFibUpdate> updates = new ArrayList<AtriumFibUpdate>();
+		updates.add(multipathUpdate("2.2.2.0/24", "192.168.10.2", "192.168.10.3", "192.168.10.4"));
+		updates.add(multipathUpdate("3.3.3.0/24", "192.168.10.2", "192.168.10.3", "192.168.10.4"));
+
+		fibListener.update(updates, Collections.emptyList());
+
+		// The group gets a bucket, the flows are not rewritten
+		ArgumentCaptor<NextInput> next = ArgumentCaptor.forClass(NextInput.class);
+		verify(flowObjectives, times(2)).next(next.capture());
+		List<NextInput> nexts = next.getAllValues();
+		assertEquals(nexts.get(0).getNextObjective().getNextId(), nexts.get(1).getNextObjective().getNextId());
+		assertEquals(3, nexts.get(1).getNextObjective().getTrafficTreatment().size());
+		verify(flowObjectives, times(2)).forward(any(ForwardInput.class));
+		assertEquals(1, bgpRouter.getHashedGroupCount());
+
+		List<AtriumFibUpdate> withdraws = new ArrayList<AtriumFibUpdate>();
+		withdraws.add(new AtriumFibUpdate(AtriumFibUpdate.Type.DELETE,
+				new AtriumFibEntry(AtriumIpPrefix.valueOf("2.2.2.0/24"), null, null)));
+		withdraws.add(new AtriumFibUpdate(AtriumFibUpdate.Type.DELETE,
+				new AtriumFibEntry(AtriumIpPrefix.valueOf("3.3.3.0/24"), null, null)));
+		fibListener.update(Collections.emptyList(), withdraws);
+
+		verify(flowObjectives, times(3)).next(next.capture());
+		assertEquals(Operation.Remove, next.getValue().getNextObjective().getOperation());
+		assertEquals(0, bgpRouter.getHashedGroupCount());
+	}
+
 	/**
 	 * Stops the bgp router
 	 */
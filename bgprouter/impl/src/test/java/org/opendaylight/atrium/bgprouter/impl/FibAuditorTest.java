@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2016 Wipro Ltd. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.atrium.bgprouter.impl;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.opendaylight.atrium.util.AtriumIpPrefix;
+
+/**
+ * Tests the audit of the route flows against an inventory standing in for
+ * the switch.
+ */
+public class FibAuditorTest {
+
+	private static final long LATER = FibAuditor.SETTLE_TIME;
+
+	/**
+	 * The flows of the switch, changed by the re-syncs.
+	 */
+	private static class SwitchInventory implements FibInventory, FibAuditor.Resync {
+		private final Set<AtriumIpPrefix> flows = new HashSet<>();
+		private final List<AtriumIpPrefix> installs = new ArrayList<>();
+		private final List<AtriumIpPrefix> removals = new ArrayList<>();
+		private final List<Integer> reads = new ArrayList<>();
+		private boolean readable = true;
+
+		@Override
+		public Collection<AtriumIpPrefix> getInstalled(int range) {
+			reads.add(range);
+			if (!readable) {
+				return null;
+			}
+			List<AtriumIpPrefix> installed = new ArrayList<>();
+			for (AtriumIpPrefix prefix : flows) {
+				if (FibAuditor.rangeOf(prefix) == range) {
+					installed.add(prefix);
+				}
+			}
+			return installed;
+		}
+
+		@Override
+		public void install(AtriumIpPrefix prefix) {
+			installs.add(prefix);
+			flows.add(prefix);
+		}
+
+		@Override
+		public void remove(AtriumIpPrefix prefix) {
+			removals.add(prefix);
+			flows.remove(prefix);
+		}
+	}
+
+	private SwitchInventory inventory;
+	private FibAuditor auditor;
+
+	@Before
+	public void setUp() {
+		inventory = new SwitchInventory();
+		auditor = new FibAuditor(inventory, inventory);
+	}
+
+	private void install(String prefix) {
+		auditor.installed(AtriumIpPrefix.valueOf(prefix), 0);
+		inventory.flows.add(AtriumIpPrefix.valueOf(prefix));
+	}
+
+	/**
+	 * Tests that the digests are kept as prefixes are installed and removed.
+	 */
+	@Test
+	public void testDigest() {
+		int range = FibAuditor.rangeOf(AtriumIpPrefix.valueOf("10.1.0.0/16"));
+		assertEquals(10, range);
+		auditor.installed(AtriumIpPrefix.valueOf("10.1.0.0/16"), 0);
+		long digest = auditor.getDigest(range);
+		auditor.installed(AtriumIpPrefix.valueOf("10.2.0.0/16"), 0);
+		auditor.installed(AtriumIpPrefix.valueOf("10.2.0.0/16"), 0);
+		assertTrue(digest != auditor.getDigest(range));
+
+		auditor.removed(AtriumIpPrefix.valueOf("10.2.0.0/16"), 0);
+		assertEquals(digest, auditor.getDigest(range));
+		assertTrue(FibAuditor.hash(AtriumIpPrefix.valueOf("10.1.0.0/16")) != FibAuditor
+				.hash(AtriumIpPrefix.valueOf("10.1.0.0/24")));
+	}
+
+	/**
+	 * Tests that a range matching the switch is left alone.
+	 */
+	@Test
+	public void testConsistent() {
+		install("10.1.0.0/16");
+		install("10.2.0.0/16");
+		install("20.1.0.0/16");
+
+		assertEquals(0, auditor.audit(10, LATER));
+		assertEquals(0, auditor.audit(20, LATER));
+		assertEquals(2, auditor.getAuditedCount());
+		assertEquals(0, auditor.getMismatchCount());
+	}
+
+	/**
+	 * Tests that only the flows of the range that differs are re-synced.
+	 */
+	@Test
+	public void testResync() {
+		install("10.1.0.0/16");
+		install("10.2.0.0/16");
+		install("20.1.0.0/16");
+		// Lost on the switch, and left over from an earlier run
+		inventory.flows.remove(AtriumIpPrefix.valueOf("10.2.0.0/16"));
+		inventory.flows.add(AtriumIpPrefix.valueOf("10.3.0.0/16"));
+
+		assertEquals(0, auditor.audit(20, LATER));
+		assertEquals(2, auditor.audit(10, LATER));
+		assertEquals(1, auditor.getMismatchCount());
+		assertEquals(1, inventory.installs.size());
+		assertEquals(AtriumIpPrefix.valueOf("10.2.0.0/16"), inventory.installs.get(0));
+		assertEquals(1, inventory.removals.size());
+		assertEquals(AtriumIpPrefix.valueOf("10.3.0.0/16"), inventory.removals.get(0));
+		assertEquals(1, auditor.getInstalledCount());
+		assertEquals(1, auditor.getRemovedCount());
+
+		// Given time to settle, the range is consistent again
+		assertEquals(0, auditor.audit(10, LATER + 1));
+		assertEquals(0, auditor.audit(10, 2 * LATER));
+		assertEquals(1, auditor.getMismatchCount());
+	}
+
+	/**
+	 * Tests that a range changed recently, or that can not be read, is not
+	 * audited.
+	 */
+	@Test
+	public void testSkipped() {
+		install("10.1.0.0/16");
+		auditor.installed(AtriumIpPrefix.valueOf("10.2.0.0/16"), LATER);
+
+		assertEquals(0, auditor.audit(10, LATER + 1));
+		assertTrue(inventory.reads.isEmpty());
+
+		inventory.readable = false;
+		assertEquals(0, auditor.audit(10, 2 * LATER));
+		assertTrue(inventory.installs.isEmpty());
+		assertEquals(0, auditor.getAuditedCount());
+	}
+
+	/**
+	 * Tests that the ranges are audited in turn, a tick stopping at the end of
+	 * a pass.
+	 */
+	@Test
+	public void testAuditNext() {
+		auditor.configure(null, 100L);
+		install("150.1.1.0/24");
+		inventory.flows.clear();
+
+		assertEquals(0, auditor.auditNext(LATER));
+		assertEquals(1, auditor.auditNext(LATER));
+		assertEquals(200, inventory.reads.size());
+		assertEquals(Integer.valueOf(100), inventory.reads.get(100));
+
+		auditor.auditNext(LATER);
+		assertEquals(256, inventory.reads.size());
+		auditor.auditNext(LATER);
+		assertEquals(Integer.valueOf(0), inventory.reads.get(256));
+	}
+}
@@ -8,6 +8,7 @@
 package org.opendaylight.atrium.hostservice.api;
 
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 import org.opendaylight.atrium.routingservice.config.api.RoutingConfigService;
 import org.opendaylight.atrium.util.AtriumIpAddress;
@@ -40,6 +41,17 @@ public interface HostService {
      * @param nhIp the nh ip
      */
     public void startMonitoringIp(AtriumIpAddress nhIp);
+
+    /**
+     * Resolves the MAC address of an IP address. The returned future is
+     * completed as soon as the host is learned from the packet-in path, or
+     * completed exceptionally when the resolution times out. Concurrent
+     * requests for the same IP address share the same resolution.
+     *
+     * @param ip the ip to resolve
+     * @return future completed with the MAC address of the ip
+     */
+    public CompletableFuture<AtriumMacAddress> resolve(AtriumIpAddress ip);
     
     /**
      * Gets the hosts by ip.
@@ -97,5 +109,13 @@ public interface HostService {
      * @return MAC Address for the ip
      */
     public AtriumMacAddress getMacAddressByIp(AtriumIpAddress ip);
+
+    /**
+     * Returns the table of learned IP to MAC address bindings. This is the
+     * one place the MAC address of a neighbor is kept; lookups do not block.
+     *
+     * @return the neighbor table
+     */
+    public NeighborTable getNeighborTable();
     
 }
@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2016 Wipro Ltd. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.atrium.hostservice.api;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Objects;
+
+import org.opendaylight.atrium.util.AtriumIpAddress;
+import org.opendaylight.atrium.util.AtriumMacAddress;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.NodeConnectorId;
+
+import com.google.common.base.MoreObjects;
+
+/**
+ * An IP neighbor as learned from the packet-in path: the MAC address of an IP
+ * address, the port it was last seen on and when.
+ * <p>
+ * Instances are immutable. The MAC address is kept packed in a long.
+ * </p>
+ */
+public final class Neighbor {
+
+    /** VLAN id of neighbors seen untagged. */
+    public static final int UNTAGGED = 0;
+
+    private final AtriumIpAddress ip;
+    private final long mac;
+    private final NodeConnectorId port;
+    private final int vlan;
+    private final long lastSeen;
+
+    /**
+     * @param ip the IP address of the neighbor
+     * @param mac the MAC address of the neighbor as returned by
+     *            {@link AtriumMacAddress#toLong()}
+     * @param port the port the neighbor was seen on, or null if unknown
+     * @param vlan the VLAN id the neighbor was seen on, {@link #UNTAGGED} if
+     *            none
+     * @param lastSeen time the neighbor was last seen, in milliseconds since
+     *            the epoch
+     */
+    public Neighbor(AtriumIpAddress ip, long mac, NodeConnectorId port, int vlan, long lastSeen) {
+        this.ip = checkNotNull(ip, "Neighbor IP address is null");
+        this.mac = mac;
+        this.port = port;
+        this.vlan = vlan;
+        this.lastSeen = lastSeen;
+    }
+
+    public AtriumIpAddress ip() {
+        return ip;
+    }
+
+    /**
+     * @return the MAC address packed in the 48 low-order bits
+     */
+    public long mac() {
+        return mac;
+    }
+
+    public AtriumMacAddress macAddress() {
+        return AtriumMacAddress.valueOf(mac);
+    }
+
+    /**
+     * @return the port the neighbor was seen on, or null if unknown
+     */
+    public NodeConnectorId port() {
+        return port;
+    }
+
+    public int vlan() {
+        return vlan;
+    }
+
+    public long lastSeen() {
+        return lastSeen;
+    }
+
+    /**
+     * Checks whether the other neighbor has the same MAC address, port and
+     * VLAN, regardless of when it was seen.
+     *
+     * @param other the neighbor to compare to
+     * @return true if the location of both neighbors is the same
+     */
+    public boolean sameLocation(Neighbor other) {
+        return other != null && mac == other.mac && vlan == other.vlan && Objects.equals(port, other.port);
+    }
+
+    /**
+     * @param time time the neighbor was seen
+     * @return a copy of this neighbor last seen at the given time
+     */
+    public Neighbor seenAt(long time) {
+        return new Neighbor(ip, mac, port, vlan, time);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(ip, mac, port, vlan);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof Neighbor)) {
+            return false;
+        }
+        Neighbor other = (Neighbor) obj;
+        return ip.equals(other.ip) && sameLocation(other);
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(getClass()).add("ip", ip).add("mac", macAddress()).add("port", port)
+                .add("vlan", vlan).add("lastSeen", lastSeen).toString();
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2016 Wipro Ltd. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.atrium.hostservice.api;
+
+import com.google.common.base.MoreObjects;
+
+/**
+ * Change of an entry of the {@link NeighborTable}.
+ */
+public class NeighborEvent {
+
+    /**
+     * Type of neighbor events.
+     */
+    public enum Type {
+        /**
+         * A neighbor has been learned.
+         */
+        NEIGHBOR_ADDED,
+
+        /**
+         * The MAC address, port or VLAN of a neighbor changed.
+         */
+        NEIGHBOR_UPDATED,
+
+        /**
+         * A neighbor has been removed.
+         */
+        NEIGHBOR_REMOVED
+    }
+
+    private final Type type;
+    private final Neighbor neighbor;
+    private final Neighbor previous;
+    private final long time;
+
+    /**
+     * @param type the event type
+     * @param neighbor the neighbor after the change, or the removed neighbor
+     * @param previous the neighbor before the change, null unless updated
+     */
+    public NeighborEvent(Type type, Neighbor neighbor, Neighbor previous) {
+        this(type, neighbor, previous, System.nanoTime());
+    }
+
+    /**
+     * @param type the event type
+     * @param neighbor the neighbor after the change, or the removed neighbor
+     * @param previous the neighbor before the change, null unless updated
+     * @param time the {@link System#nanoTime()} at which the change was
+     *            detected, typically the arrival of the packet that revealed it
+     */
+    public NeighborEvent(Type type, Neighbor neighbor, Neighbor previous, long time) {
+        this.type = type;
+        this.neighbor = neighbor;
+        this.previous = previous;
+        this.time = time;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public Neighbor getNeighbor() {
+        return neighbor;
+    }
+
+    /**
+     * @return the neighbor before an update, null for other events
+     */
+    public Neighbor getPrevious() {
+        return previous;
+    }
+
+    /**
+     * @return the {@link System#nanoTime()} at which the change was detected,
+     *         to measure how long it takes to act on it
+     */
+    public long getTime() {
+        return time;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(getClass()).add("type", type).add("neighbor", neighbor)
+                .add("previous", previous).toString();
+    }
+}
@@ -0,0 +1,22 @@
+/*
+ * Copyright (c) 2016 Wipro Ltd. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.atrium.hostservice.api;
+
+/**
+ * Listener for changes of the {@link NeighborTable}.
+ */
+public interface NeighborListener {
+
+    /**
+     * Called after a neighbor has been added, updated or removed. Refreshes
+     * of a neighbor that did not move are not reported.
+     *
+     * @param event the event
+     */
+    public void neighborUpdate(NeighborEvent event);
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2016 Wipro Ltd. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.atrium.hostservice.api;
+
+import org.opendaylight.atrium.util.AtriumIpAddress;
+
+/**
+ * The IP to MAC address bindings learned by the host service. Lookups do not
+ * block.
+ */
+public interface NeighborTable {
+
+    /**
+     * Returns the neighbor with the given IP address.
+     *
+     * @param ip the IP address
+     * @return the neighbor or null if it is not known
+     */
+    public Neighbor get(AtriumIpAddress ip);
+
+    /**
+     * Returns the neighbor with the given IPv4 address.
+     *
+     * @param ip the IPv4 address as an int
+     * @return the neighbor or null if it is not known
+     */
+    public Neighbor getIp4(int ip);
+
+    /**
+     * @return the number of neighbors in the table
+     */
+    public int size();
+
+    /**
+     * Marks a neighbor as in use, typically as the next hop of routes. Pinned
+     * neighbors are refreshed before they expire and are never evicted to
+     * make room for others. Pins are counted; each call must be matched by a
+     * call to {@link #release(AtriumIpAddress)}. The address does not need to
+     * be known yet.
+     *
+     * @param ip the IP address of the neighbor
+     */
+    public void pin(AtriumIpAddress ip);
+
+    /**
+     * Releases a pin taken with {@link #pin(AtriumIpAddress)}.
+     *
+     * @param ip the IP address of the neighbor
+     */
+    public void release(AtriumIpAddress ip);
+
+    /**
+     * @param ip the IP address of the neighbor
+     * @return true if the neighbor is pinned
+     */
+    public boolean isPinned(AtriumIpAddress ip);
+
+    /**
+     * Adds a listener for neighbor changes.
+     *
+     * @param listener the listener
+     */
+    public void addListener(NeighborListener listener);
+
+    /**
+     * Removes a listener for neighbor changes.
+     *
+     * @param listener the listener
+     */
+    public void removeListener(NeighborListener listener);
+}
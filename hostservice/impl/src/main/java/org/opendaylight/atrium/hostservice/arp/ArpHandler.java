@@ -11,17 +11,18 @@ package org.opendaylight.atrium.hostservice.arp;
 import java.net.URL;
 import java.util.List;
 import java.io.File;
-import java.util.concurrent.ExecutionException;
 
 import org.opendaylight.atrium.hostservice.api.ArpMessageAddress;
 import org.opendaylight.atrium.hostservice.api.HostService;
+import org.opendaylight.atrium.hostservice.api.Neighbor;
 import org.opendaylight.atrium.hostservice.impl.ArpSender;
 import org.opendaylight.atrium.hostservice.impl.ConfigReader;
 import org.opendaylight.atrium.hostservice.impl.ConfigWriter;
+import org.opendaylight.atrium.hostservice.impl.InterfaceAddressIndex;
+import org.opendaylight.atrium.hostservice.impl.InterfaceAddressIndex.RouterInterface;
+import org.opendaylight.atrium.util.AtriumIp4Address;
 import org.opendaylight.controller.md.sal.binding.api.DataBroker;
-import org.opendaylight.controller.md.sal.binding.api.ReadOnlyTransaction;
-import org.opendaylight.controller.md.sal.common.api.data.LogicalDatastoreType;
-import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev100924.IpAddress;
+import org.opendaylight.controller.md.sal.binding.api.DataTreeChangeService;
 import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev100924.Ipv4Address;
 import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.yang.types.rev100924.MacAddress;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.node.NodeConnector;
@@ -34,16 +35,16 @@ import org.opendaylight.yang.gen.v1.urn.opendaylight.packet.ethernet.rev140528.e
 import org.opendaylight.yang.gen.v1.urn.opendaylight.packet.ethernet.rev140528.ethernet.packet.received.packet.chain.packet.EthernetPacket;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.packet.service.rev130709.PacketProcessingService;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.hostservice.api.rev150725.Addresses;
-import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.hostservice.api.rev150725.addresses.Address;
 import org.opendaylight.yangtools.yang.binding.InstanceIdentifier;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public class ArpHandler implements ArpPacketListener {
+public class ArpHandler implements ArpPacketListener, AutoCloseable {
 
 	private DataBroker dataBroker;
 	private ArpSender arpSender;
 	private HostService hostService;
+	private final InterfaceAddressIndex addressIndex = new InterfaceAddressIndex();
 
 	private static final String DEFAULT_CONFIG_FILE = "./configuration/initial/addresses.json";
 
@@ -53,6 +54,7 @@ public class ArpHandler implements ArpPacketListener {
 		this.dataBroker = dataBroker;
 		this.arpSender = new ArpSender(packetProcessingService);
 		this.hostService = hostService;
+		addressIndex.register((DataTreeChangeService) dataBroker);
 	}
 
 	public void readConfiguration() {
@@ -118,60 +120,38 @@ public class ArpHandler implements ArpPacketListener {
 			log.debug("Vlan tag for packet is " + vlan);
 		}
 
-		Address address = getMatchingAddress(new IpAddress(destIp));
-
-		if (address != null) {
-			destMac = address.getMac();
-
-			ArpMessageAddress senderArpMessageAddress = new ArpMessageAddress(destMac, destIp);
-			ArpMessageAddress receiverArpMessageAddress = new ArpMessageAddress(sourceMac, sourceIp);
-			InstanceIdentifier<NodeConnector> egressNc = (InstanceIdentifier<NodeConnector>) rawPacket.getIngress()
-					.getValue();
-			arpSender.sendArpResponse(senderArpMessageAddress, receiverArpMessageAddress, egressNc, vlan);
-
-		} else {
-			// TODO
-			// LOG.info("Address not found in configuration.. Cant resolve
-			// arp...");
-			if (hostService != null) {
-				org.opendaylight.atrium.util.AtriumIpAddress atriumIp = null;
-				if (destIp != null) {
-					atriumIp = org.opendaylight.atrium.util.AtriumIpAddress.valueOf(destIp.getValue());
-				}
-				org.opendaylight.atrium.util.AtriumMacAddress mac = hostService.getMacAddressByIp(atriumIp);
-				if (mac != null) {
-					MacAddress arpMac = new MacAddress(mac.toString());
-					ArpMessageAddress senderArpMessageAddress = new ArpMessageAddress(arpMac, destIp);
-					ArpMessageAddress receiverArpMessageAddress = new ArpMessageAddress(sourceMac, sourceIp);
-					InstanceIdentifier<NodeConnector> egressNc = (InstanceIdentifier<NodeConnector>) rawPacket
-							.getIngress().getValue();
-					arpSender.sendArpResponse(senderArpMessageAddress, receiverArpMessageAddress, egressNc, vlan);
-				}
-			}
-		}
-	}
-
-	private Address getMatchingAddress(IpAddress destIp) {
-		Addresses addresses = null;
-
-		ReadOnlyTransaction readOnlyTransaction = dataBroker.newReadOnlyTransaction();
-		InstanceIdentifier<Addresses> addressesIdentifier = InstanceIdentifier.builder(Addresses.class).build();
+		int destAddress;
 		try {
-			addresses = readOnlyTransaction.read(LogicalDatastoreType.CONFIGURATION, addressesIdentifier).get().get();
-		} catch (InterruptedException e) {
-			e.printStackTrace();
-		} catch (ExecutionException e) {
-			e.printStackTrace();
+			destAddress = AtriumIp4Address.valueOf(destIp.getValue()).toInt();
+		} catch (IllegalArgumentException e) {
+			log.debug("Ignoring ARP packet for invalid address {}", destIp.getValue());
+			return;
 		}
 
-		for (Address address : addresses.getAddress()) {
-			IpAddress ipAddress = address.getIpAddress();
-
-			if (ipAddress.getIpv4Address().getValue().equals(destIp.getIpv4Address().getValue())) {
-				return address;
+		// Configured gateway addresses first, then learned hosts
+		RouterInterface gateway = addressIndex.getInterface(destAddress);
+		if (gateway != null) {
+			destMac = gateway.mac();
+		} else if (hostService != null) {
+			Neighbor neighbor = hostService.getNeighborTable().getIp4(destAddress);
+			if (neighbor != null) {
+				destMac = new MacAddress(neighbor.macAddress().toString());
 			}
 		}
+		if (destMac == null) {
+			log.trace("No address known for {}, not answering ARP", destIp.getValue());
+			return;
+		}
+
+		ArpMessageAddress senderArpMessageAddress = new ArpMessageAddress(destMac, destIp);
+		ArpMessageAddress receiverArpMessageAddress = new ArpMessageAddress(sourceMac, sourceIp);
+		InstanceIdentifier<NodeConnector> egressNc = (InstanceIdentifier<NodeConnector>) rawPacket.getIngress()
+				.getValue();
+		arpSender.sendArpResponse(senderArpMessageAddress, receiverArpMessageAddress, egressNc, vlan);
+	}
 
-		return null;
+	@Override
+	public void close() {
+		addressIndex.close();
 	}
 }
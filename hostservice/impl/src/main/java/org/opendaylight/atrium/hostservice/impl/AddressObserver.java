@@ -11,6 +11,7 @@ package org.opendaylight.atrium.hostservice.impl;
 
 import java.math.BigInteger;
 import java.util.Date;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.opendaylight.controller.sal.binding.api.NotificationService;
 import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev100924.IpAddress;
@@ -46,6 +47,11 @@ public class AddressObserver implements ArpPacketListener, Ipv4PacketListener, I
 	private HostMonitor hostMonitor;
 	private NotificationService notificationService;
 
+	// Packet-ins received, by class
+	private final LongAdder arpPackets = new LongAdder();
+	private final LongAdder ipv4Packets = new LongAdder();
+	private final LongAdder ipv6Packets = new LongAdder();
+
 	public AddressObserver(HostMonitor hostTrackerImpl, NotificationService notificationService) {
 		this.hostMonitor = hostTrackerImpl;
 		this.notificationService = notificationService;
@@ -56,8 +62,30 @@ public class AddressObserver implements ArpPacketListener, Ipv4PacketListener, I
 		this.notificationService.registerNotificationListener(this);
 	}
 
+	/**
+	 * @return the number of ARP packet-ins received
+	 */
+	public long getArpPacketCount() {
+		return arpPackets.sum();
+	}
+
+	/**
+	 * @return the number of IPv4 packet-ins received
+	 */
+	public long getIpv4PacketCount() {
+		return ipv4Packets.sum();
+	}
+
+	/**
+	 * @return the number of IPv6 packet-ins received
+	 */
+	public long getIpv6PacketCount() {
+		return ipv6Packets.sum();
+	}
+
 	@Override
 	public void onArpPacketReceived(ArpPacketReceived packetReceived) {
+		arpPackets.increment();
 		if (packetReceived == null || packetReceived.getPacketChain() == null) {
 			return;
 		}
@@ -96,6 +124,7 @@ public class AddressObserver implements ArpPacketListener, Ipv4PacketListener, I
 
 	@Override
 	public void onIpv4PacketReceived(Ipv4PacketReceived packetReceived) {
+		ipv4Packets.increment();
 		if (packetReceived == null || packetReceived.getPacketChain() == null) {
 			return;
 		}
@@ -137,6 +166,7 @@ public class AddressObserver implements ArpPacketListener, Ipv4PacketListener, I
 
 	@Override
 	public void onIpv6PacketReceived(Ipv6PacketReceived packetReceived) {
+		ipv6Packets.increment();
 		if (packetReceived == null || packetReceived.getPacketChain() == null) {
 			return;
 		}
@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2016 Wipro Ltd. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.atrium.hostservice.impl;
+
+import java.util.Arrays;
+
+import org.opendaylight.atrium.hostservice.api.Arp;
+import org.opendaylight.atrium.hostservice.api.ArpOperation;
+import org.opendaylight.atrium.hostservice.api.Vlan;
+import org.opendaylight.controller.liblldp.EtherTypes;
+import org.opendaylight.controller.liblldp.Ethernet;
+import org.opendaylight.controller.liblldp.PacketException;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Cache of serialized ARP frames keyed by operation, sender addresses and
+ * VLAN tag.
+ * <p>
+ * Building a frame through {@link Ethernet#serialize()} is bit-field based
+ * and allocates heavily. A template is serialized once per sender, and each
+ * frame is a copy of it with the destination MAC, target MAC and target IP
+ * patched in. Copies are handed to the packet-out RPC, which keeps the
+ * payload after returning, so buffers are not pooled.
+ * </p>
+ * <p>
+ * Once full, the cache evicts the least recently used template, one at a
+ * time, so that churn among the senders does not make all the frames be
+ * built again at once.
+ * </p>
+ */
+public class ArpFrameTemplates {
+
+	// Upper bound of cached templates; proxy replies are sent on behalf of
+	// learned hosts, so the sender set is not bounded by the configuration
+	static final int MAX_TEMPLATES = 4096;
+
+	static final int UNTAGGED = -1;
+
+	private static final int ETHERNET_HEADER_LENGTH = 14;
+	private static final int VLAN_TAG_LENGTH = 4;
+	private static final int ARP_THA_OFFSET = 18;
+	private static final int ARP_TPA_OFFSET = 24;
+	private static final int MAC_LENGTH = 6;
+	private static final int IPV4_LENGTH = 4;
+	private static final byte[] ZERO_MAC = new byte[MAC_LENGTH];
+	private static final byte[] ZERO_IP = new byte[IPV4_LENGTH];
+
+	// Templates are rarely added, a single segment keeps the bound exact
+	private final Cache<TemplateKey, byte[]> templates = CacheBuilder.newBuilder().maximumSize(MAX_TEMPLATES)
+			.concurrencyLevel(1).build();
+
+	/**
+	 * Returns a serialized ARP frame.
+	 *
+	 * @param operation
+	 *            the ARP operation
+	 * @param senderMac
+	 *            sender hardware address, also the source MAC of the frame
+	 * @param senderIp
+	 *            sender protocol address
+	 * @param tci
+	 *            the 802.1Q tag control information (priority and VLAN id),
+	 *            or {@link #UNTAGGED}
+	 * @param targetMac
+	 *            target hardware address, also the destination MAC of the
+	 *            frame
+	 * @param targetIp
+	 *            target protocol address
+	 * @return the frame bytes
+	 * @throws PacketException
+	 *             if the template cannot be serialized
+	 */
+	public byte[] getFrame(ArpOperation operation, byte[] senderMac, byte[] senderIp, int tci, byte[] targetMac,
+			byte[] targetIp) throws PacketException {
+		TemplateKey key = new TemplateKey(operation, senderMac, senderIp, tci);
+		byte[] template = templates.getIfPresent(key);
+		if (template == null) {
+			template = createFrame(operation, senderMac, senderIp, tci, ZERO_MAC, ZERO_IP).serialize();
+			templates.put(key, template);
+		}
+		byte[] frame = Arrays.copyOf(template, template.length);
+		int arpOffset = tci == UNTAGGED ? ETHERNET_HEADER_LENGTH : ETHERNET_HEADER_LENGTH + VLAN_TAG_LENGTH;
+		System.arraycopy(targetMac, 0, frame, 0, MAC_LENGTH);
+		System.arraycopy(targetMac, 0, frame, arpOffset + ARP_THA_OFFSET, MAC_LENGTH);
+		System.arraycopy(targetIp, 0, frame, arpOffset + ARP_TPA_OFFSET, IPV4_LENGTH);
+		return frame;
+	}
+
+	/**
+	 * @return the number of cached templates
+	 */
+	public int size() {
+		return (int) templates.size();
+	}
+
+	/**
+	 * Builds an ARP frame object. Used for templates and for trace logging.
+	 */
+	static Ethernet createFrame(ArpOperation operation, byte[] senderMac, byte[] senderIp, int tci,
+			byte[] targetMac, byte[] targetIp) {
+		Ethernet arpFrame = new Ethernet().setSourceMACAddress(senderMac).setDestinationMACAddress(targetMac);
+		Arp arp = new Arp().setOperation(operation.intValue()).setSenderHardwareAddress(senderMac)
+				.setSenderProtocolAddress(senderIp).setTargetHardwareAddress(targetMac)
+				.setTargetProtocolAddress(targetIp);
+		if (tci == UNTAGGED) {
+			arpFrame.setEtherType(EtherTypes.ARP.shortValue());
+			arpFrame.setPayload(arp);
+		} else {
+			arpFrame.setEtherType(EtherTypes.VLANTAGGED.shortValue());
+			Vlan vlanFrame = new Vlan().setEthernetType(EtherTypes.ARP.shortValue()).setCFI((short) 0)
+					.setPRI((short) ((tci >> 13) & 0x7)).setVLAN((short) (tci & 0xfff));
+			vlanFrame.setPayload(arp);
+			arpFrame.setPayload(vlanFrame);
+		}
+		return arpFrame;
+	}
+
+	/**
+	 * Builds the tag control information of an 802.1Q header.
+	 *
+	 * @param priority
+	 *            priority code point
+	 * @param vlan
+	 *            VLAN id
+	 * @return the tag control information
+	 */
+	public static int tci(int priority, int vlan) {
+		return (priority & 0x7) << 13 | (vlan & 0xfff);
+	}
+
+	private static final class TemplateKey {
+		private final int operation;
+		private final long senderMac;
+		private final int senderIp;
+		private final int tci;
+
+		TemplateKey(ArpOperation operation, byte[] senderMac, byte[] senderIp, int tci) {
+			this.operation = operation.intValue();
+			this.senderMac = toLong(senderMac, MAC_LENGTH);
+			this.senderIp = (int) toLong(senderIp, IPV4_LENGTH);
+			this.tci = tci;
+		}
+
+		private static long toLong(byte[] bytes, int length) {
+			long value = 0;
+			for (int i = 0; i < length; i++) {
+				value = value << 8 | (bytes[i] & 0xff);
+			}
+			return value;
+		}
+
+		@Override
+		public int hashCode() {
+			int result = operation;
+			result = 31 * result + Long.hashCode(senderMac);
+			result = 31 * result + senderIp;
+			return 31 * result + tci;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof TemplateKey)) {
+				return false;
+			}
+			TemplateKey other = (TemplateKey) obj;
+			return operation == other.operation && senderMac == other.senderMac && senderIp == other.senderIp
+					&& tci == other.tci;
+		}
+	}
+}
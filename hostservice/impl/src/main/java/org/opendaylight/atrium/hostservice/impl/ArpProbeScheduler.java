@@ -0,0 +1,266 @@
+/*
+ * Copyright (c) 2016 Wipro Ltd. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.atrium.hostservice.impl;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import org.jboss.netty.util.Timeout;
+import org.jboss.netty.util.TimerTask;
+import org.opendaylight.atrium.util.AtriumIpAddress;
+import org.opendaylight.atrium.util.AtriumTimer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Schedules ARP probes per target address on the shared Atrium timer.
+ * <p>
+ * Each target gets its own probe state: the first probe is sent right away,
+ * the following ones are spaced with an exponential backoff with jitter, and
+ * the target is abandoned once the maximum number of probes has been sent or
+ * the resolution deadline has passed. Listeners are told about abandoned
+ * targets. Probe load therefore scales with the number of unresolved targets
+ * and is spread over time instead of being sent in periodic bursts.
+ * </p>
+ */
+public class ArpProbeScheduler implements AutoCloseable {
+
+	private static final Logger LOG = LoggerFactory.getLogger(ArpProbeScheduler.class);
+
+	static final long DEFAULT_INITIAL_INTERVAL = 1000; // milliseconds
+	static final long DEFAULT_MAX_INTERVAL = 30000; // milliseconds
+	static final long DEFAULT_MAX_ATTEMPTS = 5;
+	static final long DEFAULT_JITTER_PERCENT = 20;
+	// Longer than the 5 probes with their backoff and jitter, about 37 seconds
+	static final long DEFAULT_TIMEOUT = 60000; // milliseconds
+
+	/**
+	 * Listener notified when the scheduler gives up on a target.
+	 */
+	public interface ProbeListener {
+		/**
+		 * Called when a target did not answer any of the probes sent.
+		 *
+		 * @param ip
+		 *            the abandoned target
+		 * @param attempts
+		 *            number of probes sent
+		 */
+		void probeAbandoned(AtriumIpAddress ip, int attempts);
+	}
+
+	private final ConcurrentMap<AtriumIpAddress, ProbeState> targets = new ConcurrentHashMap<>();
+	private final List<ProbeListener> listeners = new CopyOnWriteArrayList<>();
+	private final Consumer<AtriumIpAddress> prober;
+	private final AtomicLong probes = new AtomicLong();
+	private final AtomicLong abandoned = new AtomicLong();
+
+	private volatile long initialInterval = DEFAULT_INITIAL_INTERVAL;
+	private volatile long maxInterval = DEFAULT_MAX_INTERVAL;
+	private volatile long maxAttempts = DEFAULT_MAX_ATTEMPTS;
+	private volatile long jitterPercent = DEFAULT_JITTER_PERCENT;
+	private volatile long timeout = DEFAULT_TIMEOUT;
+
+	/**
+	 * @param prober
+	 *            sends a single probe for a target
+	 */
+	public ArpProbeScheduler(Consumer<AtriumIpAddress> prober) {
+		this.prober = checkNotNull(prober);
+	}
+
+	/**
+	 * Sets the probe parameters. Null values keep the current setting.
+	 *
+	 * @param initialInterval
+	 *            delay after the first probe in milliseconds
+	 * @param maxInterval
+	 *            upper bound of the backoff delay in milliseconds
+	 * @param maxAttempts
+	 *            number of probes sent before giving up
+	 * @param jitterPercent
+	 *            random variation applied to each delay, in percent
+	 * @param timeout
+	 *            time in milliseconds after which a target is abandoned
+	 */
+	public void configure(Long initialInterval, Long maxInterval, Long maxAttempts, Long jitterPercent,
+			Long timeout) {
+		if (initialInterval != null && initialInterval > 0) {
+			this.initialInterval = initialInterval;
+		}
+		if (maxInterval != null && maxInterval > 0) {
+			this.maxInterval = maxInterval;
+		}
+		if (maxAttempts != null && maxAttempts > 0) {
+			this.maxAttempts = maxAttempts;
+		}
+		if (jitterPercent != null && jitterPercent >= 0 && jitterPercent < 100) {
+			this.jitterPercent = jitterPercent;
+		}
+		if (timeout != null && timeout > 0) {
+			this.timeout = timeout;
+		}
+	}
+
+	public void addListener(ProbeListener listener) {
+		listeners.add(checkNotNull(listener));
+	}
+
+	public void removeListener(ProbeListener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * Starts probing a target. Does nothing if the target is already being
+	 * probed.
+	 *
+	 * @param ip
+	 *            target address
+	 * @return true if probing was started by this call
+	 */
+	public boolean schedule(AtriumIpAddress ip) {
+		checkNotNull(ip, "Probe target is null");
+		ProbeState state = new ProbeState(ip);
+		if (targets.putIfAbsent(ip, state) != null) {
+			return false;
+		}
+		state.arm(0);
+		return true;
+	}
+
+	/**
+	 * Stops probing a target, typically because it has been resolved.
+	 *
+	 * @param ip
+	 *            target address
+	 * @return true if the target was being probed
+	 */
+	public boolean cancel(AtriumIpAddress ip) {
+		ProbeState state = targets.remove(ip);
+		if (state == null) {
+			return false;
+		}
+		state.disarm();
+		return true;
+	}
+
+	public boolean isScheduled(AtriumIpAddress ip) {
+		return targets.containsKey(ip);
+	}
+
+	/**
+	 * @return the number of targets currently being probed
+	 */
+	public int size() {
+		return targets.size();
+	}
+
+	/**
+	 * @return the number of probes sent
+	 */
+	public long getProbeCount() {
+		return probes.get();
+	}
+
+	/**
+	 * @return the number of targets abandoned
+	 */
+	public long getAbandonedCount() {
+		return abandoned.get();
+	}
+
+	/**
+	 * Computes the delay before the next probe without jitter.
+	 *
+	 * @param attempts
+	 *            number of probes already sent
+	 * @param initial
+	 *            delay after the first probe
+	 * @param max
+	 *            upper bound of the delay
+	 * @return the delay in milliseconds
+	 */
+	static long backoff(int attempts, long initial, long max) {
+		int shift = Math.min(Math.max(attempts - 1, 0), 30);
+		long delay = initial << shift;
+		return delay <= 0 || delay > max ? max : delay;
+	}
+
+	private long nextDelay(int attempts) {
+		long delay = backoff(attempts, initialInterval, maxInterval);
+		long jitter = delay * jitterPercent / 100;
+		if (jitter > 0) {
+			delay += ThreadLocalRandom.current().nextLong(-jitter, jitter + 1);
+		}
+		return delay;
+	}
+
+	@Override
+	public void close() {
+		for (ProbeState state : targets.values()) {
+			state.disarm();
+		}
+		targets.clear();
+	}
+
+	private final class ProbeState implements TimerTask {
+		private final AtriumIpAddress ip;
+		private final long deadline = System.currentTimeMillis() + timeout;
+		private volatile Timeout timerTimeout;
+		private int attempts;
+
+		ProbeState(AtriumIpAddress ip) {
+			this.ip = ip;
+		}
+
+		void arm(long delay) {
+			timerTimeout = AtriumTimer.getTimer().newTimeout(this, delay, TimeUnit.MILLISECONDS);
+		}
+
+		void disarm() {
+			Timeout current = timerTimeout;
+			if (current != null) {
+				current.cancel();
+			}
+		}
+
+		@Override
+		public void run(Timeout t) {
+			if (t.isCancelled() || targets.get(ip) != this) {
+				return;
+			}
+			long now = System.currentTimeMillis();
+			if (attempts >= maxAttempts || now >= deadline) {
+				if (targets.remove(ip, this)) {
+					abandoned.incrementAndGet();
+					LOG.warn("Giving up on {} after {} ARP probe(s)", ip, attempts);
+					for (ProbeListener listener : listeners) {
+						listener.probeAbandoned(ip, attempts);
+					}
+				}
+				return;
+			}
+			attempts++;
+			probes.incrementAndGet();
+			try {
+				prober.accept(ip);
+			} catch (RuntimeException e) {
+				LOG.warn("Failed to send ARP probe for {}", ip, e);
+			}
+			arm(Math.max(0, Math.min(nextDelay(attempts), deadline - now)));
+		}
+	}
+}
@@ -11,16 +11,13 @@ import static com.google.common.base.Preconditions.checkNotNull;
 
 import java.util.concurrent.Future;
 
-import org.opendaylight.atrium.hostservice.api.Arp;
 import org.opendaylight.atrium.hostservice.api.ArpMessageAddress;
 import org.opendaylight.atrium.hostservice.api.ArpOperation;
 import org.opendaylight.atrium.hostservice.api.ArpUtils;
-import org.opendaylight.atrium.hostservice.api.Vlan;
-import org.opendaylight.controller.liblldp.EtherTypes;
-import org.opendaylight.controller.liblldp.Ethernet;
 import org.opendaylight.controller.liblldp.NetUtils;
 import org.opendaylight.controller.liblldp.PacketException;
 import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev100924.Ipv4Address;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.yang.types.rev100924.MacAddress;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.NodeConnectorId;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.NodeConnectorRef;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.NodeId;
@@ -47,7 +44,9 @@ public class ArpSender {
 	private static final Logger LOG = LoggerFactory.getLogger(ArpSender.class);
 
 	private static final String OFPP_ALL = "0xfffffffc";
+	private static final byte[] BROADCAST_MAC = NetUtils.getBroadcastMACAddr();
 	private final PacketProcessingService packetProcessingService;
+	private final ArpFrameTemplates frameTemplates = new ArpFrameTemplates();
 
 	public ArpSender(PacketProcessingService packetProcessingService) {
 		this.packetProcessingService = checkNotNull(packetProcessingService);
@@ -98,29 +97,37 @@ public class ArpSender {
 	 */
 	public ListenableFuture<RpcResult<Void>> sendArp(ArpMessageAddress senderAddress, Ipv4Address tpa,
 			InstanceIdentifier<NodeConnector> egressNc) {
+		return sendArpRequest(senderAddress, tpa, null, egressNc, 0);
+	}
+
+	/**
+	 * Sends ARP Request as packet-out from the given port (node connector),
+	 * optionally tagged and optionally unicast to the last known MAC address
+	 * of the target.
+	 *
+	 * @param senderAddress
+	 *            the addresses used in sender part of ARP packet
+	 * @param tpa
+	 *            the target protocol address, in this case IPv4 address for
+	 *            which MAC should be discovered
+	 * @param targetMac
+	 *            the MAC address the request is unicast to, or null to
+	 *            broadcast it
+	 * @param egressNc
+	 *            the path to node connector from where the ARP packet will be
+	 *            sent
+	 * @param vlan
+	 *            the VLAN id the request is tagged with, 0 for untagged
+	 * @return future result about success of packet-out
+	 */
+	public ListenableFuture<RpcResult<Void>> sendArpRequest(ArpMessageAddress senderAddress, Ipv4Address tpa,
+			MacAddress targetMac, InstanceIdentifier<NodeConnector> egressNc, int vlan) {
 		checkNotNull(senderAddress);
 		checkNotNull(tpa);
 		checkNotNull(egressNc);
-		final Ethernet arpFrame = createArpFrame(senderAddress, tpa);
-		byte[] arpFrameAsBytes;
-		try {
-			arpFrameAsBytes = arpFrame.serialize();
-		} catch (PacketException e) {
-			LOG.warn("Serializition of ARP packet is not successful.", e);
-			if (LOG.isDebugEnabled()) {
-				LOG.debug("ARP packet: {}", ArpUtils.getArpFrameToStringFormat(arpFrame));
-			}
-			return Futures.immediateFailedFuture(e);
-		}
-		// Generate packet with destination switch and port
-
-		TransmitPacketInput packet = new TransmitPacketInputBuilder().setEgress(new NodeConnectorRef(egressNc))
-				.setNode(new NodeRef(egressNc.firstIdentifierOf(Node.class))).setPayload(arpFrameAsBytes).build();
-		if (LOG.isTraceEnabled()) {
-			LOG.trace("Sending ARP REQUEST \n{}", ArpUtils.getArpFrameToStringFormat(arpFrame));
-		}
-		Future<RpcResult<Void>> futureTransmitPacketResult = packetProcessingService.transmitPacket(packet);
-		return JdkFutureAdapters.listenInPoolThread(futureTransmitPacketResult);
+		byte[] destMac = targetMac == null ? BROADCAST_MAC : ArpUtils.macToBytes(targetMac);
+		int tci = vlan == 0 ? ArpFrameTemplates.UNTAGGED : ArpFrameTemplates.tci(0, vlan);
+		return sendArpFrame(ArpOperation.REQUEST, senderAddress, tci, destMac, ArpUtils.ipToBytes(tpa), egressNc);
 	}
 
 	public ListenableFuture<RpcResult<Void>> sendArpResponse(ArpMessageAddress senderAddress,
@@ -128,65 +135,36 @@ public class ArpSender {
 		checkNotNull(senderAddress);
 		checkNotNull(receiverAddress);
 		checkNotNull(egressNc);
-		final Ethernet arpFrame = createArpFrame(senderAddress, receiverAddress, vlan);
+		int tci = ArpFrameTemplates.UNTAGGED;
+		if (vlan != null) {
+			int priority = vlan.getPriorityCode() == null ? 0 : vlan.getPriorityCode();
+			tci = ArpFrameTemplates.tci(priority, vlan.getVlan().getValue());
+		}
+		LOG.debug("Egress for ARP packetOut: " + new NodeConnectorRef(egressNc).toString());
+		return sendArpFrame(ArpOperation.REPLY, senderAddress, tci,
+				ArpUtils.macToBytes(receiverAddress.getHardwareAddress()),
+				ArpUtils.ipToBytes(receiverAddress.getProtocolAddress()), egressNc);
+	}
+
+	private ListenableFuture<RpcResult<Void>> sendArpFrame(ArpOperation operation, ArpMessageAddress senderAddress,
+			int tci, byte[] targetMac, byte[] targetIp, InstanceIdentifier<NodeConnector> egressNc) {
+		byte[] senderMac = ArpUtils.macToBytes(senderAddress.getHardwareAddress());
+		byte[] senderIp = ArpUtils.ipToBytes(senderAddress.getProtocolAddress());
 		byte[] arpFrameAsBytes;
 		try {
-			arpFrameAsBytes = arpFrame.serialize();
+			arpFrameAsBytes = frameTemplates.getFrame(operation, senderMac, senderIp, tci, targetMac, targetIp);
 		} catch (PacketException e) {
 			LOG.warn("Serializition of ARP packet is not successful.", e);
-			if (LOG.isDebugEnabled()) {
-				LOG.debug("ARP packet: {}", ArpUtils.getArpFrameToStringFormat(arpFrame));
-			}
 			return Futures.immediateFailedFuture(e);
 		}
 		// Generate packet with destination switch and port
-		LOG.debug("Egress for ARP packetOut: " + new NodeConnectorRef(egressNc).toString());
 		TransmitPacketInput packet = new TransmitPacketInputBuilder().setEgress(new NodeConnectorRef(egressNc))
 				.setNode(new NodeRef(egressNc.firstIdentifierOf(Node.class))).setPayload(arpFrameAsBytes).build();
 		if (LOG.isTraceEnabled()) {
-			LOG.trace("Sending ARP RESPONSE \n{}", ArpUtils.getArpFrameToStringFormat(arpFrame));
+			LOG.trace("Sending ARP {} \n{}", operation, ArpUtils.getArpFrameToStringFormat(
+					ArpFrameTemplates.createFrame(operation, senderMac, senderIp, tci, targetMac, targetIp)));
 		}
 		Future<RpcResult<Void>> futureTransmitPacketResult = packetProcessingService.transmitPacket(packet);
 		return JdkFutureAdapters.listenInPoolThread(futureTransmitPacketResult);
 	}
-
-	private Ethernet createArpFrame(ArpMessageAddress senderAddress, Ipv4Address tpa) {
-		byte[] senderMac = ArpUtils.macToBytes(senderAddress.getHardwareAddress());
-		byte[] senderIp = ArpUtils.ipToBytes(senderAddress.getProtocolAddress());
-		byte[] targetMac = NetUtils.getBroadcastMACAddr();
-		byte[] targetIp = ArpUtils.ipToBytes(tpa);
-		Ethernet arpFrame = new Ethernet().setSourceMACAddress(senderMac).setDestinationMACAddress(targetMac)
-				.setEtherType(EtherTypes.ARP.shortValue());
-		Arp arp = new Arp().setOperation(ArpOperation.REQUEST.intValue()).setSenderHardwareAddress(senderMac)
-				.setSenderProtocolAddress(senderIp).setTargetHardwareAddress(targetMac)
-				.setTargetProtocolAddress(targetIp);
-		arpFrame.setPayload(arp);
-		return arpFrame;
-	}
-
-	private Ethernet createArpFrame(ArpMessageAddress senderAddress, ArpMessageAddress receiverAddress,
-			Header8021q vlan) {
-		byte[] senderMac = ArpUtils.macToBytes(senderAddress.getHardwareAddress());
-		byte[] senderIp = ArpUtils.ipToBytes(senderAddress.getProtocolAddress());
-		byte[] targetMac = ArpUtils.macToBytes(receiverAddress.getHardwareAddress());
-		byte[] targetIp = ArpUtils.ipToBytes(receiverAddress.getProtocolAddress());
-
-		Ethernet arpFrame = new Ethernet().setSourceMACAddress(senderMac).setDestinationMACAddress(targetMac);
-
-		Arp arp = new Arp().setOperation(ArpOperation.REPLY.intValue()).setSenderHardwareAddress(senderMac)
-				.setSenderProtocolAddress(senderIp).setTargetHardwareAddress(targetMac)
-				.setTargetProtocolAddress(targetIp);
-
-		if (vlan == null) {
-			arpFrame.setEtherType(EtherTypes.ARP.shortValue());
-			arpFrame.setPayload(arp);
-		} else {
-			arpFrame.setEtherType(EtherTypes.VLANTAGGED.shortValue());
-			Vlan vlanFrame = new Vlan().setEthernetType(EtherTypes.ARP.shortValue()).setCFI((short) 0)
-					.setPRI(vlan.getPriorityCode()).setVLAN(vlan.getVlan().getValue().shortValue());
-			vlanFrame.setPayload(arp);
-			arpFrame.setPayload(vlanFrame);
-		}
-		return arpFrame;
-	}
 }
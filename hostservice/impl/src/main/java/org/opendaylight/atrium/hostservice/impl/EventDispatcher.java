@@ -0,0 +1,276 @@
+/*
+ * Copyright (c) 2016 Wipro Ltd. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.atrium.hostservice.impl;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Delivers events to listeners asynchronously, so that the thread posting
+ * an event never waits on a listener.
+ * <p>
+ * Each listener has its own bounded queue drained by its own executor, so a
+ * slow listener only delays itself. Events are keyed, typically by IP
+ * address: at most one event per key is pending for a listener, and an event
+ * posted while another one with the same key is pending is coalesced with
+ * it, in place. Events with the same key are therefore delivered in the
+ * order they were posted. When a queue is full, new keys are dropped and
+ * counted.
+ * </p>
+ *
+ * @param <L>
+ *            the listener type
+ * @param <E>
+ *            the event type
+ */
+public class EventDispatcher<L, E> implements AutoCloseable {
+
+	private static final Logger LOG = LoggerFactory.getLogger(EventDispatcher.class);
+
+	static final int DEFAULT_CAPACITY = 4096;
+
+	private final String name;
+	private final BiConsumer<L, E> delivery;
+	private final Function<E, Object> keyFunction;
+	private final BinaryOperator<E> coalescer;
+	private final int capacity;
+	private final Supplier<ExecutorService> executors;
+
+	private final Map<L, ListenerQueue> queues = new ConcurrentHashMap<>();
+
+	private final AtomicLong dropped = new AtomicLong();
+	private final AtomicLong coalesced = new AtomicLong();
+	private final AtomicLong delivered = new AtomicLong();
+	private final LongAccumulator maxLag = new LongAccumulator(Math::max, 0);
+
+	/**
+	 * @param name
+	 *            name of the dispatcher, used for its threads
+	 * @param delivery
+	 *            delivers an event to a listener
+	 * @param keyFunction
+	 *            returns the key of an event
+	 * @param coalescer
+	 *            merges a pending event with a newer one with the same key;
+	 *            returns null when the two events cancel each other
+	 * @param capacity
+	 *            maximum number of pending events per listener
+	 */
+	public EventDispatcher(String name, BiConsumer<L, E> delivery, Function<E, Object> keyFunction,
+			BinaryOperator<E> coalescer, int capacity) {
+		this(name, delivery, keyFunction, coalescer, capacity, () -> Executors.newSingleThreadExecutor(
+				new ThreadFactoryBuilder().setNameFormat("atrium-" + name + "-%d").setDaemon(true).build()));
+	}
+
+	EventDispatcher(String name, BiConsumer<L, E> delivery, Function<E, Object> keyFunction,
+			BinaryOperator<E> coalescer, int capacity, Supplier<ExecutorService> executors) {
+		checkArgument(capacity > 0, "Capacity must be positive");
+		this.name = checkNotNull(name);
+		this.delivery = checkNotNull(delivery);
+		this.keyFunction = checkNotNull(keyFunction);
+		this.coalescer = checkNotNull(coalescer);
+		this.capacity = capacity;
+		this.executors = checkNotNull(executors);
+	}
+
+	public void addListener(L listener) {
+		checkNotNull(listener, "Listener cannot be null");
+		queues.computeIfAbsent(listener, l -> new ListenerQueue(l, executors.get()));
+	}
+
+	/**
+	 * Removes a listener. Its pending events are discarded.
+	 *
+	 * @param listener
+	 *            the listener
+	 * @return true if the listener was registered
+	 */
+	public boolean removeListener(L listener) {
+		ListenerQueue queue = queues.remove(listener);
+		if (queue == null) {
+			return false;
+		}
+		queue.close();
+		return true;
+	}
+
+	/**
+	 * Queues an event for every listener.
+	 *
+	 * @param event
+	 *            the event
+	 */
+	public void post(E event) {
+		checkNotNull(event, "Event cannot be null");
+		Object key = keyFunction.apply(event);
+		for (ListenerQueue queue : queues.values()) {
+			queue.offer(key, event);
+		}
+	}
+
+	/**
+	 * @return the number of events dropped because a listener queue was full
+	 */
+	public long getDroppedCount() {
+		return dropped.get();
+	}
+
+	/**
+	 * @return the number of events merged into a pending event
+	 */
+	public long getCoalescedCount() {
+		return coalesced.get();
+	}
+
+	/**
+	 * @return the number of events delivered to listeners
+	 */
+	public long getDeliveredCount() {
+		return delivered.get();
+	}
+
+	/**
+	 * @return the number of events waiting to be delivered, over all
+	 *         listeners
+	 */
+	public int getPendingCount() {
+		int pending = 0;
+		for (ListenerQueue queue : queues.values()) {
+			pending += queue.size();
+		}
+		return pending;
+	}
+
+	/**
+	 * @return the longest time in nanoseconds an event waited in a queue
+	 *         before being delivered
+	 */
+	public long getMaxLag() {
+		return maxLag.get();
+	}
+
+	@Override
+	public void close() {
+		for (L listener : queues.keySet()) {
+			removeListener(listener);
+		}
+	}
+
+	private static final class Pending<T> {
+		private T event;
+		private final long queuedAt;
+
+		Pending(T event, long queuedAt) {
+			this.event = event;
+			this.queuedAt = queuedAt;
+		}
+	}
+
+	/**
+	 * Pending events of a listener, in the order their keys were first
+	 * posted, drained by at most one task at a time.
+	 */
+	private final class ListenerQueue implements Runnable {
+		private final L listener;
+		private final ExecutorService executor;
+		private final LinkedHashMap<Object, Pending<E>> pending = new LinkedHashMap<>();
+		private boolean scheduled;
+		private boolean closed;
+
+		ListenerQueue(L listener, ExecutorService executor) {
+			this.listener = listener;
+			this.executor = executor;
+		}
+
+		synchronized void offer(Object key, E event) {
+			if (closed) {
+				return;
+			}
+			Pending<E> queued = pending.get(key);
+			if (queued != null) {
+				coalesced.incrementAndGet();
+				E merged = coalescer.apply(queued.event, event);
+				if (merged == null) {
+					pending.remove(key);
+				} else {
+					queued.event = merged;
+				}
+				return;
+			}
+			if (pending.size() >= capacity) {
+				long count = dropped.incrementAndGet();
+				if (count == 1 || count % 1000 == 0) {
+					LOG.warn("{} events for {} dropped, queue full ({} total)", name, listener, count);
+				}
+				return;
+			}
+			pending.put(key, new Pending<>(event, System.nanoTime()));
+			if (!scheduled) {
+				scheduled = true;
+				try {
+					executor.execute(this);
+				} catch (RejectedExecutionException e) {
+					scheduled = false;
+					LOG.debug("{} listener {} is closed", name, listener);
+				}
+			}
+		}
+
+		synchronized int size() {
+			return pending.size();
+		}
+
+		@Override
+		public void run() {
+			while (true) {
+				Pending<E> next;
+				synchronized (this) {
+					Iterator<Pending<E>> it = pending.values().iterator();
+					if (closed || !it.hasNext()) {
+						scheduled = false;
+						return;
+					}
+					next = it.next();
+					it.remove();
+				}
+				maxLag.accumulate(System.nanoTime() - next.queuedAt);
+				try {
+					delivery.accept(listener, next.event);
+					delivered.incrementAndGet();
+				} catch (RuntimeException e) {
+					LOG.warn("{} listener {} failed on {}", name, listener, next.event, e);
+				}
+			}
+		}
+
+		synchronized void close() {
+			closed = true;
+			pending.clear();
+			executor.shutdown();
+		}
+	}
+}
@@ -9,7 +9,6 @@ package org.opendaylight.atrium.hostservice.impl;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
@@ -17,27 +16,30 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
 
-import org.jboss.netty.util.Timeout;
-import org.jboss.netty.util.TimerTask;
 import org.opendaylight.atrium.hostservice.api.ArpMessageAddress;
 import org.opendaylight.atrium.hostservice.api.Host;
 import org.opendaylight.atrium.hostservice.api.HostEvent;
 import org.opendaylight.atrium.hostservice.api.HostService;
 import org.opendaylight.atrium.hostservice.api.HostUpdatesListener;
+import org.opendaylight.atrium.hostservice.api.Neighbor;
+import org.opendaylight.atrium.hostservice.impl.InterfaceAddressIndex.RouterInterface;
 import org.opendaylight.atrium.routingservice.config.api.RoutingConfigService;
 import org.opendaylight.atrium.util.AtriumIpAddress;
 import org.opendaylight.atrium.util.AtriumMacAddress;
-import org.opendaylight.atrium.util.AtriumTimer;
 import org.opendaylight.controller.md.sal.binding.api.DataBroker;
 import org.opendaylight.controller.md.sal.binding.api.DataChangeListener;
+import org.opendaylight.controller.md.sal.binding.api.DataTreeChangeService;
 import org.opendaylight.controller.md.sal.binding.api.ReadOnlyTransaction;
 import org.opendaylight.controller.md.sal.common.api.data.LogicalDatastoreType;
 import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev100924.Ipv4Address;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.yang.types.rev100924.MacAddress;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.NodeConnectorId;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.NodeId;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.Nodes;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.node.NodeConnector;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.node.NodeConnectorKey;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.nodes.Node;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.nodes.NodeKey;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.packet.service.rev130709.PacketProcessingService;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.bgpconfig.api.rev150725.bgpspeakers.BgpSpeaker;
@@ -45,10 +47,7 @@ import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.bgpconfi
 import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.bgpconfig.api.rev150725.bgpspeakers.bgpspeaker.InterfaceAddressesBuilder;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.hostservice.api.rev150725.HostId;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.hostservice.api.rev150725.address.node.connector.ConnectorAddress;
-import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.NetworkTopology;
 import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.TpId;
-import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.network.topology.Topology;
-import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.network.topology.topology.Link;
 import org.opendaylight.yangtools.concepts.ListenerRegistration;
 import org.opendaylight.yangtools.yang.binding.InstanceIdentifier;
 import org.slf4j.Logger;
@@ -57,14 +56,13 @@ import org.slf4j.LoggerFactory;
 import com.google.common.base.Optional;
 import com.google.common.util.concurrent.ListenableFuture;
 
-public class HostMonitor implements TimerTask {
+public class HostMonitor implements ArpProbeScheduler.ProbeListener {
 	private static final Logger LOG = LoggerFactory.getLogger(HostMonitor.class);
-	private static final long DEFAULT_PROBE_RATE = 30000; // milliseconds
 	private static final byte[] ZERO_MAC_ADDRESS = AtriumMacAddress.ZERO.toBytes();
-	private long probeRate = DEFAULT_PROBE_RATE;
 
-	private Timeout timeout;
+	private boolean started = false;
 
+	// Addresses for which a HOST_ADDED event is pending
 	private Set<AtriumIpAddress> monitoredAddresses = Collections.newSetFromMap(new ConcurrentHashMap<>());;
 	private ListenerRegistration<DataChangeListener> hostNodeListerRegistration;
 	private HostUpdatesListener hostUpdatesListener;
@@ -77,14 +75,20 @@ public class HostMonitor implements TimerTask {
 	private PacketProcessingService packetService;
 	private ArpSender arpSender;
 	private RoutingConfigService configService;
+	private final NeighborStore neighbors;
+	private final InternalPortTracker internalPortTracker = new InternalPortTracker();
+	private final InterfaceAddressIndex interfaceIndex = new InterfaceAddressIndex();
+	private final ArpProbeScheduler probeScheduler = new ArpProbeScheduler(this::sendArpRequest);
 
 	ExecutorService exec = Executors.newFixedThreadPool(CPUS);
 
-	public HostMonitor(HostUpdatesListener hostUpdatesListener, HostService hostService, DataBroker dataService,
-			RoutingConfigService configService, PacketProcessingService packetService) {
+	public HostMonitor(HostUpdatesListener hostUpdatesListener, HostService hostService, NeighborStore neighbors,
+			DataBroker dataService, RoutingConfigService configService, PacketProcessingService packetService) {
 		this.dataService = dataService;
+		this.neighbors = neighbors;
 		this.hostUpdatesListener = hostUpdatesListener;
 		this.hostService = hostService;
+		this.configService = configService;
 		this.packetService = packetService;
 		if (topologyId == null || topologyId.isEmpty()) {
 			this.topologyId = TOPOLOGY_NAME;
@@ -92,19 +96,34 @@ public class HostMonitor implements TimerTask {
 			this.topologyId = topologyId;
 		}
 		arpSender = new ArpSender(packetService);
+		probeScheduler.addListener(this);
 	}
 
 	/**
-	 * Adds an IP address to be monitored by the host monitor. The monitor will
-	 * periodically probe the host to detect changes.
+	 * Returns the scheduler used to probe unresolved addresses.
+	 *
+	 * @return the probe scheduler
+	 */
+	ArpProbeScheduler getProbeScheduler() {
+		return probeScheduler;
+	}
+
+	/**
+	 * Adds an IP address to be monitored by the host monitor. A HOST_ADDED
+	 * event is sent as soon as the host is known; until then the host is
+	 * probed by the probe scheduler.
 	 *
 	 * @param ip
 	 *            IP address of the host to monitor
 	 */
 	void addMonitoringFor(AtriumIpAddress ip) {
-		synchronized (monitoredAddresses) {
-			monitoredAddresses.add(ip);
+		Host host = hostService.getHost(new HostId(ip.toString()));
+		if (host != null) {
+			hostUpdatesListener.sendHostAddEvent(new HostEvent(HostEvent.Type.HOST_ADDED, host));
+			return;
 		}
+		monitoredAddresses.add(ip);
+		probeScheduler.schedule(ip);
 	}
 
 	/**
@@ -114,9 +133,8 @@ public class HostMonitor implements TimerTask {
 	 *            IP address to stop monitoring on
 	 */
 	void stopMonitoring(AtriumIpAddress ip) {
-		synchronized (monitoredAddresses) {
-			monitoredAddresses.remove(ip);
-		}
+		monitoredAddresses.remove(ip);
+		probeScheduler.cancel(ip);
 	}
 
 	/**
@@ -125,11 +143,13 @@ public class HostMonitor implements TimerTask {
 	void start() {
 		LOG.info("Starting Host Monitor Service");
 		synchronized (this) {
-			if (timeout == null) {
-				timeout = AtriumTimer.getTimer().newTimeout(this, 0, TimeUnit.MILLISECONDS);
+			if (started) {
+				return;
 			}
+			started = true;
 		}
-		// registerAsDataChangeListener();
+		internalPortTracker.register((DataTreeChangeService) dataService);
+		interfaceIndex.register((DataTreeChangeService) dataService);
 		LOG.info("Started Host Monitor Service");
 
 	}
@@ -139,47 +159,102 @@ public class HostMonitor implements TimerTask {
 	 */
 	void shutdown() {
 		synchronized (this) {
-			if (timeout != null) {
-				timeout.cancel();
-				timeout = null;
-			}
+			started = false;
 		}
+		probeScheduler.close();
+		monitoredAddresses.clear();
+		internalPortTracker.close();
+		interfaceIndex.close();
 	}
 
 	@Override
-	public void run(Timeout arg0) throws Exception {
-
-		LOG.info("**Timer triggered**");
+	public void probeAbandoned(AtriumIpAddress ip, int attempts) {
+		monitoredAddresses.remove(ip);
+	}
 
-		List<AtriumIpAddress> resolvedIps = new ArrayList<>();
-		for (AtriumIpAddress ip : monitoredAddresses) {
-			Host host = hostService.getHost(new HostId(ip.toString()));
-			if (host == null) {
-				LOG.info("Host not found.Sending ARP request for:" + ip);
-				// TODO : check if we can resolve from config
-				sendArpRequest(ip);
-			} else {
+	/**
+	 * Stops probing a newly learned host and notifies the listeners if the
+	 * host was being monitored.
+	 *
+	 * @param ip
+	 *            IP address of the host
+	 * @param hostId
+	 *            identifier of the host
+	 */
+	private void hostLearned(AtriumIpAddress ip, HostId hostId) {
+		probeScheduler.cancel(ip);
+		if (monitoredAddresses.remove(ip)) {
+			Host host = hostService.getHost(hostId);
+			if (host != null) {
 				LOG.info("IP resolved:" + ip);
-				HostEvent hostEvent = new HostEvent(HostEvent.Type.HOST_ADDED, host);
-				resolvedIps.add(ip);
-				hostUpdatesListener.sendHostAddEvent(hostEvent);
+				hostUpdatesListener.sendHostAddEvent(new HostEvent(HostEvent.Type.HOST_ADDED, host));
 			}
 		}
+	}
 
-		if (resolvedIps != null && !resolvedIps.isEmpty()) {
-			for (AtriumIpAddress resolvedIp : resolvedIps) {
-				synchronized (monitoredAddresses) {
-					monitoredAddresses.remove(resolvedIp);
-				}
+	/**
+	 * Sends an ARP request for the given IP address out of the router
+	 * interface whose subnet contains it. The request is unicast to the last
+	 * known MAC address and port of the host when they are still valid, and
+	 * sent on the interface port and VLAN otherwise.
+	 *
+	 * @param ip
+	 *            IP address to resolve
+	 */
+	void sendArpRequest(AtriumIpAddress ip) {
+		checkNotNull(ip, "ipaddress for ARP request is null");
+		RouterInterface egress = interfaceIndex.findInterfaceFor(ip);
+		if (egress == null) {
+			if (interfaceIndex.isEmpty()) {
+				// Interface addresses not known yet, fall back to flooding
+				floodArpRequest(ip);
+			} else {
+				LOG.debug("No interface subnet contains {}, not sending ARP request", ip);
 			}
-			resolvedIps.clear();
+			return;
+		}
+		ArpMessageAddress arpSenderAddress = new ArpMessageAddress(egress.mac(), egress.ip());
+		Ipv4Address tpa = new Ipv4Address(ip.toString());
+
+		Neighbor neighbor = neighbors.get(ip);
+		InstanceIdentifier<NodeConnector> lastPort = neighbor == null ? null : getValidPort(neighbor, egress);
+		if (lastPort != null) {
+			MacAddress lastMac = new MacAddress(neighbor.macAddress().toString());
+			LOG.debug("Sending ARP refresh for {} to {} on {}", ip, lastMac.getValue(), lastPort);
+			arpSender.sendArpRequest(arpSenderAddress, tpa, lastMac, lastPort, egress.vlan());
+		} else {
+			LOG.debug("Sending ARP request for {} on {}", ip, egress);
+			arpSender.sendArpRequest(arpSenderAddress, tpa, null, egress.port(), egress.vlan());
+		}
+	}
+
+	/**
+	 * Returns the port the neighbor was last seen on if it is still an edge
+	 * port of the switch the router interface is attached to.
+	 */
+	private InstanceIdentifier<NodeConnector> getValidPort(Neighbor neighbor, RouterInterface egress) {
+		NodeConnectorId port = neighbor.port();
+		if (port == null || internalPortTracker.isInternal(new TpId(port.getValue()))) {
+			return null;
 		}
-		LOG.info("setting timer again");
-		this.timeout = AtriumTimer.getTimer().newTimeout(this, probeRate, TimeUnit.MILLISECONDS);
+		NodeKey egressNode = egress.port().firstKeyOf(Node.class, NodeKey.class);
+		String connectorId = port.getValue();
+		int separator = connectorId.lastIndexOf(':');
+		if (separator > 0 && connectorId.substring(0, separator).equals(egressNode.getId().getValue())) {
+			return InstanceIdentifier.builder(Nodes.class).child(Node.class, egressNode)
+					.child(NodeConnector.class, new NodeConnectorKey(port)).build();
+		}
+		return null;
 	}
 
-	private void sendArpRequest(AtriumIpAddress ip) {
-		checkNotNull(ip, "ipaddress for ARP flood is null");
+	/**
+	 * Floods an ARP request for the given IP address from every interface
+	 * address of the BGP speakers.
+	 *
+	 * @param ip
+	 *            IP address to resolve
+	 */
+	private void floodArpRequest(AtriumIpAddress ip) {
 		LOG.info("MAC not found sending ARP flood");
 		List<BgpSpeaker> speakers = configService.getBgpSpeakers().getBgpSpeaker();
 
@@ -209,7 +284,11 @@ public class HostMonitor implements TimerTask {
 	// TODO: check if we need to directly monitor ARP requests and update host
 	// list (just like in l2switch/hostracker)
 	public void packetReceived(ConnectorAddress addrs, InstanceIdentifier<?> ii) {
+		long receivedAt = System.nanoTime();
 		InstanceIdentifier<NodeConnector> iinc = ii.firstIdentifierOf(NodeConnector.class);
+		if (iinc != null && processKnownNeighbor(addrs, iinc, receivedAt)) {
+			return;
+		}
 		InstanceIdentifier<org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.nodes.Node> iin//
 		= ii.firstIdentifierOf(org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.nodes.Node.class);
 
@@ -233,6 +312,56 @@ public class HostMonitor implements TimerTask {
 		}
 	}
 
+	/**
+	 * Handles a packet from a known neighbor without reading the inventory.
+	 * The neighbor is refreshed, or updated right away when it shows up with
+	 * another MAC address or on another port, as a router that failed over
+	 * announces with a gratuitous ARP, so that the routes through it are
+	 * rewritten.
+	 *
+	 * @return true if the neighbor was known
+	 */
+	private boolean processKnownNeighbor(ConnectorAddress address, InstanceIdentifier<NodeConnector> iinc,
+			long receivedAt) {
+		AtriumIpAddress ip = toIp(address);
+		if (ip == null || address.getMac() == null) {
+			return false;
+		}
+		Neighbor known = neighbors.get(ip);
+		if (known == null) {
+			return false;
+		}
+		NodeConnectorId port = iinc.firstKeyOf(NodeConnector.class, NodeConnectorKey.class).getId();
+		if (internalPortTracker.isInternal(new TpId(port.getValue()))) {
+			return true;
+		}
+		long mac = AtriumMacAddress.valueOf(address.getMac().getValue()).toLong();
+		int vlan = address.getVlan() == null ? Neighbor.UNTAGGED : address.getVlan().getValue();
+		long lastSeen = address.getLastSeen() == null ? System.currentTimeMillis() : address.getLastSeen();
+		Neighbor seen = new Neighbor(ip, mac, port, vlan, lastSeen);
+		if (known.sameLocation(seen)) {
+			neighbors.touch(ip, mac, lastSeen);
+		} else {
+			LOG.info("Neighbor {} moved from {} on {} to {} on {}", ip, known.macAddress(), known.port(),
+					seen.macAddress(), port.getValue());
+			neighbors.update(seen, receivedAt);
+		}
+		return true;
+	}
+
+	private static AtriumIpAddress toIp(ConnectorAddress address) {
+		if (address.getIp() == null) {
+			return null;
+		}
+		if (address.getIp().getIpv4Address() != null) {
+			return AtriumIpAddress.valueOf(address.getIp().getIpv4Address().getValue());
+		}
+		if (address.getIp().getIpv6Address() != null) {
+			return AtriumIpAddress.valueOf(address.getIp().getIpv6Address().getValue());
+		}
+		return null;
+	}
+
 	private void processHost(org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.nodes.Node node,
 			NodeConnector nodeConnector, ConnectorAddress addrs) {
 		if (!isNodeConnectorInternal(nodeConnector)) {
@@ -242,36 +371,7 @@ public class HostMonitor implements TimerTask {
 	}
 
 	private boolean isNodeConnectorInternal(NodeConnector nodeConnector) {
-		TpId tpId = new TpId(nodeConnector.getKey().getId().getValue());
-		InstanceIdentifier<NetworkTopology> ntII = InstanceIdentifier.builder(NetworkTopology.class).build();
-		ListenableFuture<Optional<NetworkTopology>> lfONT;
-		try (ReadOnlyTransaction rot = dataService.newReadOnlyTransaction()) {
-			lfONT = rot.read(LogicalDatastoreType.OPERATIONAL, ntII);
-			rot.close();
-		}
-		Optional<NetworkTopology> oNT;
-		try {
-			oNT = lfONT.get();
-		} catch (InterruptedException | ExecutionException ex) {
-			LOG.warn(ex.getLocalizedMessage());
-			return false;
-		}
-		if (oNT != null && oNT.isPresent()) {
-			NetworkTopology networkTopo = oNT.get();
-			for (Topology t : networkTopo.getTopology()) {
-				if (t.getLink() != null) {
-					for (Link l : t.getLink()) {
-						if ((l.getSource().getSourceTp().equals(tpId)
-								&& !l.getDestination().getDestTp().getValue().startsWith(Host.NODE_PREFIX))
-								|| (l.getDestination().getDestTp().equals(tpId)
-										&& !l.getSource().getSourceTp().getValue().startsWith(Host.NODE_PREFIX))) {
-							return true;
-						}
-					}
-				}
-			}
-		}
-		return false;
+		return internalPortTracker.isInternal(new TpId(nodeConnector.getKey().getId().getValue()));
 	}
 
 	private void addHost(ConnectorAddress address, NodeConnector nodeConnector) {
@@ -281,27 +381,33 @@ public class HostMonitor implements TimerTask {
 				.getIp().getIpv4Address();
 		org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev100924.Ipv6Address ipv6Address = address
 				.getIp().getIpv6Address();
-		HostId hostId = null;
 		if (ipv4Address != null) {
-			org.opendaylight.atrium.util.AtriumIpAddress ip = org.opendaylight.atrium.util.AtriumIpAddress
-					.valueOf(ipv4Address.getValue());
-			hostId = new HostId(ipv4Address.getValue());
-			if (hostService.getHost(hostId) == null) {
-				Host host = new Host(address, nodeConnector);
-				hostUpdatesListener.addHost(hostId, host);
-			}
+			learnHost(AtriumIpAddress.valueOf(ipv4Address.getValue()), new HostId(ipv4Address.getValue()), address,
+					nodeConnector);
 		} else if (ipv6Address != null) {
-			org.opendaylight.atrium.util.AtriumIpAddress ip = org.opendaylight.atrium.util.AtriumIpAddress
-					.valueOf(ipv6Address.getValue());
-			hostId = new HostId(ipv6Address.getValue());
-			if (hostService.getHost(hostId) == null) {
-				Host host = new Host(address, nodeConnector);
-				hostUpdatesListener.addHost(hostId, host);
-			}
+			learnHost(AtriumIpAddress.valueOf(ipv6Address.getValue()), new HostId(ipv6Address.getValue()), address,
+					nodeConnector);
 		}
 
 	}
 
+	/**
+	 * Refreshes a known neighbor seen again with the same MAC address, or
+	 * adds a new one.
+	 */
+	private void learnHost(AtriumIpAddress ip, HostId hostId, ConnectorAddress address, NodeConnector nodeConnector) {
+		long lastSeen = address.getLastSeen() == null ? System.currentTimeMillis() : address.getLastSeen();
+		if (address.getMac() != null
+				&& neighbors.touch(ip, AtriumMacAddress.valueOf(address.getMac().getValue()).toLong(), lastSeen)) {
+			return;
+		}
+		if (neighbors.get(ip) == null) {
+			Host host = new Host(address, nodeConnector);
+			hostUpdatesListener.addHost(hostId, host);
+			hostLearned(ip, hostId);
+		}
+	}
+
 	private void addHost(ConnectorAddress address, Host host) {
 		checkNotNull(address);
 		checkNotNull(host);
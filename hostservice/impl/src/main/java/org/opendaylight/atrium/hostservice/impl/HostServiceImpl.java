@@ -9,11 +9,11 @@ package org.opendaylight.atrium.hostservice.impl;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
-import java.util.List;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.CompletableFuture;
 
+import org.opendaylight.atrium.atriumutil.metrics.MetricsExporter;
+import org.opendaylight.atrium.atriumutil.metrics.MetricsRegistry;
 import org.opendaylight.atrium.hostservice.api.AddressUpdateEvent;
 import org.opendaylight.atrium.hostservice.api.AddressUpdateListener;
 import org.opendaylight.atrium.hostservice.api.Host;
@@ -21,18 +21,33 @@ import org.opendaylight.atrium.hostservice.api.HostEvent;
 import org.opendaylight.atrium.hostservice.api.HostListener;
 import org.opendaylight.atrium.hostservice.api.HostService;
 import org.opendaylight.atrium.hostservice.api.HostUpdatesListener;
+import org.opendaylight.atrium.hostservice.api.Neighbor;
+import org.opendaylight.atrium.hostservice.api.NeighborTable;
+import org.opendaylight.atrium.hostservice.arp.ArpHandler;
 import org.opendaylight.atrium.routingservice.config.api.RoutingConfigService;
 import org.opendaylight.atrium.util.AtriumIpAddress;
 import org.opendaylight.atrium.util.AtriumMacAddress;
 import org.opendaylight.controller.md.sal.binding.api.DataBroker;
+import org.opendaylight.controller.md.sal.binding.api.DataTreeChangeService;
 import org.opendaylight.controller.sal.binding.api.BindingAwareBroker.ProviderContext;
 import org.opendaylight.controller.sal.binding.api.BindingAwareProvider;
 import org.opendaylight.controller.sal.binding.api.NotificationProviderService;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev100924.IpAddress;
 import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev100924.Ipv4Address;
 import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev100924.Ipv6Address;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.yang.types.rev100924.MacAddress;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.NodeConnectorId;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.node.NodeConnector;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.node.NodeConnectorBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.node.NodeConnectorKey;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.packet.ethernet.rev140528.VlanId;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.packet.service.rev130709.PacketProcessingService;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.hostservice.api.rev150725.HostId;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.hostservice.api.rev150725.HostNode;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.hostservice.api.rev150725.address.node.connector.ConnectorAddress;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.hostservice.api.rev150725.address.node.connector.ConnectorAddressBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.hostservice.api.rev150725.host.AttachmentPoints;
+import org.opendaylight.yangtools.concepts.ListenerRegistration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -40,15 +55,36 @@ public class HostServiceImpl
 		implements HostService, AutoCloseable, BindingAwareProvider, HostUpdatesListener, AddressUpdateListener {
 
 	private static final Logger LOG = LoggerFactory.getLogger(HostServiceImpl.class);
-	Set<HostListener> listeners = new CopyOnWriteArraySet<>();
+	// Delivers host events without blocking host learning
+	private final EventDispatcher<HostListener, HostEvent> hostEvents = new EventDispatcher<>("host-events",
+			HostListener::hostEventUpdate, HostServiceImpl::eventKey, HostServiceImpl::coalesce,
+			EventDispatcher.DEFAULT_CAPACITY);
 	private DataBroker dataService;
 	private RoutingConfigService configService;
 	private PacketProcessingService packetService;
 	private NotificationProviderService notificationService;
-	private AddressTracker addressTracker;
-	private ConcurrentHashMap<HostId, Host> hostStore;
+	// Single source of truth for the IP to MAC bindings
+	private final NeighborStore neighbors = new NeighborStore();
 	private HostMonitor monitor;
+	private NeighborAger ager;
+	private PeerPreResolver peerResolver;
+	private NextHopResolver resolver;
 	private AddressObserver addressObserver;
+	// Answers the ARP requests for the gateway addresses, closed with the
+	// host service
+	private ArpHandler arpHandler;
+	private ListenerRegistration<?> arpHandlerRegistration;
+	// Metrics of the neighbor resolution, exported over JMX and to the
+	// operational datastore
+	private final MetricsRegistry metrics = new MetricsRegistry("hostservice");
+	private MetricsExporter metricsExporter;
+	private Long arpRetryInterval;
+	private Long arpMaxRetryInterval;
+	private Long arpMaxRetries;
+	private Long arpRetryJitter;
+	private Long arpResolveTimeout;
+	private Long neighborTtl;
+	private Long neighborRefreshBefore;
 
 	public void setServices(DataBroker dataService, RoutingConfigService configService,
 			PacketProcessingService packetService, NotificationProviderService notificationService) {
@@ -58,40 +94,145 @@ public class HostServiceImpl
 		this.notificationService = notificationService;
 	}
 
+	/**
+	 * Sets the ARP handler of the host service, and its registration as a
+	 * packet-in listener. Both are closed when the host service is closed.
+	 *
+	 * @param arpHandler
+	 *            the ARP handler
+	 * @param registration
+	 *            the registration of the handler as a notification listener
+	 */
+	public void setArpHandler(ArpHandler arpHandler, ListenerRegistration<?> registration) {
+		this.arpHandler = arpHandler;
+		this.arpHandlerRegistration = registration;
+	}
+
+	/**
+	 * Sets the parameters used when probing unresolved IP addresses. Null
+	 * values keep the defaults.
+	 *
+	 * @param retryInterval
+	 *            delay after the first ARP request in milliseconds
+	 * @param maxRetryInterval
+	 *            upper bound of the backoff delay in milliseconds
+	 * @param maxRetries
+	 *            number of ARP requests sent before giving up
+	 * @param retryJitter
+	 *            random variation applied to each delay, in percent
+	 * @param timeout
+	 *            overall resolution timeout in milliseconds
+	 */
+	public void setResolverConfig(Long retryInterval, Long maxRetryInterval, Long maxRetries, Long retryJitter,
+			Long timeout) {
+		this.arpRetryInterval = retryInterval;
+		this.arpMaxRetryInterval = maxRetryInterval;
+		this.arpMaxRetries = maxRetries;
+		this.arpRetryJitter = retryJitter;
+		this.arpResolveTimeout = timeout;
+	}
+
+	/**
+	 * Sets the neighbor aging parameters. Null values keep the defaults.
+	 *
+	 * @param ttl
+	 *            time in milliseconds after which a neighbor not seen is
+	 *            removed
+	 * @param refreshBefore
+	 *            time in milliseconds before expiry at which next hops in use
+	 *            are refreshed
+	 * @param maxEntries
+	 *            maximum number of neighbors kept
+	 */
+	public void setNeighborConfig(Long ttl, Long refreshBefore, Long maxEntries) {
+		this.neighborTtl = ttl;
+		this.neighborRefreshBefore = refreshBefore;
+		neighbors.setMaxEntries(maxEntries);
+	}
+
 	@Override
 	public void close() throws Exception {
 		LOG.info("Stopping HostService");
 		stop();
+		if (arpHandlerRegistration != null) {
+			arpHandlerRegistration.close();
+		}
+		if (arpHandler != null) {
+			arpHandler.close();
+		}
+		hostEvents.close();
+		neighbors.close();
 	}
 
 	@Override
 	public void start() {
 		LOG.info("Starting host service");
 		checkNotNull(dataService, "DataBroker is null");
-		monitor = new HostMonitor(this, this, dataService, configService, packetService);
+		monitor = new HostMonitor(this, this, neighbors, dataService, configService, packetService);
+		monitor.getProbeScheduler().configure(arpRetryInterval, arpMaxRetryInterval, arpMaxRetries, arpRetryJitter,
+				arpResolveTimeout);
 		monitor.start();
+		resolver = new NextHopResolver(monitor.getProbeScheduler());
+		ager = new NeighborAger(neighbors, monitor::sendArpRequest);
+		ager.configure(neighborTtl, neighborRefreshBefore);
+		ager.start();
+		peerResolver = new PeerPreResolver(configService, neighbors, this::resolve);
+		peerResolver.start((DataTreeChangeService) dataService);
 		addressObserver = new AddressObserver(monitor, notificationService);
 		addressObserver.registerAsNotificationListener();
+		registerMetrics(monitor.getProbeScheduler(), ager, addressObserver);
+		metricsExporter = new MetricsExporter(metrics, dataService);
+		metricsExporter.start();
 		LOG.info("Host service started");
 	}
 
+	/**
+	 * Registers the counters of the helpers of a start, replacing those of
+	 * the previous start.
+	 */
+	private void registerMetrics(ArpProbeScheduler probes, NeighborAger neighborAger, AddressObserver observer) {
+		metrics.gauge("neighbors", neighbors::size);
+		metrics.counter("neighbors-evicted", neighbors::getEvictedCount);
+		metrics.counter("neighbors-expired", neighborAger::getExpiredCount);
+		metrics.gauge("arp-probe-targets", probes::size);
+		metrics.counter("arp-probes-sent", probes::getProbeCount);
+		metrics.counter("arp-probes-abandoned", probes::getAbandonedCount);
+		metrics.counter("packet-ins-arp", observer::getArpPacketCount);
+		metrics.counter("packet-ins-ipv4", observer::getIpv4PacketCount);
+		metrics.counter("packet-ins-ipv6", observer::getIpv6PacketCount);
+		metrics.counter("host-events-dropped", hostEvents::getDroppedCount);
+	}
+
+	/**
+	 * @return the metrics of the neighbor resolution
+	 */
+	public MetricsRegistry getMetrics() {
+		return metrics;
+	}
+
 	@Override
 	public void stop() {
+		if (metricsExporter != null) {
+			metricsExporter.close();
+		}
+		if (peerResolver != null) {
+			peerResolver.close();
+		}
 		if (monitor != null) {
 			monitor.shutdown();
 		}
-		if (hostStore != null) {
-			hostStore.clear();
+		if (resolver != null) {
+			resolver.close();
 		}
-		if (listeners != null) {
-			listeners.clear();
+		if (ager != null) {
+			ager.close();
 		}
+		neighbors.clear();
 	}
 
 	@Override
 	public void onSessionInitiated(ProviderContext session) {
 		LOG.debug("Host service session starterd");
-		hostStore = new ConcurrentHashMap<>();
 	}
 
 	@Override
@@ -100,6 +241,23 @@ public class HostServiceImpl
 		monitor.addMonitoringFor(nhIp);
 	}
 
+	@Override
+	public CompletableFuture<AtriumMacAddress> resolve(AtriumIpAddress ip) {
+		checkNotNull(ip, "IP address to resolve is null");
+		checkNotNull(resolver, "Host service not started");
+		AtriumMacAddress mac = getMacAddressByIp(ip);
+		if (mac != null) {
+			return CompletableFuture.completedFuture(mac);
+		}
+		CompletableFuture<AtriumMacAddress> future = resolver.resolve(ip);
+		// The host may have been learned before the resolution was registered
+		mac = getMacAddressByIp(ip);
+		if (mac != null) {
+			resolver.hostLearned(ip, mac);
+		}
+		return future;
+	}
+
 	@Override
 	public Set<Host> getHostsByIp(AtriumIpAddress ip) {
 		return null;
@@ -108,7 +266,13 @@ public class HostServiceImpl
 
 	@Override
 	public ConnectorAddress getAddressByIp(AtriumIpAddress ip) {
-		return addressTracker.getAddress(ip);
+		Neighbor neighbor = neighbors.get(ip);
+		return neighbor == null ? null : toConnectorAddress(neighbor);
+	}
+
+	@Override
+	public NeighborTable getNeighborTable() {
+		return neighbors;
 	}
 
 	/**
@@ -120,124 +284,195 @@ public class HostServiceImpl
 	 */
 	public Host getHost(HostId hostId) {
 		checkNotNull(hostId, "HostId is null");
-		checkNotNull(hostStore, "Hoststore not initialized");
-		return hostStore.get(hostId);
+		AtriumIpAddress ip = toIp(hostId);
+		Neighbor neighbor = ip == null ? null : neighbors.get(ip);
+		return neighbor == null ? null : toHost(neighbor);
 	}
 
 	@Override
 	public void addListener(HostListener listener) {
 		checkNotNull(listener, "Listener cannot be null");
-		listeners.add(listener);
+		hostEvents.addListener(listener);
 	}
 
 	@Override
 	public void removeListener(HostListener listener) {
 		checkNotNull(listener, "Listener cannot be null");
-		if (!listeners.remove(listener)) {
+		if (!hostEvents.removeListener(listener)) {
 			LOG.warn("Listener {} not registered", listener);
 		}
 	}
 
-	public synchronized void sendHostAddEvent(HostEvent hostEvent) {
-		for (HostListener listener : listeners) {
-			listener.hostEventUpdate(hostEvent);
-		}
+	public void sendHostAddEvent(HostEvent hostEvent) {
+		hostEvents.post(hostEvent);
+	}
+
+	/**
+	 * @return the dispatcher of the host events, with its drop and lag
+	 *         counters
+	 */
+	public EventDispatcher<HostListener, HostEvent> getHostEventDispatcher() {
+		return hostEvents;
 	}
 
 	@Override
 	public void deleteHost(HostId hostId) {
-		checkNotNull(hostStore, "HostStore empty");
 		checkNotNull(hostId, "HostId empty");
-		synchronized (hostStore) {
-			if (hostStore.isEmpty()) {
-				return;
-			}
-			Host delHost = null;
-			if (hostStore.containsKey(hostId)) {
-				delHost = hostStore.remove(hostId);
-			}
-			if (delHost != null) {
-				HostEvent hostEvent = new HostEvent(HostEvent.Type.HOST_REMOVED, delHost);
-				for (HostListener listener : listeners) {
-					listener.hostEventUpdate(hostEvent);
-				}
-			}
+		AtriumIpAddress ip = toIp(hostId);
+		if (ip == null) {
+			return;
+		}
+		Neighbor removed = neighbors.remove(ip);
+		if (removed != null) {
+			hostEvents.post(new HostEvent(HostEvent.Type.HOST_REMOVED, toHost(removed)));
 		}
 	}
 
 	@Override
 	public void addHost(HostId hostId, Host host) {
-		checkNotNull(hostStore);
 		checkNotNull(hostId);
 		checkNotNull(host);
-		synchronized (hostStore) {
-			if (!hostStore.containsKey(hostId)) {
-				LOG.debug("Hoststore does not contain key :" + hostId + " .Adding.");
-				hostStore.put(hostId, host);
+		AtriumIpAddress ip = toIp(hostId);
+		if (ip == null) {
+			LOG.warn("Ignoring host {} whose id is not an IP address", hostId);
+			return;
+		}
+		Neighbor neighbor = toNeighbor(ip, host);
+		if (neighbor == null) {
+			LOG.warn("Ignoring host {} without an address for {}", hostId, ip);
+			return;
+		}
+		if (neighbors.get(ip) == null) {
+			LOG.debug("Neighbor table does not contain {}. Adding.", ip);
+			neighbors.update(neighbor);
+		}
+		if (resolver != null) {
+			AtriumMacAddress mac = getMacAddressByIp(ip);
+			if (mac != null) {
+				resolver.hostLearned(ip, mac);
 			}
 		}
 	}
 
 	@Override
 	public AtriumMacAddress getMacAddressByIp(AtriumIpAddress ip) {
-		Host host = getHost(new HostId(ip.toString()));
-		if (host == null) {
-			return null;
-		}
-		List<ConnectorAddress> addresses = host.getHostNode().getConnectorAddress();
-		for (ConnectorAddress address : addresses) {
-			Ipv4Address ipv4Address = address.getIp().getIpv4Address();
-			Ipv6Address ipv6Address = address.getIp().getIpv6Address();
-			AtriumIpAddress atriumIp = null;
-			if (ipv4Address != null) {
-				atriumIp = AtriumIpAddress.valueOf(ipv4Address.getValue());
-			} else if (ipv6Address != null) {
-				atriumIp = AtriumIpAddress.valueOf(ipv6Address.getValue());
-			}
-
-			if (atriumIp != null && atriumIp.equals(ip)) {
-				return AtriumMacAddress.valueOf(address.getMac().getValue());
-			}
-		}
-		return null;
+		Neighbor neighbor = neighbors.get(ip);
+		return neighbor == null ? null : neighbor.macAddress();
 	}
 
+	@Override
 	public void updateAddress(AddressUpdateEvent event) {
 		checkNotNull(event);
 		checkNotNull(event.getAddress());
-		addressTracker.addAddress(AtriumIpAddress.valueOf(event.getAddress().getIp().toString()), event.getAddress());
+		ConnectorAddress address = event.getAddress();
+		AtriumIpAddress ip = toIp(address.getIp());
+		if (ip == null || address.getMac() == null) {
+			return;
+		}
+		Neighbor known = neighbors.get(ip);
+		NodeConnectorId port = known == null ? null : known.port();
+		neighbors.update(new Neighbor(ip, AtriumMacAddress.valueOf(address.getMac().getValue()).toLong(), port,
+				toVlan(address), lastSeen(address)));
 	}
 
-	class AddressTracker {
-		private ConcurrentHashMap<AtriumIpAddress, ConnectorAddress> addressStore;
+	private static Object eventKey(HostEvent event) {
+		Host host = event.getHost();
+		return host == null || host.getId() == null ? event : host.getId();
+	}
 
-		public AddressTracker() {
-			addressStore = new ConcurrentHashMap<>();
+	/**
+	 * Merges two events of the same host into their net effect.
+	 *
+	 * @return the merged event, or null if the events cancel each other
+	 */
+	static HostEvent coalesce(HostEvent first, HostEvent second) {
+		if (first.getType() != HostEvent.Type.HOST_ADDED) {
+			return second;
+		}
+		if (second.getType() == HostEvent.Type.HOST_REMOVED) {
+			return null;
 		}
+		return new HostEvent(HostEvent.Type.HOST_ADDED, second.getHost());
+	}
 
-		public void addAddress(AtriumIpAddress ip, ConnectorAddress address) {
+	private static AtriumIpAddress toIp(HostId hostId) {
+		try {
+			return AtriumIpAddress.valueOf(hostId.getValue());
+		} catch (IllegalArgumentException e) {
+			return null;
+		}
+	}
 
-			synchronized (addressStore) {
-				addressStore.put(ip, address);
-			}
+	private static AtriumIpAddress toIp(IpAddress ip) {
+		if (ip == null) {
+			return null;
+		}
+		if (ip.getIpv4Address() != null) {
+			return AtriumIpAddress.valueOf(ip.getIpv4Address().getValue());
+		}
+		if (ip.getIpv6Address() != null) {
+			return AtriumIpAddress.valueOf(ip.getIpv6Address().getValue());
 		}
+		return null;
+	}
 
-		public void updateAddress(AtriumIpAddress ip, ConnectorAddress address) {
-			synchronized (addressStore) {
-				addressStore.replace(ip, address);
+	private static int toVlan(ConnectorAddress address) {
+		return address.getVlan() == null ? Neighbor.UNTAGGED : address.getVlan().getValue();
+	}
+
+	private static long lastSeen(ConnectorAddress address) {
+		return address.getLastSeen() == null ? System.currentTimeMillis() : address.getLastSeen();
+	}
+
+	/**
+	 * Extracts the neighbor for the IP address from a host built by the host
+	 * monitor.
+	 */
+	private static Neighbor toNeighbor(AtriumIpAddress ip, Host host) {
+		HostNode hostNode = host.getNode().getAugmentation(HostNode.class);
+		if (hostNode == null || hostNode.getConnectorAddress() == null) {
+			return null;
+		}
+		NodeConnectorId port = null;
+		if (hostNode.getAttachmentPoints() != null) {
+			for (AttachmentPoints attachmentPoint : hostNode.getAttachmentPoints()) {
+				if (attachmentPoint.getTpId() != null && Boolean.TRUE.equals(attachmentPoint.isActive())) {
+					port = new NodeConnectorId(attachmentPoint.getTpId().getValue());
+					break;
+				}
 			}
 		}
-
-		public void deleteAddress(AtriumIpAddress ip) {
-			synchronized (addressStore) {
-				addressStore.remove(ip);
+		for (ConnectorAddress address : hostNode.getConnectorAddress()) {
+			if (address.getMac() != null && ip.equals(toIp(address.getIp()))) {
+				return new Neighbor(ip, AtriumMacAddress.valueOf(address.getMac().getValue()).toLong(), port,
+						toVlan(address), lastSeen(address));
 			}
 		}
+		return null;
+	}
 
-		public ConnectorAddress getAddress(AtriumIpAddress ip) {
-			return addressStore.get(ip);
+	private static ConnectorAddress toConnectorAddress(Neighbor neighbor) {
+		AtriumIpAddress ip = neighbor.ip();
+		IpAddress ipAddress = ip.isIp4() ? new IpAddress(new Ipv4Address(ip.toString()))
+				: new IpAddress(new Ipv6Address(ip.toString()));
+		ConnectorAddressBuilder builder = new ConnectorAddressBuilder().setIp(ipAddress)
+				.setMac(new MacAddress(neighbor.macAddress().toString())).setLastSeen(neighbor.lastSeen());
+		if (neighbor.vlan() != Neighbor.UNTAGGED) {
+			builder.setVlan(new VlanId(neighbor.vlan()));
 		}
-
+		return builder.build();
 	}
 
+	/**
+	 * Builds the host model object of a neighbor for the host events and
+	 * {@link #getHost(HostId)}.
+	 */
+	private static Host toHost(Neighbor neighbor) {
+		NodeConnector nodeConnector = null;
+		if (neighbor.port() != null) {
+			nodeConnector = new NodeConnectorBuilder().setId(neighbor.port())
+					.setKey(new NodeConnectorKey(neighbor.port())).build();
+		}
+		return new Host(toConnectorAddress(neighbor), nodeConnector);
+	}
 }
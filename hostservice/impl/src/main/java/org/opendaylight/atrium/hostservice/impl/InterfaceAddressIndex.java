@@ -0,0 +1,222 @@
+/*
+ * Copyright (c) 2016 Wipro Ltd. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.atrium.hostservice.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.opendaylight.atrium.util.AtriumIp4Address;
+import org.opendaylight.atrium.util.AtriumIpAddress;
+import org.opendaylight.controller.md.sal.binding.api.DataTreeChangeListener;
+import org.opendaylight.controller.md.sal.binding.api.DataTreeChangeService;
+import org.opendaylight.controller.md.sal.binding.api.DataTreeIdentifier;
+import org.opendaylight.controller.md.sal.binding.api.DataTreeModification;
+import org.opendaylight.controller.md.sal.common.api.data.LogicalDatastoreType;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev100924.Ipv4Address;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.yang.types.rev100924.MacAddress;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.NodeConnectorId;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.NodeId;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.Nodes;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.node.NodeConnector;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.node.NodeConnectorKey;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.nodes.Node;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.nodes.NodeKey;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.hostservice.api.rev150725.Addresses;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.hostservice.api.rev150725.addresses.Address;
+import org.opendaylight.yangtools.concepts.ListenerRegistration;
+import org.opendaylight.yangtools.yang.binding.InstanceIdentifier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.MoreObjects;
+
+/**
+ * In-memory view of the router interface addresses configured under
+ * {@link Addresses}, kept current by a DataTreeChangeListener on the
+ * configuration datastore.
+ * <p>
+ * The view is an immutable snapshot replaced on every configuration change,
+ * so lookups never block and never read the datastore.
+ * </p>
+ */
+public class InterfaceAddressIndex implements DataTreeChangeListener<Addresses>, AutoCloseable {
+
+	private static final Logger LOG = LoggerFactory.getLogger(InterfaceAddressIndex.class);
+
+	// The addresses model carries no subnet: keep in sync with the /24 that
+	// RoutingConfigServiceImpl gives each interface address in getInterface,
+	// getMatchingInterface and getInterfaces
+	static final int SUBNET_PREFIX_LENGTH = 24;
+
+	private volatile List<RouterInterface> interfaces = Collections.emptyList();
+
+	// Interfaces keyed by their own address, replaced together with the list
+	private volatile Ip4AddressMap<RouterInterface> byAddress = new Ip4AddressMap<>();
+
+	private ListenerRegistration<InterfaceAddressIndex> registration;
+
+	/**
+	 * Registers the index for changes of the configured addresses.
+	 *
+	 * @param dataTreeChangeService
+	 *            service used to register the listener
+	 */
+	public synchronized void register(DataTreeChangeService dataTreeChangeService) {
+		if (registration != null) {
+			return;
+		}
+		registration = dataTreeChangeService.registerDataTreeChangeListener(new DataTreeIdentifier<>(
+				LogicalDatastoreType.CONFIGURATION, InstanceIdentifier.create(Addresses.class)), this);
+	}
+
+	@Override
+	public void onDataTreeChanged(Collection<DataTreeModification<Addresses>> changes) {
+		for (DataTreeModification<Addresses> change : changes) {
+			update(change.getRootNode().getDataAfter());
+		}
+	}
+
+	/**
+	 * Replaces the indexed addresses.
+	 *
+	 * @param addresses
+	 *            the configured addresses, or null if none are configured
+	 */
+	void update(Addresses addresses) {
+		List<RouterInterface> updated = new ArrayList<>();
+		Ip4AddressMap<RouterInterface> updatedByAddress = new Ip4AddressMap<>();
+		if (addresses != null && addresses.getAddress() != null) {
+			for (Address address : addresses.getAddress()) {
+				RouterInterface routerInterface = RouterInterface.of(address);
+				if (routerInterface != null) {
+					updated.add(routerInterface);
+					updatedByAddress.put(routerInterface.address, routerInterface);
+				}
+			}
+		}
+		interfaces = Collections.unmodifiableList(updated);
+		byAddress = updatedByAddress;
+		LOG.debug("Indexed {} router interface address(es)", updated.size());
+	}
+
+	/**
+	 * Finds the router interface whose subnet contains the address.
+	 *
+	 * @param ip
+	 *            the address to look up
+	 * @return the matching interface, or null if no subnet contains it
+	 */
+	public RouterInterface findInterfaceFor(AtriumIpAddress ip) {
+		if (ip == null || !ip.isIp4()) {
+			return null;
+		}
+		int address = ip.getIp4Address().toInt();
+		for (RouterInterface routerInterface : interfaces) {
+			if (routerInterface.subnetContains(address)) {
+				return routerInterface;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Finds the router interface configured with the address.
+	 *
+	 * @param address
+	 *            IPv4 address as an int
+	 * @return the interface owning the address, or null if none does
+	 */
+	public RouterInterface getInterface(int address) {
+		return byAddress.get(address);
+	}
+
+	public boolean isEmpty() {
+		return interfaces.isEmpty();
+	}
+
+	@Override
+	public synchronized void close() {
+		if (registration != null) {
+			registration.close();
+			registration = null;
+		}
+		interfaces = Collections.emptyList();
+		byAddress = new Ip4AddressMap<>();
+	}
+
+	/**
+	 * A configured router interface address with its attachment port.
+	 */
+	public static final class RouterInterface {
+		private final int address;
+		private final int subnetMask;
+		private final Ipv4Address ip;
+		private final MacAddress mac;
+		private final int vlan;
+		private final InstanceIdentifier<NodeConnector> port;
+
+		RouterInterface(int address, int prefixLength, Ipv4Address ip, MacAddress mac, int vlan,
+				InstanceIdentifier<NodeConnector> port) {
+			this.address = address;
+			this.subnetMask = prefixLength == 0 ? 0 : -1 << (32 - prefixLength);
+			this.ip = ip;
+			this.mac = mac;
+			this.vlan = vlan;
+			this.port = port;
+		}
+
+		static RouterInterface of(Address address) {
+			if (address.getIpAddress() == null || address.getIpAddress().getIpv4Address() == null
+					|| address.getMac() == null || address.getDpid() == null || address.getOfPortId() == null) {
+				LOG.warn("Ignoring incomplete address configuration {}", address);
+				return null;
+			}
+			Ipv4Address ip = address.getIpAddress().getIpv4Address();
+			NodeId nodeId = new NodeId(address.getDpid());
+			NodeConnectorId connectorId = new NodeConnectorId(
+					address.getDpid() + ":" + address.getOfPortId().getValue());
+			InstanceIdentifier<NodeConnector> port = InstanceIdentifier.builder(Nodes.class)
+					.child(Node.class, new NodeKey(nodeId)).child(NodeConnector.class, new NodeConnectorKey(connectorId))
+					.build();
+			int vlan = address.getVlan() == null ? 0 : address.getVlan();
+			return new RouterInterface(AtriumIp4Address.valueOf(ip.getValue()).toInt(), SUBNET_PREFIX_LENGTH, ip,
+					address.getMac(), vlan, port);
+		}
+
+		boolean subnetContains(int other) {
+			return (address & subnetMask) == (other & subnetMask);
+		}
+
+		public Ipv4Address ip() {
+			return ip;
+		}
+
+		public MacAddress mac() {
+			return mac;
+		}
+
+		/**
+		 * @return the VLAN id, 0 when untagged
+		 */
+		public int vlan() {
+			return vlan;
+		}
+
+		public InstanceIdentifier<NodeConnector> port() {
+			return port;
+		}
+
+		@Override
+		public String toString() {
+			return MoreObjects.toStringHelper(getClass()).add("ip", ip.getValue()).add("mac", mac.getValue())
+					.add("vlan", vlan).add("port", port).toString();
+		}
+	}
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2016 Wipro Ltd. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.atrium.hostservice.impl;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.opendaylight.atrium.hostservice.api.Host;
+import org.opendaylight.controller.md.sal.binding.api.DataObjectModification;
+import org.opendaylight.controller.md.sal.binding.api.DataTreeChangeListener;
+import org.opendaylight.controller.md.sal.binding.api.DataTreeChangeService;
+import org.opendaylight.controller.md.sal.binding.api.DataTreeIdentifier;
+import org.opendaylight.controller.md.sal.binding.api.DataTreeModification;
+import org.opendaylight.controller.md.sal.common.api.data.LogicalDatastoreType;
+import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.NetworkTopology;
+import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.TpId;
+import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.network.topology.Topology;
+import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.network.topology.topology.Link;
+import org.opendaylight.yangtools.concepts.ListenerRegistration;
+import org.opendaylight.yangtools.yang.binding.InstanceIdentifier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the set of internal (switch-to-switch) termination points derived
+ * from the topology links in the operational datastore.
+ * <p>
+ * A termination point is internal when it is one end of a link whose other
+ * end is not a host. The set is maintained incrementally from link changes so
+ * that {@link #isInternal(TpId)} is a lock-free hash lookup instead of a read
+ * of the whole network topology.
+ * </p>
+ */
+public class InternalPortTracker implements DataTreeChangeListener<Link>, AutoCloseable {
+
+	private static final Logger LOG = LoggerFactory.getLogger(InternalPortTracker.class);
+
+	// Internal termination points with the number of links referring to them.
+	// A port may be referenced by both directions of a link.
+	private final ConcurrentMap<TpId, Integer> internalPorts = new ConcurrentHashMap<>();
+
+	private ListenerRegistration<InternalPortTracker> registration;
+
+	/**
+	 * Registers the tracker for link changes in all topologies.
+	 *
+	 * @param dataTreeChangeService
+	 *            service used to register the listener
+	 */
+	public synchronized void register(DataTreeChangeService dataTreeChangeService) {
+		if (registration != null) {
+			return;
+		}
+		InstanceIdentifier<Link> linkIid = InstanceIdentifier.builder(NetworkTopology.class).child(Topology.class)
+				.child(Link.class).build();
+		registration = dataTreeChangeService.registerDataTreeChangeListener(
+				new DataTreeIdentifier<>(LogicalDatastoreType.OPERATIONAL, linkIid), this);
+		LOG.info("Internal port tracker registered for topology links");
+	}
+
+	/**
+	 * Checks whether the termination point is connected to another switch.
+	 *
+	 * @param tpId
+	 *            termination point id
+	 * @return true if a link to a non-host termination point exists
+	 */
+	public boolean isInternal(TpId tpId) {
+		return tpId != null && internalPorts.containsKey(tpId);
+	}
+
+	@Override
+	public void onDataTreeChanged(Collection<DataTreeModification<Link>> changes) {
+		for (DataTreeModification<Link> change : changes) {
+			DataObjectModification<Link> root = change.getRootNode();
+			switch (root.getModificationType()) {
+			case WRITE:
+			case SUBTREE_MODIFIED:
+				linkRemoved(root.getDataBefore());
+				linkAdded(root.getDataAfter());
+				break;
+			case DELETE:
+				linkRemoved(root.getDataBefore());
+				break;
+			default:
+				break;
+			}
+		}
+	}
+
+	private void linkAdded(Link link) {
+		if (link == null || link.getSource() == null || link.getDestination() == null) {
+			return;
+		}
+		TpId src = link.getSource().getSourceTp();
+		TpId dst = link.getDestination().getDestTp();
+		if (src != null && dst != null && !isHostTp(dst)) {
+			internalPorts.merge(src, 1, Integer::sum);
+		}
+		if (src != null && dst != null && !isHostTp(src)) {
+			internalPorts.merge(dst, 1, Integer::sum);
+		}
+	}
+
+	private void linkRemoved(Link link) {
+		if (link == null || link.getSource() == null || link.getDestination() == null) {
+			return;
+		}
+		TpId src = link.getSource().getSourceTp();
+		TpId dst = link.getDestination().getDestTp();
+		if (src != null && dst != null && !isHostTp(dst)) {
+			release(src);
+		}
+		if (src != null && dst != null && !isHostTp(src)) {
+			release(dst);
+		}
+	}
+
+	private void release(TpId tpId) {
+		internalPorts.computeIfPresent(tpId, (key, count) -> count > 1 ? count - 1 : null);
+	}
+
+	private static boolean isHostTp(TpId tpId) {
+		return tpId.getValue().startsWith(Host.NODE_PREFIX);
+	}
+
+	@Override
+	public synchronized void close() {
+		if (registration != null) {
+			registration.close();
+			registration = null;
+		}
+		internalPorts.clear();
+	}
+}
@@ -0,0 +1,254 @@
+/*
+ * Copyright (c) 2016 Wipro Ltd. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.atrium.hostservice.impl;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Hash map keyed by IPv4 addresses in their primitive {@code int} form.
+ * <p>
+ * Entries are kept in open-addressed arrays with linear probing, so a lookup
+ * neither boxes the key nor follows node references. Lookups are optimistic
+ * and only fall back to a read lock when they race with a writer; writers
+ * are serialized.
+ * </p>
+ *
+ * @param <V>
+ *            the value type
+ */
+public class Ip4AddressMap<V> {
+
+	private static final int MIN_CAPACITY = 16;
+
+	private final StampedLock lock = new StampedLock();
+
+	private volatile Table table;
+	private int size;
+
+	public Ip4AddressMap() {
+		this(MIN_CAPACITY);
+	}
+
+	/**
+	 * @param expectedSize
+	 *            number of entries the map should hold without resizing
+	 */
+	public Ip4AddressMap(int expectedSize) {
+		int capacity = MIN_CAPACITY;
+		while (capacity < expectedSize * 2) {
+			capacity <<= 1;
+		}
+		table = new Table(capacity);
+	}
+
+	/**
+	 * Returns the value mapped to the address.
+	 *
+	 * @param address
+	 *            IPv4 address as an int
+	 * @return the value, or null if the address is not mapped
+	 */
+	public V get(int address) {
+		long stamp = lock.tryOptimisticRead();
+		V value = table.get(address);
+		if (lock.validate(stamp)) {
+			return value;
+		}
+		stamp = lock.readLock();
+		try {
+			return table.get(address);
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	public boolean containsKey(int address) {
+		return get(address) != null;
+	}
+
+	/**
+	 * Maps the address to the value.
+	 *
+	 * @param address
+	 *            IPv4 address as an int
+	 * @param value
+	 *            the value, not null
+	 * @return the previous value, or null if the address was not mapped
+	 */
+	public V put(int address, V value) {
+		checkNotNull(value, "Value is null");
+		long stamp = lock.writeLock();
+		try {
+			if ((size + 1) * 2 > table.keys.length) {
+				table = table.resize(table.keys.length << 1);
+			}
+			V previous = table.put(address, value);
+			if (previous == null) {
+				size++;
+			}
+			return previous;
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * Removes the mapping of the address.
+	 *
+	 * @param address
+	 *            IPv4 address as an int
+	 * @return the removed value, or null if the address was not mapped
+	 */
+	public V remove(int address) {
+		long stamp = lock.writeLock();
+		try {
+			V previous = table.remove(address);
+			if (previous != null) {
+				size--;
+			}
+			return previous;
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	public void clear() {
+		long stamp = lock.writeLock();
+		try {
+			table = new Table(MIN_CAPACITY);
+			size = 0;
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * @return a snapshot of the values of the map
+	 */
+	@SuppressWarnings("unchecked")
+	public List<V> values() {
+		long stamp = lock.readLock();
+		try {
+			List<V> values = new ArrayList<>(size);
+			for (Object value : table.values) {
+				if (value != null) {
+					values.add((V) value);
+				}
+			}
+			return values;
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	public int size() {
+		long stamp = lock.readLock();
+		try {
+			return size;
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	private static int hash(int address) {
+		int h = address * 0x9e3779b9;
+		return h ^ (h >>> 16);
+	}
+
+	private final class Table {
+		private final int[] keys;
+		private final Object[] values;
+		private final int mask;
+
+		Table(int capacity) {
+			keys = new int[capacity];
+			values = new Object[capacity];
+			mask = capacity - 1;
+		}
+
+		@SuppressWarnings("unchecked")
+		V get(int address) {
+			// Bounded so that a lookup racing with a writer always ends
+			for (int i = hash(address) & mask, n = 0; n <= mask; i = (i + 1) & mask, n++) {
+				Object value = values[i];
+				if (value == null) {
+					return null;
+				}
+				if (keys[i] == address) {
+					return (V) value;
+				}
+			}
+			return null;
+		}
+
+		@SuppressWarnings("unchecked")
+		V put(int address, V value) {
+			int i = hash(address) & mask;
+			while (values[i] != null) {
+				if (keys[i] == address) {
+					V previous = (V) values[i];
+					values[i] = value;
+					return previous;
+				}
+				i = (i + 1) & mask;
+			}
+			keys[i] = address;
+			values[i] = value;
+			return null;
+		}
+
+		@SuppressWarnings("unchecked")
+		V remove(int address) {
+			int i = hash(address) & mask;
+			while (values[i] != null) {
+				if (keys[i] == address) {
+					V previous = (V) values[i];
+					shiftBack(i);
+					return previous;
+				}
+				i = (i + 1) & mask;
+			}
+			return null;
+		}
+
+		// Backward shift deletion, keeps probe chains intact without
+		// tombstones
+		private void shiftBack(int hole) {
+			int i = hole;
+			while (true) {
+				i = (i + 1) & mask;
+				if (values[i] == null) {
+					break;
+				}
+				int home = hash(keys[i]) & mask;
+				if (((i - home) & mask) >= ((i - hole) & mask)) {
+					keys[hole] = keys[i];
+					values[hole] = values[i];
+					hole = i;
+				}
+			}
+			values[hole] = null;
+			keys[hole] = 0;
+		}
+
+		@SuppressWarnings("unchecked")
+		Table resize(int capacity) {
+			Table resized = new Table(capacity);
+			for (int i = 0; i < keys.length; i++) {
+				if (values[i] != null) {
+					resized.put(keys[i], (V) values[i]);
+				}
+			}
+			return resized;
+		}
+	}
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2016 Wipro Ltd. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.atrium.hostservice.impl;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import org.jboss.netty.util.Timeout;
+import org.jboss.netty.util.TimerTask;
+import org.opendaylight.atrium.hostservice.api.Neighbor;
+import org.opendaylight.atrium.util.AtriumIpAddress;
+import org.opendaylight.atrium.util.AtriumTimer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Ages the entries of the {@link NeighborStore} on the shared Atrium timer.
+ * <p>
+ * Neighbors not seen for the configured time to live are removed. Pinned
+ * neighbors, the next hops in use, are refreshed with an ARP request on every
+ * sweep during the refresh window before they expire; a reply updates their
+ * last seen time, or reports a new MAC address, before traffic is lost.
+ * </p>
+ */
+public class NeighborAger implements TimerTask, AutoCloseable {
+
+	private static final Logger LOG = LoggerFactory.getLogger(NeighborAger.class);
+
+	static final long DEFAULT_TTL = 300000; // milliseconds
+	static final long DEFAULT_REFRESH_BEFORE = 30000; // milliseconds
+	private static final long MIN_SWEEP_INTERVAL = 1000; // milliseconds
+
+	private final NeighborStore store;
+	private final Consumer<AtriumIpAddress> refresher;
+
+	private final AtomicLong expired = new AtomicLong();
+	private final AtomicLong refreshed = new AtomicLong();
+
+	private volatile long ttl = DEFAULT_TTL;
+	private volatile long refreshBefore = DEFAULT_REFRESH_BEFORE;
+	private volatile Timeout timeout;
+	private volatile boolean closed;
+
+	/**
+	 * @param store
+	 *            the table to age
+	 * @param refresher
+	 *            sends an ARP request to a neighbor about to expire
+	 */
+	public NeighborAger(NeighborStore store, Consumer<AtriumIpAddress> refresher) {
+		this.store = checkNotNull(store);
+		this.refresher = checkNotNull(refresher);
+	}
+
+	/**
+	 * Sets the aging parameters. Null values keep the current setting.
+	 *
+	 * @param ttl
+	 *            time in milliseconds after which a neighbor not seen is
+	 *            removed
+	 * @param refreshBefore
+	 *            time in milliseconds before expiry at which pinned neighbors
+	 *            start being refreshed
+	 */
+	public void configure(Long ttl, Long refreshBefore) {
+		if (ttl != null && ttl > 0) {
+			this.ttl = ttl;
+		}
+		if (refreshBefore != null && refreshBefore >= 0) {
+			this.refreshBefore = refreshBefore;
+		}
+	}
+
+	public void start() {
+		closed = false;
+		timeout = AtriumTimer.getTimer().newTimeout(this, sweepInterval(), TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * @return the number of neighbors removed because they were not seen
+	 *         within the time to live
+	 */
+	public long getExpiredCount() {
+		return expired.get();
+	}
+
+	/**
+	 * @return the number of refresh requests sent to pinned neighbors
+	 */
+	public long getRefreshCount() {
+		return refreshed.get();
+	}
+
+	// A few refreshes fit in the refresh window
+	long sweepInterval() {
+		long interval = refreshBefore > 0 ? Math.min(ttl / 10, refreshBefore / 3) : ttl / 10;
+		return Math.max(MIN_SWEEP_INTERVAL, interval);
+	}
+
+	@Override
+	public void run(Timeout t) {
+		if (closed) {
+			return;
+		}
+		try {
+			sweep(System.currentTimeMillis());
+		} catch (RuntimeException e) {
+			LOG.warn("Neighbor aging sweep failed", e);
+		}
+		if (!closed) {
+			timeout = AtriumTimer.getTimer().newTimeout(this, sweepInterval(), TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * Removes the expired neighbors and refreshes the pinned ones about to
+	 * expire.
+	 *
+	 * @param now
+	 *            the current time
+	 */
+	void sweep(long now) {
+		int expiredNow = 0;
+		int refreshedNow = 0;
+		for (Neighbor neighbor : store.getNeighbors()) {
+			long age = now - neighbor.lastSeen();
+			if (age >= ttl) {
+				if (store.expire(neighbor)) {
+					expiredNow++;
+				}
+			} else if (age >= ttl - refreshBefore && store.isPinned(neighbor.ip())) {
+				try {
+					refresher.accept(neighbor.ip());
+					refreshedNow++;
+				} catch (RuntimeException e) {
+					LOG.warn("Failed to refresh neighbor {}", neighbor.ip(), e);
+				}
+			}
+		}
+		expired.addAndGet(expiredNow);
+		refreshed.addAndGet(refreshedNow);
+		if (expiredNow > 0 || refreshedNow > 0) {
+			LOG.debug("Neighbor aging: {} expired, {} refreshed, {} left", expiredNow, refreshedNow, store.size());
+		}
+	}
+
+	@Override
+	public void close() {
+		closed = true;
+		Timeout current = timeout;
+		if (current != null) {
+			current.cancel();
+		}
+	}
+}
@@ -0,0 +1,322 @@
+/*
+ * Copyright (c) 2016 Wipro Ltd. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.atrium.hostservice.impl;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.opendaylight.atrium.hostservice.api.Neighbor;
+import org.opendaylight.atrium.hostservice.api.NeighborEvent;
+import org.opendaylight.atrium.hostservice.api.NeighborListener;
+import org.opendaylight.atrium.hostservice.api.NeighborTable;
+import org.opendaylight.atrium.util.AtriumIpAddress;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The neighbor table of the host service.
+ * <p>
+ * IPv4 neighbors are kept in an {@link Ip4AddressMap} so that lookups from the
+ * packet-in path neither allocate nor block; IPv6 neighbors are rare and kept
+ * in a concurrent map. Writers are serialized. Listeners are notified
+ * asynchronously through an {@link EventDispatcher}, in order for each
+ * neighbor, with repeated changes of a neighbor coalesced while pending.
+ * </p>
+ * <p>
+ * The table is bounded: above the maximum number of entries the least
+ * recently seen neighbors are evicted, except the pinned ones that are in use
+ * as next hops. Aging is done by the {@link NeighborAger}.
+ * </p>
+ */
+public class NeighborStore implements NeighborTable, AutoCloseable {
+
+	private static final Logger LOG = LoggerFactory.getLogger(NeighborStore.class);
+
+	static final long DEFAULT_MAX_ENTRIES = 65536;
+
+	private final Ip4AddressMap<Neighbor> ip4Neighbors = new Ip4AddressMap<>();
+	private final ConcurrentMap<AtriumIpAddress, Neighbor> ip6Neighbors = new ConcurrentHashMap<>();
+	private final EventDispatcher<NeighborListener, NeighborEvent> dispatcher;
+
+	// Reference counts of the neighbors in use, which are never evicted
+	private final ConcurrentMap<AtriumIpAddress, Integer> pinned = new ConcurrentHashMap<>();
+
+	private final AtomicLong evicted = new AtomicLong();
+
+	private volatile long maxEntries = DEFAULT_MAX_ENTRIES;
+
+	public NeighborStore() {
+		this(EventDispatcher.DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * @param eventCapacity
+	 *            maximum number of events pending for a listener
+	 */
+	public NeighborStore(int eventCapacity) {
+		dispatcher = new EventDispatcher<>("neighbor-events", NeighborListener::neighborUpdate,
+				event -> event.getNeighbor().ip(), NeighborStore::coalesce, eventCapacity);
+	}
+
+	// Delivers the events on the executors given, for tests
+	NeighborStore(Supplier<ExecutorService> executors) {
+		dispatcher = new EventDispatcher<>("neighbor-events", NeighborListener::neighborUpdate,
+				event -> event.getNeighbor().ip(), NeighborStore::coalesce, EventDispatcher.DEFAULT_CAPACITY,
+				executors);
+	}
+
+	@Override
+	public Neighbor get(AtriumIpAddress ip) {
+		if (ip.isIp4()) {
+			return ip4Neighbors.get(ip.getIp4Address().toInt());
+		}
+		return ip6Neighbors.get(ip);
+	}
+
+	@Override
+	public Neighbor getIp4(int ip) {
+		return ip4Neighbors.get(ip);
+	}
+
+	@Override
+	public int size() {
+		return ip4Neighbors.size() + ip6Neighbors.size();
+	}
+
+	@Override
+	public void addListener(NeighborListener listener) {
+		dispatcher.addListener(listener);
+	}
+
+	@Override
+	public void removeListener(NeighborListener listener) {
+		dispatcher.removeListener(listener);
+	}
+
+	@Override
+	public void pin(AtriumIpAddress ip) {
+		pinned.merge(checkNotNull(ip), 1, Integer::sum);
+	}
+
+	@Override
+	public void release(AtriumIpAddress ip) {
+		pinned.computeIfPresent(ip, (key, count) -> count > 1 ? count - 1 : null);
+	}
+
+	@Override
+	public boolean isPinned(AtriumIpAddress ip) {
+		return pinned.containsKey(ip);
+	}
+
+	/**
+	 * Sets the number of neighbors above which the least recently seen
+	 * neighbors that are not pinned are evicted.
+	 *
+	 * @param maxEntries
+	 *            the maximum number of neighbors, null keeps the current value
+	 */
+	public void setMaxEntries(Long maxEntries) {
+		if (maxEntries != null && maxEntries > 0) {
+			this.maxEntries = maxEntries;
+		}
+	}
+
+	/**
+	 * @return the number of neighbors evicted because the table was full
+	 */
+	public long getEvictedCount() {
+		return evicted.get();
+	}
+
+	/**
+	 * @return the dispatcher of the neighbor events, with its drop and lag
+	 *         counters
+	 */
+	public EventDispatcher<NeighborListener, NeighborEvent> getEventDispatcher() {
+		return dispatcher;
+	}
+
+	/**
+	 * @return a snapshot of all neighbors
+	 */
+	public List<Neighbor> getNeighbors() {
+		List<Neighbor> neighbors = ip4Neighbors.values();
+		neighbors.addAll(ip6Neighbors.values());
+		return neighbors;
+	}
+
+	/**
+	 * Adds or refreshes a neighbor.
+	 *
+	 * @param neighbor
+	 *            the neighbor as just seen
+	 * @return the neighbor it replaced, or null if it was not known
+	 */
+	public Neighbor update(Neighbor neighbor) {
+		return update(neighbor, System.nanoTime());
+	}
+
+	/**
+	 * Adds or refreshes a neighbor.
+	 *
+	 * @param neighbor
+	 *            the neighbor as just seen
+	 * @param detectedAt
+	 *            the {@link System#nanoTime()} at which the packet showing the
+	 *            neighbor was received, carried by the resulting event
+	 * @return the neighbor it replaced, or null if it was not known
+	 */
+	public synchronized Neighbor update(Neighbor neighbor, long detectedAt) {
+		checkNotNull(neighbor, "Neighbor is null");
+		Neighbor previous = put(neighbor);
+		if (previous == null) {
+			fireEvent(new NeighborEvent(NeighborEvent.Type.NEIGHBOR_ADDED, neighbor, null, detectedAt));
+			if (size() > maxEntries) {
+				evictLeastRecentlySeen();
+			}
+		} else if (!previous.sameLocation(neighbor)) {
+			fireEvent(new NeighborEvent(NeighborEvent.Type.NEIGHBOR_UPDATED, neighbor, previous, detectedAt));
+		}
+		return previous;
+	}
+
+	/**
+	 * Removes a neighbor.
+	 *
+	 * @param ip
+	 *            IP address of the neighbor
+	 * @return the removed neighbor, or null if it was not known
+	 */
+	public synchronized Neighbor remove(AtriumIpAddress ip) {
+		Neighbor removed = ip.isIp4() ? ip4Neighbors.remove(ip.getIp4Address().toInt()) : ip6Neighbors.remove(ip);
+		if (removed != null) {
+			fireEvent(new NeighborEvent(NeighborEvent.Type.NEIGHBOR_REMOVED, removed, null));
+		}
+		return removed;
+	}
+
+	/**
+	 * Updates the last seen time of a neighbor that was seen again with the
+	 * same MAC address.
+	 *
+	 * @param ip
+	 *            IP address of the neighbor
+	 * @param mac
+	 *            MAC address the neighbor was seen with
+	 * @param time
+	 *            time the neighbor was seen
+	 * @return true if the neighbor is known with this MAC address
+	 */
+	public synchronized boolean touch(AtriumIpAddress ip, long mac, long time) {
+		Neighbor known = get(ip);
+		if (known == null || known.mac() != mac) {
+			return false;
+		}
+		if (time > known.lastSeen()) {
+			put(known.seenAt(time));
+		}
+		return true;
+	}
+
+	/**
+	 * Removes a neighbor unless it has been seen again or has changed since
+	 * the given snapshot was taken.
+	 *
+	 * @param neighbor
+	 *            the neighbor as seen by the caller
+	 * @return true if the neighbor was removed
+	 */
+	public synchronized boolean expire(Neighbor neighbor) {
+		Neighbor current = get(neighbor.ip());
+		if (current == null || current.lastSeen() != neighbor.lastSeen() || !current.sameLocation(neighbor)) {
+			return false;
+		}
+		remove(neighbor.ip());
+		return true;
+	}
+
+	// Evicts the oldest unpinned neighbors in a batch, so that a full table
+	// is not scanned on every new neighbor
+	private void evictLeastRecentlySeen() {
+		long excess = size() - maxEntries + Math.max(1, maxEntries / 16);
+		List<Neighbor> candidates = new ArrayList<>();
+		for (Neighbor neighbor : getNeighbors()) {
+			if (!pinned.containsKey(neighbor.ip())) {
+				candidates.add(neighbor);
+			}
+		}
+		candidates.sort(Comparator.comparingLong(Neighbor::lastSeen));
+		int count = (int) Math.min(excess, candidates.size());
+		for (int i = 0; i < count; i++) {
+			remove(candidates.get(i).ip());
+		}
+		evicted.addAndGet(count);
+		LOG.info("Neighbor table full, evicted {} least recently seen neighbor(s)", count);
+	}
+
+	/**
+	 * Removes all neighbors without notifying the listeners.
+	 */
+	public synchronized void clear() {
+		ip4Neighbors.clear();
+		ip6Neighbors.clear();
+	}
+
+	private Neighbor put(Neighbor neighbor) {
+		AtriumIpAddress ip = neighbor.ip();
+		if (ip.isIp4()) {
+			return ip4Neighbors.put(ip.getIp4Address().toInt(), neighbor);
+		}
+		return ip6Neighbors.put(ip, neighbor);
+	}
+
+	private void fireEvent(NeighborEvent event) {
+		LOG.debug("Neighbor event {}", event);
+		dispatcher.post(event);
+	}
+
+	/**
+	 * Merges two events of the same neighbor into their net effect. The
+	 * detection time of the first event is kept, so that the time to act on
+	 * a change is not understated.
+	 *
+	 * @return the merged event, or null if the events cancel each other
+	 */
+	static NeighborEvent coalesce(NeighborEvent first, NeighborEvent second) {
+		switch (second.getType()) {
+		case NEIGHBOR_UPDATED:
+			if (first.getType() == NeighborEvent.Type.NEIGHBOR_ADDED) {
+				return new NeighborEvent(NeighborEvent.Type.NEIGHBOR_ADDED, second.getNeighbor(), null,
+						first.getTime());
+			}
+			if (first.getType() == NeighborEvent.Type.NEIGHBOR_UPDATED) {
+				return new NeighborEvent(NeighborEvent.Type.NEIGHBOR_UPDATED, second.getNeighbor(),
+						first.getPrevious(), first.getTime());
+			}
+			return second;
+		case NEIGHBOR_REMOVED:
+			// A neighbor added and removed before anyone heard of it
+			return first.getType() == NeighborEvent.Type.NEIGHBOR_ADDED ? null : second;
+		default:
+			return second;
+		}
+	}
+
+	@Override
+	public void close() {
+		dispatcher.close();
+	}
+}
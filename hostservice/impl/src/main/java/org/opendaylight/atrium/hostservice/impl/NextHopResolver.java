@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2016 Wipro Ltd. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.atrium.hostservice.impl;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeoutException;
+
+import org.opendaylight.atrium.util.AtriumIpAddress;
+import org.opendaylight.atrium.util.AtriumMacAddress;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Resolves IP addresses to MAC addresses on demand.
+ * <p>
+ * A resolution hands the address to the {@link ArpProbeScheduler}, which
+ * probes it until the host is learned from the packet-in path or the
+ * scheduler gives up. Concurrent requests for the same address share a
+ * single future.
+ * </p>
+ */
+public class NextHopResolver implements ArpProbeScheduler.ProbeListener, AutoCloseable {
+
+	private static final Logger LOG = LoggerFactory.getLogger(NextHopResolver.class);
+
+	private final ConcurrentMap<AtriumIpAddress, CompletableFuture<AtriumMacAddress>> pending = new ConcurrentHashMap<>();
+
+	// Futures are completed off the packet-in and timer threads so that
+	// callbacks attached by the callers cannot stall them
+	private final ExecutorService notifier = Executors
+			.newSingleThreadExecutor(new ThreadFactoryBuilder().setNameFormat("atrium-host-resolver-%d").build());
+
+	private final ArpProbeScheduler scheduler;
+
+	public NextHopResolver(ArpProbeScheduler scheduler) {
+		this.scheduler = checkNotNull(scheduler);
+		scheduler.addListener(this);
+	}
+
+	/**
+	 * Starts resolving the address, or joins a resolution already in progress.
+	 *
+	 * @param ip
+	 *            address to resolve
+	 * @return future completed with the MAC address once the host is learned
+	 */
+	public CompletableFuture<AtriumMacAddress> resolve(AtriumIpAddress ip) {
+		checkNotNull(ip, "IP address to resolve is null");
+		CompletableFuture<AtriumMacAddress> future = pending.get(ip);
+		if (future == null) {
+			CompletableFuture<AtriumMacAddress> created = new CompletableFuture<>();
+			future = pending.putIfAbsent(ip, created);
+			if (future == null) {
+				future = created;
+				LOG.debug("Resolving MAC address for {}", ip);
+				scheduler.schedule(ip);
+			}
+		}
+		return future;
+	}
+
+	/**
+	 * Completes the pending resolution, if any, for a learned host.
+	 *
+	 * @param ip
+	 *            IP address of the host
+	 * @param mac
+	 *            MAC address of the host
+	 */
+	public void hostLearned(AtriumIpAddress ip, AtriumMacAddress mac) {
+		CompletableFuture<AtriumMacAddress> future = pending.remove(ip);
+		if (future != null) {
+			LOG.debug("Resolved {} to {}", ip, mac);
+			scheduler.cancel(ip);
+			notifier.execute(() -> future.complete(mac));
+		}
+	}
+
+	@Override
+	public void probeAbandoned(AtriumIpAddress ip, int attempts) {
+		CompletableFuture<AtriumMacAddress> future = pending.remove(ip);
+		if (future != null) {
+			notifier.execute(() -> future.completeExceptionally(
+					new TimeoutException("No ARP reply from " + ip + " after " + attempts + " request(s)")));
+		}
+	}
+
+	/**
+	 * Checks whether a resolution is in progress for the address.
+	 *
+	 * @param ip
+	 *            IP address
+	 * @return true if the address is being resolved
+	 */
+	public boolean isPending(AtriumIpAddress ip) {
+		return pending.containsKey(ip);
+	}
+
+	@Override
+	public void close() {
+		scheduler.removeListener(this);
+		for (AtriumIpAddress ip : pending.keySet()) {
+			CompletableFuture<AtriumMacAddress> future = pending.remove(ip);
+			if (future != null) {
+				scheduler.cancel(ip);
+				future.cancel(false);
+			}
+		}
+		notifier.shutdown();
+	}
+}
@@ -0,0 +1,228 @@
+/*
+ * Copyright (c) 2016 Wipro Ltd. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.atrium.hostservice.impl;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import org.opendaylight.atrium.hostservice.api.NeighborEvent;
+import org.opendaylight.atrium.hostservice.api.NeighborListener;
+import org.opendaylight.atrium.routingservice.config.api.RoutingConfigService;
+import org.opendaylight.atrium.util.AtriumIpAddress;
+import org.opendaylight.atrium.util.AtriumMacAddress;
+import org.opendaylight.controller.md.sal.binding.api.DataTreeChangeListener;
+import org.opendaylight.controller.md.sal.binding.api.DataTreeChangeService;
+import org.opendaylight.controller.md.sal.binding.api.DataTreeIdentifier;
+import org.opendaylight.controller.md.sal.binding.api.DataTreeModification;
+import org.opendaylight.controller.md.sal.common.api.data.LogicalDatastoreType;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev100924.IpAddress;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.NodeId;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.Nodes;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.nodes.Node;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.nodes.NodeKey;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.bgpconfig.api.rev150725.BgpPeers;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.bgpconfig.api.rev150725.bgppeers.BgpPeer;
+import org.opendaylight.yangtools.concepts.ListenerRegistration;
+import org.opendaylight.yangtools.yang.binding.InstanceIdentifier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Resolves the addresses of the configured BGP peers before any route
+ * through them is received.
+ * <p>
+ * The peers are the possible next hops of the routes. Each one is resolved as
+ * soon as the switch it is attached to is in the inventory, and again
+ * whenever it is removed from the neighbor table while the switch is up. The
+ * peers are pinned in the neighbor table so that they are refreshed before
+ * they expire. The first routes from the RIB then find their next hop already
+ * resolved.
+ * </p>
+ */
+public class PeerPreResolver implements DataTreeChangeListener<Node>, NeighborListener, AutoCloseable {
+
+	private static final Logger LOG = LoggerFactory.getLogger(PeerPreResolver.class);
+
+	private final RoutingConfigService configService;
+	private final NeighborStore neighbors;
+	private final Function<AtriumIpAddress, CompletableFuture<AtriumMacAddress>> resolver;
+
+	// Peer addresses with the switch they are attached to, if configured
+	private final Map<AtriumIpAddress, NodeId> peerSwitches = new ConcurrentHashMap<>();
+	private final Set<AtriumIpAddress> peers = Collections.newSetFromMap(new ConcurrentHashMap<>());
+	private final Set<NodeId> switchesUp = Collections.newSetFromMap(new ConcurrentHashMap<>());
+	private final Set<AtriumIpAddress> resolving = Collections.newSetFromMap(new ConcurrentHashMap<>());
+
+	private ListenerRegistration<PeerPreResolver> registration;
+	private volatile boolean closed;
+
+	/**
+	 * @param configService
+	 *            provides the BGP peers
+	 * @param neighbors
+	 *            the neighbor table
+	 * @param resolver
+	 *            resolves the MAC address of an IP address
+	 */
+	public PeerPreResolver(RoutingConfigService configService, NeighborStore neighbors,
+			Function<AtriumIpAddress, CompletableFuture<AtriumMacAddress>> resolver) {
+		this.configService = checkNotNull(configService);
+		this.neighbors = checkNotNull(neighbors);
+		this.resolver = checkNotNull(resolver);
+	}
+
+	/**
+	 * Pins the configured peers and starts watching the inventory for their
+	 * switches.
+	 *
+	 * @param dataTreeChangeService
+	 *            service used to register the listener
+	 */
+	public synchronized void start(DataTreeChangeService dataTreeChangeService) {
+		if (registration != null) {
+			return;
+		}
+		closed = false;
+		loadPeers();
+		neighbors.addListener(this);
+		InstanceIdentifier<Node> nodeIid = InstanceIdentifier.builder(Nodes.class).child(Node.class).build();
+		registration = dataTreeChangeService.registerDataTreeChangeListener(
+				new DataTreeIdentifier<>(LogicalDatastoreType.OPERATIONAL, nodeIid), this);
+		LOG.info("Pre-resolving {} BGP peer(s)", peers.size());
+	}
+
+	private void loadPeers() {
+		BgpPeers bgpPeers = configService.getBgpPeers();
+		if (bgpPeers == null || bgpPeers.getBgpPeer() == null) {
+			return;
+		}
+		for (BgpPeer bgpPeer : bgpPeers.getBgpPeer()) {
+			AtriumIpAddress ip = toIp(bgpPeer.getPeerAddr());
+			if (ip == null || !peers.add(ip)) {
+				continue;
+			}
+			if (bgpPeer.getPeerDpId() != null) {
+				peerSwitches.put(ip, bgpPeer.getPeerDpId());
+			}
+			neighbors.pin(ip);
+		}
+	}
+
+	private static AtriumIpAddress toIp(IpAddress ip) {
+		if (ip == null) {
+			return null;
+		}
+		if (ip.getIpv4Address() != null) {
+			return AtriumIpAddress.valueOf(ip.getIpv4Address().getValue());
+		}
+		if (ip.getIpv6Address() != null) {
+			return AtriumIpAddress.valueOf(ip.getIpv6Address().getValue());
+		}
+		return null;
+	}
+
+	/**
+	 * @return the addresses of the configured peers
+	 */
+	public Set<AtriumIpAddress> getPeers() {
+		return Collections.unmodifiableSet(peers);
+	}
+
+	@Override
+	public void onDataTreeChanged(Collection<DataTreeModification<Node>> changes) {
+		for (DataTreeModification<Node> change : changes) {
+			NodeKey key = change.getRootPath().getRootIdentifier().firstKeyOf(Node.class, NodeKey.class);
+			if (key == null) {
+				continue;
+			}
+			switch (change.getRootNode().getModificationType()) {
+			case WRITE:
+			case SUBTREE_MODIFIED:
+				if (switchesUp.add(key.getId())) {
+					switchUp(key.getId());
+				}
+				break;
+			case DELETE:
+				switchesUp.remove(key.getId());
+				break;
+			default:
+				break;
+			}
+		}
+	}
+
+	private void switchUp(NodeId nodeId) {
+		for (AtriumIpAddress peer : peers) {
+			NodeId peerSwitch = peerSwitches.get(peer);
+			if (peerSwitch == null || peerSwitch.equals(nodeId)) {
+				resolve(peer);
+			}
+		}
+	}
+
+	// Peers without a configured switch are resolved once any switch is up
+	private boolean isSwitchUp(AtriumIpAddress peer) {
+		NodeId peerSwitch = peerSwitches.get(peer);
+		return peerSwitch == null ? !switchesUp.isEmpty() : switchesUp.contains(peerSwitch);
+	}
+
+	@Override
+	public void neighborUpdate(NeighborEvent event) {
+		if (event.getType() != NeighborEvent.Type.NEIGHBOR_REMOVED) {
+			return;
+		}
+		AtriumIpAddress ip = event.getNeighbor().ip();
+		if (peers.contains(ip) && isSwitchUp(ip)) {
+			resolve(ip);
+		}
+	}
+
+	private void resolve(AtriumIpAddress peer) {
+		if (closed || neighbors.get(peer) != null || !resolving.add(peer)) {
+			return;
+		}
+		LOG.debug("Pre-resolving BGP peer {}", peer);
+		try {
+			resolver.apply(peer).whenComplete((mac, failure) -> {
+				resolving.remove(peer);
+				if (failure != null) {
+					LOG.info("BGP peer {} not resolved: {}", peer, failure.getMessage());
+				} else {
+					LOG.info("BGP peer {} resolved to {}", peer, mac);
+				}
+			});
+		} catch (RuntimeException e) {
+			resolving.remove(peer);
+			LOG.warn("Failed to resolve BGP peer {}", peer, e);
+		}
+	}
+
+	@Override
+	public synchronized void close() {
+		closed = true;
+		if (registration != null) {
+			registration.close();
+			registration = null;
+		}
+		neighbors.removeListener(this);
+		for (AtriumIpAddress peer : peers) {
+			neighbors.release(peer);
+		}
+		peers.clear();
+		peerSwitches.clear();
+		switchesUp.clear();
+		resolving.clear();
+	}
+}
@@ -45,16 +45,19 @@ public class HostServiceImplModule extends
 		PacketProcessingService packetProcessingService = rpcService
 				.<PacketProcessingService> getRpcService(PacketProcessingService.class);
 		hostServiceImpl.setServices(dataService, configService, packetProcessingService,notificationService);
+		hostServiceImpl.setResolverConfig(getArpRetryInterval(), getArpMaxRetryInterval(), getArpMaxRetries(),
+				getArpRetryJitter(), getArpResolveTimeout());
+		hostServiceImpl.setNeighborConfig(getNeighborTtl(), getNeighborRefreshBefore(), getNeighborMaxEntries());
 
 		ArpHandler arpHandler = new ArpHandler(dataService, packetProcessingService,hostServiceImpl);
 		arpHandler.readConfiguration();
 
 		getBrokerDependency().registerProvider(hostServiceImpl);
 
-
-
-
-		getNotificationServiceDependency().registerNotificationListener(arpHandler);
+		// Closed with the host service, so that a reconfiguration does not
+		// leave the listeners of the previous instance behind
+		hostServiceImpl.setArpHandler(arpHandler,
+				getNotificationServiceDependency().registerNotificationListener(arpHandler));
 
 		return hostServiceImpl;
 	}
@@ -7,6 +7,7 @@
  */
 package org.opendaylight.atrium.hostservice.impl;
 
+import static org.junit.Assert.assertEquals;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 import static org.mockito.Mockito.verify;
@@ -95,6 +96,7 @@ public class AddressObserverTest {
 		addressObserver.onArpPacketReceived(packetReceived);
 
 		verify(hostMonitor, times(1)).packetReceived(any(ConnectorAddress.class), any(InstanceIdentifier.class));
+		assertEquals(1, addressObserver.getArpPacketCount());
 	}
 
 	@Test
@@ -139,6 +141,7 @@ public class AddressObserverTest {
 		addressObserver.onIpv4PacketReceived(packetReceived);
 
 		verify(hostMonitor, times(1)).packetReceived(any(ConnectorAddress.class), any(InstanceIdentifier.class));
+		assertEquals(1, addressObserver.getIpv4PacketCount());
 	}
 
 	@Test
@@ -182,5 +185,6 @@ public class AddressObserverTest {
 		addressObserver.onIpv6PacketReceived(packetReceived);
 
 		verify(hostMonitor, times(1)).packetReceived(any(ConnectorAddress.class), any(InstanceIdentifier.class));
+		assertEquals(1, addressObserver.getIpv6PacketCount());
 	}
 }
@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2016 Wipro Ltd. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.atrium.hostservice.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.opendaylight.atrium.hostservice.api.ArpOperation;
+import org.opendaylight.controller.liblldp.NetUtils;
+
+public class ArpFrameTemplatesTest {
+
+	private static final byte[] SENDER_MAC = { (byte) 0xaa, (byte) 0xbb, (byte) 0xcc, (byte) 0xdd, (byte) 0xee, 0x00 };
+	private static final byte[] SENDER_IP = { (byte) 192, (byte) 168, 10, 1 };
+	private static final byte[] TARGET_MAC = { (byte) 0xaa, (byte) 0xbb, (byte) 0xcc, (byte) 0xdd, (byte) 0xee,
+			(byte) 0xff };
+
+	private ArpFrameTemplates templates;
+
+	@Before
+	public void init() {
+		templates = new ArpFrameTemplates();
+	}
+
+	@Test
+	public void testUntaggedRequestMatchesSerializedFrame() throws Exception {
+		byte[] broadcast = NetUtils.getBroadcastMACAddr();
+		for (int i = 1; i < 4; i++) {
+			byte[] targetIp = { (byte) 192, (byte) 168, 20, (byte) i };
+			byte[] expected = ArpFrameTemplates.createFrame(ArpOperation.REQUEST, SENDER_MAC, SENDER_IP,
+					ArpFrameTemplates.UNTAGGED, broadcast, targetIp).serialize();
+			assertArrayEquals(expected, templates.getFrame(ArpOperation.REQUEST, SENDER_MAC, SENDER_IP,
+					ArpFrameTemplates.UNTAGGED, broadcast, targetIp));
+		}
+		assertEquals(1, templates.size());
+	}
+
+	@Test
+	public void testTaggedReplyMatchesSerializedFrame() throws Exception {
+		byte[] targetIp = { (byte) 192, (byte) 168, 10, 2 };
+		int tci = ArpFrameTemplates.tci(3, 100);
+		byte[] expected = ArpFrameTemplates
+				.createFrame(ArpOperation.REPLY, SENDER_MAC, SENDER_IP, tci, TARGET_MAC, targetIp).serialize();
+		assertArrayEquals(expected,
+				templates.getFrame(ArpOperation.REPLY, SENDER_MAC, SENDER_IP, tci, TARGET_MAC, targetIp));
+	}
+
+	@Test
+	public void testTemplatesAreKeyedBySenderAndTag() throws Exception {
+		byte[] targetIp = { (byte) 192, (byte) 168, 10, 2 };
+		templates.getFrame(ArpOperation.REQUEST, SENDER_MAC, SENDER_IP, ArpFrameTemplates.UNTAGGED, TARGET_MAC,
+				targetIp);
+		templates.getFrame(ArpOperation.REQUEST, SENDER_MAC, SENDER_IP, ArpFrameTemplates.tci(0, 10), TARGET_MAC,
+				targetIp);
+		templates.getFrame(ArpOperation.REPLY, SENDER_MAC, SENDER_IP, ArpFrameTemplates.UNTAGGED, TARGET_MAC,
+				targetIp);
+		templates.getFrame(ArpOperation.REQUEST, SENDER_MAC, SENDER_IP, ArpFrameTemplates.UNTAGGED, TARGET_MAC,
+				SENDER_IP);
+		assertEquals(3, templates.size());
+	}
+
+	@Test
+	public void testFullCacheEvictsOneTemplate() throws Exception {
+		for (int i = 0; i <= ArpFrameTemplates.MAX_TEMPLATES; i++) {
+			byte[] senderIp = { 10, 0, (byte) (i >> 8), (byte) i };
+			templates.getFrame(ArpOperation.REPLY, SENDER_MAC, senderIp, ArpFrameTemplates.UNTAGGED, TARGET_MAC,
+					SENDER_IP);
+		}
+		assertEquals(ArpFrameTemplates.MAX_TEMPLATES, templates.size());
+	}
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2016 Wipro Ltd. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.atrium.hostservice.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.function.Consumer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.opendaylight.atrium.util.AtriumIpAddress;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ArpProbeSchedulerTest {
+
+	@Mock
+	private Consumer<AtriumIpAddress> prober;
+	@Mock
+	private ArpProbeScheduler.ProbeListener listener;
+	private ArpProbeScheduler scheduler;
+
+	@Before
+	public void init() {
+		scheduler = new ArpProbeScheduler(prober);
+		scheduler.addListener(listener);
+	}
+
+	@After
+	public void cleanup() {
+		scheduler.close();
+	}
+
+	@Test
+	public void testBackoff() {
+		assertEquals(1000, ArpProbeScheduler.backoff(1, 1000, 30000));
+		assertEquals(2000, ArpProbeScheduler.backoff(2, 1000, 30000));
+		assertEquals(16000, ArpProbeScheduler.backoff(5, 1000, 30000));
+		assertEquals(30000, ArpProbeScheduler.backoff(6, 1000, 30000));
+		assertEquals(30000, ArpProbeScheduler.backoff(64, 1000, 30000));
+	}
+
+	@Test
+	public void testFirstProbeImmediate() {
+		AtriumIpAddress ip = AtriumIpAddress.valueOf("192.168.10.1");
+
+		assertTrue(scheduler.schedule(ip));
+		assertFalse(scheduler.schedule(ip));
+
+		verify(prober, timeout(500).times(1)).accept(ip);
+		assertTrue(scheduler.isScheduled(ip));
+	}
+
+	@Test
+	public void testGiveUpAfterMaxAttempts() {
+		AtriumIpAddress ip = AtriumIpAddress.valueOf("192.168.20.1");
+		scheduler.configure(20L, 40L, 3L, 10L, 10000L);
+
+		scheduler.schedule(ip);
+
+		verify(listener, timeout(2000)).probeAbandoned(ip, 3);
+		verify(prober, times(3)).accept(ip);
+		assertFalse(scheduler.isScheduled(ip));
+		assertEquals(3, scheduler.getProbeCount());
+		assertEquals(1, scheduler.getAbandonedCount());
+	}
+
+	@Test
+	public void testCancel() throws Exception {
+		AtriumIpAddress ip = AtriumIpAddress.valueOf("192.168.30.1");
+		scheduler.configure(20L, 20L, 3L, 0L, 10000L);
+
+		scheduler.schedule(ip);
+		verify(prober, timeout(500)).accept(ip);
+		assertTrue(scheduler.cancel(ip));
+		assertEquals(0, scheduler.size());
+
+		Thread.sleep(200);
+		verify(prober, times(1)).accept(ip);
+		verify(listener, never()).probeAbandoned(ip, 1);
+	}
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2016 Wipro Ltd. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.atrium.hostservice.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class EventDispatcherTest {
+
+	private static final int CAPACITY = 4;
+
+	// Events are "key:value" strings, coalesced by keeping the newest value
+	private EventDispatcher<Consumer<String>, String> dispatcher;
+	private final List<Runnable> tasks = new ArrayList<>();
+	private final List<String> received = new ArrayList<>();
+
+	@Before
+	public void init() {
+		dispatcher = new EventDispatcher<>("test", Consumer::accept, event -> event.split(":")[0],
+				(first, second) -> second.endsWith(":cancel") ? null : second, CAPACITY, this::manualExecutor);
+		dispatcher.addListener(received::add);
+	}
+
+	@After
+	public void destroy() {
+		dispatcher.close();
+	}
+
+	// Runs the queued tasks only when asked to
+	private ExecutorService manualExecutor() {
+		return new AbstractExecutorService() {
+			private boolean shutdown;
+
+			@Override
+			public void execute(Runnable command) {
+				tasks.add(command);
+			}
+
+			@Override
+			public void shutdown() {
+				shutdown = true;
+			}
+
+			@Override
+			public List<Runnable> shutdownNow() {
+				shutdown = true;
+				return new ArrayList<>();
+			}
+
+			@Override
+			public boolean isShutdown() {
+				return shutdown;
+			}
+
+			@Override
+			public boolean isTerminated() {
+				return shutdown;
+			}
+
+			@Override
+			public boolean awaitTermination(long timeout, TimeUnit unit) {
+				return true;
+			}
+		};
+	}
+
+	private void runTasks() {
+		List<Runnable> pending = new ArrayList<>(tasks);
+		tasks.clear();
+		pending.forEach(Runnable::run);
+	}
+
+	@Test
+	public void testCoalescing() {
+		dispatcher.post("a:1");
+		dispatcher.post("b:1");
+		dispatcher.post("a:2");
+		dispatcher.post("c:1");
+		dispatcher.post("c:cancel");
+		assertEquals(2, dispatcher.getPendingCount());
+		runTasks();
+
+		assertEquals(2, received.size());
+		assertEquals("a:2", received.get(0));
+		assertEquals("b:1", received.get(1));
+		assertEquals(2, dispatcher.getCoalescedCount());
+		assertEquals(2, dispatcher.getDeliveredCount());
+		assertEquals(0, dispatcher.getPendingCount());
+	}
+
+	@Test
+	public void testDropWhenFull() {
+		for (int i = 0; i < CAPACITY + 2; i++) {
+			dispatcher.post(i + ":x");
+		}
+		// Events for keys already pending are still coalesced
+		dispatcher.post("0:y");
+		runTasks();
+
+		assertEquals(CAPACITY, received.size());
+		assertEquals("0:y", received.get(0));
+		assertEquals(2, dispatcher.getDroppedCount());
+	}
+
+	@Test
+	public void testSlowListenerDoesNotBlockPoster() throws InterruptedException {
+		EventDispatcher<Consumer<String>, String> async = new EventDispatcher<>("test", Consumer::accept,
+				event -> event, (first, second) -> second, CAPACITY);
+		CountDownLatch release = new CountDownLatch(1);
+		CountDownLatch delivered = new CountDownLatch(2);
+		async.addListener(event -> {
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			delivered.countDown();
+		});
+		try {
+			async.post("a");
+			async.post("b");
+			release.countDown();
+			assertTrue(delivered.await(5, TimeUnit.SECONDS));
+		} finally {
+			async.close();
+		}
+	}
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2016 Wipro Ltd. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.atrium.hostservice.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.opendaylight.atrium.hostservice.impl.InterfaceAddressIndex.RouterInterface;
+import org.opendaylight.atrium.util.AtriumIp4Address;
+import org.opendaylight.atrium.util.AtriumIpAddress;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev100924.IpAddress;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev100924.Ipv4Address;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.yang.types.rev100924.MacAddress;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.NodeConnectorId;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.hostservice.api.rev150725.AddressesBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.hostservice.api.rev150725.addresses.Address;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.hostservice.api.rev150725.addresses.AddressBuilder;
+
+public class InterfaceAddressIndexTest {
+
+	private InterfaceAddressIndex index;
+
+	@Before
+	public void init() {
+		index = new InterfaceAddressIndex();
+		List<Address> addresses = new ArrayList<>();
+		addresses.add(getAddress("192.168.10.101", "00:00:00:00:00:01", "1", 0));
+		addresses.add(getAddress("192.168.20.101", "00:00:00:00:00:02", "2", 20));
+		index.update(new AddressesBuilder().setAddress(addresses).build());
+	}
+
+	private Address getAddress(String ip, String mac, String port, int vlan) {
+		return new AddressBuilder().setIpAddress(new IpAddress(new Ipv4Address(ip))).setMac(new MacAddress(mac))
+				.setDpid("openflow:1").setOfPortId(new NodeConnectorId(port)).setVlan(vlan).build();
+	}
+
+	@Test
+	public void testFindInterfaceForSubnet() {
+		RouterInterface first = index.findInterfaceFor(AtriumIpAddress.valueOf("192.168.10.1"));
+		assertEquals("192.168.10.101", first.ip().getValue());
+		assertEquals(0, first.vlan());
+		assertTrue(first.port().toString().contains("openflow:1:1"));
+
+		RouterInterface second = index.findInterfaceFor(AtriumIpAddress.valueOf("192.168.20.254"));
+		assertEquals("00:00:00:00:00:02", second.mac().getValue());
+		assertEquals(20, second.vlan());
+	}
+
+	@Test
+	public void testNoMatchingSubnet() {
+		assertNull(index.findInterfaceFor(AtriumIpAddress.valueOf("192.168.30.1")));
+		assertNull(index.findInterfaceFor(AtriumIpAddress.valueOf("2000::1")));
+	}
+
+	@Test
+	public void testGetInterfaceByAddress() {
+		RouterInterface gateway = index.getInterface(AtriumIp4Address.valueOf("192.168.20.101").toInt());
+		assertEquals("00:00:00:00:00:02", gateway.mac().getValue());
+		assertNull(index.getInterface(AtriumIp4Address.valueOf("192.168.20.102").toInt()));
+	}
+
+	@Test
+	public void testAddressesRemoved() {
+		index.update(null);
+		assertTrue(index.isEmpty());
+		assertNull(index.findInterfaceFor(AtriumIpAddress.valueOf("192.168.10.1")));
+		assertNull(index.getInterface(AtriumIp4Address.valueOf("192.168.10.101").toInt()));
+	}
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2016 Wipro Ltd. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.atrium.hostservice.impl;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.opendaylight.controller.md.sal.binding.api.DataObjectModification;
+import org.opendaylight.controller.md.sal.binding.api.DataObjectModification.ModificationType;
+import org.opendaylight.controller.md.sal.binding.api.DataTreeModification;
+import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.TpId;
+import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.link.attributes.Destination;
+import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.link.attributes.Source;
+import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.network.topology.topology.Link;
+
+@RunWith(MockitoJUnitRunner.class)
+public class InternalPortTrackerTest {
+
+	private InternalPortTracker tracker;
+
+	@Before
+	public void init() {
+		tracker = new InternalPortTracker();
+	}
+
+	private Link getLink(String srcTp, String dstTp) {
+		Link link = mock(Link.class);
+		Source source = mock(Source.class);
+		Destination destination = mock(Destination.class);
+		when(link.getSource()).thenReturn(source);
+		when(link.getDestination()).thenReturn(destination);
+		when(source.getSourceTp()).thenReturn(new TpId(srcTp));
+		when(destination.getDestTp()).thenReturn(new TpId(dstTp));
+		return link;
+	}
+
+	@SuppressWarnings("unchecked")
+	private void change(ModificationType type, Link before, Link after) {
+		DataTreeModification<Link> change = mock(DataTreeModification.class);
+		DataObjectModification<Link> root = mock(DataObjectModification.class);
+		when(change.getRootNode()).thenReturn(root);
+		when(root.getModificationType()).thenReturn(type);
+		when(root.getDataBefore()).thenReturn(before);
+		when(root.getDataAfter()).thenReturn(after);
+		tracker.onDataTreeChanged(Collections.singletonList(change));
+	}
+
+	@Test
+	public void testSwitchLinkAdded() {
+		change(ModificationType.WRITE, null, getLink("openflow:1:1", "openflow:2:1"));
+
+		assertTrue(tracker.isInternal(new TpId("openflow:1:1")));
+		assertTrue(tracker.isInternal(new TpId("openflow:2:1")));
+		assertFalse(tracker.isInternal(new TpId("openflow:1:2")));
+	}
+
+	@Test
+	public void testHostLinkIgnored() {
+		change(ModificationType.WRITE, null, getLink("openflow:1:3", "host:aa:bb:cc:dd:ee:ff"));
+		change(ModificationType.WRITE, null, getLink("host:aa:bb:cc:dd:ee:ff", "openflow:1:3"));
+
+		assertFalse(tracker.isInternal(new TpId("openflow:1:3")));
+	}
+
+	@Test
+	public void testReverseLinkKeepsPortInternal() {
+		Link forward = getLink("openflow:1:1", "openflow:2:1");
+		Link reverse = getLink("openflow:2:1", "openflow:1:1");
+		change(ModificationType.WRITE, null, forward);
+		change(ModificationType.WRITE, null, reverse);
+
+		change(ModificationType.DELETE, forward, null);
+		assertTrue(tracker.isInternal(new TpId("openflow:1:1")));
+
+		change(ModificationType.DELETE, reverse, null);
+		assertFalse(tracker.isInternal(new TpId("openflow:1:1")));
+		assertFalse(tracker.isInternal(new TpId("openflow:2:1")));
+	}
+
+	@Test
+	public void testLinkReplaced() {
+		Link before = getLink("openflow:1:1", "openflow:2:1");
+		change(ModificationType.WRITE, null, before);
+		change(ModificationType.WRITE, before, getLink("openflow:1:1", "openflow:3:1"));
+
+		assertTrue(tracker.isInternal(new TpId("openflow:1:1")));
+		assertTrue(tracker.isInternal(new TpId("openflow:3:1")));
+		assertFalse(tracker.isInternal(new TpId("openflow:2:1")));
+	}
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2016 Wipro Ltd. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.atrium.hostservice.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class Ip4AddressMapTest {
+
+	@Test
+	public void testPutGetRemove() {
+		Ip4AddressMap<String> map = new Ip4AddressMap<>();
+		assertNull(map.put(0xc0a80a01, "a"));
+		assertNull(map.put(0, "zero"));
+		assertEquals("a", map.put(0xc0a80a01, "b"));
+		assertEquals(2, map.size());
+		assertEquals("b", map.get(0xc0a80a01));
+		assertEquals("zero", map.get(0));
+		assertFalse(map.containsKey(0xc0a80a02));
+
+		assertEquals("b", map.remove(0xc0a80a01));
+		assertNull(map.remove(0xc0a80a01));
+		assertNull(map.get(0xc0a80a01));
+		assertEquals(1, map.size());
+	}
+
+	@Test
+	public void testGrowAndRemoveKeepsProbeChains() {
+		Ip4AddressMap<Integer> map = new Ip4AddressMap<>();
+		int base = 0x0a000000;
+		for (int i = 0; i < 10000; i++) {
+			map.put(base + i, i);
+		}
+		assertEquals(10000, map.size());
+		for (int i = 0; i < 10000; i += 2) {
+			assertEquals(Integer.valueOf(i), map.remove(base + i));
+		}
+		for (int i = 0; i < 10000; i++) {
+			if (i % 2 == 0) {
+				assertFalse(map.containsKey(base + i));
+			} else {
+				assertEquals(Integer.valueOf(i), map.get(base + i));
+			}
+		}
+		map.clear();
+		assertEquals(0, map.size());
+		assertTrue(map.get(base + 1) == null);
+	}
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2016 Wipro Ltd. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.atrium.hostservice.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.function.Consumer;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.opendaylight.atrium.hostservice.api.Neighbor;
+import org.opendaylight.atrium.util.AtriumIpAddress;
+import org.opendaylight.atrium.util.AtriumMacAddress;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.NodeConnectorId;
+
+@RunWith(MockitoJUnitRunner.class)
+public class NeighborAgerTest {
+
+	private static final AtriumIpAddress PINNED = AtriumIpAddress.valueOf("192.168.10.1");
+	private static final AtriumIpAddress UNPINNED = AtriumIpAddress.valueOf("192.168.10.2");
+	private static final long MAC = AtriumMacAddress.valueOf("aa:bb:cc:dd:ee:ff").toLong();
+	private static final NodeConnectorId PORT = new NodeConnectorId("openflow:1:1");
+
+	@Mock
+	private Consumer<AtriumIpAddress> refresher;
+	private NeighborStore store;
+	private NeighborAger ager;
+
+	@Before
+	public void init() {
+		store = new NeighborStore();
+		store.update(new Neighbor(PINNED, MAC, PORT, Neighbor.UNTAGGED, 0));
+		store.update(new Neighbor(UNPINNED, MAC, PORT, Neighbor.UNTAGGED, 0));
+		store.pin(PINNED);
+		ager = new NeighborAger(store, refresher);
+		ager.configure(1000L, 100L);
+	}
+
+	@Test
+	public void testNothingBeforeRefreshWindow() {
+		ager.sweep(899);
+		verify(refresher, never()).accept(any(AtriumIpAddress.class));
+		assertEquals(2, store.size());
+	}
+
+	@Test
+	public void testRefreshPinnedOnly() {
+		ager.sweep(900);
+		verify(refresher, times(1)).accept(PINNED);
+		verify(refresher, never()).accept(UNPINNED);
+		assertEquals(1, ager.getRefreshCount());
+		assertEquals(0, ager.getExpiredCount());
+	}
+
+	@Test
+	public void testExpire() {
+		// The pinned neighbor answered the refresh
+		store.touch(PINNED, MAC, 950);
+		ager.sweep(1000);
+
+		assertNull(store.get(UNPINNED));
+		assertNotNull(store.get(PINNED));
+		assertEquals(1, ager.getExpiredCount());
+
+		// Pinned neighbors that stop answering expire too
+		ager.sweep(1950);
+		assertNull(store.get(PINNED));
+		assertEquals(2, ager.getExpiredCount());
+	}
+
+	@Test
+	public void testSweepInterval() {
+		assertEquals(1000, ager.sweepInterval());
+		ager.configure(600000L, 60000L);
+		assertEquals(20000, ager.sweepInterval());
+	}
+}
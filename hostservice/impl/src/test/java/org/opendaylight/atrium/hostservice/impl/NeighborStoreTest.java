@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) 2016 Wipro Ltd. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.atrium.hostservice.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.opendaylight.atrium.hostservice.api.Neighbor;
+import org.opendaylight.atrium.hostservice.api.NeighborEvent;
+import org.opendaylight.atrium.hostservice.api.NeighborListener;
+import org.opendaylight.atrium.util.AtriumIpAddress;
+import org.opendaylight.atrium.util.AtriumMacAddress;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.NodeConnectorId;
+
+import com.google.common.util.concurrent.MoreExecutors;
+
+@RunWith(MockitoJUnitRunner.class)
+public class NeighborStoreTest {
+
+	private static final AtriumIpAddress IP4 = AtriumIpAddress.valueOf("192.168.10.1");
+	private static final AtriumIpAddress IP6 = AtriumIpAddress.valueOf("2000::1");
+	private static final long MAC = AtriumMacAddress.valueOf("aa:bb:cc:dd:ee:ff").toLong();
+	private static final long OTHER_MAC = AtriumMacAddress.valueOf("aa:bb:cc:dd:ee:00").toLong();
+	private static final NodeConnectorId PORT = new NodeConnectorId("openflow:1:1");
+
+	@Mock
+	private NeighborListener listener;
+	private NeighborStore store;
+
+	@Before
+	public void init() {
+		store = new NeighborStore(MoreExecutors::newDirectExecutorService);
+		store.addListener(listener);
+	}
+
+	@Test
+	public void testLookup() {
+		Neighbor ip4 = new Neighbor(IP4, MAC, PORT, Neighbor.UNTAGGED, 1);
+		Neighbor ip6 = new Neighbor(IP6, OTHER_MAC, PORT, 10, 1);
+		store.update(ip4);
+		store.update(ip6);
+
+		assertSame(ip4, store.get(IP4));
+		assertSame(ip4, store.getIp4(IP4.getIp4Address().toInt()));
+		assertSame(ip6, store.get(IP6));
+		assertEquals("aa:bb:cc:dd:ee:ff", store.get(IP4).macAddress().toString());
+		assertEquals(2, store.size());
+	}
+
+	@Test
+	public void testEvents() {
+		store.update(new Neighbor(IP4, MAC, PORT, Neighbor.UNTAGGED, 1));
+		// A refresh of the same binding is not reported
+		store.update(new Neighbor(IP4, MAC, PORT, Neighbor.UNTAGGED, 2));
+		store.update(new Neighbor(IP4, OTHER_MAC, PORT, Neighbor.UNTAGGED, 3));
+		store.remove(IP4);
+		store.remove(IP4);
+
+		ArgumentCaptor<NeighborEvent> events = ArgumentCaptor.forClass(NeighborEvent.class);
+		verify(listener, times(3)).neighborUpdate(events.capture());
+		assertEquals(NeighborEvent.Type.NEIGHBOR_ADDED, events.getAllValues().get(0).getType());
+		NeighborEvent updated = events.getAllValues().get(1);
+		assertEquals(NeighborEvent.Type.NEIGHBOR_UPDATED, updated.getType());
+		assertEquals(MAC, updated.getPrevious().mac());
+		assertEquals(OTHER_MAC, updated.getNeighbor().mac());
+		assertEquals(NeighborEvent.Type.NEIGHBOR_REMOVED, events.getAllValues().get(2).getType());
+		assertNull(store.get(IP4));
+	}
+
+	@Test
+	public void testClearDoesNotNotify() {
+		store.update(new Neighbor(IP6, MAC, null, Neighbor.UNTAGGED, 1));
+		store.clear();
+		assertEquals(0, store.size());
+		verify(listener, times(1)).neighborUpdate(any(NeighborEvent.class));
+	}
+
+	@Test
+	public void testTouch() {
+		store.update(new Neighbor(IP4, MAC, PORT, Neighbor.UNTAGGED, 1));
+
+		assertTrue(store.touch(IP4, MAC, 5));
+		assertEquals(5, store.get(IP4).lastSeen());
+		// A different MAC address is not a refresh
+		assertFalse(store.touch(IP4, OTHER_MAC, 6));
+		assertEquals(5, store.get(IP4).lastSeen());
+		assertFalse(store.touch(IP6, MAC, 6));
+		// Refreshes are not reported
+		verify(listener, times(1)).neighborUpdate(any(NeighborEvent.class));
+	}
+
+	@Test
+	public void testExpire() {
+		Neighbor neighbor = new Neighbor(IP4, MAC, PORT, Neighbor.UNTAGGED, 1);
+		store.update(neighbor);
+		store.touch(IP4, MAC, 2);
+
+		// Seen again since the snapshot
+		assertFalse(store.expire(neighbor));
+		assertTrue(store.expire(store.get(IP4)));
+		assertNull(store.get(IP4));
+	}
+
+	@Test
+	public void testEvictionSkipsPinned() {
+		store.setMaxEntries(16L);
+		for (int i = 0; i < 16; i++) {
+			store.update(new Neighbor(AtriumIpAddress.valueOf("10.0.0." + i), MAC, PORT, Neighbor.UNTAGGED, i));
+		}
+		AtriumIpAddress oldest = AtriumIpAddress.valueOf("10.0.0.0");
+		store.pin(oldest);
+		assertTrue(store.isPinned(oldest));
+
+		store.update(new Neighbor(IP4, MAC, PORT, Neighbor.UNTAGGED, 100));
+
+		// One above the limit plus a batch of max / 16
+		assertEquals(2, store.getEvictedCount());
+		assertEquals(15, store.size());
+		assertNotNull(store.get(oldest));
+		assertNull(store.get(AtriumIpAddress.valueOf("10.0.0.1")));
+		assertNull(store.get(AtriumIpAddress.valueOf("10.0.0.2")));
+		assertNotNull(store.get(IP4));
+
+		store.release(oldest);
+		assertFalse(store.isPinned(oldest));
+	}
+
+	@Test
+	public void testMoveCarriesDetectionTime() {
+		store.update(new Neighbor(IP4, MAC, PORT, Neighbor.UNTAGGED, 1), 10);
+		store.update(new Neighbor(IP4, OTHER_MAC, new NodeConnectorId("openflow:1:2"), Neighbor.UNTAGGED, 2), 20);
+
+		ArgumentCaptor<NeighborEvent> events = ArgumentCaptor.forClass(NeighborEvent.class);
+		verify(listener, times(2)).neighborUpdate(events.capture());
+		NeighborEvent moved = events.getAllValues().get(1);
+		assertEquals(NeighborEvent.Type.NEIGHBOR_UPDATED, moved.getType());
+		assertEquals(20, moved.getTime());
+		assertEquals(PORT, moved.getPrevious().port());
+	}
+
+	@Test
+	public void testCoalesce() {
+		Neighbor first = new Neighbor(IP4, MAC, PORT, Neighbor.UNTAGGED, 1);
+		Neighbor second = new Neighbor(IP4, OTHER_MAC, PORT, Neighbor.UNTAGGED, 2);
+		Neighbor third = new Neighbor(IP4, MAC, new NodeConnectorId("openflow:1:2"), Neighbor.UNTAGGED, 3);
+		NeighborEvent added = new NeighborEvent(NeighborEvent.Type.NEIGHBOR_ADDED, first, null, 10);
+		NeighborEvent updated = new NeighborEvent(NeighborEvent.Type.NEIGHBOR_UPDATED, second, first, 20);
+		NeighborEvent updatedAgain = new NeighborEvent(NeighborEvent.Type.NEIGHBOR_UPDATED, third, second, 30);
+		NeighborEvent removed = new NeighborEvent(NeighborEvent.Type.NEIGHBOR_REMOVED, third, null, 40);
+
+		NeighborEvent merged = NeighborStore.coalesce(added, updated);
+		assertEquals(NeighborEvent.Type.NEIGHBOR_ADDED, merged.getType());
+		assertSame(second, merged.getNeighbor());
+		assertEquals(10, merged.getTime());
+
+		merged = NeighborStore.coalesce(updated, updatedAgain);
+		assertEquals(NeighborEvent.Type.NEIGHBOR_UPDATED, merged.getType());
+		assertSame(third, merged.getNeighbor());
+		assertSame(first, merged.getPrevious());
+		assertEquals(20, merged.getTime());
+
+		assertNull(NeighborStore.coalesce(added, removed));
+		assertSame(removed, NeighborStore.coalesce(updated, removed));
+	}
+}
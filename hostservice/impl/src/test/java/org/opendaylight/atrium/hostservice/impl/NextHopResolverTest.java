@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2016 Wipro Ltd. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.atrium.hostservice.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.opendaylight.atrium.util.AtriumIpAddress;
+import org.opendaylight.atrium.util.AtriumMacAddress;
+
+@RunWith(MockitoJUnitRunner.class)
+public class NextHopResolverTest {
+
+	@Mock
+	private Consumer<AtriumIpAddress> prober;
+	private ArpProbeScheduler scheduler;
+	private NextHopResolver resolver;
+
+	@Before
+	public void init() {
+		scheduler = new ArpProbeScheduler(prober);
+		resolver = new NextHopResolver(scheduler);
+	}
+
+	@After
+	public void cleanup() {
+		resolver.close();
+		scheduler.close();
+	}
+
+	@Test
+	public void testConcurrentRequestsShareResolution() throws Exception {
+		AtriumIpAddress ip = AtriumIpAddress.valueOf("192.168.10.1");
+		AtriumMacAddress mac = AtriumMacAddress.valueOf("aa:bb:cc:dd:ee:ff");
+
+		CompletableFuture<AtriumMacAddress> first = resolver.resolve(ip);
+		CompletableFuture<AtriumMacAddress> second = resolver.resolve(ip);
+		assertSame(first, second);
+		assertTrue(resolver.isPending(ip));
+
+		verify(prober, timeout(1000)).accept(ip);
+
+		resolver.hostLearned(ip, mac);
+		assertEquals(mac, first.get(1, TimeUnit.SECONDS));
+		assertFalse(resolver.isPending(ip));
+		assertFalse(scheduler.isScheduled(ip));
+	}
+
+	@Test
+	public void testResolutionTimesOut() throws Exception {
+		AtriumIpAddress ip = AtriumIpAddress.valueOf("192.168.20.1");
+		scheduler.configure(50L, 50L, 2L, 0L, 1000L);
+
+		CompletableFuture<AtriumMacAddress> future = resolver.resolve(ip);
+		try {
+			future.get(2, TimeUnit.SECONDS);
+			fail("Resolution should have failed");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof TimeoutException);
+		}
+		verify(prober, atLeast(2)).accept(ip);
+		assertFalse(resolver.isPending(ip));
+	}
+}
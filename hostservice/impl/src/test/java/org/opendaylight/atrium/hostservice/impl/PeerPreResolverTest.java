@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2016 Wipro Ltd. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.atrium.hostservice.impl;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.opendaylight.atrium.hostservice.api.Neighbor;
+import org.opendaylight.atrium.routingservice.config.api.RoutingConfigService;
+import org.opendaylight.atrium.util.AtriumIpAddress;
+import org.opendaylight.atrium.util.AtriumMacAddress;
+import org.opendaylight.controller.md.sal.binding.api.DataObjectModification;
+import org.opendaylight.controller.md.sal.binding.api.DataObjectModification.ModificationType;
+import org.opendaylight.controller.md.sal.binding.api.DataTreeChangeService;
+import org.opendaylight.controller.md.sal.binding.api.DataTreeIdentifier;
+import org.opendaylight.controller.md.sal.binding.api.DataTreeModification;
+import org.opendaylight.controller.md.sal.common.api.data.LogicalDatastoreType;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev100924.IpAddress;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev100924.Ipv4Address;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.NodeConnectorId;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.NodeId;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.Nodes;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.nodes.Node;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.nodes.NodeKey;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.bgpconfig.api.rev150725.BgpPeers;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.bgpconfig.api.rev150725.bgppeers.BgpPeer;
+import org.opendaylight.yangtools.yang.binding.InstanceIdentifier;
+
+import com.google.common.util.concurrent.MoreExecutors;
+
+@RunWith(MockitoJUnitRunner.class)
+public class PeerPreResolverTest {
+
+	private static final AtriumIpAddress PEER1 = AtriumIpAddress.valueOf("192.168.10.1");
+	private static final AtriumIpAddress PEER2 = AtriumIpAddress.valueOf("192.168.20.1");
+	private static final NodeId SWITCH1 = new NodeId("openflow:1");
+	private static final NodeId SWITCH2 = new NodeId("openflow:2");
+
+	@Mock
+	private RoutingConfigService configService;
+	@Mock
+	private DataTreeChangeService dataTreeChangeService;
+	@Mock
+	private Function<AtriumIpAddress, CompletableFuture<AtriumMacAddress>> resolver;
+
+	private NeighborStore neighbors;
+	private PeerPreResolver peerResolver;
+
+	@Before
+	public void init() {
+		List<BgpPeer> peerList = new ArrayList<>();
+		peerList.add(getPeer("192.168.10.1", SWITCH1));
+		peerList.add(getPeer("192.168.20.1", SWITCH2));
+		BgpPeers bgpPeers = mock(BgpPeers.class);
+		when(bgpPeers.getBgpPeer()).thenReturn(peerList);
+		when(configService.getBgpPeers()).thenReturn(bgpPeers);
+		when(resolver.apply(any(AtriumIpAddress.class))).thenAnswer(invocation -> new CompletableFuture<>());
+
+		neighbors = new NeighborStore(MoreExecutors::newDirectExecutorService);
+		peerResolver = new PeerPreResolver(configService, neighbors, resolver);
+		peerResolver.start(dataTreeChangeService);
+	}
+
+	private static BgpPeer getPeer(String ip, NodeId nodeId) {
+		BgpPeer peer = mock(BgpPeer.class);
+		when(peer.getPeerAddr()).thenReturn(new IpAddress(new Ipv4Address(ip)));
+		when(peer.getPeerDpId()).thenReturn(nodeId);
+		return peer;
+	}
+
+	@SuppressWarnings("unchecked")
+	private void nodeChange(ModificationType type, NodeId nodeId) {
+		DataTreeModification<Node> change = mock(DataTreeModification.class);
+		DataObjectModification<Node> root = mock(DataObjectModification.class);
+		InstanceIdentifier<Node> nodeIid = InstanceIdentifier.builder(Nodes.class)
+				.child(Node.class, new NodeKey(nodeId)).build();
+		when(change.getRootPath()).thenReturn(new DataTreeIdentifier<>(LogicalDatastoreType.OPERATIONAL, nodeIid));
+		when(change.getRootNode()).thenReturn(root);
+		when(root.getModificationType()).thenReturn(type);
+		peerResolver.onDataTreeChanged(Collections.singletonList(change));
+	}
+
+	@Test
+	public void testPeersPinned() {
+		assertTrue(neighbors.isPinned(PEER1));
+		assertTrue(neighbors.isPinned(PEER2));
+
+		peerResolver.close();
+		assertFalse(neighbors.isPinned(PEER1));
+	}
+
+	@Test
+	public void testResolvedWhenSwitchUp() {
+		verify(resolver, never()).apply(any(AtriumIpAddress.class));
+
+		nodeChange(ModificationType.WRITE, SWITCH1);
+		// Further changes of the switch do not resolve again
+		nodeChange(ModificationType.SUBTREE_MODIFIED, SWITCH1);
+
+		verify(resolver, times(1)).apply(PEER1);
+		verify(resolver, never()).apply(PEER2);
+	}
+
+	@Test
+	public void testKnownPeerNotResolved() {
+		neighbors.update(new Neighbor(PEER1, AtriumMacAddress.valueOf("aa:bb:cc:dd:ee:ff").toLong(),
+				new NodeConnectorId("openflow:1:1"), Neighbor.UNTAGGED, 1));
+
+		nodeChange(ModificationType.WRITE, SWITCH1);
+
+		verify(resolver, never()).apply(PEER1);
+	}
+
+	@Test
+	public void testResolvedAgainWhenRemoved() {
+		CompletableFuture<AtriumMacAddress> resolution = new CompletableFuture<>();
+		when(resolver.apply(PEER1)).thenReturn(resolution);
+		nodeChange(ModificationType.WRITE, SWITCH1);
+		neighbors.update(new Neighbor(PEER1, AtriumMacAddress.valueOf("aa:bb:cc:dd:ee:ff").toLong(),
+				new NodeConnectorId("openflow:1:1"), Neighbor.UNTAGGED, 1));
+		resolution.complete(AtriumMacAddress.valueOf("aa:bb:cc:dd:ee:ff"));
+
+		when(resolver.apply(PEER1)).thenReturn(new CompletableFuture<>());
+		neighbors.remove(PEER1);
+
+		verify(resolver, times(2)).apply(PEER1);
+	}
+}
@@ -9,6 +9,9 @@ package org.opendaylight.atrium.routingservice.api;
 
 import com.google.common.base.MoreObjects;
 
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Objects;
 
 import org.opendaylight.atrium.util.AtriumIpAddress;
@@ -16,13 +19,15 @@ import org.opendaylight.atrium.util.AtriumIpPrefix;
 import org.opendaylight.atrium.util.AtriumMacAddress;
 
 /**
- * An entry in the Forwarding Information Base (FIB).
+ * An entry in the Forwarding Information Base (FIB). An entry load balanced
+ * over equal-cost paths has several next hops.
  */
 public class AtriumFibEntry {
 
     private final AtriumIpPrefix prefix;
     private final AtriumIpAddress nextHopIp;
     private final AtriumMacAddress nextHopMac;
+    private final Map<AtriumIpAddress, AtriumMacAddress> nextHops;
 
     /**
      * Creates a new FIB entry.
@@ -35,6 +40,24 @@ public class AtriumFibEntry {
         this.prefix = prefix;
         this.nextHopIp = nextHopIp;
         this.nextHopMac = nextHopMac;
+        this.nextHops = nextHopIp == null ? Collections.emptyMap()
+                : Collections.singletonMap(nextHopIp, nextHopMac);
+    }
+
+    /**
+     * Creates a new FIB entry with equal-cost next hops.
+     *
+     * @param prefix IP prefix of the FIB entry
+     * @param nextHops IP addresses of the next hops, in order, with their MAC
+     *            addresses
+     */
+    public AtriumFibEntry(AtriumIpPrefix prefix, Map<AtriumIpAddress, AtriumMacAddress> nextHops) {
+        this.prefix = prefix;
+        this.nextHops = Collections.unmodifiableMap(new LinkedHashMap<>(nextHops));
+        Map.Entry<AtriumIpAddress, AtriumMacAddress> first =
+                nextHops.isEmpty() ? null : nextHops.entrySet().iterator().next();
+        this.nextHopIp = first == null ? null : first.getKey();
+        this.nextHopMac = first == null ? null : first.getValue();
     }
 
     /**
@@ -47,7 +70,8 @@ public class AtriumFibEntry {
     }
 
     /**
-     * Returns the IP address of the next hop.
+     * Returns the IP address of the next hop, the first one if there are
+     * several.
      *
      * @return the IP address
      */
@@ -56,7 +80,8 @@ public class AtriumFibEntry {
     }
 
     /**
-     * Returns the MAC address of the next hop.
+     * Returns the MAC address of the next hop, the first one if there are
+     * several.
      *
      * @return the MAC address
      */
@@ -64,6 +89,24 @@ public class AtriumFibEntry {
         return nextHopMac;
     }
 
+    /**
+     * Returns the next hops with their MAC addresses.
+     *
+     * @return the next hops, empty for a withdrawn entry
+     */
+    public Map<AtriumIpAddress, AtriumMacAddress> nextHops() {
+        return nextHops;
+    }
+
+    /**
+     * Tests whether the entry is load balanced over several next hops.
+     *
+     * @return true if the entry has more than one next hop
+     */
+    public boolean isMultipath() {
+        return nextHops.size() > 1;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (!(o instanceof AtriumFibEntry)) {
@@ -73,17 +116,22 @@ public class AtriumFibEntry {
         AtriumFibEntry that = (AtriumFibEntry) o;
 
         return Objects.equals(this.prefix, that.prefix) &&
-                Objects.equals(this.nextHopIp, that.nextHopIp) &&
-                Objects.equals(this.nextHopMac, that.nextHopMac);
+                Objects.equals(this.nextHops, that.nextHops);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(prefix, nextHopIp, nextHopMac);
+        return Objects.hash(prefix, nextHops);
     }
 
     @Override
     public String toString() {
+        if (isMultipath()) {
+            return MoreObjects.toStringHelper(getClass())
+                    .add("prefix", prefix)
+                    .add("nextHops", nextHops)
+                    .toString();
+        }
         return MoreObjects.toStringHelper(getClass())
                 .add("prefix", prefix)
                 .add("nextHopIp", nextHopIp)
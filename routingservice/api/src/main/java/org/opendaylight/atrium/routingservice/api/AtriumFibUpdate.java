@@ -33,6 +33,7 @@ public class AtriumFibUpdate {
 
     private final Type type;
     private final AtriumFibEntry entry;
+    private final RouteTrace trace;
 
     /**
      * Creates a new FIB update.
@@ -41,8 +42,20 @@ public class AtriumFibUpdate {
      * @param entry FIB entry describing the update
      */
     public AtriumFibUpdate(Type type, AtriumFibEntry entry) {
+        this(type, entry, null);
+    }
+
+    /**
+     * Creates a new FIB update of a traced route update.
+     *
+     * @param type type of the update
+     * @param entry FIB entry describing the update
+     * @param trace trace of the route update, null if not traced
+     */
+    public AtriumFibUpdate(Type type, AtriumFibEntry entry, RouteTrace trace) {
         this.type = type;
         this.entry = entry;
+        this.trace = trace;
     }
 
     /**
@@ -63,6 +76,16 @@ public class AtriumFibUpdate {
         return entry;
     }
 
+    /**
+     * Returns the trace of the route update, which the FIB listener stamps
+     * with its stages. It is not part of the equality of updates.
+     *
+     * @return the trace, or null if the route update is not traced
+     */
+    public RouteTrace trace() {
+        return trace;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (!(o instanceof AtriumFibUpdate)) {
@@ -9,6 +9,9 @@
 package org.opendaylight.atrium.routingservice.api;
 
 import java.util.Collection;
+import java.util.Collections;
+
+import org.opendaylight.atrium.util.AtriumIpAddress;
 
 /**
  * A component that is able to process Forwarding Information Base (FIB) updates.
@@ -23,4 +26,20 @@ public interface FibListener {
      */
     void update(Collection<AtriumFibUpdate> updates, Collection<AtriumFibUpdate> withdraws);
 
+    /**
+     * Signals the FIB component that the MAC address of a next hop changed.
+     * All updates go through the given next hop and carry its new MAC
+     * address, so the next hop can be rewritten once for all of them. By
+     * default the updates are processed as any other.
+     *
+     * @param nextHop the next hop IP address
+     * @param updates FIB updates of the UPDATE type for the routes through the
+     *            next hop
+     * @param detectedAt the {@link System#nanoTime()} at which the move was
+     *            detected
+     */
+    default void nextHopMoved(AtriumIpAddress nextHop, Collection<AtriumFibUpdate> updates, long detectedAt) {
+        update(updates, Collections.emptyList());
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2016 Wipro Ltd. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.atrium.routingservice.api;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.Collection;
+import java.util.Objects;
+import java.util.Set;
+
+import org.opendaylight.atrium.util.AtriumIpAddress;
+import org.opendaylight.atrium.util.AtriumIpPrefix;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableSortedSet;
+
+/**
+ * Represents a route entry for an IP prefix load balanced over equal-cost
+ * next hops. The first next hop in address order is the primary one.
+ */
+public class MultipathRouteEntry extends RouteEntry {
+    private final Set<AtriumIpAddress> nextHops;
+
+    /**
+     * Class constructor.
+     *
+     * @param prefix the IP prefix of the route
+     * @param nextHops the next hop IP addresses for the route, at least one
+     */
+    public MultipathRouteEntry(AtriumIpPrefix prefix, Collection<AtriumIpAddress> nextHops) {
+        this(prefix, ImmutableSortedSet.copyOf(nextHops));
+    }
+
+    private MultipathRouteEntry(AtriumIpPrefix prefix, ImmutableSortedSet<AtriumIpAddress> nextHops) {
+        super(prefix, first(nextHops));
+        this.nextHops = nextHops;
+    }
+
+    private static AtriumIpAddress first(ImmutableSortedSet<AtriumIpAddress> nextHops) {
+        checkArgument(!nextHops.isEmpty(), "A route needs a next hop");
+        return nextHops.first();
+    }
+
+    @Override
+    public Set<AtriumIpAddress> nextHops() {
+        return nextHops;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return super.equals(other) && Objects.equals(nextHops, ((MultipathRouteEntry) other).nextHops);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(prefix(), nextHops);
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(getClass())
+            .add("prefix", prefix())
+            .add("nextHops", nextHops)
+            .toString();
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2016 Wipro Ltd. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.atrium.routingservice.api;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Objects;
+
+import org.opendaylight.atrium.util.AtriumIpPrefix;
+
+import com.google.common.base.MoreObjects;
+
+/**
+ * A change to the RIB, which takes it to a new version.
+ */
+public final class RibChange {
+
+    /**
+     * Specifies the type of a RIB change.
+     */
+    public enum Type {
+        /**
+         * The route of a prefix is added or replaced.
+         */
+        UPDATE,
+
+        /**
+         * The route of a prefix is removed.
+         */
+        DELETE
+    }
+
+    private final long version;
+    private final Type type;
+    private final AtriumIpPrefix prefix;
+    private final RouteEntry route;
+
+    /**
+     * Creates the change of an added or replaced route.
+     *
+     * @param version the version of the RIB after the change
+     * @param route the route
+     * @return the change
+     */
+    public static RibChange update(long version, RouteEntry route) {
+        return new RibChange(version, Type.UPDATE, route.prefix(), route);
+    }
+
+    /**
+     * Creates the change of a removed route.
+     *
+     * @param version the version of the RIB after the change
+     * @param prefix the prefix of the route
+     * @return the change
+     */
+    public static RibChange delete(long version, AtriumIpPrefix prefix) {
+        return new RibChange(version, Type.DELETE, prefix, null);
+    }
+
+    private RibChange(long version, Type type, AtriumIpPrefix prefix, RouteEntry route) {
+        this.version = version;
+        this.type = type;
+        this.prefix = checkNotNull(prefix);
+        this.route = route;
+    }
+
+    /**
+     * Returns the version of the RIB after the change. The versions of the
+     * successive changes follow each other.
+     *
+     * @return the version
+     */
+    public long version() {
+        return version;
+    }
+
+    /**
+     * Returns the type of the change.
+     *
+     * @return change type
+     */
+    public Type type() {
+        return type;
+    }
+
+    /**
+     * Returns the prefix of the route changed.
+     *
+     * @return the prefix
+     */
+    public AtriumIpPrefix prefix() {
+        return prefix;
+    }
+
+    /**
+     * Returns the new route of the prefix.
+     *
+     * @return the route, null if the route is removed
+     */
+    public RouteEntry route() {
+        return route;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof RibChange)) {
+            return false;
+        }
+
+        RibChange that = (RibChange) o;
+
+        return this.version == that.version &&
+                Objects.equals(this.type, that.type) &&
+                Objects.equals(this.prefix, that.prefix) &&
+                Objects.equals(this.route, that.route);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(version, type, prefix, route);
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(getClass())
+                .add("version", version)
+                .add("type", type)
+                .add("prefix", prefix)
+                .add("route", route)
+                .toString();
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2016 Wipro Ltd. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.atrium.routingservice.api;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import com.google.common.base.MoreObjects;
+
+/**
+ * The changes a consumer of the RIB applies to catch up from the version it
+ * last synchronized to, read from {@link RoutingService#changesSince(long)}.
+ * <p>
+ * The changes are read from a bounded log. A consumer that fell behind the
+ * oldest change logged gets a snapshot of the routes instead, which replaces
+ * its copy of the RIB. Either way the consumer is then at {@link #version()},
+ * the version to ask the next changes from.
+ * </p>
+ */
+public final class RibChanges {
+
+    private final long version;
+    private final List<RibChange> changes;
+    private final Collection<RouteEntry> snapshot;
+
+    /**
+     * Creates the changes up to a version.
+     *
+     * @param version the version of the RIB after the changes
+     * @param changes the changes, in order
+     * @return the changes
+     */
+    public static RibChanges of(long version, List<RibChange> changes) {
+        return new RibChanges(version, Collections.unmodifiableList(changes), null);
+    }
+
+    /**
+     * Creates the snapshot of the routes of a version.
+     *
+     * @param version the version of the RIB
+     * @param routes the routes of the version
+     * @return the changes
+     */
+    public static RibChanges snapshot(long version, Collection<RouteEntry> routes) {
+        return new RibChanges(version, Collections.emptyList(), Collections.unmodifiableCollection(routes));
+    }
+
+    private RibChanges(long version, List<RibChange> changes, Collection<RouteEntry> snapshot) {
+        this.version = version;
+        this.changes = changes;
+        this.snapshot = snapshot;
+    }
+
+    /**
+     * Returns the version of the RIB the consumer is at once the changes, or
+     * the snapshot, are applied.
+     *
+     * @return the version
+     */
+    public long version() {
+        return version;
+    }
+
+    /**
+     * Returns true if the changes asked for are no longer logged, in which
+     * case the routes of {@link #snapshot()} replace those of the consumer.
+     *
+     * @return true for a snapshot
+     */
+    public boolean isSnapshot() {
+        return snapshot != null;
+    }
+
+    /**
+     * Returns the changes since the version asked for, in order.
+     *
+     * @return the changes, empty for a snapshot
+     */
+    public List<RibChange> changes() {
+        return changes;
+    }
+
+    /**
+     * Returns all the routes of the RIB at {@link #version()}.
+     *
+     * @return the routes, null if not a snapshot
+     */
+    public Collection<RouteEntry> snapshot() {
+        return snapshot;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(getClass())
+                .add("version", version)
+                .add("changes", changes.size())
+                .add("snapshot", snapshot == null ? null : snapshot.size())
+                .toString();
+    }
+}
@@ -9,7 +9,9 @@ package org.opendaylight.atrium.routingservice.api;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import java.util.Collections;
 import java.util.Objects;
+import java.util.Set;
 
 import org.opendaylight.atrium.util.AtriumIpAddress;
 import org.opendaylight.atrium.util.AtriumIpPrefix;
@@ -79,6 +81,16 @@ public class RouteEntry {
         return nextHop;
     }
 
+    /**
+     * Returns the next hop IP addresses of the route. A route load balanced
+     * over equal-cost paths has several next hops.
+     *
+     * @return the next hop IP addresses, in order
+     */
+    public Set<AtriumIpAddress> nextHops() {
+        return Collections.singleton(nextHop);
+    }
+
     /**
      * Creates the binary string representation of an IP prefix.
      * The prefix can be either IPv4 or IPv6.
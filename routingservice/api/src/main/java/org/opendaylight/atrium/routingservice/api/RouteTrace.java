@@ -0,0 +1,210 @@
+/*
+ * Copyright (c) 2016 Wipro Ltd. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.atrium.routingservice.api;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.opendaylight.atrium.util.AtriumIpPrefix;
+
+/**
+ * Trace of a sampled route update through the pipeline, from the local RIB
+ * event to the acknowledgement of its flow objective.
+ * <p>
+ * Each stage the update goes through is stamped with {@link System#nanoTime()}.
+ * The stages completed asynchronously, such as a flow objective RPC or a
+ * datastore commit, hold the trace until they complete; the trace is complete
+ * once the last holder releases it, and is then reported to its
+ * {@link RouteTracer}.
+ * </p>
+ */
+public final class RouteTrace {
+
+    /**
+     * Stages of the pipeline, in order. The time spent in a stage is the time
+     * from the stamp of the previous stage reached.
+     */
+    public enum Stage {
+        /**
+         * The update is received by the data tree listener and queued.
+         */
+        RECEIVED("received"),
+
+        /**
+         * The update is taken from the queue by the RIB thread.
+         */
+        DEQUEUED("queue"),
+
+        /**
+         * The RIB is updated and the FIB update computed.
+         */
+        PROCESSED("rib"),
+
+        /**
+         * The MAC address of the next hop, which the route waited on, is
+         * resolved.
+         */
+        ARP_RESOLVED("arp"),
+
+        /**
+         * The FIB listener sends the flow objective of the route.
+         */
+        FLOW_SENT("fib-listener"),
+
+        /**
+         * The flow objective RPC completes.
+         */
+        FLOW_ACKED("flow-rpc"),
+
+        /**
+         * The FIB entry is committed to the datastore. It is written along
+         * the flow objective, so the time is counted from the hand over to
+         * the FIB listener.
+         */
+        COMMITTED("datastore", FLOW_SENT);
+
+        private final String label;
+        private final int after;
+
+        Stage(String label) {
+            this.label = label;
+            this.after = ordinal();
+        }
+
+        Stage(String label, Stage after) {
+            this.label = label;
+            this.after = after.ordinal();
+        }
+
+        /**
+         * @return the short name of the stage
+         */
+        public String label() {
+            return label;
+        }
+    }
+
+    private static final Stage[] STAGES = Stage.values();
+
+    private final RouteTracer tracer;
+    private final long startedAt;
+    private final long[] stamps = new long[STAGES.length];
+    // The path that started the trace holds it until it hands it over
+    private final AtomicInteger holders = new AtomicInteger(1);
+    private volatile AtriumIpPrefix prefix;
+
+    RouteTrace(RouteTracer tracer) {
+        this.tracer = tracer;
+        this.startedAt = System.currentTimeMillis();
+        stamps[Stage.RECEIVED.ordinal()] = System.nanoTime();
+    }
+
+    /**
+     * Stamps a stage with the current time. A stage stamped again keeps its
+     * first stamp.
+     *
+     * @param stage
+     *            the stage reached
+     */
+    public void stamp(Stage stage) {
+        if (stamps[stage.ordinal()] == 0) {
+            stamps[stage.ordinal()] = System.nanoTime();
+        }
+    }
+
+    /**
+     * Keeps the trace open until a stage completed asynchronously is stamped.
+     * Each hold is followed by a {@link #release()}.
+     */
+    public void hold() {
+        holders.incrementAndGet();
+    }
+
+    /**
+     * Releases a hold on the trace, which is reported to the tracer once the
+     * last hold is released.
+     */
+    public void release() {
+        if (holders.decrementAndGet() == 0) {
+            tracer.completed(this);
+        }
+    }
+
+    /**
+     * @return the prefix of the route, null until the update is processed
+     */
+    public AtriumIpPrefix prefix() {
+        return prefix;
+    }
+
+    public void setPrefix(AtriumIpPrefix prefix) {
+        this.prefix = prefix;
+    }
+
+    /**
+     * @return the time in milliseconds since the epoch at which the update
+     *         was received
+     */
+    public long startedAt() {
+        return startedAt;
+    }
+
+    /**
+     * @return true if the update went through a stage
+     */
+    public boolean reached(Stage stage) {
+        return stamps[stage.ordinal()] != 0;
+    }
+
+    /**
+     * @return the time in nanoseconds spent in a stage, -1 if the update did
+     *         not go through it
+     */
+    public long getDuration(Stage stage) {
+        long stamp = stamps[stage.ordinal()];
+        if (stamp == 0) {
+            return -1;
+        }
+        for (int i = stage.after - 1; i >= 0; i--) {
+            if (stamps[i] != 0) {
+                return stamp - stamps[i];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the time in nanoseconds from the reception of the update to its
+     *         last stage
+     */
+    public long getTotal() {
+        long received = stamps[Stage.RECEIVED.ordinal()];
+        long total = 0;
+        for (long stamp : stamps) {
+            if (stamp != 0) {
+                total = Math.max(total, stamp - received);
+            }
+        }
+        return total;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append(prefix == null ? "-" : prefix.toString())
+                .append(" total=").append(TimeUnit.NANOSECONDS.toMicros(getTotal())).append("us");
+        for (int i = 1; i < STAGES.length; i++) {
+            long duration = getDuration(STAGES[i]);
+            if (duration >= 0) {
+                builder.append(' ').append(STAGES[i].label()).append('=')
+                        .append(TimeUnit.NANOSECONDS.toMicros(duration)).append("us");
+            }
+        }
+        return builder.toString();
+    }
+}
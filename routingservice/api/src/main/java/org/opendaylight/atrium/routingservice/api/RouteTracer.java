@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2016 Wipro Ltd. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.atrium.routingservice.api;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.opendaylight.atrium.atriumutil.metrics.Counter;
+import org.opendaylight.atrium.atriumutil.metrics.Histogram;
+import org.opendaylight.atrium.atriumutil.metrics.MetricsRegistry;
+
+/**
+ * Samples route updates to trace them through the pipeline.
+ * <p>
+ * One update in {@link #getSampleRate()} is traced, none when the rate is 0,
+ * which is the default: an update not sampled costs a volatile read, and its
+ * trace is null all along the pipeline. The time spent in each stage by the
+ * traced updates is recorded in a histogram of the registry of the tracer,
+ * named {@code trace-<stage>-us}, and the slowest traces are kept until
+ * cleared.
+ * </p>
+ */
+public class RouteTracer {
+
+    public static final int DEFAULT_SLOWEST = 32;
+
+    private static final Comparator<RouteTrace> BY_TOTAL = Comparator.comparingLong(RouteTrace::getTotal);
+
+    private volatile int sampleRate;
+    private final AtomicLong sequence = new AtomicLong();
+    private final Map<RouteTrace.Stage, Histogram> stages = new EnumMap<>(RouteTrace.Stage.class);
+    private final Histogram total;
+    private final Counter completed;
+
+    // Slowest traces, the fastest of them replaced by a slower trace once full
+    private RouteTrace[] slowest = new RouteTrace[DEFAULT_SLOWEST];
+    private int slowestSize;
+
+    /**
+     * @param metrics
+     *            the registry the histograms of the stages are recorded in
+     */
+    public RouteTracer(MetricsRegistry metrics) {
+        for (RouteTrace.Stage stage : RouteTrace.Stage.values()) {
+            if (stage != RouteTrace.Stage.RECEIVED) {
+                stages.put(stage, metrics.histogram("trace-" + stage.label() + "-us"));
+            }
+        }
+        total = metrics.histogram("trace-total-us");
+        completed = metrics.counter("traces-completed");
+    }
+
+    /**
+     * @return the number of route updates out of which one is traced, 0 if
+     *         tracing is disabled
+     */
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    /**
+     * @param sampleRate
+     *            the number of route updates out of which one is traced, 0 to
+     *            disable tracing
+     */
+    public void setSampleRate(int sampleRate) {
+        checkArgument(sampleRate >= 0, "Negative sample rate %s", sampleRate);
+        this.sampleRate = sampleRate;
+    }
+
+    /**
+     * Sets the number of slowest traces kept. The traces kept are cleared.
+     */
+    public synchronized void setSlowestCount(int count) {
+        checkArgument(count > 0, "Keeping %s traces", count);
+        slowest = new RouteTrace[count];
+        slowestSize = 0;
+    }
+
+    /**
+     * Starts the trace of a route update, if sampled.
+     *
+     * @return the trace, stamped as received, or null if the update is not
+     *         traced
+     */
+    public RouteTrace start() {
+        int rate = sampleRate;
+        if (rate == 0 || sequence.getAndIncrement() % rate != 0) {
+            return null;
+        }
+        return new RouteTrace(this);
+    }
+
+    void completed(RouteTrace trace) {
+        for (Map.Entry<RouteTrace.Stage, Histogram> stage : stages.entrySet()) {
+            long duration = trace.getDuration(stage.getKey());
+            if (duration >= 0) {
+                stage.getValue().record(TimeUnit.NANOSECONDS.toMicros(duration));
+            }
+        }
+        total.record(TimeUnit.NANOSECONDS.toMicros(trace.getTotal()));
+        completed.increment();
+        keep(trace);
+    }
+
+    private synchronized void keep(RouteTrace trace) {
+        if (slowestSize < slowest.length) {
+            slowest[slowestSize++] = trace;
+            return;
+        }
+        int fastest = 0;
+        for (int i = 1; i < slowestSize; i++) {
+            if (slowest[i].getTotal() < slowest[fastest].getTotal()) {
+                fastest = i;
+            }
+        }
+        if (trace.getTotal() > slowest[fastest].getTotal()) {
+            slowest[fastest] = trace;
+        }
+    }
+
+    /**
+     * @return the slowest traces completed since the last clear, slowest
+     *         first
+     */
+    public synchronized List<RouteTrace> getSlowest() {
+        List<RouteTrace> traces = new ArrayList<>(slowestSize);
+        for (int i = 0; i < slowestSize; i++) {
+            traces.add(slowest[i]);
+        }
+        traces.sort(Collections.reverseOrder(BY_TOTAL));
+        return traces;
+    }
+
+    /**
+     * Forgets the slowest traces. The histograms of the stages are kept.
+     */
+    public synchronized void clear() {
+        for (int i = 0; i < slowestSize; i++) {
+            slowest[i] = null;
+        }
+        slowestSize = 0;
+    }
+
+    /**
+     * @return the histogram of the time in microseconds spent in a stage,
+     *         null for {@link RouteTrace.Stage#RECEIVED}
+     */
+    public Histogram getHistogram(RouteTrace.Stage stage) {
+        return stages.get(stage);
+    }
+
+    /**
+     * @return the histogram of the time in microseconds from the reception
+     *         of the traced updates to their last stage
+     */
+    public Histogram getTotalHistogram() {
+        return total;
+    }
+}
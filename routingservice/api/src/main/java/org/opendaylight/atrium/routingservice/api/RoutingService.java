@@ -12,6 +12,7 @@ import java.util.Collection;
 import org.opendaylight.atrium.hostservice.api.HostService;
 import org.opendaylight.atrium.routingservice.config.api.RoutingConfigService;
 import org.opendaylight.atrium.util.AtriumIpAddress;
+import org.opendaylight.atrium.util.AtriumIpPrefix;
 import org.opendaylight.atrium.util.AtriumMacAddress;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.node.NodeConnector;
 
@@ -32,12 +33,74 @@ public interface RoutingService {
     public void stop();
 
     /**
-     * Gets all IPv4 routes
+     * Gets all IPv4 routes, in the order of their prefixes. The routes are
+     * those of the RIB version current when called, read as they are
+     * iterated: later changes to the RIB are not seen.
      *
      * @return the IPv4 routes
      */
     public Collection<RouteEntry> getRoutes4();
 
+    /**
+     * Gets the IPv4 routes within a prefix, in the order of their prefixes.
+     * The routes are those of the RIB version current when called, read as
+     * they are iterated, not copied.
+     *
+     * @param prefix the prefix the routes are within, null for all routes
+     * @return the IPv4 routes
+     */
+    public Iterable<RouteEntry> getRoutes4(AtriumIpPrefix prefix);
+
+    /**
+     * Gets the IPv4 route of the longest prefix matching an address. The
+     * lookup does not wait on the updates of the RIB.
+     *
+     * @param address the IPv4 address to look up
+     * @return the route, or null if no route matches
+     */
+    public RouteEntry getRoute4(AtriumIpAddress address);
+
+    /**
+     * Gets the IPv4 routes of the longest prefixes matching addresses, all
+     * looked up in the same version of the RIB.
+     *
+     * @param addresses the IPv4 addresses to look up, in network byte order
+     * @return the route matching each address at the same index, null where
+     *         no route matches
+     */
+    public RouteEntry[] lookup(int[] addresses);
+
+    /**
+     * Gets the version of the IPv4 RIB, which each change to the routes
+     * increments.
+     *
+     * @return the current version
+     */
+    public long getRibVersion();
+
+    /**
+     * Gets the changes of the IPv4 RIB since a version, for a consumer that
+     * keeps a copy of the RIB in sync. The last changes are logged; if some
+     * of the changes asked for are no longer logged, a snapshot of the routes
+     * is returned instead. Any number of consumers can follow the RIB this
+     * way, each from its own version.
+     *
+     * @param version the version the consumer is at, 0 for the empty RIB
+     * @return the changes, or the snapshot, up to the current version
+     */
+    public RibChanges changesSince(long version);
+
+    /**
+     * Gets the FIB entries of the IPv4 routes within a prefix, with the MAC
+     * addresses of their next hops. The routes of the local SDN domain and
+     * those waiting on the MAC address of all their next hops are skipped.
+     * The entries are computed from the RIB as they are iterated.
+     *
+     * @param prefix the prefix the routes are within, null for all routes
+     * @return the FIB entries
+     */
+    public Iterable<AtriumFibEntry> getFib4(AtriumIpPrefix prefix);
+
 
     /**
      * Adds FIB listener.
@@ -46,6 +109,14 @@ public interface RoutingService {
      */
     public void addFibListener(FibListener fibListener);
 
+    /**
+     * Gets the tracer of the route updates, which samples them through the
+     * pipeline when enabled.
+     *
+     * @return the route tracer
+     */
+    public RouteTracer getRouteTracer();
+
     
     
 }
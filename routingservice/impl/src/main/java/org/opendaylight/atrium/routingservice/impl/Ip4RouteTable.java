@@ -0,0 +1,335 @@
+/*
+ * Copyright (c) 2016 Wipro Ltd. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.atrium.routingservice.impl;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.AbstractCollection;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Iterator;
+
+import org.opendaylight.atrium.routingservice.api.RouteEntry;
+import org.opendaylight.atrium.util.AtriumIpAddress;
+import org.opendaylight.atrium.util.AtriumIpPrefix;
+
+import com.google.common.collect.AbstractIterator;
+
+/**
+ * Immutable table of IPv4 routes, a binary PATRICIA trie keyed by prefix.
+ * <p>
+ * Adding or removing a route copies the nodes on the path to its prefix, at
+ * most 33, and returns a new version of the table sharing all the other nodes
+ * with the previous one. A version is never modified once published, so it is
+ * read without locks: a longest prefix match follows a single path from the
+ * root, and an iteration sees the routes of one version whatever the changes
+ * made meanwhile.
+ * </p>
+ * <p>
+ * Addresses are handled as ints in network byte order, the most significant
+ * bit first.
+ * </p>
+ */
+public final class Ip4RouteTable {
+
+	/**
+	 * The table without any route, of version 0.
+	 */
+	public static final Ip4RouteTable EMPTY = new Ip4RouteTable(null, 0, 0);
+
+	private static final class Node {
+		final int bits;
+		final int length;
+		// Null for the branches, which always have two children
+		final RouteEntry route;
+		final Node zero;
+		final Node one;
+
+		Node(int bits, int length, RouteEntry route, Node zero, Node one) {
+			this.bits = bits;
+			this.length = length;
+			this.route = route;
+			this.zero = zero;
+			this.one = one;
+		}
+
+		boolean covers(int address) {
+			return ((address ^ bits) & mask(length)) == 0;
+		}
+
+		Node child(int address) {
+			return bit(address, length) == 0 ? zero : one;
+		}
+
+		Node withChild(int address, Node child) {
+			return bit(address, length) == 0 ? new Node(bits, length, route, child, one)
+					: new Node(bits, length, route, zero, child);
+		}
+	}
+
+	private final Node root;
+	private final int size;
+	private final long version;
+
+	private Ip4RouteTable(Node root, int size, long version) {
+		this.root = root;
+		this.size = size;
+		this.version = version;
+	}
+
+	/**
+	 * @return the number of changes made to the empty table to reach this
+	 *         version
+	 */
+	public long version() {
+		return version;
+	}
+
+	/**
+	 * @return the number of routes
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Adds a route, replacing the route of the same prefix if any.
+	 *
+	 * @param routeEntry
+	 *            the IPv4 route
+	 * @return the new version of the table
+	 */
+	public Ip4RouteTable put(RouteEntry routeEntry) {
+		AtriumIpPrefix prefix = routeEntry.prefix();
+		checkArgument(prefix.isIp4(), "Not an IPv4 route %s", routeEntry);
+		int bits = toInt(prefix.address());
+		int length = prefix.prefixLength();
+		int added = get(bits, length) == null ? 1 : 0;
+		return new Ip4RouteTable(put(root, bits & mask(length), length, routeEntry), size + added, version + 1);
+	}
+
+	/**
+	 * Removes the route of a prefix.
+	 *
+	 * @param prefix
+	 *            the prefix of the route
+	 * @return the new version of the table, or this table if there is no
+	 *         route for the prefix
+	 */
+	public Ip4RouteTable remove(AtriumIpPrefix prefix) {
+		if (!prefix.isIp4()) {
+			return this;
+		}
+		int bits = toInt(prefix.address());
+		int length = prefix.prefixLength();
+		if (get(bits, length) == null) {
+			return this;
+		}
+		return new Ip4RouteTable(remove(root, bits & mask(length), length), size - 1, version + 1);
+	}
+
+	/**
+	 * Removes all the routes.
+	 *
+	 * @return the new version of the table, without any route
+	 */
+	public Ip4RouteTable clear() {
+		return new Ip4RouteTable(null, 0, version + 1);
+	}
+
+	/**
+	 * @return the route of a prefix, or null
+	 */
+	public RouteEntry get(AtriumIpPrefix prefix) {
+		if (!prefix.isIp4()) {
+			return null;
+		}
+		return get(toInt(prefix.address()), prefix.prefixLength());
+	}
+
+	private RouteEntry get(int bits, int length) {
+		Node node = root;
+		while (node != null && node.length <= length && node.covers(bits)) {
+			if (node.length == length) {
+				return node.route;
+			}
+			node = node.child(bits);
+		}
+		return null;
+	}
+
+	/**
+	 * @return the route of the longest prefix matching an address, or null
+	 */
+	public RouteEntry lookup(AtriumIpAddress address) {
+		if (!address.isIp4()) {
+			return null;
+		}
+		return lookup(toInt(address));
+	}
+
+	/**
+	 * @param address
+	 *            the IPv4 address in network byte order
+	 * @return the route of the longest prefix matching the address, or null
+	 */
+	public RouteEntry lookup(int address) {
+		RouteEntry longest = null;
+		Node node = root;
+		while (node != null && node.covers(address)) {
+			if (node.route != null) {
+				longest = node.route;
+			}
+			if (node.length == AtriumIpPrefix.MAX_INET_MASK_LENGTH) {
+				break;
+			}
+			node = node.child(address);
+		}
+		return longest;
+	}
+
+	/**
+	 * Looks up addresses in this version of the table.
+	 *
+	 * @param addresses
+	 *            the IPv4 addresses in network byte order
+	 * @return the route of the longest prefix matching each address, at the
+	 *         same index, null where no route matches
+	 */
+	public RouteEntry[] lookup(int[] addresses) {
+		RouteEntry[] routes = new RouteEntry[addresses.length];
+		for (int i = 0; i < addresses.length; i++) {
+			routes[i] = lookup(addresses[i]);
+		}
+		return routes;
+	}
+
+	/**
+	 * @return the routes of this version, in the order of their prefixes
+	 */
+	public Collection<RouteEntry> routes() {
+		return new AbstractCollection<RouteEntry>() {
+			@Override
+			public Iterator<RouteEntry> iterator() {
+				return routes(root);
+			}
+
+			@Override
+			public int size() {
+				return size;
+			}
+
+			@Override
+			public boolean contains(Object o) {
+				if (!(o instanceof RouteEntry)) {
+					return false;
+				}
+				return o.equals(get(((RouteEntry) o).prefix()));
+			}
+		};
+	}
+
+	/**
+	 * @return the routes of this version within a prefix, in the order of
+	 *         their prefixes
+	 */
+	public Iterable<RouteEntry> within(AtriumIpPrefix prefix) {
+		if (!prefix.isIp4()) {
+			return () -> routes(null);
+		}
+		int bits = toInt(prefix.address());
+		int length = prefix.prefixLength();
+		Node node = root;
+		// The first node whose prefix is within the prefix, if any
+		while (node != null && node.length < length && node.covers(bits)) {
+			node = node.child(bits);
+		}
+		Node first = node != null && node.length >= length && ((node.bits ^ bits) & mask(length)) == 0 ? node : null;
+		return () -> routes(first);
+	}
+
+	private static Iterator<RouteEntry> routes(Node from) {
+		Deque<Node> stack = new ArrayDeque<>();
+		if (from != null) {
+			stack.push(from);
+		}
+		// Pre-order, so that a prefix comes before the prefixes within it
+		return new AbstractIterator<RouteEntry>() {
+			@Override
+			protected RouteEntry computeNext() {
+				while (!stack.isEmpty()) {
+					Node node = stack.pop();
+					if (node.one != null) {
+						stack.push(node.one);
+					}
+					if (node.zero != null) {
+						stack.push(node.zero);
+					}
+					if (node.route != null) {
+						return node.route;
+					}
+				}
+				return endOfData();
+			}
+		};
+	}
+
+	private static Node put(Node node, int bits, int length, RouteEntry route) {
+		if (node == null) {
+			return new Node(bits, length, route, null, null);
+		}
+		int common = Math.min(Math.min(node.length, length), Integer.numberOfLeadingZeros(node.bits ^ bits));
+		if (common == node.length) {
+			if (common == length) {
+				return new Node(bits, length, route, node.zero, node.one);
+			}
+			// Below the node
+			return node.withChild(bits, put(node.child(bits), bits, length, route));
+		}
+		Node leaf = new Node(bits, length, route, null, null);
+		if (common == length) {
+			// Above the node
+			return leaf.withChild(node.bits, node);
+		}
+		// Aside the node, under a new branch
+		return bit(bits, common) == 0 ? new Node(bits & mask(common), common, null, leaf, node)
+				: new Node(bits & mask(common), common, null, node, leaf);
+	}
+
+	// The route of the prefix is known to be in the subtree of the node
+	private static Node remove(Node node, int bits, int length) {
+		if (node.length == length) {
+			return compact(node.bits, node.length, null, node.zero, node.one);
+		}
+		Node child = node.child(bits);
+		Node removed = remove(child, bits, length);
+		return bit(bits, node.length) == 0 ? compact(node.bits, node.length, node.route, removed, node.one)
+				: compact(node.bits, node.length, node.route, node.zero, removed);
+	}
+
+	// Drops the branches left with less than two children
+	private static Node compact(int bits, int length, RouteEntry route, Node zero, Node one) {
+		if (route == null && (zero == null || one == null)) {
+			return zero == null ? one : zero;
+		}
+		return new Node(bits, length, route, zero, one);
+	}
+
+	private static int mask(int length) {
+		return length == 0 ? 0 : -1 << (AtriumIpPrefix.MAX_INET_MASK_LENGTH - length);
+	}
+
+	private static int bit(int address, int index) {
+		return (address >>> (AtriumIpPrefix.MAX_INET_MASK_LENGTH - 1 - index)) & 1;
+	}
+
+	private static int toInt(AtriumIpAddress address) {
+		return address.getIp4Address().toInt();
+	}
+}
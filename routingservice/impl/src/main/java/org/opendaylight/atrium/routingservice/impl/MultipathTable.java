@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2016 Wipro Ltd. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.atrium.routingservice.impl;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeSet;
+
+import org.opendaylight.atrium.util.AtriumIpAddress;
+import org.opendaylight.atrium.util.AtriumIpPrefix;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ComparisonChain;
+
+/**
+ * The paths received for each prefix, one per source, from which the
+ * equal-cost next hops of the prefix are selected.
+ * <p>
+ * The source of a path is the BGP peer it was received from, or the local
+ * RIB when only the best path is received. The best paths are those with the
+ * best {@link Rank}; their distinct next hops, in address order and up to the
+ * maximum number of paths, are the next hops of the prefix.
+ * </p>
+ * <p>
+ * The table is not thread safe, it is only changed by the thread processing
+ * the route updates.
+ * </p>
+ */
+class MultipathTable {
+
+	static final int DEFAULT_MAX_PATHS = 1;
+
+	private final Map<AtriumIpPrefix, Map<Object, Path>> paths = new HashMap<>();
+
+	private volatile int maxPaths = DEFAULT_MAX_PATHS;
+
+	/**
+	 * Sets the maximum number of next hops of a prefix.
+	 *
+	 * @param maxPaths
+	 *            the maximum number of paths, null keeps the current value
+	 */
+	void setMaxPaths(Long maxPaths) {
+		if (maxPaths != null && maxPaths > 0) {
+			this.maxPaths = (int) Math.min(maxPaths, Integer.MAX_VALUE);
+		}
+	}
+
+	int getMaxPaths() {
+		return maxPaths;
+	}
+
+	/**
+	 * Adds or replaces the path of a prefix received from a source.
+	 *
+	 * @return the next hops of the prefix
+	 */
+	List<AtriumIpAddress> put(AtriumIpPrefix prefix, Object source, AtriumIpAddress nextHop, Rank rank) {
+		paths.computeIfAbsent(prefix, p -> new HashMap<>()).put(checkNotNull(source),
+				new Path(checkNotNull(nextHop), checkNotNull(rank)));
+		return select(prefix);
+	}
+
+	/**
+	 * Removes the path of a prefix received from a source.
+	 *
+	 * @return the next hops of the prefix, empty if it has no path left
+	 */
+	List<AtriumIpAddress> remove(AtriumIpPrefix prefix, Object source) {
+		Map<Object, Path> prefixPaths = paths.get(prefix);
+		if (prefixPaths == null) {
+			return Collections.emptyList();
+		}
+		prefixPaths.remove(source);
+		if (prefixPaths.isEmpty()) {
+			paths.remove(prefix);
+			return Collections.emptyList();
+		}
+		return select(prefix);
+	}
+
+	/**
+	 * @return the next hops of a prefix, in address order, empty if it has no
+	 *         path
+	 */
+	List<AtriumIpAddress> select(AtriumIpPrefix prefix) {
+		Map<Object, Path> prefixPaths = paths.get(prefix);
+		if (prefixPaths == null) {
+			return Collections.emptyList();
+		}
+		Rank best = null;
+		for (Path path : prefixPaths.values()) {
+			if (best == null || path.rank.compareTo(best) < 0) {
+				best = path.rank;
+			}
+		}
+		TreeSet<AtriumIpAddress> nextHops = new TreeSet<>();
+		for (Path path : prefixPaths.values()) {
+			if (path.rank.compareTo(best) == 0) {
+				nextHops.add(path.nextHop);
+			}
+		}
+		List<AtriumIpAddress> selected = new ArrayList<>(Math.min(nextHops.size(), maxPaths));
+		for (AtriumIpAddress nextHop : nextHops) {
+			if (selected.size() == maxPaths) {
+				break;
+			}
+			selected.add(nextHop);
+		}
+		return selected;
+	}
+
+	void clear() {
+		paths.clear();
+	}
+
+	private static final class Path {
+		private final AtriumIpAddress nextHop;
+		private final Rank rank;
+
+		Path(AtriumIpAddress nextHop, Rank rank) {
+			this.nextHop = nextHop;
+			this.rank = rank;
+		}
+	}
+
+	/**
+	 * The attributes of a path compared to find the equal-cost paths, from
+	 * the BGP decision process: highest local preference, then shortest AS
+	 * path, lowest origin and lowest multi-exit discriminator. Lower ranks
+	 * are better.
+	 */
+	static final class Rank implements Comparable<Rank> {
+
+		static final Rank DEFAULT = new Rank(100, 0, 0, 0);
+
+		private final long localPref;
+		private final int asPathLength;
+		private final int origin;
+		private final long med;
+
+		Rank(long localPref, int asPathLength, int origin, long med) {
+			this.localPref = localPref;
+			this.asPathLength = asPathLength;
+			this.origin = origin;
+			this.med = med;
+		}
+
+		@Override
+		public int compareTo(Rank other) {
+			return ComparisonChain.start().compare(other.localPref, localPref).compare(asPathLength, other.asPathLength)
+					.compare(origin, other.origin).compare(med, other.med).result();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof Rank && compareTo((Rank) obj) == 0;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(localPref, asPathLength, origin, med);
+		}
+
+		@Override
+		public String toString() {
+			return MoreObjects.toStringHelper(getClass()).add("localPref", localPref)
+					.add("asPathLength", asPathLength).add("origin", origin).add("med", med).toString();
+		}
+	}
+}
@@ -0,0 +1,294 @@
+/*
+ * Copyright (c) 2016 Wipro Ltd. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.atrium.routingservice.impl;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jboss.netty.util.Timeout;
+import org.jboss.netty.util.TimerTask;
+import org.opendaylight.atrium.routingservice.api.RouteEntry;
+import org.opendaylight.atrium.util.AtriumIpAddress;
+import org.opendaylight.atrium.util.AtriumTimer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The routes waiting for the MAC address of their next hop, in one bucket per
+ * next hop.
+ * <p>
+ * Buckets are kept in a concurrent map and each one is only changed under
+ * the lock of its own map entry, so next hops do not contend with each other.
+ * A bucket is handed over whole when its next hop is resolved.
+ * </p>
+ * <p>
+ * The number of waiting routes is capped, and a bucket whose next hop is not
+ * resolved within the timeout is expired on the shared Atrium timer and its
+ * routes released. The next hops whose routes were expired or rejected are
+ * remembered as unresolved, so that their routes can be found in the RIB if
+ * the next hop shows up later, until no route goes through them any more.
+ * </p>
+ */
+public class PendingResolutions implements TimerTask, AutoCloseable {
+
+	private static final Logger LOG = LoggerFactory.getLogger(PendingResolutions.class);
+
+	static final long DEFAULT_MAX_ENTRIES = 100000;
+	static final long DEFAULT_TIMEOUT = 120000; // milliseconds
+	private static final long MIN_SWEEP_INTERVAL = 1000; // milliseconds
+
+	private final ConcurrentMap<AtriumIpAddress, Bucket> buckets = new ConcurrentHashMap<>();
+	private final Set<AtriumIpAddress> unresolved = Collections.newSetFromMap(new ConcurrentHashMap<>());
+
+	private final AtomicInteger size = new AtomicInteger();
+	private final AtomicLong rejected = new AtomicLong();
+	private final AtomicLong expired = new AtomicLong();
+
+	private volatile long maxEntries = DEFAULT_MAX_ENTRIES;
+	private volatile long timeout = DEFAULT_TIMEOUT;
+	private volatile Timeout sweep;
+	private volatile boolean closed;
+
+	/**
+	 * Sets the limits. Null values keep the current setting.
+	 *
+	 * @param maxEntries
+	 *            maximum number of routes waiting, over all next hops
+	 * @param timeout
+	 *            time in milliseconds after which the routes waiting on a next
+	 *            hop are expired
+	 */
+	public void configure(Long maxEntries, Long timeout) {
+		if (maxEntries != null && maxEntries > 0) {
+			this.maxEntries = maxEntries;
+		}
+		if (timeout != null && timeout > 0) {
+			this.timeout = timeout;
+		}
+	}
+
+	public void start() {
+		closed = false;
+		sweep = AtriumTimer.getTimer().newTimeout(this, sweepInterval(), TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Queues a route on its next hop.
+	 *
+	 * @param route
+	 *            the route
+	 * @return false if the route was rejected because too many routes are
+	 *         waiting
+	 */
+	public boolean add(RouteEntry route) {
+		return add(route, System.currentTimeMillis());
+	}
+
+	boolean add(RouteEntry route, long now) {
+		AtriumIpAddress nextHop = route.nextHop();
+		// The cap is checked before taking the bucket lock, so it can be
+		// overshot by the number of concurrent writers
+		if (size.get() >= maxEntries) {
+			unresolved.add(nextHop);
+			long count = rejected.incrementAndGet();
+			if (count == 1 || count % 1000 == 0) {
+				LOG.warn("Too many routes waiting on MAC resolution, {} rejected ({} total)", route, count);
+			}
+			return false;
+		}
+		buckets.compute(nextHop, (key, bucket) -> {
+			Bucket b = bucket == null ? new Bucket(now) : bucket;
+			if (b.routes.add(route)) {
+				size.incrementAndGet();
+			}
+			return b;
+		});
+		return true;
+	}
+
+	/**
+	 * Removes a route, typically withdrawn before its next hop was resolved.
+	 *
+	 * @param route
+	 *            the route
+	 */
+	public void remove(RouteEntry route) {
+		buckets.computeIfPresent(route.nextHop(), (key, bucket) -> {
+			if (bucket.routes.remove(route)) {
+				size.decrementAndGet();
+			}
+			return bucket.routes.isEmpty() ? null : bucket;
+		});
+	}
+
+	/**
+	 * Takes all the routes waiting on a next hop, once it is resolved. The
+	 * next hop is no longer unresolved.
+	 *
+	 * @param nextHop
+	 *            the next hop
+	 * @return the routes, empty if none were waiting
+	 */
+	public Set<RouteEntry> drain(AtriumIpAddress nextHop) {
+		unresolved.remove(nextHop);
+		Bucket bucket = buckets.remove(nextHop);
+		if (bucket == null) {
+			return Collections.emptySet();
+		}
+		size.addAndGet(-bucket.routes.size());
+		return bucket.routes;
+	}
+
+	/**
+	 * Forgets a next hop no route goes through any more, so that it is no
+	 * longer remembered as unresolved.
+	 *
+	 * @param nextHop
+	 *            the next hop
+	 */
+	public void forget(AtriumIpAddress nextHop) {
+		unresolved.remove(nextHop);
+	}
+
+	/**
+	 * @param nextHop
+	 *            the next hop
+	 * @return true if routes are waiting on the next hop
+	 */
+	public boolean contains(AtriumIpAddress nextHop) {
+		return buckets.containsKey(nextHop);
+	}
+
+	/**
+	 * @param nextHop
+	 *            the next hop
+	 * @return true if routes through the next hop were expired or rejected
+	 *         and it has not been resolved since
+	 */
+	public boolean isUnresolved(AtriumIpAddress nextHop) {
+		return unresolved.contains(nextHop);
+	}
+
+	/**
+	 * @return the next hops whose routes were expired or rejected and that
+	 *         have not been resolved since
+	 */
+	public Set<AtriumIpAddress> getUnresolved() {
+		return Collections.unmodifiableSet(unresolved);
+	}
+
+	/**
+	 * @return the number of routes waiting
+	 */
+	public int size() {
+		return size.get();
+	}
+
+	/**
+	 * @return the number of next hops with routes waiting
+	 */
+	public int getNextHopCount() {
+		return buckets.size();
+	}
+
+	/**
+	 * @return the number of routes rejected because too many routes were
+	 *         waiting
+	 */
+	public long getRejectedCount() {
+		return rejected.get();
+	}
+
+	/**
+	 * @return the number of routes expired because their next hop was not
+	 *         resolved in time
+	 */
+	public long getExpiredCount() {
+		return expired.get();
+	}
+
+	long sweepInterval() {
+		return Math.max(MIN_SWEEP_INTERVAL, timeout / 4);
+	}
+
+	@Override
+	public void run(Timeout t) {
+		if (closed) {
+			return;
+		}
+		try {
+			expire(System.currentTimeMillis());
+		} catch (RuntimeException e) {
+			LOG.warn("Pending resolution sweep failed", e);
+		}
+		if (!closed) {
+			sweep = AtriumTimer.getTimer().newTimeout(this, sweepInterval(), TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * Expires the buckets older than the timeout and reports their next hops.
+	 *
+	 * @param now
+	 *            the current time
+	 * @return the number of next hops expired
+	 */
+	int expire(long now) {
+		int count = 0;
+		for (Map.Entry<AtriumIpAddress, Bucket> entry : buckets.entrySet()) {
+			Bucket bucket = entry.getValue();
+			if (now - bucket.createdAt < timeout || !buckets.remove(entry.getKey(), bucket)) {
+				continue;
+			}
+			int routes = bucket.routes.size();
+			size.addAndGet(-routes);
+			expired.addAndGet(routes);
+			unresolved.add(entry.getKey());
+			count++;
+			LOG.warn("Next hop {} not resolved after {} ms, {} route(s) not installed", entry.getKey(),
+					now - bucket.createdAt, routes);
+		}
+		return count;
+	}
+
+	/**
+	 * Removes all the waiting routes and forgets the unresolved next hops.
+	 */
+	public void clear() {
+		buckets.clear();
+		unresolved.clear();
+		size.set(0);
+	}
+
+	@Override
+	public void close() {
+		closed = true;
+		Timeout current = sweep;
+		if (current != null) {
+			current.cancel();
+		}
+	}
+
+	// Routes are only changed under the map entry lock, or once the bucket
+	// has been removed from the map
+	private static final class Bucket {
+		private final Set<RouteEntry> routes = new HashSet<>();
+		private final long createdAt;
+
+		Bucket(long createdAt) {
+			this.createdAt = createdAt;
+		}
+	}
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2016 Wipro Ltd. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.atrium.routingservice.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.opendaylight.atrium.routingservice.api.RibChange;
+import org.opendaylight.atrium.routingservice.api.RibChanges;
+
+/**
+ * The last changes of the IPv4 RIB, in a ring indexed by version.
+ * <p>
+ * The RIB manager logs a change before it publishes the version of the table
+ * it leads to, under its lock, so a reader that got a version of the table
+ * finds the changes up to that version in the ring unless they were
+ * overwritten since. Readers do not lock: a change overwritten while read is
+ * told by its version, and the reader then falls back to a snapshot of the
+ * table it got.
+ * </p>
+ */
+public class RibChangeLog {
+
+	static final long DEFAULT_SIZE = 65536;
+
+	private volatile AtomicReferenceArray<RibChange> ring = new AtomicReferenceArray<>((int) DEFAULT_SIZE);
+	// The changes up to this version are not logged
+	private volatile long base;
+
+	private final AtomicLong snapshots = new AtomicLong();
+
+	/**
+	 * Sets the number of changes kept. The changes logged are dropped.
+	 *
+	 * @param size
+	 *            the number of changes, null to keep the current size
+	 * @param version
+	 *            the current version of the table
+	 */
+	void setSize(Long size, long version) {
+		if (size != null && size > 0) {
+			base = version;
+			ring = new AtomicReferenceArray<>((int) Math.min(size, Integer.MAX_VALUE));
+		}
+	}
+
+	/**
+	 * @return the number of changes kept
+	 */
+	public int getSize() {
+		return ring.length();
+	}
+
+	/**
+	 * Logs a change, before the version it leads to is published.
+	 */
+	void add(RibChange change) {
+		AtomicReferenceArray<RibChange> changes = ring;
+		changes.set(index(change.version(), changes.length()), change);
+	}
+
+	/**
+	 * Drops the changes logged, when the table is replaced as a whole.
+	 *
+	 * @param version
+	 *            the version of the new table
+	 */
+	void reset(long version) {
+		base = version;
+	}
+
+	/**
+	 * Reads the changes from a version to that of a table.
+	 *
+	 * @param version
+	 *            the version the reader is at
+	 * @param table
+	 *            the current version of the table
+	 * @return the changes to the version of the table, or a snapshot of the
+	 *         table if they are not all logged
+	 */
+	public RibChanges since(long version, Ip4RouteTable table) {
+		long latest = table.version();
+		if (version == latest) {
+			return RibChanges.of(latest, Collections.emptyList());
+		}
+		AtomicReferenceArray<RibChange> changes = ring;
+		if (version < base || version > latest || latest - version > changes.length()) {
+			return snapshot(table);
+		}
+		List<RibChange> since = new ArrayList<>((int) (latest - version));
+		for (long v = version + 1; v <= latest; v++) {
+			RibChange change = changes.get(index(v, changes.length()));
+			if (change == null || change.version() != v) {
+				// Overwritten since the table was read
+				return snapshot(table);
+			}
+			since.add(change);
+		}
+		return RibChanges.of(latest, since);
+	}
+
+	/**
+	 * @return the number of readers that fell back to a snapshot
+	 */
+	public long getSnapshotCount() {
+		return snapshots.get();
+	}
+
+	private RibChanges snapshot(Ip4RouteTable table) {
+		snapshots.incrementAndGet();
+		return RibChanges.snapshot(table.version(), table.routes());
+	}
+
+	private static int index(long version, int length) {
+		return (int) (version % length);
+	}
+}
@@ -8,35 +8,52 @@
 package org.opendaylight.atrium.routingservice.impl;
 
 import static com.google.common.base.Preconditions.checkNotNull;
-import static org.opendaylight.atrium.routingservice.api.RouteEntry.createBinaryString;
 
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.Iterator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
-import org.opendaylight.atrium.hostservice.api.Host;
-import org.opendaylight.atrium.hostservice.api.HostEvent;
-import org.opendaylight.atrium.hostservice.api.HostListener;
+import org.jboss.netty.util.Timeout;
+
+import org.opendaylight.atrium.atriumutil.metrics.Counter;
+import org.opendaylight.atrium.atriumutil.metrics.Histogram;
+import org.opendaylight.atrium.atriumutil.metrics.MetricsExporter;
+import org.opendaylight.atrium.atriumutil.metrics.MetricsRegistry;
 import org.opendaylight.atrium.hostservice.api.HostService;
+import org.opendaylight.atrium.hostservice.api.Neighbor;
+import org.opendaylight.atrium.hostservice.api.NeighborEvent;
+import org.opendaylight.atrium.hostservice.api.NeighborListener;
 import org.opendaylight.atrium.routingservice.api.AtriumFibEntry;
 import org.opendaylight.atrium.routingservice.api.AtriumFibUpdate;
 import org.opendaylight.atrium.routingservice.api.FibListener;
+import org.opendaylight.atrium.routingservice.api.MultipathRouteEntry;
+import org.opendaylight.atrium.routingservice.api.RibChange;
+import org.opendaylight.atrium.routingservice.api.RibChanges;
 import org.opendaylight.atrium.routingservice.api.RouteEntry;
+import org.opendaylight.atrium.routingservice.api.RouteTrace;
+import org.opendaylight.atrium.routingservice.api.RouteTracer;
 import org.opendaylight.atrium.routingservice.api.RoutingService;
 import org.opendaylight.atrium.routingservice.api.RouteUpdate;
 import org.opendaylight.atrium.routingservice.config.api.RoutingConfigService;
 import org.opendaylight.atrium.util.AtriumIpAddress;
 import org.opendaylight.atrium.util.AtriumIpPrefix;
 import org.opendaylight.atrium.util.AtriumMacAddress;
+import org.opendaylight.atrium.util.AtriumTimer;
 import org.opendaylight.controller.md.sal.binding.api.BindingTransactionChain;
 import org.opendaylight.controller.md.sal.binding.api.DataTreeChangeListener;
 import org.opendaylight.controller.md.sal.binding.api.DataTreeChangeService;
@@ -55,24 +72,24 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Multimaps;
 import com.google.common.collect.SetMultimap;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
-import com.googlecode.concurrenttrees.common.KeyValuePair;
-import com.googlecode.concurrenttrees.radix.node.concrete.DefaultByteArrayNodeFactory;
-import com.googlecode.concurrenttrees.radixinverted.ConcurrentInvertedRadixTree;
-import com.googlecode.concurrenttrees.radixinverted.InvertedRadixTree;
 
 import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.bgp.rib.rev130925.Route;
 import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev100924.AsNumber;
 import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev100924.Ipv4Address;
 import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev100924.Ipv4Prefix;
-import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev100924.Ipv6Address;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.bgp.inet.rev150305.ipv4.routes.Ipv4Routes;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.bgp.inet.rev150305.ipv4.routes.ipv4.routes.Ipv4Route;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.bgp.message.rev130919.path.attributes.Attributes;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.bgp.message.rev130919.path.attributes.attributes.AsPath;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.bgp.message.rev130919.path.attributes.attributes.as.path.Segments;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.bgp.rib.rev130925.bgp.rib.rib.LocRib;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.bgp.rib.rev130925.bgp.rib.rib.Peer;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.bgp.rib.rev130925.bgp.rib.rib.PeerKey;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.bgp.rib.rev130925.bgp.rib.rib.peer.EffectiveRibIn;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.bgp.rib.rev130925.rib.Tables;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.bgp.rib.rev130925.rib.TablesKey;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.bgp.rib.rev130925.rib.tables.Routes;
@@ -82,10 +99,7 @@ import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.bgp.type
 import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.bgp.types.rev130919.UnicastSubsequentAddressFamily;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.bgp.types.rev130919.next.hop.CNextHop;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.bgp.types.rev130919.next.hop.c.next.hop.Ipv4NextHopCase;
-import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.hostservice.api.rev150725.address.node.connector.ConnectorAddress;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.bgp.types.rev130919.next.hop.c.next.hop.ipv4.next.hop._case.Ipv4NextHop;
-import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.hostservice.api.rev150725.HostId;
-import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.hostservice.api.rev150725.HostNode;
 import org.opendaylight.yangtools.concepts.ListenerRegistration;
 import org.opendaylight.yangtools.yang.binding.InstanceIdentifier;
 import org.opendaylight.controller.md.sal.binding.api.DataBroker;
@@ -117,8 +131,14 @@ public class RibManager<T extends Route> implements BindingAwareProvider, AutoCl
 	// Single threaded Executor which processes route updates from BGP Session
 	private ExecutorService bgpUpdatesExecutor;
 
-	/** The rib table4. */
-	private InvertedRadixTree<RouteEntry> ribTable4;
+	/**
+	 * The current version of the IPv4 RIB, replaced under the lock of the
+	 * manager and read without locking.
+	 */
+	private volatile Ip4RouteTable ribTable4 = Ip4RouteTable.EMPTY;
+
+	// The last changes of the IPv4 RIB, read by the consumers catching up
+	private final RibChangeLog changeLog = new RibChangeLog();
 
 	// Used for creating the transaction 
 	private final BindingTransactionChain chain;
@@ -135,16 +155,56 @@ public class RibManager<T extends Route> implements BindingAwareProvider, AutoCl
 	// Host tracking utility used to track nexthop hosts
 	private HostService hostService;
 
-	// The IPv4 address to MAC address mapping
-	private final Map<AtriumIpAddress, AtriumMacAddress> ip2Mac = new ConcurrentHashMap<>();
+	// Routes waiting for the MAC address of their next hop, bounded and
+	// expired when the next hop does not resolve
+	private PendingResolutions routesWaitingOnArp;
+	private Long pendingMaxEntries;
+	private Long pendingTimeout;
+
+	// Next-hop IP address to the prefixes routed through it, to rewrite them
+	// when the next hop moves
+	private SetMultimap<AtriumIpAddress, AtriumIpPrefix> routesByNextHop;
+
+	// Paths received for each prefix, from which its equal-cost next hops are
+	// selected
+	private final MultipathTable paths = new MultipathTable();
+
+	// Source of the routes of the local RIB, which has one path per prefix
+	private static final Object LOC_RIB_SOURCE = LocRib.class;
+
+	// Snapshot of the RIB restored on start, null if disabled
+	private RibSnapshotStore snapshot;
+	private String snapshotFile;
+	static final long DEFAULT_RECONCILE_TIMEOUT = 120000; // milliseconds
+	private long reconcileTimeout = DEFAULT_RECONCILE_TIMEOUT;
+	private Timeout reconciliation;
+
+	// Prefixes restored from the snapshot and not received from BGP since,
+	// withdrawn once the reconcile timeout expires
+	private final Set<AtriumIpPrefix> staleRoutes = new HashSet<>();
 
-	// Next-hop IP address to route entry mapping for next hops pending MAC
-	// resolution
-	private SetMultimap<AtriumIpAddress, RouteEntry> routesWaitingOnArp;
+	// MAC addresses of the next hops restored from the snapshot, used until
+	// the neighbor table learns them again
+	private final Map<AtriumIpAddress, AtriumMacAddress> restoredMacs = new ConcurrentHashMap<>();
 
 	// RoutingConfig Service to check if the IP Prefix is local
 	RoutingConfigService routingConfigService;
 
+	// Metrics of the route pipeline, exported over JMX and to the
+	// operational datastore
+	private final MetricsRegistry metrics = new MetricsRegistry("routingservice");
+	private final MetricsExporter metricsExporter;
+	private final Counter updatesProcessed = metrics.counter("route-updates-processed");
+	private final Histogram updateLatency = metrics.histogram("route-update-latency-us");
+	private final Histogram fibBatchSize = metrics.histogram("fib-batch-size");
+
+	// Traces of the sampled route updates, by update while queued and by
+	// prefix while waiting on the MAC address of a next hop
+	static final int MAX_TRACES_WAITING_ON_ARP = 1000;
+	private final RouteTracer tracer = new RouteTracer(metrics);
+	private final Map<DataTreeModification<T>, RouteTrace> queuedTraces = new ConcurrentHashMap<>();
+	private final Map<AtriumIpPrefix, RouteTrace> tracesWaitingOnArp = new ConcurrentHashMap<>();
+
 	/**
 	 * Constructor for RibManager
 	 * 
@@ -160,6 +220,135 @@ public class RibManager<T extends Route> implements BindingAwareProvider, AutoCl
 		this.hostService = hostService;
 		this.routingConfigService = routingConfigService;
 		dataTreeChangeService = (DataTreeChangeService) dataBroker;
+		metricsExporter = new MetricsExporter(metrics, dataBroker);
+		metrics.gauge("route-update-queue-depth", this::getUpdateQueueDepth);
+		metrics.gauge("routes-waiting-on-arp", () -> routesWaitingOnArp == null ? 0 : routesWaitingOnArp.size());
+		metrics.counter("routes-rejected-waiting-on-arp",
+				() -> routesWaitingOnArp == null ? 0 : routesWaitingOnArp.getRejectedCount());
+		metrics.counter("routes-expired-waiting-on-arp",
+				() -> routesWaitingOnArp == null ? 0 : routesWaitingOnArp.getExpiredCount());
+		metrics.gauge("rib-version", this::getRibVersion);
+		metrics.counter("rib-change-snapshots", changeLog::getSnapshotCount);
+	}
+
+	/**
+	 * Sets the limits of the routes waiting for the MAC address of their next
+	 * hop. Null values keep the defaults.
+	 *
+	 * @param maxEntries
+	 *            maximum number of routes waiting, further routes are rejected
+	 *            until their next hop resolves
+	 * @param timeout
+	 *            time in milliseconds after which the routes waiting on a next
+	 *            hop that did not resolve are expired
+	 */
+	public void setPendingConfig(Long maxEntries, Long timeout) {
+		this.pendingMaxEntries = maxEntries;
+		this.pendingTimeout = timeout;
+		if (routesWaitingOnArp != null) {
+			routesWaitingOnArp.configure(maxEntries, timeout);
+		}
+	}
+
+	/**
+	 * Sets the maximum number of equal-cost next hops of a prefix. With more
+	 * than one, the routes received from every peer are taken instead of the
+	 * best route of the local RIB, and the routes with the best attributes
+	 * are load balanced. It must be set before the manager is started.
+	 *
+	 * @param maxPaths
+	 *            the maximum number of paths, null keeps a single path
+	 */
+	public void setMaxPaths(Long maxPaths) {
+		paths.setMaxPaths(maxPaths);
+	}
+
+	/**
+	 * Sets the snapshot of the RIB restored when the manager is started. It
+	 * must be set before the manager is started.
+	 *
+	 * @param file
+	 *            the snapshot file, null or empty disables the snapshot
+	 * @param reconcileTimeout
+	 *            time in milliseconds given to BGP to announce the restored
+	 *            routes again before they are withdrawn, null keeps the
+	 *            default
+	 */
+	public void setSnapshotConfig(String file, Long reconcileTimeout) {
+		this.snapshotFile = file;
+		if (reconcileTimeout != null && reconcileTimeout > 0) {
+			this.reconcileTimeout = reconcileTimeout;
+		}
+	}
+
+	/**
+	 * Sets the sampling of the route updates traced through the pipeline.
+	 * Null values keep the defaults.
+	 *
+	 * @param sampleRate
+	 *            the number of route updates out of which one is traced, 0
+	 *            disables tracing
+	 * @param slowest
+	 *            the number of slowest traces kept
+	 */
+	public void setTraceConfig(Long sampleRate, Long slowest) {
+		if (sampleRate != null) {
+			tracer.setSampleRate((int) Math.min(sampleRate, Integer.MAX_VALUE));
+		}
+		if (slowest != null && slowest > 0) {
+			tracer.setSlowestCount((int) Math.min(slowest, Integer.MAX_VALUE));
+		}
+	}
+
+	/**
+	 * Sets the number of RIB changes logged for the consumers catching up
+	 * with {@link #changesSince(long)}.
+	 *
+	 * @param size
+	 *            the number of changes, null to keep the default
+	 */
+	public synchronized void setChangeLogSize(Long size) {
+		changeLog.setSize(size, ribTable4.version());
+	}
+
+	/**
+	 * @return the snapshot of the RIB, null if disabled or not opened
+	 */
+	public RibSnapshotStore getSnapshot() {
+		return snapshot;
+	}
+
+	/**
+	 * @return the routes waiting for the MAC address of their next hop, with
+	 *         their counters
+	 */
+	public PendingResolutions getPendingResolutions() {
+		return routesWaitingOnArp;
+	}
+
+	/**
+	 * @return the metrics of the route pipeline
+	 */
+	public MetricsRegistry getMetrics() {
+		return metrics;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.opendaylight.atrium.routingservice.api.RoutingService#getRouteTracer()
+	 */
+	@Override
+	public RouteTracer getRouteTracer() {
+		return tracer;
+	}
+
+	/**
+	 * @return the number of route updates received and not processed yet
+	 */
+	public int getUpdateQueueDepth() {
+		return routeUpdatesQueue.size();
 	}
 
 	/*
@@ -173,8 +362,9 @@ public class RibManager<T extends Route> implements BindingAwareProvider, AutoCl
 	@Override
 	public void onSessionInitiated(ProviderContext session) {
 		LOG.info("Router Session Initiated");
-		routesWaitingOnArp = Multimaps.synchronizedSetMultimap(HashMultimap.<AtriumIpAddress, RouteEntry> create());
-		ribTable4 = new ConcurrentInvertedRadixTree<>(new DefaultByteArrayNodeFactory());
+		routesWaitingOnArp = new PendingResolutions();
+		routesWaitingOnArp.configure(pendingMaxEntries, pendingTimeout);
+		routesByNextHop = Multimaps.synchronizedSetMultimap(HashMultimap.<AtriumIpAddress, AtriumIpPrefix> create());
 		bgpUpdatesExecutor = Executors
 				.newSingleThreadExecutor(new ThreadFactoryBuilder().setNameFormat("atrium-bgp-updates-%d").build());
 	}
@@ -193,16 +383,35 @@ public class RibManager<T extends Route> implements BindingAwareProvider, AutoCl
 			}
 		});
 
+		routesWaitingOnArp.start();
+
 		// Starting host listener
 		hostService.start();
 
-		hostService.addListener(new InternalHostListener());
+		hostService.getNeighborTable().addListener(new InternalNeighborListener());
+
+		// The restored routes are installed before the BGP feed comes in
+		restoreSnapshot();
+		if (snapshot != null) {
+			snapshot.start();
+			reconciliation = AtriumTimer.getTimer().newTimeout(t -> reconcile(), reconcileTimeout,
+					TimeUnit.MILLISECONDS);
+		}
 
-		final InstanceIdentifier<Tables> tablesId = this.localRibRef.getInstanceIdentifier().child(LocRib.class)
-				.child(Tables.class, new TablesKey(AFI, SAFI));
+		final InstanceIdentifier<Tables> tablesId;
+		if (paths.getMaxPaths() > 1) {
+			// All the paths, as accepted from each peer
+			tablesId = this.localRibRef.getInstanceIdentifier().child(Peer.class).child(EffectiveRibIn.class)
+					.child(Tables.class, new TablesKey(AFI, SAFI));
+			LOG.info("Load balancing over up to {} equal-cost paths", paths.getMaxPaths());
+		} else {
+			tablesId = this.localRibRef.getInstanceIdentifier().child(LocRib.class)
+					.child(Tables.class, new TablesKey(AFI, SAFI));
+		}
 		final DataTreeIdentifier<T> id = new DataTreeIdentifier<>(LogicalDatastoreType.OPERATIONAL,
 				getRouteWildcard(tablesId));
 		dataTreeChangeService.registerDataTreeChangeListener(id, this);
+		metricsExporter.start();
 
 		LOG.info("Rib Manager Started");
 	}
@@ -216,17 +425,34 @@ public class RibManager<T extends Route> implements BindingAwareProvider, AutoCl
 	public void stop() {
 		// TODO Auto-generated method stub
 		this.closed = true;
+		metricsExporter.close();
 		// Stop host service
 		hostService.stop();
 
 		// Stop the thread(s)
 		bgpUpdatesExecutor.shutdownNow();
+		routesWaitingOnArp.close();
+		if (reconciliation != null) {
+			reconciliation.cancel();
+		}
 		synchronized (this) {
-			// Cleanup all local state
-			ribTable4 = new ConcurrentInvertedRadixTree<>(new DefaultByteArrayNodeFactory());
+			// The snapshot is kept for the next start
+			if (snapshot != null) {
+				snapshot.close();
+			}
+			// Cleanup all local state. The version goes on, so that the
+			// consumers of the changes take a snapshot.
+			Ip4RouteTable cleared = ribTable4.clear();
+			changeLog.reset(cleared.version());
+			ribTable4 = cleared;
 			routeUpdatesQueue.clear();
+			queuedTraces.clear();
+			tracesWaitingOnArp.clear();
 			routesWaitingOnArp.clear();
-			ip2Mac.clear();
+			routesByNextHop.clear();
+			paths.clear();
+			staleRoutes.clear();
+			restoredMacs.clear();
 		}
 	}
 
@@ -249,15 +475,97 @@ public class RibManager<T extends Route> implements BindingAwareProvider, AutoCl
 	 */
 	@Override
 	public Collection<RouteEntry> getRoutes4() {
-		Iterator<KeyValuePair<RouteEntry>> it = ribTable4.getKeyValuePairsForKeysStartingWith("").iterator();
-
-		List<RouteEntry> routes = new LinkedList<>();
+		return ribTable4.routes();
+	}
 
-		while (it.hasNext()) {
-			KeyValuePair<RouteEntry> entry = it.next();
-			routes.add(entry.getValue());
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.opendaylight.atrium.routingservice.api.RoutingService#getRoutes4(org
+	 * .opendaylight.atrium.util.AtriumIpPrefix)
+	 */
+	@Override
+	public Iterable<RouteEntry> getRoutes4(AtriumIpPrefix prefix) {
+		if (prefix != null && !prefix.isIp4()) {
+			return Collections.emptyList();
 		}
-		return routes;
+		Ip4RouteTable table = ribTable4;
+		return prefix == null ? table.routes() : table.within(prefix);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.opendaylight.atrium.routingservice.api.RoutingService#getRoute4(org
+	 * .opendaylight.atrium.util.AtriumIpAddress)
+	 */
+	@Override
+	public RouteEntry getRoute4(AtriumIpAddress address) {
+		return ribTable4.lookup(address);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.opendaylight.atrium.routingservice.api.RoutingService#lookup(int[])
+	 */
+	@Override
+	public RouteEntry[] lookup(int[] addresses) {
+		return ribTable4.lookup(addresses);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.opendaylight.atrium.routingservice.api.RoutingService#getRibVersion()
+	 */
+	@Override
+	public long getRibVersion() {
+		return ribTable4.version();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.opendaylight.atrium.routingservice.api.RoutingService#changesSince(
+	 * long)
+	 */
+	@Override
+	public RibChanges changesSince(long version) {
+		return changeLog.since(version, ribTable4);
+	}
+
+	/**
+	 * @return the current version of the IPv4 RIB, which is never modified
+	 */
+	public Ip4RouteTable getRibTable4() {
+		return ribTable4;
+	}
+
+	/**
+	 * @return the log of the last changes of the IPv4 RIB
+	 */
+	public RibChangeLog getChangeLog() {
+		return changeLog;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.opendaylight.atrium.routingservice.api.RoutingService#getFib4(org
+	 * .opendaylight.atrium.util.AtriumIpPrefix)
+	 */
+	@Override
+	public Iterable<AtriumFibEntry> getFib4(AtriumIpPrefix prefix) {
+		return Iterables.filter(Iterables.transform(getRoutes4(prefix),
+				routeEntry -> isIpPrefixLocal(routeEntry.prefix()) ? null : resolveFibEntry(routeEntry, null, null)),
+				Objects::nonNull);
 	}
 
 	/**
@@ -302,118 +610,233 @@ public class RibManager<T extends Route> implements BindingAwareProvider, AutoCl
 	}
 
 	/**
-	 * Processes adding a route entry.
+	 * Processes a change of the next hops of a prefix.
 	 * <p>
-	 * The route entry is added to the radix tree. If there was an existing next
-	 * hop for this prefix, but the next hop was different, then the old route
-	 * entry is deleted.
-	 *
+	 * The route entry is added to the radix tree. If the prefix had a single
+	 * next hop and still has a single but different one, then the old route
+	 * entry is deleted. A change of the equal-cost next hops of a prefix is
+	 * pushed as an update, so that the FIB can add or remove the changed next
+	 * hops only. A prefix that was installed and is left without any resolved
+	 * next hop is deleted too, so that the switches stop forwarding to the
+	 * next hops it lost while the new ones are resolved.
 	 * </p>
 	 * <p>
 	 * NOTE: Currently, we don't handle routes if the next hop is within the SDN
 	 * domain.
 	 * </p>
 	 *
-	 * @param routeEntry
-	 *            the route entry to add
+	 * @param prefix
+	 *            the prefix of the route
+	 * @param nextHops
+	 *            the next hops of the prefix, in order, at least one
 	 * @param withdrawPrefixes
 	 *            the collection of accumulated prefixes whose intents will be
 	 *            withdrawn
 	 * @return the corresponding FIB entry change, or null
 	 */
-	private AtriumFibEntry processRouteAdd(RouteEntry routeEntry, Collection<AtriumIpPrefix> withdrawPrefixes) {
-		LOG.info("Processing route add: {}", routeEntry);
-
-		// Find the old next-hop if we are updating an old route entry
-		AtriumIpAddress oldNextHop = null;
-		RouteEntry oldRouteEntry = findRibRoute(routeEntry.prefix());
+	private AtriumFibEntry processRouteChange(AtriumIpPrefix prefix, List<AtriumIpAddress> nextHops,
+			Collection<AtriumIpPrefix> withdrawPrefixes) {
+		RouteEntry routeEntry = nextHops.size() == 1 ? new RouteEntry(prefix, nextHops.get(0))
+				: new MultipathRouteEntry(prefix, nextHops);
+		LOG.debug("Processing route add: {}", routeEntry);
+
+		// Find the old next hops if we are updating an old route entry
+		Set<AtriumIpAddress> oldNextHops = Collections.emptySet();
+		RouteEntry oldRouteEntry = findRibRoute(prefix);
+		boolean wasInstalled = false;
 		if (oldRouteEntry != null) {
-			oldNextHop = oldRouteEntry.nextHop();
+			oldNextHops = oldRouteEntry.nextHops();
+			wasInstalled = resolveFibEntry(oldRouteEntry, null, null) != null;
 		}
 
 		// Add the new route to the RIB
 		addRibRoute(routeEntry);
+		staleRoutes.remove(prefix);
+		if (snapshot != null) {
+			snapshot.routeUpdated(routeEntry);
+		}
 
-		if (oldNextHop != null) {
-			if (oldNextHop.equals(routeEntry.nextHop())) {
+		if (oldRouteEntry != null) {
+			if (oldNextHops.equals(routeEntry.nextHops())) {
 				return null; // No change
 			}
-			//
-			// Update an existing nexthop for the prefix.
-			// We need to remove the old flows for this prefix from the
-			// switches before the new flows are added.
-			//
-			withdrawPrefixes.add(oldRouteEntry.prefix());
+			for (AtriumIpAddress oldNextHop : oldNextHops) {
+				if (!routeEntry.nextHops().contains(oldNextHop)) {
+					untrackNextHop(prefix, oldNextHop);
+					routesWaitingOnArp.remove(new RouteEntry(prefix, oldNextHop));
+				}
+			}
+			if (oldNextHops.size() == 1 && nextHops.size() == 1) {
+				//
+				// Update an existing nexthop for the prefix.
+				// We need to remove the old flows for this prefix from the
+				// switches before the new flows are added.
+				//
+				withdrawPrefixes.add(prefix);
+			}
+		}
+		for (AtriumIpAddress nextHop : routeEntry.nextHops()) {
+			if (!oldNextHops.contains(nextHop)) {
+				trackNextHop(prefix, nextHop);
+			}
 		}
 
-		if (isIpPrefixLocal(routeEntry.prefix())) {
+		if (isIpPrefixLocal(prefix)) {
 			// Route originated by local SDN domain
 			// We don't handle these here, reactive routing APP will handle
 			// these
-			LOG.debug("Own route {} to {}", routeEntry.prefix(), routeEntry.nextHop());
+			LOG.debug("Own route {} to {}", prefix, routeEntry.nextHops());
 			return null;
 		}
 
-		AtriumMacAddress nextHopMacAddress = null;
-
-		// Find the MAC address of next hop router for this route entry.
-		// If the MAC address can not be found in ARP cache, then this prefix
-		// will be put in routesWaitingOnArp queue.
+		// Find the MAC address of the next hop routers for this route entry.
+		// If the MAC address of a next hop can not be found in the neighbor
+		// table, then the prefix is put in its routesWaitingOnArp bucket and
+		// installed with the resolved next hops only.
+		for (AtriumIpAddress nextHop : routeEntry.nextHops()) {
+			LOG.debug("Checking the neighbor table for : {}", nextHop);
+			if (hostService.getNeighborTable().get(nextHop) == null && !restoredMacs.containsKey(nextHop)) {
+				LOG.debug("nextHopMacAddress not found in neighbor table : {}", nextHop);
+				// A rejected route is found in the RIB when its next hop
+				// resolves
+				routesWaitingOnArp.add(new RouteEntry(prefix, nextHop));
+				resolveNextHop(nextHop);
+			}
+		}
 
-		LOG.info("Sending request to host service for MAC resolution : {}", routeEntry.nextHop());
-		// Monitor the IP address for updates of the MAC address
-		hostService.startMonitoringIp(routeEntry.nextHop());
+		AtriumFibEntry fibEntry = createFibEntry(routeEntry, null, null);
+		if (fibEntry != null) {
+			LOG.debug("Creating FIB entry : {}", fibEntry);
+		} else if (wasInstalled && !withdrawPrefixes.contains(prefix)) {
+			// None of the new next hops is resolved yet, the old flows must
+			// not keep forwarding to the next hops the prefix lost
+			withdrawPrefixes.add(prefix);
+		}
+		return fibEntry;
+	}
 
-		LOG.info("Checking the ip2Mac table for : {}", routeEntry.nextHop());
-		// Check if we know the MAC address of the next hop MacAddress
-		nextHopMacAddress = ip2Mac.get(routeEntry.nextHop());
+	/**
+	 * Creates the FIB entry of a route with the next hops whose MAC address is
+	 * known, from the neighbor table or else from the snapshot.
+	 *
+	 * @param routeEntry
+	 *            the route
+	 * @param ipAddress
+	 *            a next hop whose MAC address was just learned, or null
+	 * @param macAddress
+	 *            the MAC address of that next hop
+	 * @return the FIB entry, or null if no next hop of the route is resolved
+	 */
+	private AtriumFibEntry createFibEntry(RouteEntry routeEntry, AtriumIpAddress ipAddress,
+			AtriumMacAddress macAddress) {
+		AtriumFibEntry fibEntry = resolveFibEntry(routeEntry, ipAddress, macAddress);
+		if (snapshot != null && fibEntry != null) {
+			fibEntry.nextHops().forEach(snapshot::nextHopResolved);
+		}
+		return fibEntry;
+	}
 
-		if (nextHopMacAddress == null) {
-			Host host = hostService.getHost(new HostId(routeEntry.nextHop().toString()));
-			if (host != null) {
-				HostNode hostNode = host.getHostNode();
-				if (hostNode != null) {
-					List<ConnectorAddress> addresses = hostNode.getConnectorAddress();
-					org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.yang.types.rev100924.MacAddress mac = addresses
-							.get(0).getMac();
-					checkNotNull(mac);
-					nextHopMacAddress = AtriumMacAddress.valueOf(mac.getValue());
-				}
+	/**
+	 * Returns the FIB entry of a route with the next hops whose MAC address
+	 * is known, without recording them in the snapshot.
+	 */
+	private AtriumFibEntry resolveFibEntry(RouteEntry routeEntry, AtriumIpAddress ipAddress,
+			AtriumMacAddress macAddress) {
+		Map<AtriumIpAddress, AtriumMacAddress> nextHops = new LinkedHashMap<>();
+		for (AtriumIpAddress nextHop : routeEntry.nextHops()) {
+			if (nextHop.equals(ipAddress)) {
+				nextHops.put(nextHop, macAddress);
+				continue;
 			}
-			if (nextHopMacAddress != null) {
-				ip2Mac.put(routeEntry.nextHop(), nextHopMacAddress);
+			Neighbor neighbor = hostService.getNeighborTable().get(nextHop);
+			if (neighbor != null) {
+				nextHops.put(nextHop, neighbor.macAddress());
+			} else if (restoredMacs.containsKey(nextHop)) {
+				nextHops.put(nextHop, restoredMacs.get(nextHop));
 			}
 		}
-		if (nextHopMacAddress == null) {
-			LOG.info("nextHopMacAddress not found in ip2Mac : {}", routeEntry.nextHop());
-			routesWaitingOnArp.put(routeEntry.nextHop(), routeEntry);
+		if (nextHops.isEmpty()) {
 			return null;
 		}
+		return new AtriumFibEntry(routeEntry.prefix(), nextHops);
+	}
+
+	/**
+	 * Records that a prefix is routed through a next hop. The next hop is
+	 * pinned in the neighbor table so that it is kept refreshed while routes
+	 * point at it.
+	 */
+	private void trackNextHop(AtriumIpPrefix prefix, AtriumIpAddress nextHop) {
+		routesByNextHop.put(nextHop, prefix);
+		hostService.getNeighborTable().pin(nextHop);
+	}
+
+	private void untrackNextHop(AtriumIpPrefix prefix, AtriumIpAddress nextHop) {
+		boolean last;
+		synchronized (routesByNextHop) {
+			routesByNextHop.remove(nextHop, prefix);
+			last = !routesByNextHop.containsKey(nextHop);
+		}
+		hostService.getNeighborTable().release(nextHop);
+		if (last) {
+			// No route left to push when the next hop shows up
+			routesWaitingOnArp.forget(nextHop);
+			if (snapshot != null) {
+				snapshot.nextHopRemoved(nextHop);
+			}
+		}
+	}
 
-		LOG.info("Creating FIB entry : " + routeEntry.prefix() + "," + routeEntry.nextHop() + "," + nextHopMacAddress);
-		return new AtriumFibEntry(routeEntry.prefix(), routeEntry.nextHop(), nextHopMacAddress);
+	/**
+	 * Asks the host service to resolve the MAC address of a next hop. The
+	 * routes waiting on the next hop are pushed as soon as the resolution
+	 * completes.
+	 *
+	 * @param nextHop
+	 *            the next hop IP address to resolve
+	 */
+	private void resolveNextHop(AtriumIpAddress nextHop) {
+		LOG.debug("Sending request to host service for MAC resolution : {}", nextHop);
+		hostService.resolve(nextHop).whenComplete((mac, failure) -> {
+			if (failure != null) {
+				LOG.warn("MAC resolution failed for next hop {}: {}", nextHop, failure.getMessage());
+			} else if (!closed) {
+				updateMac(nextHop, mac);
+			}
+		});
 	}
 
 	/*
-	 * Processes the deletion of a route entry. <p> The prefix for the routing
-	 * entry is removed from radix tree. If the operation is successful, the
-	 * prefix is added to the collection of prefixes whose intents that will be
-	 * withdrawn. </p>
+	 * Processes the deletion of the last route of a prefix. <p> The prefix for
+	 * the routing entry is removed from radix tree. If the operation is
+	 * successful, the prefix is added to the collection of prefixes whose
+	 * intents that will be withdrawn. </p>
 	 *
-	 * @param routeEntry the route entry to delete
+	 * @param prefix the prefix of the deleted route
 	 *
 	 * @param withdrawPrefixes the collection of accumulated prefixes whose
 	 * intents will be withdrawn
 	 */
-	private void processRouteDelete(RouteEntry routeEntry, Collection<AtriumIpPrefix> withdrawPrefixes) {
-		LOG.debug("Processing route delete: {}", routeEntry);
-		boolean isRemoved = removeRibRoute(routeEntry.prefix());
+	private void processRouteDelete(AtriumIpPrefix prefix, Collection<AtriumIpPrefix> withdrawPrefixes) {
+		LOG.debug("Processing route delete: {}", prefix);
+		RouteEntry oldRouteEntry = findRibRoute(prefix);
+		boolean isRemoved = removeRibRoute(prefix);
+		staleRoutes.remove(prefix);
 
 		if (isRemoved) {
-			withdrawPrefixes.add(routeEntry.prefix());
+			withdrawPrefixes.add(prefix);
+			if (snapshot != null) {
+				snapshot.routeRemoved(prefix);
+			}
+		}
+		if (oldRouteEntry != null) {
+			for (AtriumIpAddress nextHop : oldRouteEntry.nextHops()) {
+				if (isRemoved) {
+					untrackNextHop(prefix, nextHop);
+				}
+				routesWaitingOnArp.remove(new RouteEntry(prefix, nextHop));
+			}
 		}
-
-		routesWaitingOnArp.remove(routeEntry.nextHop(), routeEntry);
 	}
 
 	/**
@@ -424,10 +847,16 @@ public class RibManager<T extends Route> implements BindingAwareProvider, AutoCl
 	 *            the prefix to use
 	 * @return true if the route was found and removed, otherwise false
 	 */
-	boolean removeRibRoute(AtriumIpPrefix prefix) {
+	synchronized boolean removeRibRoute(AtriumIpPrefix prefix) {
 		if (prefix.isIp4()) {
 			// IPv4
-			return ribTable4.remove(createBinaryString(prefix));
+			Ip4RouteTable table = ribTable4.remove(prefix);
+			if (table == ribTable4) {
+				return false;
+			}
+			changeLog.add(RibChange.delete(table.version(), prefix));
+			ribTable4 = table;
+			return true;
 		}
 		return false;
 	}
@@ -438,13 +867,30 @@ public class RibManager<T extends Route> implements BindingAwareProvider, AutoCl
 	 * @param routeUpdate
 	 *            the route updates to process
 	 */
-	public synchronized void processRouteUpdates(DataTreeModification<T> routeUpdate) {
+	public void processRouteUpdates(DataTreeModification<T> routeUpdate) {
+		processRouteUpdates(routeUpdate, null);
+	}
+
+	/**
+	 * Processes route updates, stamping the trace of a sampled update.
+	 *
+	 * @param routeUpdate
+	 *            the route updates to process
+	 * @param trace
+	 *            the trace of the update, null if not traced
+	 */
+	synchronized void processRouteUpdates(DataTreeModification<T> routeUpdate, RouteTrace trace) {
+		long startedAt = System.nanoTime();
+		if (trace != null) {
+			trace.stamp(RouteTrace.Stage.DEQUEUED);
+		}
+		AtriumIpPrefix tracedPrefix = null;
 
 		Collection<AtriumIpPrefix> withdrawPrefixes = new LinkedList<>();
 		Collection<AtriumFibUpdate> fibUpdates = new LinkedList<>();
 		Collection<AtriumFibUpdate> fibWithdraws = new LinkedList<>();
 
-		LOG.info("Processing route update: {}", routeUpdate);
+		LOG.debug("Processing route update: {}", routeUpdate);
 		final DataObjectModification<T> root = routeUpdate.getRootNode();
 
 		switch (root.getModificationType()) {
@@ -456,12 +902,14 @@ public class RibManager<T extends Route> implements BindingAwareProvider, AutoCl
 			Ipv4Route ipv4RouteAfter = (Ipv4Route) root.getDataAfter();
 			AtriumIpAddress nextHopAfter = getNextHopFromIpv4Route(ipv4RouteAfter);
 			AtriumIpPrefix ipPrefixAfter = getIpPrefixFromIpv4Route(ipv4RouteAfter);
-			RouteEntry routeEntryAfter = new RouteEntry(ipPrefixAfter, nextHopAfter);
+			List<AtriumIpAddress> nextHops = paths.put(ipPrefixAfter, getRouteSource(routeUpdate), nextHopAfter,
+					getRank(ipv4RouteAfter));
 
-			AtriumFibEntry fib = processRouteAdd(routeEntryAfter, withdrawPrefixes);
+			AtriumFibEntry fib = processRouteChange(ipPrefixAfter, nextHops, withdrawPrefixes);
+			tracedPrefix = ipPrefixAfter;
 
 			if (fib != null) {
-				fibUpdates.add(new AtriumFibUpdate(AtriumFibUpdate.Type.UPDATE, fib));
+				fibUpdates.add(new AtriumFibUpdate(AtriumFibUpdate.Type.UPDATE, fib, trace));
 			}
 			break;
 		case DELETE:
@@ -471,7 +919,17 @@ public class RibManager<T extends Route> implements BindingAwareProvider, AutoCl
 			AtriumIpAddress nextHopIp = getNextHopFromIpv4Route(ipv4RouteUpdate);
 			AtriumIpPrefix ipPrefix = getIpPrefixFromIpv4Route(ipv4RouteUpdate);
 			if (nextHopIp != null && ipPrefix != null) {
-				processRouteDelete(new RouteEntry(ipPrefix, nextHopIp), withdrawPrefixes);
+				tracedPrefix = ipPrefix;
+				List<AtriumIpAddress> remaining = paths.remove(ipPrefix, getRouteSource(routeUpdate));
+				if (remaining.isEmpty()) {
+					processRouteDelete(ipPrefix, withdrawPrefixes);
+				} else {
+					// Another equal-cost or next best path takes over
+					AtriumFibEntry remainingFib = processRouteChange(ipPrefix, remaining, withdrawPrefixes);
+					if (remainingFib != null) {
+						fibUpdates.add(new AtriumFibUpdate(AtriumFibUpdate.Type.UPDATE, remainingFib, trace));
+					}
+				}
 			} else {
 				LOG.warn("Issue with deleted route attributes");
 			}
@@ -482,16 +940,170 @@ public class RibManager<T extends Route> implements BindingAwareProvider, AutoCl
 			break;
 		}
 
-		withdrawPrefixes.forEach(p -> fibWithdraws
-				.add(new AtriumFibUpdate(AtriumFibUpdate.Type.DELETE, new AtriumFibEntry(p, null, null))));
+		for (AtriumIpPrefix prefix : withdrawPrefixes) {
+			// The trace follows the new route of a prefix rather than the
+			// withdrawal of its old one
+			boolean traced = fibUpdates.isEmpty() && prefix.equals(tracedPrefix);
+			fibWithdraws.add(withdrawal(prefix, traced ? trace : null));
+		}
+
+		if (trace != null) {
+			trace.setPrefix(tracedPrefix);
+			trace.stamp(RouteTrace.Stage.PROCESSED);
+		}
+		if (!tracesWaitingOnArp.isEmpty() && tracedPrefix != null) {
+			// A newer update of the prefix supersedes the one waiting
+			RouteTrace superseded = tracesWaitingOnArp.remove(tracedPrefix);
+			if (superseded != null) {
+				superseded.release();
+			}
+		}
 
 		if (!fibUpdates.isEmpty() || !fibWithdraws.isEmpty()) {
 			// Send FIB Notification
-			fibListener.update(fibUpdates, fibWithdraws);
+			updateFib(fibUpdates, fibWithdraws);
 
 			// TODO: Send a notification through md_sal or update fib in
 			// data store
 		}
+		updatesProcessed.increment();
+		updateLatency.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startedAt));
+		if (trace != null) {
+			if (fibUpdates.isEmpty() && fibWithdraws.isEmpty() && isWaitingOnArp(tracedPrefix)
+					&& tracesWaitingOnArp.size() < MAX_TRACES_WAITING_ON_ARP) {
+				// Handed over to the resolution of the next hop
+				tracesWaitingOnArp.put(tracedPrefix, trace);
+			} else {
+				trace.release();
+			}
+		}
+	}
+
+	/**
+	 * @return true if the route of a prefix waits on the MAC address of one
+	 *         of its next hops
+	 */
+	private boolean isWaitingOnArp(AtriumIpPrefix prefix) {
+		RouteEntry routeEntry = prefix == null ? null : findRibRoute(prefix);
+		if (routeEntry == null) {
+			return false;
+		}
+		for (AtriumIpAddress nextHop : routeEntry.nextHops()) {
+			if (routesWaitingOnArp.contains(nextHop) || routesWaitingOnArp.isUnresolved(nextHop)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Pushes a batch of FIB updates to the FIB listener.
+	 */
+	private void updateFib(Collection<AtriumFibUpdate> updates, Collection<AtriumFibUpdate> withdraws) {
+		fibBatchSize.record(updates.size() + withdraws.size());
+		fibListener.update(updates, withdraws);
+	}
+
+	private static AtriumFibUpdate withdrawal(AtriumIpPrefix prefix) {
+		return withdrawal(prefix, null);
+	}
+
+	private static AtriumFibUpdate withdrawal(AtriumIpPrefix prefix, RouteTrace trace) {
+		return new AtriumFibUpdate(AtriumFibUpdate.Type.DELETE, new AtriumFibEntry(prefix, null, null), trace);
+	}
+
+	/**
+	 * Restores the routes of the snapshot into the RIB and installs them in
+	 * one batch, with the MAC addresses of their next hops from the snapshot.
+	 * The restored routes are stale until BGP announces them again; the next
+	 * hops are resolved again and the routes rewritten if a next hop moved.
+	 */
+	synchronized void restoreSnapshot() {
+		if (snapshotFile == null || snapshotFile.isEmpty()) {
+			return;
+		}
+		snapshot = new RibSnapshotStore(Paths.get(snapshotFile));
+		try {
+			snapshot.open();
+		} catch (IOException | RuntimeException e) {
+			LOG.warn("RIB snapshot {} can not be opened, starting without it", snapshotFile, e);
+			snapshot = null;
+			return;
+		}
+		restoredMacs.putAll(snapshot.getNextHops());
+
+		Collection<AtriumFibUpdate> fibUpdates = new ArrayList<>();
+		Set<AtriumIpAddress> unresolved = new HashSet<>();
+		for (RouteEntry routeEntry : snapshot.getRoutes()) {
+			AtriumIpPrefix prefix = routeEntry.prefix();
+			addRibRoute(routeEntry);
+			staleRoutes.add(prefix);
+			for (AtriumIpAddress nextHop : routeEntry.nextHops()) {
+				trackNextHop(prefix, nextHop);
+			}
+			if (isIpPrefixLocal(prefix)) {
+				continue;
+			}
+			for (AtriumIpAddress nextHop : routeEntry.nextHops()) {
+				if (!restoredMacs.containsKey(nextHop) && hostService.getNeighborTable().get(nextHop) == null) {
+					routesWaitingOnArp.add(new RouteEntry(prefix, nextHop));
+					unresolved.add(nextHop);
+				}
+			}
+			AtriumFibEntry fibEntry = createFibEntry(routeEntry, null, null);
+			if (fibEntry != null) {
+				fibUpdates.add(new AtriumFibUpdate(AtriumFibUpdate.Type.UPDATE, fibEntry));
+			}
+		}
+		unresolved.forEach(this::resolveNextHop);
+		for (AtriumIpAddress nextHop : restoredMacs.keySet()) {
+			hostService.resolve(nextHop).whenComplete((mac, failure) -> {
+				if (failure == null && !closed) {
+					nextHopRefreshed(nextHop, mac);
+				}
+			});
+		}
+		LOG.info("Restored {} route(s) from the RIB snapshot, installing {}", staleRoutes.size(), fibUpdates.size());
+		if (!fibUpdates.isEmpty()) {
+			updateFib(fibUpdates, Collections.emptyList());
+		}
+	}
+
+	/**
+	 * Stops using the snapshot MAC address of a next hop once it is resolved
+	 * again, and rewrites its routes if it moved while the controller was
+	 * down.
+	 */
+	private void nextHopRefreshed(AtriumIpAddress nextHop, AtriumMacAddress macAddress) {
+		AtriumMacAddress restored = restoredMacs.remove(nextHop);
+		if (restored != null && !restored.equals(macAddress)) {
+			nextHopMoved(nextHop, macAddress, System.nanoTime());
+		}
+	}
+
+	/**
+	 * Withdraws the routes restored from the snapshot that BGP did not
+	 * announce again, and stops using the MAC addresses of the snapshot.
+	 *
+	 * @return the number of routes withdrawn
+	 */
+	synchronized int reconcile() {
+		restoredMacs.clear();
+		if (closed || staleRoutes.isEmpty()) {
+			return 0;
+		}
+		Collection<AtriumIpPrefix> withdrawPrefixes = new LinkedList<>();
+		for (AtriumIpPrefix prefix : new ArrayList<>(staleRoutes)) {
+			processRouteDelete(prefix, withdrawPrefixes);
+		}
+		staleRoutes.clear();
+		LOG.info("Withdrawing {} restored route(s) not announced again by BGP", withdrawPrefixes.size());
+		if (!withdrawPrefixes.isEmpty()) {
+			Collection<AtriumFibUpdate> fibWithdraws = new ArrayList<>(withdrawPrefixes.size());
+			withdrawPrefixes.forEach(p -> fibWithdraws.add(withdrawal(p)));
+			updateFib(Collections.emptyList(), fibWithdraws);
+		}
+		return withdrawPrefixes.size();
 	}
 
 	/**
@@ -503,10 +1115,9 @@ public class RibManager<T extends Route> implements BindingAwareProvider, AutoCl
 	 * @return the route if found, otherwise null
 	 */
 	RouteEntry findRibRoute(AtriumIpPrefix prefix) {
-		String binaryString = createBinaryString(prefix);
 		if (prefix.isIp4()) {
 			// IPv4
-			return ribTable4.getValueForExactKey(binaryString);
+			return ribTable4.get(prefix);
 		}
 		return null;
 	}
@@ -529,10 +1140,15 @@ public class RibManager<T extends Route> implements BindingAwareProvider, AutoCl
 	 * @param routeEntry
 	 *            the route entry to use
 	 */
-	void addRibRoute(RouteEntry routeEntry) {
+	synchronized void addRibRoute(RouteEntry routeEntry) {
 		if (routeEntry.isIp4()) {
 			// IPv4
-			ribTable4.put(createBinaryString(routeEntry.prefix()), routeEntry);
+			if (routeEntry.equals(ribTable4.get(routeEntry.prefix()))) {
+				return;
+			}
+			Ip4RouteTable table = ribTable4.put(routeEntry);
+			changeLog.add(RibChange.update(table.version(), routeEntry));
+			ribTable4 = table;
 		}
 	}
 
@@ -540,7 +1156,8 @@ public class RibManager<T extends Route> implements BindingAwareProvider, AutoCl
 	 * Signals the Router that the MAC to IP mapping has potentially been
 	 * updated. This has the effect of updating the MAC address for any
 	 * installed prefixes if it has changed, as well as installing any pending
-	 * prefixes that were waiting for MAC resolution.
+	 * prefixes that were waiting for MAC resolution. The routes of a next hop
+	 * that was given up on are looked up in the RIB again.
 	 *
 	 * @param ipAddress
 	 *            the IP address that an event was received for
@@ -556,19 +1173,43 @@ public class RibManager<T extends Route> implements BindingAwareProvider, AutoCl
 		//
 		synchronized (this) {
 			Collection<AtriumFibUpdate> submitFibEntries = new LinkedList<>();
-
-			Set<RouteEntry> routesToPush = routesWaitingOnArp.removeAll(ipAddress);
+			List<RouteTrace> traces = null;
+
+			boolean unresolved = routesWaitingOnArp.isUnresolved(ipAddress);
+			Set<RouteEntry> routesToPush = routesWaitingOnArp.drain(ipAddress);
+			if (unresolved) {
+				routesToPush = new HashSet<>(routesToPush);
+				synchronized (routesByNextHop) {
+					for (AtriumIpPrefix prefix : routesByNextHop.get(ipAddress)) {
+						RouteEntry routeEntry = findRibRoute(prefix);
+						if (routeEntry != null && !isIpPrefixLocal(prefix)) {
+							routesToPush.add(routeEntry);
+						}
+					}
+				}
+			}
 
 			for (RouteEntry routeEntry : routesToPush) {
 				// These will always be adds
 				RouteEntry foundRouteEntry = findRibRoute(routeEntry.prefix());
-				if (foundRouteEntry != null && foundRouteEntry.nextHop().equals(routeEntry.nextHop())) {
+				if (foundRouteEntry != null && foundRouteEntry.nextHops().contains(ipAddress)) {
 					// We only push FIB updates if the prefix is still in the
-					// radix tree and the next hop is the same as our entry.
-					// The prefix could have been removed while we were waiting
-					// for the ARP, or the next hop could have changed.
+					// radix tree and the next hop is still one of its next
+					// hops. The prefix could have been removed while we were
+					// waiting for the ARP, or the next hop could have changed.
+					// The other resolved next hops of the prefix are pushed
+					// along.
+					RouteTrace trace = tracesWaitingOnArp.isEmpty() ? null
+							: tracesWaitingOnArp.remove(foundRouteEntry.prefix());
+					if (trace != null) {
+						trace.stamp(RouteTrace.Stage.ARP_RESOLVED);
+						if (traces == null) {
+							traces = new ArrayList<>();
+						}
+						traces.add(trace);
+					}
 					submitFibEntries.add(new AtriumFibUpdate(AtriumFibUpdate.Type.UPDATE,
-							new AtriumFibEntry(routeEntry.prefix(), ipAddress, macAddress)));
+							createFibEntry(foundRouteEntry, ipAddress, macAddress), trace));
 				} else {
 					LOG.debug("{} has been revoked before the MAC was resolved", routeEntry);
 				}
@@ -576,78 +1217,77 @@ public class RibManager<T extends Route> implements BindingAwareProvider, AutoCl
 
 			if (!submitFibEntries.isEmpty()) {
 
-				fibListener.update(submitFibEntries, Collections.emptyList());
+				updateFib(submitFibEntries, Collections.emptyList());
 
 				// TODO: Send a notification through md_sal or update fib in
 				// data store
 			}
-
-			ip2Mac.put(ipAddress, macAddress);
+			if (traces != null) {
+				traces.forEach(RouteTrace::release);
+			}
 		}
 	}
 
 	/**
-	 * The listener interface for receiving internalHost events. The class that
-	 * is interested in processing a internalHost event implements this
-	 * interface, and the object created with that class is registered with a
-	 * component using the component's <code>addInternalHostListener
-	 * <code> method. When the internalHost event occurs, that object's
-	 * appropriate method is invoked.
+	 * Rewrites the FIB entries of the routes through a next hop whose MAC
+	 * address changed, for instance after a router failed over and sent a
+	 * gratuitous ARP. The entries are handed over in one batch so that the
+	 * FIB listener can rewrite the next hop once for all of them.
 	 *
-	 * @see InternalHostEvent
+	 * @param nextHop
+	 *            the next hop IP address
+	 * @param macAddress
+	 *            the new MAC address of the next hop
+	 * @param detectedAt
+	 *            the {@link System#nanoTime()} at which the move was detected
+	 */
+	private void nextHopMoved(AtriumIpAddress nextHop, AtriumMacAddress macAddress, long detectedAt) {
+		synchronized (this) {
+			List<AtriumIpPrefix> prefixes;
+			synchronized (routesByNextHop) {
+				prefixes = new ArrayList<>(routesByNextHop.get(nextHop));
+			}
+			Collection<AtriumFibUpdate> submitFibEntries = new ArrayList<>(prefixes.size());
+			for (AtriumIpPrefix prefix : prefixes) {
+				RouteEntry routeEntry = findRibRoute(prefix);
+				if (routeEntry != null && routeEntry.nextHops().contains(nextHop) && !isIpPrefixLocal(prefix)) {
+					submitFibEntries.add(new AtriumFibUpdate(AtriumFibUpdate.Type.UPDATE,
+							createFibEntry(routeEntry, nextHop, macAddress)));
+				}
+			}
+			if (!submitFibEntries.isEmpty() && fibListener != null) {
+				LOG.info("Next hop {} moved to {}, rewriting {} route(s)", nextHop, macAddress,
+						submitFibEntries.size());
+				fibListener.nextHopMoved(nextHop, submitFibEntries, detectedAt);
+			}
+		}
+	}
+
+	/**
+	 * Pushes the routes waiting on a next hop as soon as the neighbor table
+	 * learns its MAC address, and rewrites the routes through a next hop whose
+	 * MAC address changed.
 	 */
-	class InternalHostListener implements HostListener {
+	class InternalNeighborListener implements NeighborListener {
 
-		/*
-		 * (non-Javadoc)
-		 *
-		 * @see
-		 * org.opendaylight.atrium.hostservice.api.HostListener#hostEventUpdate
-		 * (org.opendaylight.atrium.hostservice.api.HostEvent)
-		 */
 		@Override
-		public void hostEventUpdate(HostEvent event) {
-			checkNotNull(event.getHost());
-			LOG.info("Receved MAC/IP mapping for host ");
-			switch (event.getType()) {
-			case HOST_ADDED: {
-				Host host = event.getHost();
-				List<ConnectorAddress> addresses = host.getHostNode().getConnectorAddress();
-				for (ConnectorAddress address : addresses) {
-					AtriumMacAddress mac = AtriumMacAddress.valueOf(address.getMac().toString());
-					Ipv4Address ipv4Address = address.getIp().getIpv4Address();
-					Ipv6Address ipv6Address = address.getIp().getIpv6Address();
-					if (ipv4Address != null) {
-						updateMac(AtriumIpAddress.valueOf(ipv4Address.getValue()), mac);
-					}
-					if (ipv6Address != null) {
-						updateMac(AtriumIpAddress.valueOf(ipv6Address.getValue()), mac);
-					}
+		public void neighborUpdate(NeighborEvent event) {
+			checkNotNull(event.getNeighbor());
+			Neighbor neighbor = event.getNeighbor();
+			if (event.getType() == NeighborEvent.Type.NEIGHBOR_ADDED) {
+				if (routesWaitingOnArp.contains(neighbor.ip()) || routesWaitingOnArp.isUnresolved(neighbor.ip())) {
+					updateMac(neighbor.ip(), neighbor.macAddress());
 				}
-				break;
-			}
-			case HOST_REMOVED: {
-				Host host = event.getHost();
-				List<ConnectorAddress> addresses = host.getHostNode().getConnectorAddress();
-				for (ConnectorAddress address : addresses) {
-					Ipv4Address ipv4Address = address.getIp().getIpv4Address();
-					Ipv6Address ipv6Address = address.getIp().getIpv6Address();
-					if (ipv4Address != null) {
-						AtriumIpAddress ip = AtriumIpAddress.valueOf(ipv4Address.getValue());
-						ip2Mac.remove(ip);
-					}
-					if (ipv6Address != null) {
-						AtriumIpAddress ip = AtriumIpAddress.valueOf(ipv6Address.getValue());
-						ip2Mac.remove(ip);
-					}
+				if (restoredMacs.containsKey(neighbor.ip())) {
+					nextHopRefreshed(neighbor.ip(), neighbor.macAddress());
+				}
+			} else if (event.getType() == NeighborEvent.Type.NEIGHBOR_UPDATED && !closed) {
+				Neighbor previous = event.getPrevious();
+				if (previous == null || previous.mac() != neighbor.mac()) {
+					nextHopMoved(neighbor.ip(), neighbor.macAddress(), event.getTime());
 				}
-				break;
-			}
-			default:
-				break;
 			}
 		}
-
 	}
 
 	/**
@@ -659,7 +1299,8 @@ public class RibManager<T extends Route> implements BindingAwareProvider, AutoCl
 			while (!interrupted) {
 				try {
 					DataTreeModification<T> routeUpdates = routeUpdatesQueue.take();
-					processRouteUpdates(routeUpdates);
+					RouteTrace trace = queuedTraces.isEmpty() ? null : queuedTraces.remove(routeUpdates);
+					processRouteUpdates(routeUpdates, trace);
 				} catch (InterruptedException e) {
 					LOG.error("Interrupted while taking from updates queue", e);
 					interrupted = true;
@@ -682,6 +1323,10 @@ public class RibManager<T extends Route> implements BindingAwareProvider, AutoCl
 	private void routeChanged(final DataTreeModification<T> change, final ReadOnlyTransaction trans) {
 		// removeObject(trans, change.getRootPath().getRootIdentifier(),
 		// root.getDataBefore());
+		RouteTrace trace = tracer.start();
+		if (trace != null) {
+			queuedTraces.put(change, trace);
+		}
 		try {
 			routeUpdatesQueue.put(change);
 		} catch (InterruptedException e) {
@@ -718,6 +1363,51 @@ public class RibManager<T extends Route> implements BindingAwareProvider, AutoCl
 
 	}
 
+	/**
+	 * Returns the source of a route: the peer it was received from, or the
+	 * local RIB.
+	 */
+	private Object getRouteSource(DataTreeModification<T> routeUpdate) {
+		InstanceIdentifier<?> path = routeUpdate.getRootPath().getRootIdentifier();
+		PeerKey peer = path == null ? null : path.firstKeyOf(Peer.class, PeerKey.class);
+		return peer != null ? peer : LOC_RIB_SOURCE;
+	}
+
+	/**
+	 * Returns the attributes of a route compared to find the equal-cost
+	 * routes of a prefix. Missing attributes take their default value.
+	 */
+	private MultipathTable.Rank getRank(Ipv4Route route) {
+		Attributes attributes = route == null ? null : route.getAttributes();
+		if (attributes == null) {
+			return MultipathTable.Rank.DEFAULT;
+		}
+		long localPref = 100;
+		if (attributes.getLocalPref() != null && attributes.getLocalPref().getPref() != null) {
+			localPref = attributes.getLocalPref().getPref();
+		}
+		int asPathLength = 0;
+		if (attributes.getAsPath() != null && attributes.getAsPath().getSegments() != null) {
+			for (Segments segment : attributes.getAsPath().getSegments()) {
+				if (segment.getAsSequence() != null) {
+					asPathLength += segment.getAsSequence().size();
+				} else if (segment.getAsSet() != null) {
+					// An AS set counts as one AS
+					asPathLength++;
+				}
+			}
+		}
+		int origin = 0;
+		if (attributes.getOrigin() != null && attributes.getOrigin().getValue() != null) {
+			origin = attributes.getOrigin().getValue().getIntValue();
+		}
+		long med = 0;
+		if (attributes.getMultiExitDisc() != null && attributes.getMultiExitDisc().getMed() != null) {
+			med = attributes.getMultiExitDisc().getMed();
+		}
+		return new MultipathTable.Rank(localPref, asPathLength, origin, med);
+	}
+
 	private Long getASNumberFromASPath(AsPath asPath) {
 		if (asPath == null) {
 			return Long.valueOf(0);
@@ -0,0 +1,489 @@
+/*
+ * Copyright (c) 2016 Wipro Ltd. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.atrium.routingservice.impl;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import org.jboss.netty.util.Timeout;
+import org.jboss.netty.util.TimerTask;
+import org.opendaylight.atrium.routingservice.api.MultipathRouteEntry;
+import org.opendaylight.atrium.routingservice.api.RouteEntry;
+import org.opendaylight.atrium.util.AtriumIpAddress;
+import org.opendaylight.atrium.util.AtriumIpPrefix;
+import org.opendaylight.atrium.util.AtriumMacAddress;
+import org.opendaylight.atrium.util.AtriumTimer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A snapshot of the RIB and of the MAC addresses of the next hops, kept in a
+ * memory-mapped file so that a restarted controller can reinstall its FIB
+ * before the BGP sessions and the neighbor table have converged. The FIB is
+ * not stored, it is derived from the routes and the next hops.
+ * <p>
+ * The file is an append-only log of binary records, each one checked with a
+ * CRC32, after a header. A record is appended for every change and the log
+ * is rewritten from the current state when it holds too many obsolete
+ * records or runs out of room. Records written to the mapping survive a
+ * crash of the controller process; the file is forced to disk on compaction
+ * and on close. A torn record at the end of the log ends the load.
+ * </p>
+ * <p>
+ * The store keeps the current routes and next hops in memory to compact the
+ * log. It is thread safe.
+ * </p>
+ */
+public class RibSnapshotStore implements TimerTask, AutoCloseable {
+
+	private static final Logger LOG = LoggerFactory.getLogger(RibSnapshotStore.class);
+
+	static final int MAGIC = 0x41545253; // "ATRS"
+	static final int VERSION = 1;
+	private static final int HEADER_SIZE = 8;
+
+	static final byte ROUTE = 1;
+	static final byte ROUTE_REMOVED = 2;
+	static final byte NEXT_HOP = 3;
+	static final byte NEXT_HOP_REMOVED = 4;
+
+	static final int MIN_CAPACITY = 1 << 20; // bytes
+	static final long COMPACTION_INTERVAL = 60000; // milliseconds
+	// Obsolete records tolerated before the log is compacted
+	private static final long MIN_GARBAGE_RECORDS = 10000;
+
+	private final Path file;
+
+	private final Map<AtriumIpPrefix, RouteEntry> routes = new HashMap<>();
+	private final Map<AtriumIpAddress, AtriumMacAddress> nextHops = new HashMap<>();
+
+	private FileChannel channel;
+	private MappedByteBuffer buffer;
+	private long records;
+	private long compactions;
+	private boolean failed;
+
+	private volatile Timeout compaction;
+	private volatile boolean closed;
+
+	/**
+	 * @param file
+	 *            the snapshot file, created if it does not exist
+	 */
+	public RibSnapshotStore(Path file) {
+		this.file = checkNotNull(file);
+	}
+
+	/**
+	 * Opens the snapshot file and loads it. A file that can not be read is
+	 * discarded and the store starts empty.
+	 *
+	 * @throws IOException
+	 *             if the file can not be opened
+	 */
+	public synchronized void open() throws IOException {
+		if (file.getParent() != null) {
+			Files.createDirectories(file.getParent());
+		}
+		if (Files.exists(file) && Files.size(file) >= HEADER_SIZE) {
+			map(file, Math.max(Files.size(file), MIN_CAPACITY));
+			if (buffer.getInt(0) == MAGIC && buffer.getInt(4) == VERSION) {
+				long started = System.nanoTime();
+				boolean clean = load();
+				LOG.info("Loaded {} route(s) and {} next hop(s) from {} in {} ms", routes.size(), nextHops.size(),
+						file, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+				if (!clean) {
+					// Rewritten so that appends do not run into the leftovers
+					compact();
+				}
+				return;
+			}
+			LOG.warn("Discarding {}, it is not a RIB snapshot of version {}", file, VERSION);
+		}
+		compact();
+	}
+
+	public void start() {
+		closed = false;
+		compaction = AtriumTimer.getTimer().newTimeout(this, COMPACTION_INTERVAL, TimeUnit.MILLISECONDS);
+	}
+
+	private void map(Path path, long capacity) throws IOException {
+		channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+		buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+	}
+
+	// Returns false if the log ended with a torn or corrupted record
+	private boolean load() {
+		buffer.position(HEADER_SIZE);
+		CRC32 crc = new CRC32();
+		while (buffer.remaining() >= 4) {
+			int start = buffer.position();
+			int length = buffer.getInt();
+			if (length == 0) {
+				// Never written
+				buffer.position(start);
+				return true;
+			}
+			if (length < 0 || length > buffer.remaining() - 4) {
+				LOG.warn("Truncating {} at a torn record at {}", file, start);
+				buffer.position(start);
+				return false;
+			}
+			ByteBuffer record = buffer.slice();
+			record.limit(length);
+			buffer.position(buffer.position() + length);
+			crc.reset();
+			crc.update(record.duplicate());
+			if ((int) crc.getValue() != buffer.getInt()) {
+				LOG.warn("Truncating {} at a corrupted record at {}", file, start);
+				buffer.position(start);
+				return false;
+			}
+			try {
+				apply(record);
+				records++;
+			} catch (IllegalArgumentException | BufferUnderflowException e) {
+				LOG.warn("Skipping an unreadable record at {} in {}", start, file, e);
+			}
+		}
+		return true;
+	}
+
+	private void apply(ByteBuffer record) {
+		byte type = record.get();
+		switch (type) {
+		case ROUTE:
+			AtriumIpPrefix prefix = getPrefix(record);
+			int count = record.get() & 0xff;
+			List<AtriumIpAddress> routeNextHops = new ArrayList<>(count);
+			for (int i = 0; i < count; i++) {
+				routeNextHops.add(getAddress(record));
+			}
+			routes.put(prefix, count == 1 ? new RouteEntry(prefix, routeNextHops.get(0))
+					: new MultipathRouteEntry(prefix, routeNextHops));
+			break;
+		case ROUTE_REMOVED:
+			routes.remove(getPrefix(record));
+			break;
+		case NEXT_HOP:
+			AtriumIpAddress ip = getAddress(record);
+			nextHops.put(ip, AtriumMacAddress.valueOf(record.getLong()));
+			break;
+		case NEXT_HOP_REMOVED:
+			nextHops.remove(getAddress(record));
+			break;
+		default:
+			throw new IllegalArgumentException("Unknown record type " + type);
+		}
+	}
+
+	/**
+	 * @return the routes of the snapshot
+	 */
+	public synchronized Collection<RouteEntry> getRoutes() {
+		return new ArrayList<>(routes.values());
+	}
+
+	/**
+	 * @return the next hops of the snapshot with their MAC address
+	 */
+	public synchronized Map<AtriumIpAddress, AtriumMacAddress> getNextHops() {
+		return new HashMap<>(nextHops);
+	}
+
+	/**
+	 * Records the route of a prefix.
+	 *
+	 * @param route
+	 *            the route, replacing the previous route of its prefix
+	 */
+	public synchronized void routeUpdated(RouteEntry route) {
+		if (route.nextHops().equals(nextHopsOf(routes.put(route.prefix(), route)))) {
+			return;
+		}
+		ByteBuffer record = newRecord(ROUTE, prefixSize(route.prefix()) + 1 + 17 * route.nextHops().size());
+		putPrefix(record, route.prefix());
+		record.put((byte) route.nextHops().size());
+		for (AtriumIpAddress nextHop : route.nextHops()) {
+			putAddress(record, nextHop);
+		}
+		append(record);
+	}
+
+	private static Collection<AtriumIpAddress> nextHopsOf(RouteEntry route) {
+		return route == null ? null : route.nextHops();
+	}
+
+	/**
+	 * Records the removal of the route of a prefix.
+	 *
+	 * @param prefix
+	 *            the prefix
+	 */
+	public synchronized void routeRemoved(AtriumIpPrefix prefix) {
+		if (routes.remove(prefix) == null) {
+			return;
+		}
+		ByteBuffer record = newRecord(ROUTE_REMOVED, prefixSize(prefix));
+		putPrefix(record, prefix);
+		append(record);
+	}
+
+	/**
+	 * Records the MAC address of a next hop.
+	 *
+	 * @param nextHop
+	 *            the next hop
+	 * @param mac
+	 *            its MAC address
+	 */
+	public synchronized void nextHopResolved(AtriumIpAddress nextHop, AtriumMacAddress mac) {
+		if (mac.equals(nextHops.put(nextHop, mac))) {
+			return;
+		}
+		ByteBuffer record = newRecord(NEXT_HOP, addressSize(nextHop) + 8);
+		putAddress(record, nextHop);
+		record.putLong(mac.toLong());
+		append(record);
+	}
+
+	/**
+	 * Records that a next hop is no longer used by any route.
+	 *
+	 * @param nextHop
+	 *            the next hop
+	 */
+	public synchronized void nextHopRemoved(AtriumIpAddress nextHop) {
+		if (nextHops.remove(nextHop) == null) {
+			return;
+		}
+		ByteBuffer record = newRecord(NEXT_HOP_REMOVED, addressSize(nextHop));
+		putAddress(record, nextHop);
+		append(record);
+	}
+
+	private static ByteBuffer newRecord(byte type, int size) {
+		ByteBuffer record = ByteBuffer.allocate(1 + size);
+		record.put(type);
+		return record;
+	}
+
+	// Appends a record whose change is already applied to the state, the log
+	// is compacted instead if the record does not fit
+	private void append(ByteBuffer record) {
+		if (failed || buffer == null) {
+			return;
+		}
+		record.flip();
+		try {
+			if (buffer.remaining() < record.remaining() + 8) {
+				compact();
+				return;
+			}
+			write(buffer, record);
+			records++;
+		} catch (IOException | RuntimeException e) {
+			failed = true;
+			LOG.warn("Failed to write to {}, the RIB snapshot is no longer updated", file, e);
+		}
+	}
+
+	private static void write(ByteBuffer target, ByteBuffer record) {
+		CRC32 crc = new CRC32();
+		crc.update(record.duplicate());
+		target.putInt(record.remaining());
+		target.put(record);
+		target.putInt((int) crc.getValue());
+	}
+
+	/**
+	 * @return the number of records in the log
+	 */
+	public synchronized long getRecordCount() {
+		return records;
+	}
+
+	/**
+	 * @return the number of times the log was compacted
+	 */
+	public synchronized long getCompactionCount() {
+		return compactions;
+	}
+
+	/**
+	 * @return the number of bytes of the log in use
+	 */
+	public synchronized int size() {
+		return buffer == null ? 0 : buffer.position();
+	}
+
+	/**
+	 * @return true if the log holds enough obsolete records to be compacted
+	 */
+	synchronized boolean needsCompaction() {
+		long live = routes.size() + nextHops.size();
+		return records - live > Math.max(MIN_GARBAGE_RECORDS, live);
+	}
+
+	/**
+	 * Rewrites the log from the current routes and next hops into a new file
+	 * which then replaces the snapshot file.
+	 *
+	 * @throws IOException
+	 *             if the new file can not be written
+	 */
+	public synchronized void compact() throws IOException {
+		List<ByteBuffer> live = new ArrayList<>(routes.size() + nextHops.size());
+		long size = HEADER_SIZE;
+		for (RouteEntry route : routes.values()) {
+			ByteBuffer record = newRecord(ROUTE, prefixSize(route.prefix()) + 1 + 17 * route.nextHops().size());
+			putPrefix(record, route.prefix());
+			record.put((byte) route.nextHops().size());
+			for (AtriumIpAddress nextHop : route.nextHops()) {
+				putAddress(record, nextHop);
+			}
+			record.flip();
+			live.add(record);
+			size += record.remaining() + 8;
+		}
+		for (Map.Entry<AtriumIpAddress, AtriumMacAddress> entry : nextHops.entrySet()) {
+			ByteBuffer record = newRecord(NEXT_HOP, addressSize(entry.getKey()) + 8);
+			putAddress(record, entry.getKey());
+			record.putLong(entry.getValue().toLong());
+			record.flip();
+			live.add(record);
+			size += record.remaining() + 8;
+		}
+
+		Path compacted = file.resolveSibling(file.getFileName() + ".compact");
+		Files.deleteIfExists(compacted);
+		FileChannel oldChannel = channel;
+		map(compacted, Math.max(MIN_CAPACITY, Math.min(Integer.MAX_VALUE, 2 * size)));
+		buffer.putInt(MAGIC);
+		buffer.putInt(VERSION);
+		for (ByteBuffer record : live) {
+			write(buffer, record);
+		}
+		buffer.force();
+		Files.move(compacted, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		if (oldChannel != null) {
+			oldChannel.close();
+		}
+		records = live.size();
+		compactions++;
+		failed = false;
+		LOG.debug("Compacted {} to {} record(s)", file, records);
+	}
+
+	@Override
+	public void run(Timeout t) {
+		if (closed) {
+			return;
+		}
+		try {
+			if (needsCompaction()) {
+				compact();
+			}
+		} catch (IOException | RuntimeException e) {
+			LOG.warn("Failed to compact {}", file, e);
+		}
+		if (!closed) {
+			compaction = AtriumTimer.getTimer().newTimeout(this, COMPACTION_INTERVAL, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * Forgets all the routes and next hops, and empties the log.
+	 *
+	 * @throws IOException
+	 *             if the log can not be rewritten
+	 */
+	public synchronized void clear() throws IOException {
+		routes.clear();
+		nextHops.clear();
+		compact();
+	}
+
+	@Override
+	public synchronized void close() {
+		closed = true;
+		Timeout current = compaction;
+		if (current != null) {
+			current.cancel();
+		}
+		if (channel == null) {
+			return;
+		}
+		try {
+			buffer.force();
+			channel.close();
+		} catch (IOException e) {
+			LOG.warn("Failed to close {}", file, e);
+		}
+		channel = null;
+		buffer = null;
+	}
+
+	private static int addressSize(AtriumIpAddress address) {
+		return 1 + (address.isIp4() ? AtriumIpAddress.INET_BYTE_LENGTH : AtriumIpAddress.INET6_BYTE_LENGTH);
+	}
+
+	private static int prefixSize(AtriumIpPrefix prefix) {
+		return addressSize(prefix.address()) + 1;
+	}
+
+	private static void putAddress(ByteBuffer record, AtriumIpAddress address) {
+		record.put((byte) (address.isIp4() ? 4 : 6));
+		record.put(address.toOctets());
+	}
+
+	private static AtriumIpAddress getAddress(ByteBuffer record) {
+		byte family = record.get();
+		AtriumIpAddress.Version version;
+		byte[] octets;
+		if (family == 4) {
+			version = AtriumIpAddress.Version.INET;
+			octets = new byte[AtriumIpAddress.INET_BYTE_LENGTH];
+		} else if (family == 6) {
+			version = AtriumIpAddress.Version.INET6;
+			octets = new byte[AtriumIpAddress.INET6_BYTE_LENGTH];
+		} else {
+			throw new IllegalArgumentException("Unknown address family " + family);
+		}
+		record.get(octets);
+		return AtriumIpAddress.valueOf(version, octets);
+	}
+
+	private static void putPrefix(ByteBuffer record, AtriumIpPrefix prefix) {
+		putAddress(record, prefix.address());
+		record.put((byte) prefix.prefixLength());
+	}
+
+	private static AtriumIpPrefix getPrefix(ByteBuffer record) {
+		AtriumIpAddress address = getAddress(record);
+		return AtriumIpPrefix.valueOf(address, record.get() & 0xff);
+	}
+}
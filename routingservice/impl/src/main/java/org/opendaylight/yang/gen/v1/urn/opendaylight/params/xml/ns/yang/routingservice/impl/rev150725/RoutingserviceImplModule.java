@@ -60,6 +60,11 @@ public class RoutingserviceImplModule
         //router.setServices(routingConfigService, bgpService,hostService);
 
         RibManager<Route> ribManager = new RibManager<Route> (broker,ribReference,hostService,routingConfigService); 
+        ribManager.setPendingConfig(getPendingRoutesMax(), getPendingRoutesTimeout());
+        ribManager.setMaxPaths(getMaxPaths());
+        ribManager.setSnapshotConfig(getSnapshotFile(), getSnapshotReconcileTimeout());
+        ribManager.setTraceConfig(getTraceSampleRate(), getTraceSlowest());
+        ribManager.setChangeLogSize(getRibChangeLogSize());
         //ribManager.start();
         
         
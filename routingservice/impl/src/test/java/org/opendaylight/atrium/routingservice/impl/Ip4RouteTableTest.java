@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2016 Wipro Ltd. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.atrium.routingservice.impl;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+import org.opendaylight.atrium.routingservice.api.RouteEntry;
+import org.opendaylight.atrium.util.AtriumIpAddress;
+import org.opendaylight.atrium.util.AtriumIpPrefix;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+
+public class Ip4RouteTableTest {
+
+	private static final AtriumIpAddress NEXT_HOP = AtriumIpAddress.valueOf("192.168.10.1");
+
+	private static RouteEntry route(String prefix) {
+		return new RouteEntry(AtriumIpPrefix.valueOf(prefix), NEXT_HOP);
+	}
+
+	private static int address(String address) {
+		return AtriumIpAddress.valueOf(address).getIp4Address().toInt();
+	}
+
+	/**
+	 * Tests the longest prefix match of addresses, one at a time and in batch.
+	 */
+	@Test
+	public void testLookup() {
+		Ip4RouteTable table = Ip4RouteTable.EMPTY.put(route("10.0.0.0/8")).put(route("10.1.0.0/16"))
+				.put(route("10.1.2.0/24")).put(route("10.1.2.3/32")).put(route("128.0.0.0/1"));
+
+		assertEquals(route("10.1.2.3/32"), table.lookup(AtriumIpAddress.valueOf("10.1.2.3")));
+		assertEquals(route("10.1.2.0/24"), table.lookup(AtriumIpAddress.valueOf("10.1.2.4")));
+		assertEquals(route("10.1.0.0/16"), table.lookup(AtriumIpAddress.valueOf("10.1.3.1")));
+		assertEquals(route("10.0.0.0/8"), table.lookup(AtriumIpAddress.valueOf("10.255.0.1")));
+		assertEquals(route("128.0.0.0/1"), table.lookup(AtriumIpAddress.valueOf("200.0.0.1")));
+		assertNull(table.lookup(AtriumIpAddress.valueOf("11.0.0.1")));
+
+		RouteEntry[] routes = table.lookup(new int[] { address("10.1.2.4"), address("11.0.0.1"),
+				address("255.255.255.255") });
+		assertArrayEquals(new RouteEntry[] { route("10.1.2.0/24"), null, route("128.0.0.0/1") }, routes);
+
+		table = table.put(route("0.0.0.0/0"));
+		assertEquals(route("0.0.0.0/0"), table.lookup(AtriumIpAddress.valueOf("11.0.0.1")));
+	}
+
+	/**
+	 * Tests that a version of the table is not changed by the later versions.
+	 */
+	@Test
+	public void testVersions() {
+		Ip4RouteTable first = Ip4RouteTable.EMPTY.put(route("10.0.0.0/8")).put(route("10.1.0.0/16"));
+		Ip4RouteTable second = first.remove(AtriumIpPrefix.valueOf("10.1.0.0/16")).put(route("20.0.0.0/8"));
+
+		assertEquals(2, first.version());
+		assertEquals(4, second.version());
+		assertEquals(ImmutableList.of(route("10.0.0.0/8"), route("10.1.0.0/16")), ImmutableList.copyOf(first.routes()));
+		assertEquals(ImmutableList.of(route("10.0.0.0/8"), route("20.0.0.0/8")), ImmutableList.copyOf(second.routes()));
+		assertEquals(route("10.1.0.0/16"), first.lookup(AtriumIpAddress.valueOf("10.1.0.1")));
+		assertEquals(route("10.0.0.0/8"), second.lookup(AtriumIpAddress.valueOf("10.1.0.1")));
+
+		// Nothing to remove
+		assertSame(second, second.remove(AtriumIpPrefix.valueOf("10.1.0.0/16")));
+		// Replaced
+		RouteEntry replaced = new RouteEntry(AtriumIpPrefix.valueOf("20.0.0.0/8"),
+				AtriumIpAddress.valueOf("192.168.20.1"));
+		Ip4RouteTable third = second.put(replaced);
+		assertEquals(2, third.size());
+		assertEquals(replaced, third.get(AtriumIpPrefix.valueOf("20.0.0.0/8")));
+		assertTrue(third.routes().contains(replaced));
+		assertFalse(second.routes().contains(replaced));
+	}
+
+	/**
+	 * Tests iterating the routes within a prefix.
+	 */
+	@Test
+	public void testWithin() {
+		Ip4RouteTable table = Ip4RouteTable.EMPTY.put(route("10.1.2.0/24")).put(route("10.1.0.0/16"))
+				.put(route("10.128.0.0/9")).put(route("11.0.0.0/8")).put(route("10.0.0.0/8"));
+
+		assertEquals(ImmutableList.of(route("10.0.0.0/8"), route("10.1.0.0/16"), route("10.1.2.0/24"),
+				route("10.128.0.0/9")), ImmutableList.copyOf(table.within(AtriumIpPrefix.valueOf("10.0.0.0/8"))));
+		assertEquals(ImmutableList.of(route("10.1.0.0/16"), route("10.1.2.0/24")),
+				ImmutableList.copyOf(table.within(AtriumIpPrefix.valueOf("10.0.0.0/15"))));
+		assertEquals(ImmutableList.of(route("10.1.2.0/24")),
+				ImmutableList.copyOf(table.within(AtriumIpPrefix.valueOf("10.1.2.0/24"))));
+		assertTrue(Iterables.isEmpty(table.within(AtriumIpPrefix.valueOf("10.2.0.0/16"))));
+		assertTrue(Iterables.isEmpty(table.within(AtriumIpPrefix.valueOf("12.0.0.0/8"))));
+		assertEquals(5, Iterables.size(table.within(AtriumIpPrefix.valueOf("0.0.0.0/0"))));
+	}
+
+	/**
+	 * Tests random changes against a linear scan of the routes.
+	 */
+	@Test
+	public void testRandomChanges() {
+		Random random = new Random(42);
+		Map<AtriumIpPrefix, RouteEntry> routes = new HashMap<>();
+		List<AtriumIpPrefix> prefixes = new ArrayList<>();
+		Ip4RouteTable table = Ip4RouteTable.EMPTY;
+		for (int i = 0; i < 2000; i++) {
+			if (prefixes.isEmpty() || random.nextInt(3) != 0) {
+				// Few distinct high bits so that the prefixes nest
+				AtriumIpPrefix prefix = AtriumIpPrefix.valueOf(random.nextInt(16) << 28 | random.nextInt(1 << 12) << 16,
+						8 + random.nextInt(25));
+				RouteEntry route = new RouteEntry(prefix, NEXT_HOP);
+				if (routes.put(prefix, route) == null) {
+					prefixes.add(prefix);
+				}
+				table = table.put(route);
+			} else {
+				AtriumIpPrefix prefix = prefixes.remove(random.nextInt(prefixes.size()));
+				routes.remove(prefix);
+				table = table.remove(prefix);
+			}
+			assertEquals(routes.size(), table.size());
+		}
+		assertEquals(routes.size(), Iterables.size(table.routes()));
+		for (int i = 0; i < 2000; i++) {
+			int address = random.nextInt(16) << 28 | random.nextInt(1 << 12) << 16 | random.nextInt(1 << 16);
+			RouteEntry longest = null;
+			for (RouteEntry route : routes.values()) {
+				if (route.prefix().contains(AtriumIpAddress.valueOf(address)) && (longest == null
+						|| route.prefix().prefixLength() > longest.prefix().prefixLength())) {
+					longest = route;
+				}
+			}
+			assertEquals(longest, table.lookup(address));
+		}
+	}
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2016 Wipro Ltd. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.atrium.routingservice.impl;
+
+import static org.junit.Assert.*;
+
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.opendaylight.atrium.routingservice.api.RouteEntry;
+import org.opendaylight.atrium.util.AtriumIpAddress;
+import org.opendaylight.atrium.util.AtriumIpPrefix;
+
+/**
+ * Tests the routes waiting for the MAC address of their next hop.
+ */
+public class PendingResolutionsTest {
+
+	private static final AtriumIpAddress NEXT_HOP1 = AtriumIpAddress.valueOf("192.168.10.1");
+	private static final AtriumIpAddress NEXT_HOP2 = AtriumIpAddress.valueOf("192.168.20.1");
+
+	private PendingResolutions pending;
+
+	@Before
+	public void setUp() {
+		pending = new PendingResolutions();
+		pending.configure(3L, 1000L);
+	}
+
+	private static RouteEntry route(String prefix, AtriumIpAddress nextHop) {
+		return new RouteEntry(AtriumIpPrefix.valueOf(prefix), nextHop);
+	}
+
+	/**
+	 * Tests that a bucket is handed over whole and only once.
+	 */
+	@Test
+	public void testDrain() {
+		assertTrue(pending.add(route("1.1.1.0/24", NEXT_HOP1), 0));
+		assertTrue(pending.add(route("1.1.2.0/24", NEXT_HOP1), 0));
+		assertTrue(pending.add(route("1.1.3.0/24", NEXT_HOP2), 0));
+		assertEquals(3, pending.size());
+		assertEquals(2, pending.getNextHopCount());
+
+		Set<RouteEntry> routes = pending.drain(NEXT_HOP1);
+		assertEquals(2, routes.size());
+		assertTrue(routes.contains(route("1.1.2.0/24", NEXT_HOP1)));
+		assertFalse(pending.contains(NEXT_HOP1));
+		assertTrue(pending.drain(NEXT_HOP1).isEmpty());
+		assertEquals(1, pending.size());
+	}
+
+	/**
+	 * Tests that removing the last route of a next hop removes its bucket.
+	 */
+	@Test
+	public void testRemove() {
+		pending.add(route("1.1.1.0/24", NEXT_HOP1), 0);
+		pending.add(route("1.1.1.0/24", NEXT_HOP1), 0);
+		assertEquals(1, pending.size());
+
+		pending.remove(route("1.1.1.0/24", NEXT_HOP1));
+		assertFalse(pending.contains(NEXT_HOP1));
+		assertEquals(0, pending.size());
+	}
+
+	/**
+	 * Tests that routes are rejected above the cap and their next hop is
+	 * reported as unresolved.
+	 */
+	@Test
+	public void testCap() {
+		pending.add(route("1.1.1.0/24", NEXT_HOP1), 0);
+		pending.add(route("1.1.2.0/24", NEXT_HOP1), 0);
+		pending.add(route("1.1.3.0/24", NEXT_HOP1), 0);
+		assertFalse(pending.add(route("1.1.4.0/24", NEXT_HOP2), 0));
+
+		assertEquals(3, pending.size());
+		assertEquals(1, pending.getRejectedCount());
+		assertFalse(pending.contains(NEXT_HOP2));
+		assertTrue(pending.isUnresolved(NEXT_HOP2));
+
+		pending.drain(NEXT_HOP2);
+		assertFalse(pending.isUnresolved(NEXT_HOP2));
+	}
+
+	/**
+	 * Tests that a next hop no route goes through is no longer unresolved.
+	 */
+	@Test
+	public void testForget() {
+		pending.add(route("1.1.1.0/24", NEXT_HOP1), 0);
+		pending.expire(1000);
+		assertTrue(pending.isUnresolved(NEXT_HOP1));
+
+		pending.forget(NEXT_HOP1);
+		assertFalse(pending.isUnresolved(NEXT_HOP1));
+		assertTrue(pending.getUnresolved().isEmpty());
+	}
+
+	/**
+	 * Tests that the buckets older than the timeout are expired.
+	 */
+	@Test
+	public void testExpire() {
+		pending.add(route("1.1.1.0/24", NEXT_HOP1), 0);
+		pending.add(route("1.1.2.0/24", NEXT_HOP1), 500);
+		pending.add(route("1.1.3.0/24", NEXT_HOP2), 600);
+
+		assertEquals(0, pending.expire(999));
+		assertEquals(1, pending.expire(1000));
+
+		assertFalse(pending.contains(NEXT_HOP1));
+		assertTrue(pending.contains(NEXT_HOP2));
+		assertTrue(pending.getUnresolved().contains(NEXT_HOP1));
+		assertEquals(2, pending.getExpiredCount());
+		assertEquals(1, pending.size());
+	}
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2016 Wipro Ltd. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.atrium.routingservice.impl;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.opendaylight.atrium.routingservice.api.RibChange;
+import org.opendaylight.atrium.routingservice.api.RibChanges;
+import org.opendaylight.atrium.routingservice.api.RouteEntry;
+import org.opendaylight.atrium.util.AtriumIpAddress;
+import org.opendaylight.atrium.util.AtriumIpPrefix;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+public class RibChangeLogTest {
+
+	private static final AtriumIpAddress NEXT_HOP = AtriumIpAddress.valueOf("192.168.10.1");
+
+	private RibChangeLog changeLog;
+	private Ip4RouteTable table;
+
+	@Before
+	public void setUp() {
+		changeLog = new RibChangeLog();
+		changeLog.setSize(4L, 0);
+		table = Ip4RouteTable.EMPTY;
+	}
+
+	private RouteEntry put(String prefix) {
+		RouteEntry route = new RouteEntry(AtriumIpPrefix.valueOf(prefix), NEXT_HOP);
+		table = table.put(route);
+		changeLog.add(RibChange.update(table.version(), route));
+		return route;
+	}
+
+	private void remove(String prefix) {
+		table = table.remove(AtriumIpPrefix.valueOf(prefix));
+		changeLog.add(RibChange.delete(table.version(), AtriumIpPrefix.valueOf(prefix)));
+	}
+
+	/**
+	 * Tests reading the changes since a version still logged.
+	 */
+	@Test
+	public void testChangesSince() {
+		RouteEntry route1 = put("10.0.0.0/8");
+		RouteEntry route2 = put("20.0.0.0/8");
+		remove("10.0.0.0/8");
+
+		RibChanges changes = changeLog.since(0, table);
+		assertFalse(changes.isSnapshot());
+		assertEquals(3, changes.version());
+		assertEquals(ImmutableList.of(RibChange.update(1, route1), RibChange.update(2, route2),
+				RibChange.delete(3, AtriumIpPrefix.valueOf("10.0.0.0/8"))), changes.changes());
+
+		changes = changeLog.since(2, table);
+		assertEquals(ImmutableList.of(RibChange.delete(3, AtriumIpPrefix.valueOf("10.0.0.0/8"))), changes.changes());
+
+		changes = changeLog.since(3, table);
+		assertFalse(changes.isSnapshot());
+		assertTrue(changes.changes().isEmpty());
+		assertEquals(0, changeLog.getSnapshotCount());
+	}
+
+	/**
+	 * Tests that a reader further behind than the log gets a snapshot.
+	 */
+	@Test
+	public void testSnapshot() {
+		put("10.0.0.0/8");
+		RouteEntry route2 = put("20.0.0.0/8");
+		RouteEntry route3 = put("30.0.0.0/8");
+		remove("10.0.0.0/8");
+		RouteEntry route4 = put("40.0.0.0/8");
+
+		// Versions 2 to 5 are logged
+		assertFalse(changeLog.since(1, table).isSnapshot());
+		RibChanges changes = changeLog.since(0, table);
+		assertTrue(changes.isSnapshot());
+		assertEquals(5, changes.version());
+		assertEquals(ImmutableSet.of(route2, route3, route4), ImmutableSet.copyOf(changes.snapshot()));
+		assertEquals(1, changeLog.getSnapshotCount());
+
+		// Ahead of the table, such as a version of a previous run
+		assertTrue(changeLog.since(6, table).isSnapshot());
+	}
+
+	/**
+	 * Tests that the changes logged before the table was cleared are not
+	 * read.
+	 */
+	@Test
+	public void testReset() {
+		put("10.0.0.0/8");
+		table = table.clear();
+		changeLog.reset(table.version());
+		RouteEntry route = put("20.0.0.0/8");
+
+		RibChanges changes = changeLog.since(0, table);
+		assertTrue(changes.isSnapshot());
+		assertEquals(ImmutableList.of(route), ImmutableList.copyOf(changes.snapshot()));
+		assertEquals(ImmutableList.of(RibChange.update(3, route)), changeLog.since(2, table).changes());
+	}
+
+	/**
+	 * Tests that a change overwritten after the table was read is not
+	 * returned for the change it replaced.
+	 */
+	@Test
+	public void testOverwritten() {
+		put("10.0.0.0/8");
+		put("20.0.0.0/8");
+		Ip4RouteTable read = table;
+		put("30.0.0.0/8");
+		put("40.0.0.0/8");
+		put("50.0.0.0/8");
+
+		assertTrue(changeLog.since(0, read).isSnapshot());
+		assertEquals(2, changeLog.since(0, read).snapshot().size());
+	}
+}
@@ -7,23 +7,49 @@
  */
 package org.opendaylight.atrium.routingservice.impl;
 
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 
 import static org.mockito.Mockito.*;
 import static org.junit.Assert.*;
 
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import org.opendaylight.atrium.atriumutil.metrics.Histogram;
+import org.opendaylight.atrium.atriumutil.metrics.Metric;
+import org.opendaylight.atrium.atriumutil.metrics.MetricsRegistry;
 import org.opendaylight.atrium.util.AtriumIpAddress;
 import org.opendaylight.atrium.util.AtriumIpPrefix;
-import org.opendaylight.atrium.hostservice.api.Host;
+import org.opendaylight.atrium.util.AtriumMacAddress;
 import org.opendaylight.atrium.hostservice.api.HostService;
+import org.opendaylight.atrium.hostservice.api.Neighbor;
+import org.opendaylight.atrium.hostservice.api.NeighborEvent;
+import org.opendaylight.atrium.hostservice.api.NeighborTable;
+import org.opendaylight.atrium.routingservice.api.AtriumFibEntry;
+import org.opendaylight.atrium.routingservice.api.AtriumFibUpdate;
 import org.opendaylight.atrium.routingservice.api.FibListener;
+import org.opendaylight.atrium.routingservice.api.MultipathRouteEntry;
+import org.opendaylight.atrium.routingservice.api.RibChange;
+import org.opendaylight.atrium.routingservice.api.RibChanges;
 import org.opendaylight.atrium.routingservice.api.RouteEntry;
+import org.opendaylight.atrium.routingservice.api.RouteTrace;
+import org.opendaylight.atrium.routingservice.api.RouteTracer;
 import org.opendaylight.atrium.routingservice.config.api.RoutingConfigService;
 import org.opendaylight.controller.md.sal.binding.api.DataBroker;
 import org.opendaylight.controller.md.sal.binding.api.DataObjectModification;
@@ -31,22 +57,20 @@ import org.opendaylight.controller.md.sal.binding.api.DataTreeModification;
 import org.opendaylight.controller.md.sal.common.api.data.LogicalDatastoreType;
 import org.opendaylight.controller.sal.binding.api.BindingAwareBroker.ProviderContext;
 import org.opendaylight.protocol.bgp.rib.RibReference;
-import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev100924.IpAddress;
 import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev100924.Ipv4Address;
 import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev100924.Ipv4Prefix;
-import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev100924.Ipv6Address;
-import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.yang.types.rev100924.MacAddress;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.NodeConnectorId;
-import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.node.NodeConnector;
-import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.node.NodeConnectorBuilder;
-import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.node.NodeConnectorKey;
 import org.opendaylight.controller.md.sal.binding.api.DataObjectModification.ModificationType;
 import org.opendaylight.controller.md.sal.binding.api.DataTreeIdentifier;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.bgp.inet.rev150305.ipv4.routes.ipv4.routes.Ipv4Route;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.bgp.message.rev130919.path.attributes.Attributes;
-import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.hostservice.api.rev150725.HostId;
-import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.hostservice.api.rev150725.address.node.connector.ConnectorAddress;
-import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.hostservice.api.rev150725.address.node.connector.ConnectorAddressBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.bgp.rib.rev130925.BgpRib;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.bgp.rib.rev130925.PeerId;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.bgp.rib.rev130925.RibId;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.bgp.rib.rev130925.bgp.rib.Rib;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.bgp.rib.rev130925.bgp.rib.RibKey;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.bgp.rib.rev130925.bgp.rib.rib.Peer;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.bgp.rib.rev130925.bgp.rib.rib.PeerKey;
 import org.opendaylight.yangtools.yang.binding.DataObject;
 import org.opendaylight.yangtools.yang.binding.InstanceIdentifier;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.bgp.types.rev130919.next.hop.c.next.hop.Ipv4NextHopCase;
@@ -67,10 +91,15 @@ public class RibManagerTest {
 	@Mock
 	private HostService hostService;
 	@Mock
+	private NeighborTable neighborTable;
+	@Mock
 	private RoutingConfigService routingConfigService;
 	@Mock
 	private FibListener fibListener;
 
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
 	private RibManager ribManager;
 
 	@Before
@@ -85,24 +114,33 @@ public class RibManagerTest {
 	 * Sets up the host service with details of some hosts.
 	 */
 	private void setupHostService() {
-		IpAddress host1Address = new IpAddress(Ipv4Address.getDefaultInstance("192.168.10.1"));
 		long now = new Date().getTime();
-		ConnectorAddress ipv4Address = new ConnectorAddressBuilder().setLastSeen(now).setFirstSeen(now)
-				.setMac(new MacAddress("aa:bb:cc:dd:ee:ff")).setIp(host1Address).build();
-		NodeConnector nc1 = new NodeConnectorBuilder().setKey(new NodeConnectorKey(new NodeConnectorId("1"))).build();
-		Host host1 = new Host(ipv4Address, nc1);
-		when(hostService.getHost(new HostId("192.168.10.1"))).thenReturn(host1);
-
-		IpAddress host2Address = new IpAddress(Ipv6Address.getDefaultInstance("2000::1"));
-		long time = new Date().getTime();
-		ConnectorAddress ipv6Address = new ConnectorAddressBuilder().setLastSeen(time).setFirstSeen(time)
-				.setMac(new MacAddress("aa:bb:cc:dd:ee:00")).setIp(host2Address).build();
-		NodeConnector nc2 = new NodeConnectorBuilder().setKey(new NodeConnectorKey(new NodeConnectorId("2"))).build();
-		Host host2 = new Host(ipv6Address, nc2);
-		when(hostService.getHost(new HostId("2000::1"))).thenReturn(host2);
+		AtriumIpAddress host1Address = AtriumIpAddress.valueOf("192.168.10.1");
+		Neighbor host1 = new Neighbor(host1Address, AtriumMacAddress.valueOf("aa:bb:cc:dd:ee:ff").toLong(),
+				new NodeConnectorId("1"), Neighbor.UNTAGGED, now);
+		when(neighborTable.get(host1Address)).thenReturn(host1);
+
+		AtriumIpAddress host2Address = AtriumIpAddress.valueOf("2000::1");
+		Neighbor host2 = new Neighbor(host2Address, AtriumMacAddress.valueOf("aa:bb:cc:dd:ee:00").toLong(),
+				new NodeConnectorId("2"), Neighbor.UNTAGGED, now);
+		when(neighborTable.get(host2Address)).thenReturn(host2);
+
+		when(hostService.getNeighborTable()).thenReturn(neighborTable);
+
+		// Unknown next hops stay unresolved
+		when(hostService.resolve(any(AtriumIpAddress.class))).thenReturn(new CompletableFuture<>());
 	}
 	
 	public DataTreeModification getRouteUpdate(String prefix, String nextHopIp, ModificationType operation) {
+		return getRouteUpdate(prefix, nextHopIp, operation, null);
+	}
+
+	/**
+	 * Returns an update of the route of a prefix received from a peer, or
+	 * from the local RIB if the peer is null.
+	 */
+	public DataTreeModification getRouteUpdate(String prefix, String nextHopIp, ModificationType operation,
+			String peer) {
 		DataTreeModification routeUpdate = mock(DataTreeModification.class);
 		
 		Ipv4Prefix ipv4Prefix = new Ipv4Prefix(prefix);
@@ -110,6 +148,10 @@ public class RibManagerTest {
 		
 		DataObjectModification root = mock(DataObjectModification.class);
 		InstanceIdentifier instanceIdentifier = mock(InstanceIdentifier.class);
+		if (peer != null) {
+			instanceIdentifier = InstanceIdentifier.builder(BgpRib.class).child(Rib.class, new RibKey(new RibId("rib")))
+					.child(Peer.class, new PeerKey(new PeerId(peer))).build();
+		}
 		DataTreeIdentifier treeIdentifier = new DataTreeIdentifier(LogicalDatastoreType.CONFIGURATION,
 				instanceIdentifier);
 
@@ -122,6 +164,7 @@ public class RibManagerTest {
 		when(routeUpdate.getRootNode()).thenReturn(root);
 		when(root.getModificationType()).thenReturn(operation);
 		when(root.getDataAfter()).thenReturn(route);
+		when(root.getDataBefore()).thenReturn(route);
 		when(route.getAttributes()).thenReturn(attributes);
 		when(attributes.getCNextHop()).thenReturn(nhc);
 		when(nhc.getIpv4NextHop()).thenReturn(ipv4NextHop);
@@ -200,6 +243,23 @@ public class RibManagerTest {
 		verify(fibListener, atLeast(1)).update(anyObject(), anyObject());
 	}
 
+	/**
+	 * Tests that the route updates and FIB batches are counted.
+	 */
+	@Test
+	public void testMetrics() {
+		testIpv4RouteAdd();
+
+		MetricsRegistry metrics = ribManager.getMetrics();
+		assertEquals(1, metrics.get("route-updates-processed").value());
+		assertEquals(1, metrics.get("route-update-latency-us").value());
+		Histogram batchSize = metrics.histogram("fib-batch-size");
+		assertEquals(1, batchSize.getCount());
+		assertEquals(1, batchSize.getMax());
+		assertEquals(0, metrics.get("route-update-queue-depth").value());
+		assertEquals(Metric.Type.GAUGE, metrics.get("route-update-queue-depth").type());
+	}
+
 	/**
 	 * Tests adding a IPv4 route whose next hop is the local BGP speaker.
 	 */
@@ -220,4 +280,399 @@ public class RibManagerTest {
 		assertTrue(ribManager.getRoutes4().contains(routeEntry));
 		verify(fibListener, never()).update(anyObject(), anyObject());
 	}
+
+	/**
+	 * Tests that the next hops of the routes are pinned in the neighbor table.
+	 */
+	@Test
+	public void testNextHopPinned() {
+		AtriumIpAddress nextHop1 = AtriumIpAddress.valueOf("192.168.10.1");
+		AtriumIpAddress nextHop2 = AtriumIpAddress.valueOf("192.168.20.1");
+
+		testIpv4RouteUpdate();
+		verify(neighborTable, times(1)).pin(nextHop1);
+		verify(neighborTable, times(1)).release(nextHop1);
+		verify(neighborTable, times(1)).pin(nextHop2);
+
+		ribManager.processRouteUpdates(getRouteUpdate("1.1.1.0/24", "192.168.20.1", ModificationType.DELETE));
+		verify(neighborTable, times(1)).release(nextHop2);
+	}
+
+	/**
+	 * Tests rewriting the routes through a next hop whose MAC address changed.
+	 */
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testNextHopMoved() {
+		testIpv4RouteAdd();
+		AtriumIpAddress nextHop = AtriumIpAddress.valueOf("192.168.10.1");
+		AtriumMacAddress newMac = AtriumMacAddress.valueOf("aa:bb:cc:dd:ee:01");
+		Neighbor previous = neighborTable.get(nextHop);
+		Neighbor moved = new Neighbor(nextHop, newMac.toLong(), new NodeConnectorId("3"), Neighbor.UNTAGGED,
+				previous.lastSeen());
+
+		RibManager.InternalNeighborListener listener = ribManager.new InternalNeighborListener();
+		// A port change alone does not change the FIB entries
+		listener.neighborUpdate(new NeighborEvent(NeighborEvent.Type.NEIGHBOR_UPDATED,
+				new Neighbor(nextHop, previous.mac(), new NodeConnectorId("3"), Neighbor.UNTAGGED, 0), previous));
+		listener.neighborUpdate(new NeighborEvent(NeighborEvent.Type.NEIGHBOR_UPDATED, moved, previous, 42));
+
+		ArgumentCaptor<Collection> updates = ArgumentCaptor.forClass(Collection.class);
+		verify(fibListener, times(1)).nextHopMoved(eq(nextHop), updates.capture(), eq(42L));
+		assertEquals(1, updates.getValue().size());
+		AtriumFibUpdate update = (AtriumFibUpdate) updates.getValue().iterator().next();
+		assertEquals(AtriumIpPrefix.valueOf("1.1.1.0/24"), update.entry().prefix());
+		assertEquals(newMac, update.entry().nextHopMac());
+	}
+
+	/**
+	 * Tests that the routes of a next hop given up on are installed when the
+	 * next hop shows up later.
+	 */
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testUnresolvedNextHopLate() {
+		AtriumIpAddress nextHop = AtriumIpAddress.valueOf("192.168.20.1");
+		ribManager.processRouteUpdates(getRouteUpdate("2.2.2.0/24", "192.168.20.1", ModificationType.WRITE));
+		PendingResolutions pending = ribManager.getPendingResolutions();
+		assertTrue(pending.contains(nextHop));
+
+		pending.expire(System.currentTimeMillis() + PendingResolutions.DEFAULT_TIMEOUT);
+		assertFalse(pending.contains(nextHop));
+		assertTrue(pending.isUnresolved(nextHop));
+
+		Neighbor neighbor = new Neighbor(nextHop, AtriumMacAddress.valueOf("aa:bb:cc:dd:ee:02").toLong(),
+				new NodeConnectorId("4"), Neighbor.UNTAGGED, 0);
+		ribManager.new InternalNeighborListener()
+				.neighborUpdate(new NeighborEvent(NeighborEvent.Type.NEIGHBOR_ADDED, neighbor, null));
+
+		ArgumentCaptor<Collection> updates = ArgumentCaptor.forClass(Collection.class);
+		verify(fibListener, times(1)).update(updates.capture(), anyObject());
+		assertEquals(1, updates.getValue().size());
+		AtriumFibUpdate update = (AtriumFibUpdate) updates.getValue().iterator().next();
+		assertEquals(AtriumIpPrefix.valueOf("2.2.2.0/24"), update.entry().prefix());
+		assertFalse(pending.isUnresolved(nextHop));
+	}
+
+	/**
+	 * Tests that an unresolved next hop is forgotten once the last route
+	 * through it is withdrawn.
+	 */
+	@Test
+	public void testUnresolvedNextHopWithdrawn() {
+		AtriumIpAddress nextHop = AtriumIpAddress.valueOf("192.168.20.1");
+		ribManager.processRouteUpdates(getRouteUpdate("2.2.2.0/24", "192.168.20.1", ModificationType.WRITE));
+		ribManager.processRouteUpdates(getRouteUpdate("3.3.3.0/24", "192.168.20.1", ModificationType.WRITE));
+		PendingResolutions pending = ribManager.getPendingResolutions();
+		pending.expire(System.currentTimeMillis() + PendingResolutions.DEFAULT_TIMEOUT);
+		assertTrue(pending.isUnresolved(nextHop));
+
+		ribManager.processRouteUpdates(getRouteUpdate("2.2.2.0/24", "192.168.20.1", ModificationType.DELETE));
+		assertTrue(pending.isUnresolved(nextHop));
+		ribManager.processRouteUpdates(getRouteUpdate("3.3.3.0/24", "192.168.20.1", ModificationType.DELETE));
+		assertFalse(pending.isUnresolved(nextHop));
+	}
+
+	/**
+	 * Tests reading the routes within a prefix, the longest prefix match of
+	 * an address and the FIB entries of the routes.
+	 */
+	@Test
+	public void testRouteLookup() {
+		ribManager.processRouteUpdates(getRouteUpdate("10.0.0.0/8", "192.168.10.1", ModificationType.WRITE));
+		ribManager.processRouteUpdates(getRouteUpdate("10.1.0.0/16", "192.168.10.1", ModificationType.WRITE));
+		// Waits on the MAC address of its next hop
+		ribManager.processRouteUpdates(getRouteUpdate("10.1.2.0/24", "192.168.20.1", ModificationType.WRITE));
+		ribManager.processRouteUpdates(getRouteUpdate("20.0.0.0/8", "192.168.10.1", ModificationType.WRITE));
+
+		List<AtriumIpPrefix> prefixes = new ArrayList<>();
+		for (Object route : ribManager.getRoutes4(AtriumIpPrefix.valueOf("10.0.0.0/8"))) {
+			prefixes.add(((RouteEntry) route).prefix());
+		}
+		assertEquals(ImmutableList.of(AtriumIpPrefix.valueOf("10.0.0.0/8"), AtriumIpPrefix.valueOf("10.1.0.0/16"),
+				AtriumIpPrefix.valueOf("10.1.2.0/24")), prefixes);
+		assertEquals(4, Iterables.size(ribManager.getRoutes4(null)));
+
+		assertEquals(AtriumIpPrefix.valueOf("10.1.2.0/24"),
+				ribManager.getRoute4(AtriumIpAddress.valueOf("10.1.2.3")).prefix());
+		assertEquals(AtriumIpPrefix.valueOf("10.1.0.0/16"),
+				ribManager.getRoute4(AtriumIpAddress.valueOf("10.1.3.3")).prefix());
+		assertEquals(AtriumIpPrefix.valueOf("10.0.0.0/8"),
+				ribManager.getRoute4(AtriumIpAddress.valueOf("10.2.0.1")).prefix());
+		assertNull(ribManager.getRoute4(AtriumIpAddress.valueOf("30.0.0.1")));
+
+		RouteEntry[] routes = ribManager.lookup(new int[] { AtriumIpAddress.valueOf("20.1.1.1").getIp4Address().toInt(),
+				AtriumIpAddress.valueOf("30.0.0.1").getIp4Address().toInt(),
+				AtriumIpAddress.valueOf("10.1.2.3").getIp4Address().toInt() });
+		assertEquals(AtriumIpPrefix.valueOf("20.0.0.0/8"), routes[0].prefix());
+		assertNull(routes[1]);
+		assertEquals(AtriumIpPrefix.valueOf("10.1.2.0/24"), routes[2].prefix());
+
+		// The routes read are those of the RIB when they were asked for
+		Collection<?> before = ribManager.getRoutes4();
+		ribManager.processRouteUpdates(getRouteUpdate("20.0.0.0/8", "192.168.10.1", ModificationType.DELETE));
+		assertEquals(4, before.size());
+		assertEquals(4, Iterables.size(before));
+		assertEquals(3, ribManager.getRoutes4().size());
+
+		List<AtriumFibEntry> fib = new ArrayList<>();
+		for (Object entry : ribManager.getFib4(AtriumIpPrefix.valueOf("10.1.0.0/16"))) {
+			fib.add((AtriumFibEntry) entry);
+		}
+		assertEquals(ImmutableList.of(new AtriumFibEntry(AtriumIpPrefix.valueOf("10.1.0.0/16"),
+				AtriumIpAddress.valueOf("192.168.10.1"), AtriumMacAddress.valueOf("aa:bb:cc:dd:ee:ff"))), fib);
+	}
+
+	/**
+	 * Tests that consumers of the RIB catch up from their version with the
+	 * changes since, each on its own.
+	 */
+	@Test
+	public void testChangesSince() {
+		assertEquals(0, ribManager.getRibVersion());
+		ribManager.processRouteUpdates(getRouteUpdate("10.0.0.0/8", "192.168.10.1", ModificationType.WRITE));
+		long first = ribManager.getRibVersion();
+		ribManager.processRouteUpdates(getRouteUpdate("20.0.0.0/8", "192.168.10.1", ModificationType.WRITE));
+		ribManager.processRouteUpdates(getRouteUpdate("10.0.0.0/8", "192.168.10.1", ModificationType.DELETE));
+		assertEquals(first + 2, ribManager.getRibVersion());
+
+		RibChanges changes = ribManager.changesSince(0);
+		assertFalse(changes.isSnapshot());
+		assertEquals(ribManager.getRibVersion(), changes.version());
+		assertEquals(3, changes.changes().size());
+		assertEquals(RibChange.Type.UPDATE, changes.changes().get(0).type());
+		assertEquals(RibChange.Type.DELETE, changes.changes().get(2).type());
+		assertEquals(AtriumIpPrefix.valueOf("10.0.0.0/8"), changes.changes().get(2).prefix());
+
+		changes = ribManager.changesSince(first);
+		assertEquals(2, changes.changes().size());
+		assertEquals(AtriumIpPrefix.valueOf("20.0.0.0/8"), changes.changes().get(0).route().prefix());
+		assertTrue(ribManager.changesSince(changes.version()).changes().isEmpty());
+
+		// Fell behind the log
+		ribManager.setChangeLogSize(1L);
+		ribManager.processRouteUpdates(getRouteUpdate("30.0.0.0/8", "192.168.10.1", ModificationType.WRITE));
+		changes = ribManager.changesSince(first);
+		assertTrue(changes.isSnapshot());
+		assertEquals(2, changes.snapshot().size());
+		assertEquals(1, ribManager.changesSince(changes.version() - 1).changes().size());
+	}
+
+	/**
+	 * Tests that a sampled route update is traced through the RIB and handed
+	 * over to the FIB listener, and that tracing is disabled by default.
+	 */
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testRouteTrace() {
+		RouteTracer tracer = ribManager.getRouteTracer();
+		assertNull(tracer.start());
+
+		ribManager.setTraceConfig(1L, 4L);
+		RouteTrace trace = tracer.start();
+		assertNotNull(trace);
+		ribManager.processRouteUpdates(getRouteUpdate("1.1.1.0/24", "192.168.10.1", ModificationType.WRITE), trace);
+
+		ArgumentCaptor<Collection> updates = ArgumentCaptor.forClass(Collection.class);
+		verify(fibListener, times(1)).update(updates.capture(), anyObject());
+		AtriumFibUpdate update = (AtriumFibUpdate) updates.getValue().iterator().next();
+		assertSame(trace, update.trace());
+
+		// Nothing held the trace past the FIB listener
+		assertEquals(ImmutableList.of(trace), tracer.getSlowest());
+		assertEquals(AtriumIpPrefix.valueOf("1.1.1.0/24"), trace.prefix());
+		assertTrue(trace.getDuration(RouteTrace.Stage.DEQUEUED) >= 0);
+		assertTrue(trace.getDuration(RouteTrace.Stage.PROCESSED) >= 0);
+		assertFalse(trace.reached(RouteTrace.Stage.ARP_RESOLVED));
+		assertEquals(1, tracer.getHistogram(RouteTrace.Stage.PROCESSED).getCount());
+		assertEquals(0, tracer.getHistogram(RouteTrace.Stage.ARP_RESOLVED).getCount());
+		assertEquals(1, ribManager.getMetrics().get("traces-completed").value());
+
+		tracer.clear();
+		assertTrue(tracer.getSlowest().isEmpty());
+	}
+
+	/**
+	 * Tests that the trace of a route waiting on the MAC address of its next
+	 * hop completes once the next hop is resolved.
+	 */
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testRouteTraceWaitingOnArp() {
+		RouteTracer tracer = ribManager.getRouteTracer();
+		tracer.setSampleRate(1);
+		RouteTrace trace = tracer.start();
+		ribManager.processRouteUpdates(getRouteUpdate("2.2.2.0/24", "192.168.20.1", ModificationType.WRITE), trace);
+		verify(fibListener, never()).update(anyObject(), anyObject());
+		assertTrue(tracer.getSlowest().isEmpty());
+
+		AtriumIpAddress nextHop = AtriumIpAddress.valueOf("192.168.20.1");
+		Neighbor neighbor = new Neighbor(nextHop, AtriumMacAddress.valueOf("aa:bb:cc:dd:ee:02").toLong(),
+				new NodeConnectorId("4"), Neighbor.UNTAGGED, 0);
+		ribManager.new InternalNeighborListener()
+				.neighborUpdate(new NeighborEvent(NeighborEvent.Type.NEIGHBOR_ADDED, neighbor, null));
+
+		ArgumentCaptor<Collection> updates = ArgumentCaptor.forClass(Collection.class);
+		verify(fibListener, times(1)).update(updates.capture(), anyObject());
+		assertSame(trace, ((AtriumFibUpdate) updates.getValue().iterator().next()).trace());
+		assertEquals(ImmutableList.of(trace), tracer.getSlowest());
+		assertTrue(trace.getDuration(RouteTrace.Stage.ARP_RESOLVED) >= 0);
+		assertEquals(1, tracer.getHistogram(RouteTrace.Stage.ARP_RESOLVED).getCount());
+	}
+
+	private static Map<AtriumIpAddress, AtriumMacAddress> nextHops(Object... ipAndMacs) {
+		Map<AtriumIpAddress, AtriumMacAddress> nextHops = new LinkedHashMap<>();
+		for (int i = 0; i < ipAndMacs.length; i += 2) {
+			nextHops.put(AtriumIpAddress.valueOf((String) ipAndMacs[i]),
+					AtriumMacAddress.valueOf((String) ipAndMacs[i + 1]));
+		}
+		return nextHops;
+	}
+
+	/**
+	 * Tests that the equal-cost routes received from several peers are load
+	 * balanced, and that losing one of them only removes its next hop.
+	 */
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testMultipathRoutes() {
+		ribManager.setMaxPaths(4L);
+		AtriumIpAddress nextHop1 = AtriumIpAddress.valueOf("192.168.10.1");
+		AtriumIpAddress nextHop3 = AtriumIpAddress.valueOf("192.168.10.3");
+		when(neighborTable.get(nextHop3)).thenReturn(new Neighbor(nextHop3,
+				AtriumMacAddress.valueOf("aa:bb:cc:dd:ee:03").toLong(), new NodeConnectorId("3"), Neighbor.UNTAGGED, 0));
+		AtriumIpPrefix prefix = AtriumIpPrefix.valueOf("5.5.5.0/24");
+
+		ribManager.processRouteUpdates(getRouteUpdate("5.5.5.0/24", "192.168.10.3", ModificationType.WRITE, "peer2"));
+		ribManager.processRouteUpdates(getRouteUpdate("5.5.5.0/24", "192.168.10.1", ModificationType.WRITE, "peer1"));
+
+		assertTrue(ribManager.getRoutes4().contains(new MultipathRouteEntry(prefix, ImmutableList.of(nextHop1, nextHop3))));
+		ArgumentCaptor<Collection> updates = ArgumentCaptor.forClass(Collection.class);
+		ArgumentCaptor<Collection> withdraws = ArgumentCaptor.forClass(Collection.class);
+		verify(fibListener, times(2)).update(updates.capture(), withdraws.capture());
+		AtriumFibUpdate update = (AtriumFibUpdate) updates.getValue().iterator().next();
+		assertEquals(nextHops("192.168.10.1", "aa:bb:cc:dd:ee:ff", "192.168.10.3", "aa:bb:cc:dd:ee:03"),
+				update.entry().nextHops());
+		assertTrue(withdraws.getValue().isEmpty());
+
+		// The first peer goes away, the prefix is not withdrawn
+		ribManager.processRouteUpdates(getRouteUpdate("5.5.5.0/24", "192.168.10.1", ModificationType.DELETE, "peer1"));
+
+		assertTrue(ribManager.getRoutes4().contains(new RouteEntry(prefix, nextHop3)));
+		verify(fibListener, times(3)).update(updates.capture(), withdraws.capture());
+		update = (AtriumFibUpdate) updates.getValue().iterator().next();
+		assertEquals(nextHops("192.168.10.3", "aa:bb:cc:dd:ee:03"), update.entry().nextHops());
+		assertTrue(withdraws.getValue().isEmpty());
+		verify(neighborTable, times(1)).pin(nextHop1);
+		verify(neighborTable, times(1)).release(nextHop1);
+		verify(neighborTable, never()).release(nextHop3);
+	}
+
+	/**
+	 * Tests that a multipath route is installed with its resolved next hops,
+	 * and updated when the other next hops are resolved.
+	 */
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testMultipathUnresolvedNextHop() {
+		ribManager.setMaxPaths(4L);
+		AtriumIpAddress nextHop2 = AtriumIpAddress.valueOf("192.168.20.1");
+		ribManager.processRouteUpdates(getRouteUpdate("5.5.5.0/24", "192.168.10.1", ModificationType.WRITE, "peer1"));
+		ribManager.processRouteUpdates(getRouteUpdate("5.5.5.0/24", "192.168.20.1", ModificationType.WRITE, "peer2"));
+
+		ArgumentCaptor<Collection> updates = ArgumentCaptor.forClass(Collection.class);
+		// The second path is not installed until it is resolved
+		verify(fibListener, times(2)).update(updates.capture(), anyObject());
+		AtriumFibUpdate update = (AtriumFibUpdate) updates.getValue().iterator().next();
+		assertEquals(nextHops("192.168.10.1", "aa:bb:cc:dd:ee:ff"), update.entry().nextHops());
+		assertTrue(ribManager.getPendingResolutions().contains(nextHop2));
+
+		Neighbor neighbor = new Neighbor(nextHop2, AtriumMacAddress.valueOf("aa:bb:cc:dd:ee:02").toLong(),
+				new NodeConnectorId("4"), Neighbor.UNTAGGED, 0);
+		ribManager.new InternalNeighborListener()
+				.neighborUpdate(new NeighborEvent(NeighborEvent.Type.NEIGHBOR_ADDED, neighbor, null));
+
+		verify(fibListener, times(3)).update(updates.capture(), anyObject());
+		update = (AtriumFibUpdate) updates.getValue().iterator().next();
+		assertEquals(nextHops("192.168.10.1", "aa:bb:cc:dd:ee:ff", "192.168.20.1", "aa:bb:cc:dd:ee:02"),
+				update.entry().nextHops());
+	}
+
+	/**
+	 * Tests that a multipath route left with an unresolved next hop only is
+	 * withdrawn, so that the switches stop forwarding to the next hop it lost.
+	 */
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testMultipathLosesResolvedNextHop() {
+		ribManager.setMaxPaths(4L);
+		ribManager.processRouteUpdates(getRouteUpdate("5.5.5.0/24", "192.168.10.1", ModificationType.WRITE, "peer1"));
+		ribManager.processRouteUpdates(getRouteUpdate("5.5.5.0/24", "192.168.20.1", ModificationType.WRITE, "peer2"));
+		verify(fibListener, times(2)).update(anyObject(), anyObject());
+
+		ribManager.processRouteUpdates(getRouteUpdate("5.5.5.0/24", "192.168.10.1", ModificationType.DELETE, "peer1"));
+
+		assertTrue(ribManager.getRoutes4().contains(
+				new RouteEntry(AtriumIpPrefix.valueOf("5.5.5.0/24"), AtriumIpAddress.valueOf("192.168.20.1"))));
+		ArgumentCaptor<Collection> updates = ArgumentCaptor.forClass(Collection.class);
+		ArgumentCaptor<Collection> withdraws = ArgumentCaptor.forClass(Collection.class);
+		verify(fibListener, times(3)).update(updates.capture(), withdraws.capture());
+		assertTrue(updates.getValue().isEmpty());
+		assertEquals(1, withdraws.getValue().size());
+		AtriumFibUpdate withdraw = (AtriumFibUpdate) withdraws.getValue().iterator().next();
+		assertEquals(AtriumFibUpdate.Type.DELETE, withdraw.type());
+		assertEquals(AtriumIpPrefix.valueOf("5.5.5.0/24"), withdraw.entry().prefix());
+	}
+
+	/**
+	 * Tests that the routes of the snapshot are installed on start with the
+	 * MAC addresses of the snapshot, and that those BGP does not announce
+	 * again are withdrawn on reconciliation.
+	 */
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testRestoreSnapshot() throws Exception {
+		AtriumIpAddress nextHop1 = AtriumIpAddress.valueOf("192.168.10.1");
+		AtriumIpAddress nextHop2 = AtriumIpAddress.valueOf("192.168.20.1");
+		Path file = folder.getRoot().toPath().resolve("rib.snapshot");
+		RibSnapshotStore store = new RibSnapshotStore(file);
+		store.open();
+		store.routeUpdated(new RouteEntry(AtriumIpPrefix.valueOf("1.1.1.0/24"), nextHop1));
+		store.routeUpdated(new RouteEntry(AtriumIpPrefix.valueOf("2.2.2.0/24"), nextHop2));
+		store.nextHopResolved(nextHop2, AtriumMacAddress.valueOf("aa:bb:cc:dd:ee:02"));
+		store.close();
+
+		ribManager.setSnapshotConfig(file.toString(), null);
+		ribManager.restoreSnapshot();
+
+		assertEquals(2, ribManager.getRoutes4().size());
+		ArgumentCaptor<Collection> updates = ArgumentCaptor.forClass(Collection.class);
+		ArgumentCaptor<Collection> withdraws = ArgumentCaptor.forClass(Collection.class);
+		verify(fibListener, times(1)).update(updates.capture(), anyObject());
+		assertEquals(2, updates.getValue().size());
+		for (Object update : updates.getValue()) {
+			AtriumFibUpdate fibUpdate = (AtriumFibUpdate) update;
+			if (fibUpdate.entry().prefix().equals(AtriumIpPrefix.valueOf("2.2.2.0/24"))) {
+				assertEquals(nextHops("192.168.20.1", "aa:bb:cc:dd:ee:02"), fibUpdate.entry().nextHops());
+			}
+		}
+		verify(neighborTable, times(1)).pin(nextHop2);
+
+		// Announced again with the same next hop, the FIB is not touched
+		ribManager.processRouteUpdates(getRouteUpdate("1.1.1.0/24", "192.168.10.1", ModificationType.WRITE));
+		verify(fibListener, times(1)).update(anyObject(), anyObject());
+
+		assertEquals(1, ribManager.reconcile());
+		verify(fibListener, times(2)).update(updates.capture(), withdraws.capture());
+		assertEquals(1, withdraws.getValue().size());
+		AtriumFibUpdate withdraw = (AtriumFibUpdate) withdraws.getValue().iterator().next();
+		assertEquals(AtriumIpPrefix.valueOf("2.2.2.0/24"), withdraw.entry().prefix());
+		assertEquals(1, ribManager.getRoutes4().size());
+		verify(neighborTable, times(1)).release(nextHop2);
+
+		RibSnapshotStore snapshot = ribManager.getSnapshot();
+		assertEquals(1, snapshot.getRoutes().size());
+		assertFalse(snapshot.getNextHops().containsKey(nextHop2));
+		snapshot.close();
+	}
 }
@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2016 Wipro Ltd. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.atrium.routingservice.impl;
+
+import static org.junit.Assert.*;
+
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.opendaylight.atrium.routingservice.api.MultipathRouteEntry;
+import org.opendaylight.atrium.routingservice.api.RouteEntry;
+import org.opendaylight.atrium.util.AtriumIpAddress;
+import org.opendaylight.atrium.util.AtriumIpPrefix;
+import org.opendaylight.atrium.util.AtriumMacAddress;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Tests writing the RIB snapshot log and loading it back.
+ */
+public class RibSnapshotStoreTest {
+
+	private static final AtriumIpAddress NEXT_HOP1 = AtriumIpAddress.valueOf("192.168.10.1");
+	private static final AtriumIpAddress NEXT_HOP2 = AtriumIpAddress.valueOf("192.168.20.1");
+	private static final AtriumMacAddress MAC1 = AtriumMacAddress.valueOf("aa:bb:cc:dd:ee:01");
+	private static final AtriumMacAddress MAC2 = AtriumMacAddress.valueOf("aa:bb:cc:dd:ee:02");
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Path file;
+	private RibSnapshotStore store;
+
+	@Before
+	public void setUp() throws Exception {
+		file = folder.getRoot().toPath().resolve("atrium").resolve("rib.snapshot");
+		store = new RibSnapshotStore(file);
+		store.open();
+	}
+
+	@After
+	public void tearDown() {
+		store.close();
+	}
+
+	private RibSnapshotStore reopen() throws Exception {
+		store.close();
+		store = new RibSnapshotStore(file);
+		store.open();
+		return store;
+	}
+
+	private static RouteEntry route(String prefix, AtriumIpAddress nextHop) {
+		return new RouteEntry(AtriumIpPrefix.valueOf(prefix), nextHop);
+	}
+
+	/**
+	 * Tests that the routes and next hops are loaded back as last written.
+	 */
+	@Test
+	public void testReload() throws Exception {
+		RouteEntry multipath = new MultipathRouteEntry(AtriumIpPrefix.valueOf("3.3.3.0/24"),
+				ImmutableList.of(NEXT_HOP1, NEXT_HOP2));
+		store.routeUpdated(route("1.1.1.0/24", NEXT_HOP1));
+		store.routeUpdated(route("2.2.2.0/24", NEXT_HOP1));
+		store.routeUpdated(route("2.2.2.0/24", NEXT_HOP2));
+		store.routeUpdated(multipath);
+		store.routeRemoved(AtriumIpPrefix.valueOf("1.1.1.0/24"));
+		store.nextHopResolved(NEXT_HOP1, MAC1);
+		store.nextHopResolved(NEXT_HOP2, MAC1);
+		store.nextHopResolved(NEXT_HOP2, MAC2);
+		store.nextHopRemoved(NEXT_HOP1);
+
+		reopen();
+		assertEquals(2, store.getRoutes().size());
+		assertTrue(store.getRoutes().contains(route("2.2.2.0/24", NEXT_HOP2)));
+		assertTrue(store.getRoutes().contains(multipath));
+		assertEquals(1, store.getNextHops().size());
+		assertEquals(MAC2, store.getNextHops().get(NEXT_HOP2));
+	}
+
+	/**
+	 * Tests that unchanged routes and next hops are not appended.
+	 */
+	@Test
+	public void testUnchangedNotAppended() {
+		store.routeUpdated(route("1.1.1.0/24", NEXT_HOP1));
+		store.routeUpdated(route("1.1.1.0/24", NEXT_HOP1));
+		store.nextHopResolved(NEXT_HOP1, MAC1);
+		store.nextHopResolved(NEXT_HOP1, MAC1);
+		store.routeRemoved(AtriumIpPrefix.valueOf("9.9.9.0/24"));
+		assertEquals(2, store.getRecordCount());
+	}
+
+	/**
+	 * Tests that a log ending with a torn record is loaded up to that record.
+	 */
+	@Test
+	public void testTornRecord() throws Exception {
+		store.routeUpdated(route("1.1.1.0/24", NEXT_HOP1));
+		int end = store.size();
+		store.routeUpdated(route("2.2.2.0/24", NEXT_HOP1));
+		store.close();
+		try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+			// Corrupts the CRC of the last record, after its length and 13
+			// bytes of route
+			raf.seek(end + 4 + 13);
+			raf.write(0xff);
+		}
+
+		reopen();
+		assertEquals(1, store.getRoutes().size());
+		assertTrue(store.getRoutes().contains(route("1.1.1.0/24", NEXT_HOP1)));
+
+		// The log was rewritten, appending after the torn record is safe
+		store.routeUpdated(route("3.3.3.0/24", NEXT_HOP1));
+		reopen();
+		assertEquals(2, store.getRoutes().size());
+	}
+
+	/**
+	 * Tests that compaction drops the obsolete records and keeps the state.
+	 */
+	@Test
+	public void testCompact() throws Exception {
+		for (int i = 0; i < 100; i++) {
+			store.routeUpdated(route("1.1.1.0/24", i % 2 == 0 ? NEXT_HOP1 : NEXT_HOP2));
+		}
+		store.nextHopResolved(NEXT_HOP2, MAC2);
+		assertEquals(101, store.getRecordCount());
+		int size = store.size();
+
+		store.compact();
+		assertEquals(2, store.getRecordCount());
+		assertTrue(store.size() < size);
+
+		reopen();
+		assertEquals(1, store.getRoutes().size());
+		assertTrue(store.getRoutes().contains(route("1.1.1.0/24", NEXT_HOP2)));
+		assertEquals(MAC2, store.getNextHops().get(NEXT_HOP2));
+	}
+
+	/**
+	 * Tests that the log is compacted when it runs out of room.
+	 */
+	@Test
+	public void testFull() throws Exception {
+		int count = RibSnapshotStore.MIN_CAPACITY / 20;
+		for (int i = 0; i < count; i++) {
+			store.routeUpdated(new RouteEntry(AtriumIpPrefix.valueOf(i << 8, 24), NEXT_HOP1));
+		}
+		assertTrue(store.getCompactionCount() > 1);
+
+		reopen();
+		assertEquals(count, store.getRoutes().size());
+	}
+}
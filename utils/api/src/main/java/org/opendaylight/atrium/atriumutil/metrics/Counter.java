@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2016 Wipro Ltd. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.atrium.atriumutil.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Count that only grows. Incrementing does not block and does not contend
+ * between threads.
+ */
+public final class Counter implements Metric {
+
+	private final LongAdder count = new LongAdder();
+
+	public void increment() {
+		count.increment();
+	}
+
+	public void add(long n) {
+		count.add(n);
+	}
+
+	public long get() {
+		return count.sum();
+	}
+
+	@Override
+	public Type type() {
+		return Type.COUNTER;
+	}
+
+	@Override
+	public long value() {
+		return count.sum();
+	}
+
+	@Override
+	public String toString() {
+		return Long.toString(get());
+	}
+}
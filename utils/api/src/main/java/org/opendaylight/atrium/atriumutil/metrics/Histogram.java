@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2016 Wipro Ltd. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.atrium.atriumutil.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.google.common.base.MoreObjects;
+
+/**
+ * Distribution of non-negative values, such as latencies or batch sizes, with
+ * percentiles.
+ * <p>
+ * As in an HDR histogram, the values are counted in log-linear buckets: each
+ * power of two is split in {@link #SUB_BUCKETS} buckets of equal width, so
+ * that a percentile is within about 3% of the exact value over the whole
+ * range of a long, with a fixed footprint of about 15 KB. Recording a value
+ * is a few shifts and one atomic increment, it does not allocate or block.
+ * </p>
+ * <p>
+ * The values are kept from the creation of the histogram, the percentiles
+ * are those of all the values recorded.
+ * </p>
+ */
+public final class Histogram implements Metric {
+
+	static final int SUB_BUCKET_BITS = 5;
+	static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	// Values below this bound have a bucket each
+	private static final int LINEAR_BOUND = 2 * SUB_BUCKETS;
+	static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+	private final LongAdder count = new LongAdder();
+	private final LongAdder total = new LongAdder();
+	private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+	/**
+	 * @param value
+	 *            the value to record, negative values are recorded as 0
+	 */
+	public void record(long value) {
+		if (value < 0) {
+			value = 0;
+		}
+		buckets.incrementAndGet(bucketOf(value));
+		count.increment();
+		total.add(value);
+		max.accumulate(value);
+	}
+
+	static int bucketOf(long value) {
+		if (value < LINEAR_BOUND) {
+			return (int) value;
+		}
+		int shift = Long.SIZE - 1 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+		return shift * SUB_BUCKETS + (int) (value >>> shift);
+	}
+
+	/**
+	 * @return the lowest value counted in a bucket
+	 */
+	static long lowestValueOf(int bucket) {
+		if (bucket < LINEAR_BOUND) {
+			return bucket;
+		}
+		int shift = bucket / SUB_BUCKETS - 1;
+		return (long) (bucket - shift * SUB_BUCKETS) << shift;
+	}
+
+	/**
+	 * @return the highest value counted in a bucket
+	 */
+	static long highestValueOf(int bucket) {
+		if (bucket < LINEAR_BOUND) {
+			return bucket;
+		}
+		int shift = bucket / SUB_BUCKETS - 1;
+		return lowestValueOf(bucket) + (1L << shift) - 1;
+	}
+
+	/**
+	 * @return the number of values recorded
+	 */
+	public long getCount() {
+		return count.sum();
+	}
+
+	/**
+	 * @return the largest value recorded, 0 if none was recorded
+	 */
+	public long getMax() {
+		return max.get();
+	}
+
+	/**
+	 * @return the mean of the values recorded, 0 if none was recorded
+	 */
+	public long getMean() {
+		long n = count.sum();
+		return n == 0 ? 0 : total.sum() / n;
+	}
+
+	/**
+	 * @param percentile
+	 *            the percentile, between 0 and 100
+	 * @return the value below or at which the given percentage of the
+	 *         recorded values fall, 0 if none was recorded
+	 */
+	public long getValueAtPercentile(double percentile) {
+		long[] counts = new long[BUCKETS];
+		long n = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			counts[i] = buckets.get(i);
+			n += counts[i];
+		}
+		if (n == 0) {
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(Math.min(100, Math.max(0, percentile)) / 100 * n));
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += counts[i];
+			if (seen >= rank) {
+				return Math.min(highestValueOf(i), getMax());
+			}
+		}
+		return getMax();
+	}
+
+	@Override
+	public Type type() {
+		return Type.HISTOGRAM;
+	}
+
+	@Override
+	public long value() {
+		return getCount();
+	}
+
+	@Override
+	public String toString() {
+		return MoreObjects.toStringHelper(getClass()).add("count", getCount()).add("mean", getMean())
+				.add("p50", getValueAtPercentile(50)).add("p99", getValueAtPercentile(99))
+				.add("max", getMax()).toString();
+	}
+}
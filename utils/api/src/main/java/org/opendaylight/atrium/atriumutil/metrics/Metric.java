@@ -0,0 +1,37 @@
+/*
+ * Copyright (c) 2016 Wipro Ltd. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.atrium.atriumutil.metrics;
+
+/**
+ * Value of a component exported by its {@link MetricsRegistry}.
+ */
+public interface Metric {
+
+	enum Type {
+		/**
+		 * Count that only grows
+		 */
+		COUNTER,
+		/**
+		 * Value sampled when exported, that goes up and down
+		 */
+		GAUGE,
+		/**
+		 * Distribution of recorded values
+		 */
+		HISTOGRAM
+	}
+
+	Type type();
+
+	/**
+	 * @return the value of a counter or gauge, the number of values recorded
+	 *         by a histogram
+	 */
+	long value();
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) 2016 Wipro Ltd. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.atrium.atriumutil.metrics;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+
+import org.jboss.netty.util.Timeout;
+import org.jboss.netty.util.TimerTask;
+import org.opendaylight.atrium.util.AtriumTimer;
+import org.opendaylight.controller.md.sal.binding.api.DataBroker;
+import org.opendaylight.controller.md.sal.binding.api.WriteTransaction;
+import org.opendaylight.controller.md.sal.common.api.data.LogicalDatastoreType;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.atriumutil.api.rev150725.AtriumMetrics;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.atriumutil.api.rev150725.atrium.metrics.MetricGroup;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.atriumutil.api.rev150725.atrium.metrics.MetricGroupBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.atriumutil.api.rev150725.atrium.metrics.MetricGroupKey;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.atriumutil.api.rev150725.atrium.metrics.metric.group.MetricBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.atriumutil.api.rev150725.atrium.metrics.metric.group.MetricKey;
+import org.opendaylight.yangtools.yang.binding.InstanceIdentifier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Exports the metrics of a registry over JMX, as the MBean
+ * {@code org.opendaylight.atrium:type=Metrics,name=<registry>} read live, and
+ * to the operational datastore, as the group of the registry under
+ * {@code atrium-metrics} written at each interval.
+ * <p>
+ * The datastore write happens on the shared Atrium timer, off the paths that
+ * record the metrics. The group is removed from the datastore and the MBean
+ * unregistered on close.
+ * </p>
+ */
+public class MetricsExporter implements TimerTask, AutoCloseable {
+
+	private static final Logger LOG = LoggerFactory.getLogger(MetricsExporter.class);
+
+	static final String JMX_DOMAIN = "org.opendaylight.atrium";
+	static final long DEFAULT_INTERVAL = 10000; // milliseconds
+
+	private final MetricsRegistry registry;
+	private final DataBroker dataBroker;
+	private final InstanceIdentifier<MetricGroup> groupId;
+	private final long interval;
+	private ObjectName objectName;
+	private volatile Timeout tick;
+	private volatile boolean closed;
+
+	/**
+	 * @param registry
+	 *            the metrics to export
+	 * @param dataBroker
+	 *            the data broker the metrics are written through, null to
+	 *            export over JMX only
+	 */
+	public MetricsExporter(MetricsRegistry registry, DataBroker dataBroker) {
+		this(registry, dataBroker, DEFAULT_INTERVAL);
+	}
+
+	/**
+	 * @param interval
+	 *            time in milliseconds between two writes of the metrics to
+	 *            the datastore
+	 */
+	public MetricsExporter(MetricsRegistry registry, DataBroker dataBroker, long interval) {
+		this.registry = checkNotNull(registry);
+		this.dataBroker = dataBroker;
+		this.interval = interval;
+		this.groupId = InstanceIdentifier.builder(AtriumMetrics.class)
+				.child(MetricGroup.class, new MetricGroupKey(registry.getName())).build();
+	}
+
+	/**
+	 * @return the name of the MBean of the metrics of a component
+	 */
+	public static ObjectName objectName(String registryName) throws MalformedObjectNameException {
+		return new ObjectName(JMX_DOMAIN + ":type=Metrics,name=" + ObjectName.quote(registryName));
+	}
+
+	public void start() {
+		closed = false;
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try {
+			objectName = objectName(registry.getName());
+			// Left behind by an instance not closed, such as on a reload
+			if (server.isRegistered(objectName)) {
+				server.unregisterMBean(objectName);
+			}
+			server.registerMBean(new MetricsMBean(registry), objectName);
+		} catch (JMException e) {
+			LOG.warn("Failed to register the MBean of the {} metrics", registry.getName(), e);
+			objectName = null;
+		}
+		if (dataBroker != null && interval > 0) {
+			tick = AtriumTimer.getTimer().newTimeout(this, interval, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	@Override
+	public void run(Timeout t) {
+		if (closed) {
+			return;
+		}
+		try {
+			publish();
+		} catch (RuntimeException e) {
+			LOG.warn("Failed to publish the {} metrics", registry.getName(), e);
+		}
+		if (!closed) {
+			tick = AtriumTimer.getTimer().newTimeout(this, interval, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * Writes the current value of the metrics to the operational datastore.
+	 */
+	void publish() {
+		WriteTransaction tx = dataBroker.newWriteOnlyTransaction();
+		tx.put(LogicalDatastoreType.OPERATIONAL, groupId, toMetricGroup(registry), true);
+		tx.submit();
+	}
+
+	static MetricGroup toMetricGroup(MetricsRegistry registry) {
+		List<org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.atriumutil.api.rev150725.atrium.metrics.metric.group.Metric> metrics = new ArrayList<>();
+		for (Map.Entry<String, Metric> entry : registry.getMetrics().entrySet()) {
+			Metric metric = entry.getValue();
+			MetricBuilder builder = new MetricBuilder().setKey(new MetricKey(entry.getKey())).setName(entry.getKey())
+					.setValue(metric.value());
+			switch (metric.type()) {
+			case COUNTER:
+				builder.setType(
+						org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.atriumutil.api.rev150725.atrium.metrics.metric.group.Metric.Type.COUNTER);
+				break;
+			case GAUGE:
+				builder.setType(
+						org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.atriumutil.api.rev150725.atrium.metrics.metric.group.Metric.Type.GAUGE);
+				break;
+			case HISTOGRAM:
+				Histogram histogram = (Histogram) metric;
+				builder.setType(
+						org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.atriumutil.api.rev150725.atrium.metrics.metric.group.Metric.Type.HISTOGRAM);
+				builder.setMean(histogram.getMean());
+				builder.setP50(histogram.getValueAtPercentile(50));
+				builder.setP99(histogram.getValueAtPercentile(99));
+				builder.setP999(histogram.getValueAtPercentile(99.9));
+				builder.setMax(histogram.getMax());
+				break;
+			default:
+				break;
+			}
+			metrics.add(builder.build());
+		}
+		return new MetricGroupBuilder().setKey(new MetricGroupKey(registry.getName())).setName(registry.getName())
+				.setMetric(metrics).build();
+	}
+
+	@Override
+	public void close() {
+		closed = true;
+		Timeout current = tick;
+		if (current != null) {
+			current.cancel();
+		}
+		if (objectName != null) {
+			try {
+				ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+			} catch (InstanceNotFoundException e) {
+				// Replaced by a newer instance, which was unregistered since
+			} catch (JMException e) {
+				LOG.warn("Failed to unregister the MBean of the {} metrics", registry.getName(), e);
+			}
+			objectName = null;
+		}
+		if (dataBroker != null && current != null) {
+			try {
+				WriteTransaction tx = dataBroker.newWriteOnlyTransaction();
+				tx.delete(LogicalDatastoreType.OPERATIONAL, groupId);
+				tx.submit();
+			} catch (RuntimeException e) {
+				LOG.warn("Failed to remove the {} metrics", registry.getName(), e);
+			}
+		}
+	}
+}
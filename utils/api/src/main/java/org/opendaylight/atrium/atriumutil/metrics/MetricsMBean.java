@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2016 Wipro Ltd. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.atrium.atriumutil.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.ReflectionException;
+
+/**
+ * Read-only MBean with an attribute per counter and gauge of a registry, and
+ * an attribute per statistic of each histogram, named
+ * {@code <histogram>.<statistic>}.
+ */
+class MetricsMBean implements DynamicMBean {
+
+	static final String[] HISTOGRAM_STATISTICS = { "count", "mean", "p50", "p99", "p999", "max" };
+
+	private final MetricsRegistry registry;
+
+	MetricsMBean(MetricsRegistry registry) {
+		this.registry = registry;
+	}
+
+	/**
+	 * @return a statistic of a histogram
+	 */
+	static long statistic(Histogram histogram, String statistic) {
+		switch (statistic) {
+		case "count":
+			return histogram.getCount();
+		case "mean":
+			return histogram.getMean();
+		case "p50":
+			return histogram.getValueAtPercentile(50);
+		case "p99":
+			return histogram.getValueAtPercentile(99);
+		case "p999":
+			return histogram.getValueAtPercentile(99.9);
+		case "max":
+			return histogram.getMax();
+		default:
+			throw new IllegalArgumentException("Unknown histogram statistic " + statistic);
+		}
+	}
+
+	@Override
+	public Object getAttribute(String attribute) throws AttributeNotFoundException {
+		Metric metric = registry.get(attribute);
+		if (metric != null) {
+			return metric.value();
+		}
+		int dot = attribute.lastIndexOf('.');
+		if (dot > 0) {
+			metric = registry.get(attribute.substring(0, dot));
+			if (metric instanceof Histogram) {
+				try {
+					return statistic((Histogram) metric, attribute.substring(dot + 1));
+				} catch (IllegalArgumentException e) {
+					// Reported below
+				}
+			}
+		}
+		throw new AttributeNotFoundException("No metric " + attribute + " in " + registry.getName());
+	}
+
+	@Override
+	public AttributeList getAttributes(String[] attributes) {
+		AttributeList list = new AttributeList();
+		for (String attribute : attributes) {
+			try {
+				list.add(new Attribute(attribute, getAttribute(attribute)));
+			} catch (AttributeNotFoundException e) {
+				// Left out, as required of an MBean
+			}
+		}
+		return list;
+	}
+
+	@Override
+	public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+		throw new AttributeNotFoundException("Metric " + attribute.getName() + " is read-only");
+	}
+
+	@Override
+	public AttributeList setAttributes(AttributeList attributes) {
+		return new AttributeList();
+	}
+
+	@Override
+	public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+		throw new ReflectionException(new NoSuchMethodException(actionName));
+	}
+
+	@Override
+	public MBeanInfo getMBeanInfo() {
+		List<MBeanAttributeInfo> attributes = new ArrayList<>();
+		for (Map.Entry<String, Metric> metric : registry.getMetrics().entrySet()) {
+			String type = metric.getValue().type().name().toLowerCase();
+			if (metric.getValue() instanceof Histogram) {
+				for (String statistic : HISTOGRAM_STATISTICS) {
+					attributes.add(new MBeanAttributeInfo(metric.getKey() + "." + statistic, Long.class.getName(),
+							statistic + " of " + type + " " + metric.getKey(), true, false, false));
+				}
+			} else {
+				attributes.add(new MBeanAttributeInfo(metric.getKey(), Long.class.getName(),
+						type + " " + metric.getKey(), true, false, false));
+			}
+		}
+		return new MBeanInfo(getClass().getName(), "Metrics of " + registry.getName(),
+				attributes.toArray(new MBeanAttributeInfo[attributes.size()]), null, null, null);
+	}
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2016 Wipro Ltd. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.atrium.atriumutil.metrics;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Metrics of a component, by name. The registry is exported over JMX and to
+ * the operational datastore by a {@link MetricsExporter}.
+ * <p>
+ * Counters and histograms are created on first use and shared by the callers
+ * asking for the same name, so that the hot paths keep a reference to them
+ * and only pay for the recording. Values the component already keeps, such
+ * as the size of a queue or the counters of a helper, are registered as
+ * suppliers read when the metrics are exported.
+ * </p>
+ */
+public class MetricsRegistry {
+
+	private final String name;
+	private final ConcurrentNavigableMap<String, Metric> metrics = new ConcurrentSkipListMap<>();
+
+	/**
+	 * @param name
+	 *            the name of the component, which groups its metrics once
+	 *            exported
+	 */
+	public MetricsRegistry(String name) {
+		this.name = checkNotNull(name);
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return the counter of a name, created if needed
+	 */
+	public Counter counter(String name) {
+		return get(name, Counter.class, Counter::new);
+	}
+
+	/**
+	 * @return the histogram of a name, created if needed
+	 */
+	public Histogram histogram(String name) {
+		return get(name, Histogram.class, Histogram::new);
+	}
+
+	/**
+	 * Registers a count kept by the component, replacing the one registered
+	 * under the same name.
+	 *
+	 * @param value
+	 *            reads the count when the metrics are exported
+	 */
+	public void counter(String name, LongSupplier value) {
+		metrics.put(checkNotNull(name), new Sampled(Metric.Type.COUNTER, value));
+	}
+
+	/**
+	 * Registers a value that goes up and down, replacing the one registered
+	 * under the same name.
+	 *
+	 * @param value
+	 *            reads the value when the metrics are exported
+	 */
+	public void gauge(String name, LongSupplier value) {
+		metrics.put(checkNotNull(name), new Sampled(Metric.Type.GAUGE, value));
+	}
+
+	public Metric get(String name) {
+		return metrics.get(name);
+	}
+
+	/**
+	 * @return the metrics by name, in the order of their names
+	 */
+	public Map<String, Metric> getMetrics() {
+		return Collections.unmodifiableMap(metrics);
+	}
+
+	private <M extends Metric> M get(String name, Class<M> type, Supplier<M> factory) {
+		Metric metric = metrics.computeIfAbsent(checkNotNull(name), n -> factory.get());
+		checkArgument(type.isInstance(metric), "Metric %s of %s is a %s", name, this.name, metric.type());
+		return type.cast(metric);
+	}
+
+	/**
+	 * Value read from the component when exported.
+	 */
+	private static final class Sampled implements Metric {
+		private final Type type;
+		private final LongSupplier value;
+
+		Sampled(Type type, LongSupplier value) {
+			this.type = type;
+			this.value = checkNotNull(value);
+		}
+
+		@Override
+		public Type type() {
+			return type;
+		}
+
+		@Override
+		public long value() {
+			return value.getAsLong();
+		}
+	}
+}